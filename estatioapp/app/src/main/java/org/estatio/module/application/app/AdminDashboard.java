@@ -48,15 +48,23 @@ import org.isisaddons.module.publishmq.dom.servicespi.PublisherServiceUsingActiv
 import org.isisaddons.module.servletapi.dom.HttpSessionProvider;
 import org.isisaddons.module.stringinterpolator.dom.StringInterpolatorService;
 
+import org.incode.module.docfragment.dom.api.DocFragmentService;
+import org.incode.module.docrendering.gotenberg.dom.impl.GotenbergClientService;
+import org.incode.module.document.spi.minio.ExternalDocumentCache;
+import org.incode.module.document.spi.minio.ExternalUrlDownloadService;
 import org.incode.module.slack.impl.SlackService;
 
 import org.estatio.module.application.contributions.Organisation_syncToCoda;
+import org.estatio.module.base.dom.search.SearchIndexService;
+import org.estatio.module.base.spiimpl.security.ApplicationTenancyEvaluatorForEstatio;
 import org.estatio.module.capex.dom.invoice.IncomingInvoice;
 import org.estatio.module.capex.dom.invoice.IncomingInvoiceRepository;
 import org.estatio.module.capex.dom.invoice.approval.IncomingInvoiceApprovalState;
 import org.estatio.module.coda.EstatioCodaModule;
 import org.estatio.module.coda.dom.hwm.CodaHwm;
 import org.estatio.module.coda.dom.hwm.CodaHwmRepository;
+import org.estatio.module.index.dom.IndexTimeSeriesService;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotalService;
 import org.estatio.module.lease.dom.settings.LeaseInvoicingSettingsService;
 import org.estatio.module.settings.dom.ApplicationSettingForEstatio;
 import org.estatio.module.settings.dom.ApplicationSettingsServiceRW;
@@ -192,6 +200,44 @@ public class AdminDashboard {
     }
 
 
+    @Property()
+    @XmlTransient
+    public String getDocFragmentCache() {
+        return docFragmentService.getStatistics().toString();
+    }
+
+    @Property()
+    @XmlTransient
+    public String getGotenbergClient() {
+        return gotenbergClientService.getStatistics().toString();
+    }
+
+    @Property()
+    @XmlTransient
+    public String getIndexTimeSeriesCache() {
+        return indexTimeSeriesService.getStatistics().toString();
+    }
+
+    @Property()
+    @XmlTransient
+    public String getApplicationTenancyEvaluator() {
+        return applicationTenancyEvaluatorForEstatio.getStatistics().toString();
+    }
+
+    @Property()
+    @XmlTransient
+    public String getSearchIndex() {
+        return searchIndexService.getStatistics().toString();
+    }
+
+    @Property()
+    @XmlTransient
+    public String getExternalDocumentCache() {
+        final ExternalDocumentCache.Statistics statistics = externalUrlDownloadService.getCacheStatistics();
+        return statistics != null ? statistics.toString() : "disabled";
+    }
+
+
     @Collection()
     @MemberOrder(sequence = "2")
     public List<ApplicationSettingForEstatio> getApplicationSettings() {
@@ -308,6 +354,25 @@ public class AdminDashboard {
         return this;
     }
 
+    @Action(semantics = SemanticsOf.SAFE)
+    @MemberOrder(sequence = "3.41")
+    public AdminDashboard verifyInvoiceSummaries() {
+        reportVerification(invoiceSummaryTotalService.verify(false));
+        return this;
+    }
+
+    @Action(semantics = SemanticsOf.IDEMPOTENT_ARE_YOU_SURE)
+    @MemberOrder(sequence = "3.42")
+    public AdminDashboard rebuildInvoiceSummaries() {
+        reportVerification(invoiceSummaryTotalService.verify(true));
+        return this;
+    }
+
+    private void reportVerification(final InvoiceSummaryTotalService.Verification verification) {
+        messageService.informUser(verification.toString());
+        verification.getDifferences().forEach(messageService::warnUser);
+    }
+
 
 
     @Action(semantics = SemanticsOf.SAFE, restrictTo = RestrictTo.PROTOTYPING)
@@ -560,4 +625,32 @@ public class AdminDashboard {
     @XmlTransient
     FactoryService factoryService;
 
+    @Inject
+    @XmlTransient
+    DocFragmentService docFragmentService;
+
+    @Inject
+    @XmlTransient
+    GotenbergClientService gotenbergClientService;
+
+    @Inject
+    @XmlTransient
+    IndexTimeSeriesService indexTimeSeriesService;
+
+    @Inject
+    @XmlTransient
+    ApplicationTenancyEvaluatorForEstatio applicationTenancyEvaluatorForEstatio;
+
+    @Inject
+    @XmlTransient
+    SearchIndexService searchIndexService;
+
+    @Inject
+    @XmlTransient
+    ExternalUrlDownloadService externalUrlDownloadService;
+
+    @Inject
+    @XmlTransient
+    InvoiceSummaryTotalService invoiceSummaryTotalService;
+
 }
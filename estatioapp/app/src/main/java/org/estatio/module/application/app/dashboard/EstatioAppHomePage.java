@@ -162,24 +162,24 @@ public class EstatioAppHomePage {
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesFraNew() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_FRA_OFFICE,IncomingInvoiceApprovalState.NEW);
     }
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesFraCompleted() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_FRA_OFFICE,IncomingInvoiceApprovalState.COMPLETED);
     }
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesFraApproved() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_FRA_OFFICE, IncomingInvoiceApprovalState.APPROVED);
     }
 
     public List<IncomingInvoice> getIncomingInvoicesFraPendingBankAccountCheck() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_FRA_OFFICE, IncomingInvoiceApprovalState.PENDING_BANK_ACCOUNT_CHECK);
     }
 
@@ -204,7 +204,7 @@ public class EstatioAppHomePage {
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesFraPayableByOther() {
         final List<IncomingInvoice> invoices = Lists.newArrayList(
-                incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+                incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                         AT_PATHS_FRA_OFFICE, IncomingInvoiceApprovalState.PAYABLE));
 
         final List<IncomingInvoice> byDirectDebit = getIncomingInvoicesFraPayableByDirectDebit();
@@ -252,37 +252,37 @@ public class EstatioAppHomePage {
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesItaNew() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_ITA_OFFICE, IncomingInvoiceApprovalState.NEW);
     }
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesItaCompleted() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_ITA_OFFICE,IncomingInvoiceApprovalState.COMPLETED);
     }
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesItaPendingAdvise() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_ITA_OFFICE,IncomingInvoiceApprovalState.PENDING_ADVISE);
     }
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesItaApprovedByCenterManager() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_ITA_OFFICE,IncomingInvoiceApprovalState.APPROVED_BY_CENTER_MANAGER);
     }
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesItaApproved() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_ITA_OFFICE,IncomingInvoiceApprovalState.APPROVED);
     }
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesItaPendingCodaBooks() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_ITA_OFFICE,IncomingInvoiceApprovalState.PENDING_CODA_BOOKS_CHECK);
     }
 
@@ -350,7 +350,7 @@ public class EstatioAppHomePage {
 
     @Collection(notPersisted = true)
     public List<IncomingInvoice> getIncomingInvoicesItaSuspended() {
-        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalState(
+        return incomingInvoiceRepository.findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
                 AT_PATHS_ITA_OFFICE,IncomingInvoiceApprovalState.SUSPENDED);
     }
 
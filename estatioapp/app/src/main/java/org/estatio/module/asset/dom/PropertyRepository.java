@@ -18,8 +18,10 @@
  */
 package org.estatio.module.asset.dom;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -39,6 +41,7 @@ import org.incode.module.base.dom.utils.StringUtils;
 import org.incode.module.country.dom.impl.Country;
 
 import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
+import org.estatio.module.base.dom.search.SearchIndexService;
 
 @DomainService(
         nature = NatureOfService.DOMAIN,
@@ -115,18 +118,47 @@ public class PropertyRepository extends UdoDomainRepositoryAndFactory<Property>
      * For {@link Property} as per {@link DomainObject#autoCompleteRepository()}.
      */
     public List<Property> autoComplete(final String searchPhrase) {
-
+        if (searchIndexService.isAvailableFor(searchIndexDefinition, searchPhrase)) {
+            final List<Property> properties = searchIndexService.search(searchIndexDefinition, searchPhrase);
+            if (properties != null) {
+                return properties;
+            }
+        }
         final String refRegex = StringUtils.wildcardToCaseInsensitiveRegex("*".concat(searchPhrase).concat("*"));
         return allMatches("findByReferenceOrName",
                 "referenceOrName", refRegex
                 );
     }
 
+    private final SearchIndexService.Definition<Property> searchIndexDefinition =
+            new SearchIndexService.Definition<Property>(Property.class) {
+
+        @Override
+        protected List<Property> loadAll() {
+            return allInstances();
+        }
+
+        @Override
+        protected List<String> termsOf(final Property property) {
+            return Arrays.asList(property.getReference(), property.getName());
+        }
+    };
+
+    @Programmatic
+    @Override
+    public void init(final Map<String, String> properties) {
+        super.init(properties);
+        searchIndexService.register(searchIndexDefinition);
+    }
+
     // //////////////////////////////////////
 
     @Inject
     MeService meService;
 
+    @Inject
+    SearchIndexService searchIndexService;
+
     @Inject
     IsisJdoSupport isisJdoSupport;
 
@@ -18,7 +18,10 @@
  */
 package org.estatio.module.asset.dom;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
@@ -27,9 +30,11 @@ import org.joda.time.LocalDate;
 import org.apache.isis.applib.annotation.DomainObject;
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.services.clock.ClockService;
 
 import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
+import org.estatio.module.base.dom.search.SearchIndexService;
 import org.incode.module.base.dom.utils.StringUtils;
 import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 
@@ -43,6 +48,9 @@ public class UnitRepository extends UdoDomainRepositoryAndFactory<Unit> {
     @Inject
     ClockService clockService;
 
+    @Inject
+    SearchIndexService searchIndexService;
+
     public UnitRepository() {
         super(UnitRepository.class, Unit.class);
     }
@@ -99,9 +107,39 @@ public class UnitRepository extends UdoDomainRepositoryAndFactory<Unit> {
      * Autocomplete for {@link Unit}, as per {@link DomainObject#autoCompleteRepository()}.
      */
     public List<Unit> autoComplete(final String searchPhrase) {
+        if (searchIndexService.isAvailableFor(searchIndexDefinition, searchPhrase)) {
+            final List<Unit> units = searchIndexService.search(searchIndexDefinition, searchPhrase);
+            if (units != null) {
+                final LocalDate now = clockService.now();
+                return units.stream()
+                        .filter(unit -> unit.getEndDate() == null || !unit.getEndDate().isBefore(now))
+                        .collect(Collectors.toList());
+            }
+        }
         return findUnits("*".concat(searchPhrase).concat("*"), false);
     }
 
+    private final SearchIndexService.Definition<Unit> searchIndexDefinition =
+            new SearchIndexService.Definition<Unit>(Unit.class) {
+
+        @Override
+        protected List<Unit> loadAll() {
+            return allInstances();
+        }
+
+        @Override
+        protected List<String> termsOf(final Unit unit) {
+            return Arrays.asList(unit.getReference(), unit.getName());
+        }
+    };
+
+    @Programmatic
+    @Override
+    public void init(final Map<String, String> properties) {
+        super.init(properties);
+        searchIndexService.register(searchIndexDefinition);
+    }
+
     public List<Unit> allUnits() {
         return allInstances();
     }
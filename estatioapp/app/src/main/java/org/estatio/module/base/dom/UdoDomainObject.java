@@ -29,14 +29,7 @@ import org.apache.isis.applib.services.eventbus.EventBusService;
 
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
 
-import org.incode.module.base.dom.with.WithCodeGetter;
-import org.incode.module.base.dom.with.WithDescriptionGetter;
-import org.incode.module.base.dom.with.WithNameGetter;
-import org.incode.module.base.dom.with.WithReferenceGetter;
-import org.incode.module.base.dom.with.WithTitleGetter;
-
 import org.estatio.module.base.dom.apptenancy.WithApplicationTenancy;
-import org.apache.isis.applib.util.ObjectContracts2;
 
 /**
  * A domain object that is mutable and can be changed by multiple users over time,
@@ -67,15 +60,6 @@ public abstract class UdoDomainObject<T extends UdoDomainObject<T>>
         extends AbstractDomainObject
         implements Comparable<T>, WithApplicationTenancy {
 
-
-    protected static ObjectContracts2 UDO_OBJECT_CONTRACTS =
-            new ObjectContracts2()
-                    .with(WithReferenceGetter.ToString.evaluator())
-                    .with(WithCodeGetter.ToString.evaluator())
-                    .with(WithNameGetter.ToString.evaluator())
-                    .with(WithTitleGetter.ToString.evaluator())
-                    .with(WithDescriptionGetter.ToString.evaluator());
-
     private final String keyProperties;
 
     public UdoDomainObject(final String keyProperties) {
@@ -133,12 +117,12 @@ public abstract class UdoDomainObject<T extends UdoDomainObject<T>>
 
     @Override
     public String toString() {
-        return UDO_OBJECT_CONTRACTS.toStringOf(this, keyProperties());
+        return UdoObjectContract.of(getClass(), keyProperties()).toStringOf(this);
     }
 
     @Override
     public int compareTo(final T other) {
-        return ObjectContracts2.compare(this, other, keyProperties);
+        return UdoObjectContract.of(getClass(), keyProperties).compare(this, other);
     }
 
 }
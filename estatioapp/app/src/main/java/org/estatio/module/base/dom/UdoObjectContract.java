@@ -0,0 +1,225 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.dom;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.incode.module.base.dom.with.WithCodeGetter;
+import org.incode.module.base.dom.with.WithDescriptionGetter;
+import org.incode.module.base.dom.with.WithNameGetter;
+import org.incode.module.base.dom.with.WithReferenceGetter;
+import org.incode.module.base.dom.with.WithTitleGetter;
+
+/**
+ * The comparison and <tt>toString</tt> contract of a class, as per a list of key properties (eg
+ * <tt>"lease, startDate desc nullsLast, unit"</tt>), with the same semantics as
+ * {@link org.apache.isis.applib.util.ObjectContracts2}, but compiled only once per class and list of key properties:
+ * the list is parsed and each property's getter resolved (as a {@link MethodHandle}) up front, rather than for every
+ * comparison.
+ *
+ * <p>
+ * Used by {@link UdoDomainObject#compareTo(UdoDomainObject)}, and so by every sorted set of domain objects.
+ * </p>
+ */
+public final class UdoObjectContract {
+
+    private static final Pattern CLAUSE =
+            Pattern.compile("(\\w+)(?:\\s+(asc|desc)(?:\\s+(nullsFirst|nullsLast))?)?");
+
+    private static final ClassValue<ConcurrentMap<String, UdoObjectContract>> CONTRACTS =
+            new ClassValue<ConcurrentMap<String, UdoObjectContract>>() {
+                @Override
+                protected ConcurrentMap<String, UdoObjectContract> computeValue(final Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    /**
+     * The contract of the class for the key properties; compiled on first use, then cached.
+     */
+    public static UdoObjectContract of(final Class<?> type, final String keyProperties) {
+        final String key = keyProperties != null ? keyProperties : "";
+        final ConcurrentMap<String, UdoObjectContract> contractsOfType = CONTRACTS.get(type);
+        final UdoObjectContract contract = contractsOfType.get(key);
+        return contract != null ? contract : contractsOfType.computeIfAbsent(key, k -> new UdoObjectContract(type, k));
+    }
+
+    private static class Clause {
+
+        private final String propertyName;
+        private final MethodHandle getter;
+        private final Comparator<Object> ordering;
+
+        Clause(final String propertyName, final MethodHandle getter, final Comparator<Object> ordering) {
+            this.propertyName = propertyName;
+            this.getter = getter;
+            this.ordering = ordering;
+        }
+
+        Object valueOf(final Object obj) {
+            if (obj == null) {
+                return null;
+            }
+            if (getter == null) {
+                throw new IllegalArgumentException(String.format(
+                        "No such property '%s' on %s", propertyName, obj.getClass().getName()));
+            }
+            try {
+                return getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    private final Class<?> type;
+    private final String keyProperties;
+    private final Clause[] clauses;
+
+    private UdoObjectContract(final Class<?> type, final String keyProperties) {
+        this.type = type;
+        this.keyProperties = keyProperties;
+        final List<Clause> clauses = new ArrayList<>();
+        for (String clause : keyProperties.split(",")) {
+            final String trimmed = clause.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            final Matcher matcher = CLAUSE.matcher(trimmed);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid key property '%s' of %s", trimmed, type.getName()));
+            }
+            final String propertyName = matcher.group(1);
+            clauses.add(new Clause(propertyName, getterFor(type, propertyName), orderingFor(matcher.group(2), matcher.group(3))));
+        }
+        this.clauses = clauses.toArray(new Clause[0]);
+    }
+
+    /**
+     * As per {@link org.apache.isis.applib.util.ObjectContracts2}: ascending puts nulls first, and descending puts
+     * them first too, unless specified otherwise.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Comparator<Object> orderingFor(final String direction, final String nulls) {
+        final Comparator natural = Comparator.naturalOrder();
+        if ("desc".equals(direction)) {
+            return "nullsLast".equals(nulls)
+                    ? Comparator.nullsFirst(natural).reversed()
+                    : Comparator.nullsLast(natural).reversed();
+        }
+        return "nullsLast".equals(nulls)
+                ? Comparator.nullsLast(natural)
+                : Comparator.nullsFirst(natural);
+    }
+
+    /**
+     * The getter (<tt>getXxx()</tt>, else <tt>isXxx()</tt>), adapted to take and return an {@link Object}; or
+     * <tt>null</tt> if there is none, in which case using the property fails (as it does with
+     * {@link org.apache.isis.applib.util.ObjectContracts2}).
+     */
+    private static MethodHandle getterFor(final Class<?> type, final String propertyName) {
+        final String suffix = Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+        Method method;
+        try {
+            method = type.getMethod("get" + suffix);
+        } catch (NoSuchMethodException e) {
+            try {
+                method = type.getMethod("is" + suffix);
+            } catch (NoSuchMethodException e2) {
+                return null;
+            }
+        }
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            // a public method declared by a class that is not public
+            method.setAccessible(true);
+            try {
+                handle = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException e2) {
+                throw new IllegalArgumentException(e2);
+            }
+        }
+        return handle.asType(MethodType.methodType(Object.class, Object.class));
+    }
+
+    public int compare(final Object p, final Object q) {
+        final UdoObjectContract contractOfQ = q == null || q.getClass() == type ? this : of(q.getClass(), keyProperties);
+        for (int i = 0; i < clauses.length; i++) {
+            final Clause clause = clauses[i];
+            final int comparison = clause.ordering.compare(clause.valueOf(p), contractOfQ.clauses[i].valueOf(q));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Referenced objects are rendered by their reference, code, name, title or description (whichever they have
+     * first), as by the evaluators of {@link UdoDomainObject}'s original <tt>ObjectContracts2</tt>.
+     */
+    public String toStringOf(final Object p) {
+        final StringBuilder buf = new StringBuilder(p.getClass().getSimpleName()).append('{');
+        for (int i = 0; i < clauses.length; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(clauses[i].propertyName).append('=').append(asString(clauses[i].valueOf(p)));
+        }
+        return buf.append('}').toString();
+    }
+
+    private static String asString(final Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof WithReferenceGetter) {
+            return ((WithReferenceGetter) value).getReference();
+        }
+        if (value instanceof WithCodeGetter) {
+            return ((WithCodeGetter) value).getCode();
+        }
+        if (value instanceof WithNameGetter) {
+            return ((WithNameGetter) value).getName();
+        }
+        if (value instanceof WithTitleGetter) {
+            return ((WithTitleGetter) value).getTitle();
+        }
+        if (value instanceof WithDescriptionGetter) {
+            return ((WithDescriptionGetter) value).getDescription();
+        }
+        return value.toString();
+    }
+
+}
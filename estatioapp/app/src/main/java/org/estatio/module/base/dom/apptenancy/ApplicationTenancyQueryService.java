@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2012-date Eurocommercial Properties NV
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.dom.apptenancy;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.jdo.Query;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.jdosupport.IsisJdoSupport;
+
+import org.isisaddons.module.security.app.user.MeService;
+
+import org.estatio.module.base.spiimpl.security.ApplicationTenancyEvaluatorForEstatio;
+import org.estatio.module.base.spiimpl.security.ApplicationTenancyPredicate;
+
+/**
+ * For finders that opt in to leaving the objects not visible to the current user (as per
+ * {@link ApplicationTenancyEvaluatorForEstatio}) in the database, rather than loading them only to have them hidden
+ * one by one as they are rendered.
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class ApplicationTenancyQueryService {
+
+    public static final String AT_PATH_FIELD = "applicationTenancyPath";
+
+    @Programmatic
+    public ApplicationTenancyPredicate predicateForCurrentUser() {
+        return applicationTenancyEvaluator.predicateFor(meService.me());
+    }
+
+    /**
+     * The objects matching the (JDOQL) filter that are also visible to the current user, as per their tenancy path
+     * held in the {@value #AT_PATH_FIELD} field.
+     *
+     * @see #allMatchesVisibleToCurrentUser(Class, String, String, Map, String)
+     */
+    @Programmatic
+    public <T> List<T> allMatchesVisibleToCurrentUser(
+            final Class<T> type,
+            final String filter,
+            final Map<String, Object> parameters,
+            final String ordering) {
+        return allMatchesVisibleToCurrentUser(type, AT_PATH_FIELD, filter, parameters, ordering);
+    }
+
+    /**
+     * @param type - the persistent type (subtypes are included)
+     * @param atPathField - the (persisted) field holding the tenancy path
+     * @param filter - the JDOQL filter, eg <tt>"approvalState == :approvalState"</tt>; <tt>null</tt> for all objects
+     * @param parameters - the filter's parameters
+     * @param ordering - the JDOQL ordering, eg <tt>"reference ascending"</tt>; may be <tt>null</tt>
+     */
+    @Programmatic
+    public <T> List<T> allMatchesVisibleToCurrentUser(
+            final Class<T> type,
+            final String atPathField,
+            final String filter,
+            final Map<String, Object> parameters,
+            final String ordering) {
+        final ApplicationTenancyPredicate predicate = predicateForCurrentUser();
+        final Query query = isisJdoSupport.getJdoPersistenceManager().newQuery(type);
+        query.setFilter(filter != null
+                ? "(" + filter + ") && " + predicate.toJdoql(atPathField)
+                : predicate.toJdoql(atPathField));
+        if (ordering != null) {
+            query.setOrdering(ordering);
+        }
+        final Map<String, Object> allParameters = Maps.newHashMap(parameters);
+        allParameters.putAll(predicate.getParameters());
+        try {
+            return Lists.newArrayList((List<T>) query.executeWithMap(allParameters));
+        } finally {
+            query.closeAll();
+        }
+    }
+
+    @Inject
+    ApplicationTenancyEvaluatorForEstatio applicationTenancyEvaluator;
+
+    @Inject
+    MeService meService;
+
+    @Inject
+    IsisJdoSupport isisJdoSupport;
+
+}
@@ -0,0 +1,311 @@
+/*
+ *  Copyright 2012-date Eurocommercial Properties NV
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.dom.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory index of the terms (reference, name and the like) of objects, each identified by a key, for
+ * "contains" searches such as those of autocompletes.
+ *
+ * <p>
+ * Each term is indexed by its trigrams (of its lower case characters); a search looks up the trigrams of the
+ * search phrase, and only the (few) objects having all of them are then matched against the phrase itself. Objects
+ * are also indexed by their partitions (eg the roles of a party), and each carries its tenancy path, so that a search
+ * can be restricted to a partition and to the tenancies visible to the user.
+ * </p>
+ *
+ * <p>
+ * The search phrase is matched as the finders this index stands in for do (ie <tt>"*" + phrase + "*"</tt>, as a
+ * case-insensitive wildcard pattern), so <tt>*</tt> and <tt>?</tt> in the phrase match any characters and any single
+ * character, respectively.
+ * </p>
+ *
+ * <p>
+ * Safe for concurrent use. Objects changed or removed leave gaps in the postings, so the index should be rebuilt
+ * from time to time.
+ * </p>
+ */
+public class SearchIndex<K> {
+
+    static final int GRAM_LENGTH = 3;
+
+    private static class Entry<K> {
+        private final K key;
+        private final String[] terms;
+        private final String atPath;
+
+        Entry(final K key, final String[] terms, final String atPath) {
+            this.key = key;
+            this.terms = terms;
+            this.atPath = atPath;
+        }
+    }
+
+    /**
+     * An ascending list of entry ids.
+     */
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(final int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        /**
+         * The ids also in the other (ascending) ids.
+         */
+        int[] retainAll(final int[] others, final int othersSize) {
+            final int[] retained = new int[Math.min(size, othersSize)];
+            int n = 0;
+            for (int i = 0, j = 0; i < size && j < othersSize; ) {
+                if (ids[i] < others[j]) {
+                    i++;
+                } else if (ids[i] > others[j]) {
+                    j++;
+                } else {
+                    retained[n++] = ids[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(retained, n);
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * By id; <tt>null</tt> once changed or removed.
+     */
+    private final List<Entry<K>> entries = new ArrayList<>();
+    private final Map<K, Integer> idByKey = new HashMap<>();
+    private final Map<String, Postings> postingsByGram = new HashMap<>();
+    private final Map<String, Postings> postingsByPartition = new HashMap<>();
+
+    /**
+     * Indexes (or re-indexes) the object of the key.
+     *
+     * @param terms - the terms to search in, any of which may be <tt>null</tt>
+     * @param atPath - the object's tenancy path; may be <tt>null</tt>
+     * @param partitions - the partitions (eg roles) of the object
+     */
+    public void put(final K key, final Collection<String> terms, final String atPath, final Collection<String> partitions) {
+        final String[] lowerCaseTerms = terms.stream()
+                .filter(term -> term != null && !term.isEmpty())
+                .map(term -> term.toLowerCase(Locale.ROOT))
+                .toArray(String[]::new);
+        lock.writeLock().lock();
+        try {
+            removeWhileLocked(key);
+            final int id = entries.size();
+            entries.add(new Entry<>(key, lowerCaseTerms, atPath));
+            idByKey.put(key, id);
+            for (String term : lowerCaseTerms) {
+                for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+                    postingsByGram.computeIfAbsent(term.substring(i, i + GRAM_LENGTH), g -> new Postings()).add(id);
+                }
+            }
+            for (String partition : partitions) {
+                postingsByPartition.computeIfAbsent(partition, p -> new Postings()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(final K key) {
+        lock.writeLock().lock();
+        try {
+            removeWhileLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeWhileLocked(final K key) {
+        final Integer id = idByKey.remove(key);
+        if (id != null) {
+            entries.set(id, null);
+        }
+    }
+
+    public boolean contains(final K key) {
+        lock.readLock().lock();
+        try {
+            return idByKey.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The number of objects indexed.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idByKey.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The keys of the objects with a term matching the search phrase, in the order in which they were (last) indexed.
+     *
+     * @param partition - only the objects in this partition; <tt>null</tt> for any
+     * @param atPathFilter - only the objects whose tenancy path passes this filter
+     */
+    public List<K> search(final String searchPhrase, final String partition, final Predicate<String> atPathFilter) {
+        return search(searchPhrase, partition, atPathFilter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * As {@link #search(String, String, Predicate)}, but only the first <tt>maxResults</tt> keys.
+     */
+    public List<K> search(
+            final String searchPhrase,
+            final String partition,
+            final Predicate<String> atPathFilter,
+            final int maxResults) {
+        final String phrase = searchPhrase.toLowerCase(Locale.ROOT);
+        final Pattern pattern = patternFor(phrase);
+        final Map<String, Boolean> atPathPasses = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            final int[] candidates = candidatesFor(phrase, partition);
+            final List<K> keys = new ArrayList<>();
+            final int numberOfCandidates = candidates != null ? candidates.length : entries.size();
+            for (int i = 0; i < numberOfCandidates && keys.size() < maxResults; i++) {
+                final Entry<K> entry = entries.get(candidates != null ? candidates[i] : i);
+                if (entry == null) {
+                    continue;
+                }
+                Boolean atPathPassed = atPathPasses.get(entry.atPath);
+                if (atPathPassed == null) {
+                    atPathPassed = atPathFilter.test(entry.atPath);
+                    atPathPasses.put(entry.atPath, atPathPassed);
+                }
+                if (!atPathPassed) {
+                    continue;
+                }
+                for (String term : entry.terms) {
+                    if (pattern.matcher(term).find()) {
+                        keys.add(entry.key);
+                        break;
+                    }
+                }
+            }
+            return keys;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the phrase has any grams (outside of wildcards) to look up; if not, a search has to go through all
+     * objects, so finders may as well use their query instead.
+     */
+    public static boolean hasGrams(final String searchPhrase) {
+        if (searchPhrase == null) {
+            return false;
+        }
+        for (String segment : searchPhrase.split("[*?]")) {
+            if (segment.length() >= GRAM_LENGTH) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The ids of the entries having all the grams of the phrase (outside of wildcards) and in the partition (if any);
+     * <tt>null</tt> if all entries are candidates.
+     */
+    private int[] candidatesFor(final String phrase, final String partition) {
+        final List<Postings> postings = new ArrayList<>();
+        if (partition != null) {
+            final Postings ofPartition = postingsByPartition.get(partition);
+            if (ofPartition == null) {
+                return new int[0];
+            }
+            postings.add(ofPartition);
+        }
+        for (String segment : phrase.split("[*?]")) {
+            for (int i = 0; i + GRAM_LENGTH <= segment.length(); i++) {
+                final Postings ofGram = postingsByGram.get(segment.substring(i, i + GRAM_LENGTH));
+                if (ofGram == null) {
+                    return new int[0];
+                }
+                postings.add(ofGram);
+            }
+        }
+        if (postings.isEmpty()) {
+            return null;
+        }
+        // starting with the shortest
+        postings.sort((p, q) -> Integer.compare(p.size, q.size));
+        int[] candidates = Arrays.copyOf(postings.get(0).ids, postings.get(0).size);
+        for (int i = 1; i < postings.size() && candidates.length > 0; i++) {
+            candidates = postings.get(i).retainAll(candidates, candidates.length);
+        }
+        return candidates;
+    }
+
+    /**
+     * The phrase (already in lower case) as a pattern to find in terms: <tt>*</tt> and <tt>?</tt> being wildcards,
+     * all other characters literals.
+     */
+    static Pattern patternFor(final String phrase) {
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (char c : phrase.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+}
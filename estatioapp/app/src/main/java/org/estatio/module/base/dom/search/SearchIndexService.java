@@ -0,0 +1,577 @@
+/*
+ *  Copyright 2012-date Eurocommercial Properties NV
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.dom.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.jdo.JDOHelper;
+import javax.jdo.Query;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
+import org.apache.isis.applib.services.jdosupport.IsisJdoSupport;
+import org.apache.isis.core.commons.authentication.AuthenticationSession;
+import org.apache.isis.core.runtime.system.session.IsisSession;
+import org.apache.isis.core.runtime.system.session.IsisSessionFactory;
+import org.apache.isis.core.runtime.system.transaction.TransactionalClosure;
+
+import org.isisaddons.module.security.dom.tenancy.HasAtPath;
+
+import org.estatio.module.base.dom.apptenancy.ApplicationTenancyQueryService;
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+import org.estatio.module.base.spiimpl.security.ApplicationTenancyPredicate;
+
+/**
+ * Holds a {@link SearchIndex} per type of object {@link Definition defined} by a repository, for its autocomplete
+ * (and similar) finders to use rather than a <tt>LIKE '%...%'</tt> scan of the table.
+ *
+ * <p>
+ * An index is built in the background, in a session of its own: when {@link #register(Definition) registered} (at
+ * startup), and again every so often anyway, one type at a time; until first built, finders use their queries
+ * instead (see {@link #isAvailableFor(Definition, String)}). From then on it is maintained as objects are created,
+ * changed and removed (using the lifecycle events Isis posts for all entities), once (and only if) the transaction
+ * making the change has committed; changes committed while an index is being rebuilt are applied to the rebuilt
+ * index too.
+ * </p>
+ *
+ * <p>
+ * Only the objects visible to the current user (as per their tenancy) are looked up, with a single query, and each
+ * is checked against the search phrase once looked up; at worst an index that is out of date misses the odd object
+ * (until rebuilt). They are returned in the order of that query, ie as the finders' own queries would; and if more
+ * than {@link #MAX_RESULTS} objects match, none are, for the finders to use their query instead.
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class SearchIndexService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SearchIndexService.class);
+
+    static final long MAX_AGE_MILLIS = 15 * 60 * 1000L;
+
+    /**
+     * The most objects a search looks up; if more match, it returns <tt>null</tt>.
+     */
+    public static final int MAX_RESULTS = 50;
+
+    /**
+     * The objects of a type to index, and how.
+     */
+    public abstract static class Definition<T> {
+
+        private final Class<T> type;
+
+        protected Definition(final Class<T> type) {
+            this.type = type;
+        }
+
+        public Class<T> getType() {
+            return type;
+        }
+
+        /**
+         * All objects, in the order in which they are to be found.
+         */
+        protected abstract List<T> loadAll();
+
+        /**
+         * The terms (eg reference and name) to search in.
+         */
+        protected abstract List<String> termsOf(T object);
+
+        protected String atPathOf(final T object) {
+            return object instanceof HasAtPath ? ((HasAtPath) object).getAtPath() : null;
+        }
+
+        /**
+         * The partitions (eg roles) the object is in, if any.
+         */
+        protected Collection<String> partitionsOf(final T object) {
+            return Collections.emptyList();
+        }
+
+        /**
+         * The partitions of all {@link #loadAll() loaded} objects; by default one object at a time, so to be
+         * overridden if that means a query per object.
+         */
+        protected Map<T, Collection<String>> partitionsOfAll(final List<T> objects) {
+            return null;
+        }
+
+        /**
+         * The object whose entry is affected by a change to the given object: by default, that very object if of
+         * this type; <tt>null</tt> if none.
+         */
+        protected T affectedBy(final Object changed) {
+            return type.isInstance(changed) ? type.cast(changed) : null;
+        }
+    }
+
+    /**
+     * Searches and index builds, since this service was started.
+     */
+    public static class Statistics {
+        private final long searches;
+        private final long found;
+        private final long stale;
+        private final long tooMany;
+        private final long loads;
+        private final int indexed;
+
+        Statistics(
+                final long searches,
+                final long found,
+                final long stale,
+                final long tooMany,
+                final long loads,
+                final int indexed) {
+            this.searches = searches;
+            this.found = found;
+            this.stale = stale;
+            this.tooMany = tooMany;
+            this.loads = loads;
+            this.indexed = indexed;
+        }
+
+        public long getSearches() {
+            return searches;
+        }
+
+        public long getFound() {
+            return found;
+        }
+
+        public long getStale() {
+            return stale;
+        }
+
+        /**
+         * Searches matching more than {@link #MAX_RESULTS} objects, left to the finders' queries.
+         */
+        public long getTooMany() {
+            return tooMany;
+        }
+
+        public long getLoads() {
+            return loads;
+        }
+
+        public int getIndexed() {
+            return indexed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "searches: %d, found: %d, stale: %d, too many: %d, loads: %d, objects indexed: %d",
+                    searches, found, stale, tooMany, loads, indexed);
+        }
+    }
+
+    /**
+     * The values of an entry, worked out in the session of the change; <tt>null</tt> terms if removed.
+     */
+    static class Entry {
+
+        private final Object id;
+        private final List<String> terms;
+        private final String atPath;
+        private final Collection<String> partitions;
+
+        Entry(final Object id, final List<String> terms, final String atPath, final Collection<String> partitions) {
+            this.id = id;
+            this.terms = terms;
+            this.atPath = atPath;
+            this.partitions = partitions;
+        }
+
+        void applyTo(final SearchIndex<Object> index) {
+            if (terms == null) {
+                index.remove(id);
+            } else {
+                index.put(id, terms, atPath, partitions);
+            }
+        }
+    }
+
+    /**
+     * The index (once built) of a type, and the changes committed while it is being (re)built.
+     */
+    static class Slot<T> {
+
+        private final Definition<T> definition;
+        private volatile SearchIndex<Object> index;
+        private volatile long builtAt;
+        /**
+         * Non-<tt>null</tt> while being built; guarded by this slot.
+         */
+        private List<Entry> changedWhileBuilding;
+
+        Slot(final Definition<T> definition) {
+            this.definition = definition;
+        }
+
+        boolean isExpired(final long now) {
+            return now - builtAt > MAX_AGE_MILLIS;
+        }
+
+        /**
+         * Whether a build was started, ie unless one is already in progress.
+         */
+        synchronized boolean startBuilding() {
+            if (changedWhileBuilding != null) {
+                return false;
+            }
+            changedWhileBuilding = new ArrayList<>();
+            return true;
+        }
+
+        synchronized void built(final SearchIndex<Object> index, final long startedAt) {
+            for (Entry entry : changedWhileBuilding) {
+                entry.applyTo(index);
+            }
+            this.index = index;
+            this.builtAt = startedAt;
+            changedWhileBuilding = null;
+        }
+
+        synchronized void failed() {
+            changedWhileBuilding = null;
+        }
+
+        synchronized void apply(final Entry entry) {
+            if (index != null) {
+                entry.applyTo(index);
+            }
+            if (changedWhileBuilding != null) {
+                changedWhileBuilding.add(entry);
+            }
+        }
+
+        Entry entryFor(final Object id, final T object, final Collection<String> partitions) {
+            return new Entry(id, definition.termsOf(object), definition.atPathOf(object), partitions);
+        }
+    }
+
+    private final ConcurrentMap<Class<?>, Slot<?>> slotByType = new ConcurrentHashMap<>();
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "estatio-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong found = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong tooMany = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        eventBusService.register(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Builds the index of the definition in the background; intended to be called by repositories on startup.
+     */
+    @Programmatic
+    public <T> void register(final Definition<T> definition) {
+        slotFor(definition);
+    }
+
+    /**
+     * Whether the index of the definition has been built, and the phrase has grams to look up; if not, finders
+     * should use their query instead.
+     */
+    @Programmatic
+    public <T> boolean isAvailableFor(final Definition<T> definition, final String searchPhrase) {
+        return SearchIndex.hasGrams(searchPhrase) && slotFor(definition).index != null;
+    }
+
+    /**
+     * The objects with a term (eg reference or name) containing the search phrase, wildcards (<tt>*</tt> and
+     * <tt>?</tt>) allowed, ignoring case, in the order in which they are looked up; or <tt>null</tt> if more than
+     * {@link #MAX_RESULTS} match, in which case the finder should use its query instead.
+     *
+     * <p>
+     * Only to be called if {@link #isAvailableFor(Definition, String) available}.
+     * </p>
+     */
+    @Programmatic
+    public <T> List<T> search(final Definition<T> definition, final String searchPhrase) {
+        return search(definition, searchPhrase, null);
+    }
+
+    /**
+     * As {@link #search(Definition, String)}, but only those objects in the partition (eg with a role).
+     */
+    @Programmatic
+    public <T> List<T> search(final Definition<T> definition, final String searchPhrase, final String partition) {
+        searches.incrementAndGet();
+        final Slot<T> slot = slotFor(definition);
+        final SearchIndex<Object> index = slot.index;
+        if (index == null) {
+            throw new IllegalStateException("Index of " + definition.getType().getName() + " not yet built");
+        }
+        final ApplicationTenancyPredicate predicate = applicationTenancyQueryService.predicateForCurrentUser();
+        final List<Object> ids = index.search(searchPhrase, partition, predicate::test, MAX_RESULTS + 1);
+        if (ids.size() > MAX_RESULTS) {
+            tooMany.incrementAndGet();
+            return null;
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Map<Object, T> objectById = findByIds(definition.getType(), ids);
+        final Set<Object> removed = new HashSet<>(ids);
+        removed.removeAll(objectById.keySet());
+        for (Object id : removed) {
+            // removed without the index being told
+            stale.incrementAndGet();
+            afterCommit(slot, new Entry(id, null, null, null));
+        }
+        final List<T> objects = new ArrayList<>();
+        for (Map.Entry<Object, T> idAndObject : objectById.entrySet()) {
+            final Object id = idAndObject.getKey();
+            final T object = idAndObject.getValue();
+            if (!matches(searchPhrase, definition.termsOf(object))) {
+                // changed without the index being told
+                stale.incrementAndGet();
+                afterCommit(slot, slot.entryFor(id, object, definition.partitionsOf(object)));
+                continue;
+            }
+            objects.add(object);
+        }
+        found.addAndGet(objects.size());
+        return objects;
+    }
+
+    static boolean matches(final String searchPhrase, final List<String> terms) {
+        final Pattern pattern = SearchIndex.patternFor(searchPhrase.toLowerCase(Locale.ROOT));
+        for (String term : terms) {
+            if (term != null && pattern.matcher(term.toLowerCase(Locale.ROOT)).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The objects of the (JDO) ids, with a single query, in the order returned.
+     */
+    <T> Map<Object, T> findByIds(final Class<T> type, final List<Object> ids) {
+        final Query query = isisJdoSupport.getJdoPersistenceManager().newQuery(type);
+        query.setFilter(":ids.contains(JDOHelper.getObjectId(this))");
+        try {
+            final Map<Object, T> objectById = new LinkedHashMap<>();
+            for (Object object : (Collection<?>) query.execute(ids)) {
+                objectById.put(idOf(object), type.cast(object));
+            }
+            return objectById;
+        } finally {
+            query.closeAll();
+        }
+    }
+
+    Object idOf(final Object object) {
+        return JDOHelper.getObjectId(object);
+    }
+
+    private <T> Slot<T> slotFor(final Definition<T> definition) {
+        final Slot<T> slot = (Slot<T>) slotByType.computeIfAbsent(definition.getType(), type -> new Slot<>(definition));
+        if ((slot.index == null || slot.isExpired(System.currentTimeMillis())) && slot.startBuilding()) {
+            build(slot);
+        }
+        return slot;
+    }
+
+    private <T> void build(final Slot<T> slot) {
+        final Runnable build = () -> {
+            final long startedAt = System.currentTimeMillis();
+            slot.built(load(slot.definition), startedAt);
+        };
+        final Runnable failed = () -> {
+            LOG.warn("Could not build search index of {}", slot.definition.getType().getName());
+            slot.failed();
+        };
+        if (!inBackgroundSession(build, failed)) {
+            // no session to run as (yet); will be built on next use
+            slot.failed();
+        }
+    }
+
+    /**
+     * Runs the work in the background, in a session (as the current user) and transaction of its own; <tt>false</tt>
+     * if there is no current session.
+     */
+    boolean inBackgroundSession(final Runnable work, final Runnable failed) {
+        final IsisSession currentSession = isisSessionFactory.getCurrentSession();
+        final AuthenticationSession authenticationSession =
+                currentSession != null ? currentSession.getAuthenticationSession() : null;
+        if (authenticationSession == null) {
+            return false;
+        }
+        final TransactionalClosure closure = work::run;
+        executorService.submit(() -> {
+            try {
+                isisSessionFactory.doInSession(
+                        () -> isisSessionFactory.getCurrentSession().getPersistenceSession().getTransactionManager()
+                                .executeWithinTransaction(closure),
+                        authenticationSession);
+            } catch (RuntimeException e) {
+                LOG.warn("Background work failed", e);
+                failed.run();
+            }
+        });
+        return true;
+    }
+
+    private <T> SearchIndex<Object> load(final Definition<T> definition) {
+        loads.incrementAndGet();
+        final SearchIndex<Object> index = new SearchIndex<>();
+        final List<T> objects = definition.loadAll();
+        final Map<T, Collection<String>> partitionsByObject = definition.partitionsOfAll(objects);
+        for (T object : objects) {
+            final Collection<String> partitions = partitionsByObject != null
+                    ? partitionsByObject.getOrDefault(object, Collections.emptyList())
+                    : definition.partitionsOf(object);
+            index.put(idOf(object), definition.termsOf(object), definition.atPathOf(object), partitions);
+        }
+        return index;
+    }
+
+    /**
+     * Rebuilds all indexes, in the background; in the meantime the current ones are used.
+     */
+    @Programmatic
+    public void invalidate() {
+        for (Slot<?> slot : slotByType.values()) {
+            if (slot.startBuilding()) {
+                build(slot);
+            }
+        }
+    }
+
+    @Programmatic
+    public Statistics getStatistics() {
+        int indexed = 0;
+        for (Slot<?> slot : slotByType.values()) {
+            final SearchIndex<Object> index = slot.index;
+            indexed += index != null ? index.size() : 0;
+        }
+        return new Statistics(searches.get(), found.get(), stale.get(), tooMany.get(), loads.get(), indexed);
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final ObjectPersistedEvent<?> ev) {
+        changed(ev.getSource(), false);
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final ObjectUpdatedEvent<?> ev) {
+        changed(ev.getSource(), false);
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final ObjectRemovingEvent<?> ev) {
+        changed(ev.getSource(), true);
+    }
+
+    private void changed(final Object source, final boolean removing) {
+        if (source == null) {
+            return;
+        }
+        for (Slot<?> slot : slotByType.values()) {
+            changed(slot, source, removing);
+        }
+    }
+
+    private <T> void changed(final Slot<T> slot, final Object source, final boolean removing) {
+        final T affected = slot.definition.affectedBy(source);
+        if (affected == null) {
+            return;
+        }
+        // worked out now, while in the session
+        final Object id = idOf(affected);
+        afterCommit(slot, removing && affected == source
+                ? new Entry(id, null, null, null)
+                : slot.entryFor(id, affected, slot.definition.partitionsOf(affected)));
+    }
+
+    /**
+     * Applies the entry to the index once (and only if) the current transaction has committed, in the order in
+     * which the changes were made.
+     */
+    private void afterCommit(final Slot<?> slot, final Entry entry) {
+        final List<Runnable> changes = transactionCompletionService.transactionState(this, ArrayList::new);
+        changes.add(() -> slot.apply(entry));
+        transactionCompletionService.afterCommit(this, () -> changes.forEach(Runnable::run));
+    }
+
+    @Inject
+    EventBusService eventBusService;
+
+    @Inject
+    ApplicationTenancyQueryService applicationTenancyQueryService;
+
+    @Inject
+    TransactionCompletionService transactionCompletionService;
+
+    @Inject
+    IsisJdoSupport isisJdoSupport;
+
+    @Inject
+    IsisSessionFactory isisSessionFactory;
+
+}
@@ -0,0 +1,184 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.platform.parallel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of (daemon) worker threads, on which a sequence of tasks is {@link #run(Iterator, Sink, Consumer) run}
+ * in parallel while their results are handed, on the calling thread and in the order of the tasks, to a
+ * {@link Sink}.
+ *
+ * <p>
+ * No more than twice as many tasks as there are threads are ever pending: the tasks are only taken from their
+ * iterator as earlier results are handed on, so neither the tasks nor their results need all be held at once.
+ * </p>
+ *
+ * <p>
+ * Not itself a domain service; each service using one creates it (sized from its own configuration) when
+ * initialised and {@link #shutdown() shuts it down} when destroyed.
+ * </p>
+ */
+public class OrderedPipeline {
+
+    /**
+     * Receives the results, in order.
+     */
+    @FunctionalInterface
+    public interface Sink<R> {
+        void accept(R result) throws IOException;
+    }
+
+    private final int maxThreads;
+    private final ExecutorService executorService;
+
+    public OrderedPipeline(final String threadNamePrefix, final int maxThreads) {
+        this.maxThreads = maxThreads;
+        final AtomicInteger counter = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(maxThreads, runnable -> {
+            final Thread thread = new Thread(runnable, threadNamePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The number of threads configured using <tt>key</tt>, else the number of available processors, at most
+     * <tt>max</tt>.
+     */
+    public static int maxThreads(final Map<String, String> properties, final String key, final int max) {
+        final String value = properties.get(key);
+        return value != null
+                ? Math.max(1, Integer.parseInt(value))
+                : Math.min(max, Runtime.getRuntime().availableProcessors());
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Runs each of the tasks, handing each result to the sink in the order of the tasks.
+     *
+     * <p>
+     * If a task or the sink fails, then the exception is rethrown (an {@link IOException} or unchecked exception
+     * as is, any other wrapped in an {@link IOException}) once the tasks still pending have been cancelled; the
+     * result of any that had already started, as well as the result the sink failed on, is handed to
+     * <tt>discard</tt> instead, so that (for example) the files it wrote can be deleted.
+     * </p>
+     */
+    public <R> void run(
+            final Iterator<? extends Callable<? extends R>> tasks,
+            final Sink<? super R> sink,
+            final Consumer<? super R> discard) throws IOException {
+        final int maxPending = maxThreads * 2;
+        final Deque<Future<? extends R>> pending = new ArrayDeque<>();
+        try {
+            while (tasks.hasNext()) {
+                final Callable<? extends R> task = tasks.next();
+                while (pending.size() >= maxPending) {
+                    accept(sink, next(pending), discard);
+                }
+                pending.add(executorService.submit(task));
+            }
+            while (!pending.isEmpty()) {
+                accept(sink, next(pending), discard);
+            }
+        } finally {
+            discard(pending, discard);
+        }
+    }
+
+    /**
+     * Hands the result to the sink, or (if that fails) to <tt>discard</tt>, the sink having not taken it on.
+     */
+    private static <R> void accept(final Sink<? super R> sink, final R result, final Consumer<? super R> discard)
+            throws IOException {
+        boolean accepted = false;
+        try {
+            sink.accept(result);
+            accepted = true;
+        } finally {
+            if (!accepted) {
+                try {
+                    discard.accept(result);
+                } catch (Exception e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static <R> R next(final Deque<Future<? extends R>> pending) throws IOException {
+        try {
+            return pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException ex = new InterruptedIOException("Interrupted while waiting for a result");
+            ex.initCause(e);
+            throw ex;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Only if the run failed: cancels the tasks not yet started, and discards the results of any already started
+     * (once completed).
+     */
+    private static <R> void discard(final Deque<Future<? extends R>> pending, final Consumer<? super R> discard) {
+        for (Future<? extends R> future : pending) {
+            if (!future.cancel(false)) {
+                try {
+                    discard.accept(future.get());
+                } catch (Exception e) {
+                    // ignore
+                }
+            }
+        }
+        pending.clear();
+    }
+
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.platform.parallel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.core.commons.authentication.AuthenticationSession;
+import org.apache.isis.core.runtime.system.session.IsisSessionFactory;
+import org.apache.isis.core.runtime.system.transaction.TransactionalClosureWithReturn;
+
+import lombok.Getter;
+
+/**
+ * Executes independent units of work on a bounded pool of worker threads (an {@link OrderedPipeline}), each unit in
+ * its own Isis session (as the calling user) and its own transaction.
+ *
+ * <p>
+ * Because every unit runs against its own persistence session, units must be described by values (eg a
+ * {@link org.apache.isis.applib.services.bookmark.Bookmark}) rather than by domain objects of the caller's
+ * session; anything the caller has changed must be committed before the units are executed.
+ * </p>
+ *
+ * <p>
+ * The size of the pool is read from <tt>estatio.parallel.maxThreads</tt> (defaults to the number of available
+ * processors, at most 8).
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class ParallelWorkService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelWorkService.class);
+
+    static final String KEY_MAX_THREADS = "estatio.parallel.maxThreads";
+
+    /**
+     * The outcome of a single unit of work; either a result or the exception that rolled back its transaction.
+     */
+    public static class Outcome<T, R> {
+
+        @Getter
+        private final T unit;
+        @Getter
+        private final R result;
+        @Getter
+        private final Throwable failure;
+        @Getter
+        private final long millis;
+
+        public Outcome(final T unit, final R result, final Throwable failure, final long millis) {
+            this.unit = unit;
+            this.result = result;
+            this.failure = failure;
+            this.millis = millis;
+        }
+
+        public boolean isFailed() {
+            return failure != null;
+        }
+    }
+
+    private OrderedPipeline pipeline;
+
+    @Getter
+    private int maxThreads;
+
+    @Programmatic
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        maxThreads = OrderedPipeline.maxThreads(properties, KEY_MAX_THREADS, 8);
+        pipeline = new OrderedPipeline("estatio-parallel", maxThreads);
+    }
+
+    @Programmatic
+    @PreDestroy
+    public void shutdown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    /**
+     * Executes the work for each unit and waits for all of them to complete.
+     *
+     * <p>
+     * The outcomes are returned in the same order as the units, regardless of the order in which they completed;
+     * a failing unit does not affect the others.
+     * </p>
+     */
+    @Programmatic
+    public <T, R> List<Outcome<T, R>> executeEach(final List<T> units, final Function<T, R> work) {
+        final AuthenticationSession authenticationSession =
+                isisSessionFactory.getCurrentSession().getAuthenticationSession();
+
+        final Iterator<Callable<List<Outcome<T, R>>>> tasks = units.stream()
+                .map(unit -> (Callable<List<Outcome<T, R>>>) () ->
+                        Collections.singletonList(execute(unit, work, authenticationSession)))
+                .iterator();
+        return outcomesOf(tasks, units);
+    }
+
+    /**
+     * Executes the work for each unit of each partition and waits for all of them to complete.
+     *
+     * <p>
+     * The partitions are executed in parallel, but the units of a partition one after the other (each still in its
+     * own session and transaction); use this when units that touch the same objects must not run concurrently.
+     * The outcomes are returned in the same order as the units, partition by partition.
+     * </p>
+     */
+    @Programmatic
+    public <T, R> List<Outcome<T, R>> executeEachInPartitions(final List<List<T>> partitions, final Function<T, R> work) {
+        final AuthenticationSession authenticationSession =
+                isisSessionFactory.getCurrentSession().getAuthenticationSession();
+
+        final Iterator<Callable<List<Outcome<T, R>>>> tasks = partitions.stream()
+                .map(partition -> (Callable<List<Outcome<T, R>>>) () -> {
+                    final List<Outcome<T, R>> outcomes = new ArrayList<>();
+                    for (final T unit : partition) {
+                        outcomes.add(execute(unit, work, authenticationSession));
+                    }
+                    return outcomes;
+                })
+                .iterator();
+        final List<T> units = new ArrayList<>();
+        partitions.forEach(units::addAll);
+        return outcomesOf(tasks, units);
+    }
+
+    /**
+     * Executes the work for a single unit, in its own session and transaction, and waits for it to complete.
+     *
+     * <p>
+     * Calling this for each of a sequence of units processes them one after the other, each committed on its own
+     * and each against a fresh persistence session, so that the memory used does not grow with the number of units.
+     * </p>
+     */
+    @Programmatic
+    public <T, R> Outcome<T, R> executeOne(final T unit, final Function<T, R> work) {
+        return executeEach(Collections.singletonList(unit), work).get(0);
+    }
+
+    /**
+     * The outcomes of the tasks, in order; if interrupted while waiting, then the units not yet completed are
+     * failed.
+     */
+    private <T, R> List<Outcome<T, R>> outcomesOf(
+            final Iterator<Callable<List<Outcome<T, R>>>> tasks,
+            final List<T> units) {
+        final List<Outcome<T, R>> outcomes = new ArrayList<>();
+        try {
+            pipeline.run(tasks, outcomes::addAll, discarded -> {});
+        } catch (IOException e) {
+            // the units' failures are outcomes, so only if interrupted
+            for (T unit : units.subList(outcomes.size(), units.size())) {
+                outcomes.add(new Outcome<>(unit, null, e, 0L));
+            }
+        }
+        return outcomes;
+    }
+
+    private <T, R> Outcome<T, R> execute(
+            final T unit,
+            final Function<T, R> work,
+            final AuthenticationSession authenticationSession) {
+        final long start = System.currentTimeMillis();
+        try {
+            final TransactionalClosureWithReturn<R> closure = () -> work.apply(unit);
+            final R result = isisSessionFactory.doInSession(
+                    () -> isisSessionFactory.getCurrentSession().getPersistenceSession().getTransactionManager()
+                            .executeWithinTransaction(closure),
+                    authenticationSession);
+            return new Outcome<>(unit, result, null, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            LOG.warn("Unit of work {} failed", unit, e);
+            return new Outcome<>(unit, null, e, System.currentTimeMillis() - start);
+        }
+    }
+
+    @Inject
+    IsisSessionFactory isisSessionFactory;
+
+}
@@ -0,0 +1,188 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.platform.transaction;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.jdosupport.IsisJdoSupport;
+
+/**
+ * Runs callbacks when the current transaction completes: just before it commits, or once it has committed.
+ *
+ * <p>
+ * Intended for services that keep state outside of the database (eg caches shared by all sessions), which should only
+ * see changes once they have been committed, and for services that collect the changes of a transaction in order to
+ * act on them once rather than once per change. The lifecycle events of domain objects fire as changes are flushed,
+ * while the transaction can still roll back and while other sessions cannot yet see the changes.
+ * </p>
+ *
+ * <p>
+ * A JDO transaction has a single {@link Synchronization}, so all callbacks go through the one registered here.
+ * Outside of a transaction, callbacks run immediately.
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class TransactionCompletionService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionCompletionService.class);
+
+    /**
+     * The callbacks and state of a single transaction.
+     */
+    public static class Completion implements Synchronization {
+
+        private final Map<Object, Object> states = new HashMap<>();
+        private final Map<Object, Runnable> beforeCommitCallbacks = new LinkedHashMap<>();
+        private final Map<Object, Runnable> afterCommitCallbacks = new LinkedHashMap<>();
+        private boolean completed;
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // callbacks may register further callbacks (or the same one again)
+            while (!beforeCommitCallbacks.isEmpty()) {
+                final Iterator<Runnable> iterator = beforeCommitCallbacks.values().iterator();
+                final Runnable callback = iterator.next();
+                iterator.remove();
+                callback.run();
+            }
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            completed = true;
+            if (status != Status.STATUS_COMMITTED) {
+                return;
+            }
+            for (Map.Entry<Object, Runnable> entry : afterCommitCallbacks.entrySet()) {
+                runAfterCommit(entry.getKey(), entry.getValue());
+            }
+        }
+
+        <T> T state(final Object key, final Supplier<T> factory) {
+            @SuppressWarnings("unchecked")
+            final T state = (T) states.computeIfAbsent(key, k -> factory.get());
+            return state;
+        }
+    }
+
+    /**
+     * State kept for the duration of the current transaction (eg the changes collected for a
+     * {@link #beforeCommit(Object, Runnable) before commit} callback), created on first use.
+     *
+     * <p>
+     * Outside of a transaction, new state is created on every call.
+     * </p>
+     */
+    @Programmatic
+    public <T> T transactionState(final Object key, final Supplier<T> factory) {
+        final Completion completion = currentCompletion();
+        return completion != null ? completion.state(key, factory) : factory.get();
+    }
+
+    /**
+     * Runs the callback just before the current transaction commits, after all changes have been flushed; the same
+     * key is run at most once (unless registered again by another callback).
+     *
+     * <p>
+     * The callback runs within the transaction, so may change it (or fail it). As the framework has already
+     * completed its own processing of the transaction, the callback must query and change objects through the
+     * persistence manager itself (eg with typesafe queries of {@link IsisJdoSupport}), rather than through the
+     * repository service.
+     * </p>
+     */
+    @Programmatic
+    public void beforeCommit(final Object key, final Runnable callback) {
+        final Completion completion = currentCompletion();
+        if (completion == null) {
+            callback.run();
+            return;
+        }
+        completion.beforeCommitCallbacks.putIfAbsent(key, callback);
+    }
+
+    /**
+     * Runs the callback once the current transaction has committed (and not at all if it rolls back); the same key is
+     * run at most once.
+     *
+     * <p>
+     * The callback must not access the persistence session; any failure is logged rather than thrown, as the
+     * transaction has already committed.
+     * </p>
+     */
+    @Programmatic
+    public void afterCommit(final Object key, final Runnable callback) {
+        final Completion completion = currentCompletion();
+        if (completion == null) {
+            runAfterCommit(key, callback);
+            return;
+        }
+        completion.afterCommitCallbacks.putIfAbsent(key, callback);
+    }
+
+    private static void runAfterCommit(final Object key, final Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException ex) {
+            LOG.warn("After commit callback {} failed", key, ex);
+        }
+    }
+
+    /**
+     * The completion of the current transaction, registering it if need be; <tt>null</tt> if there is no transaction.
+     */
+    protected Completion currentCompletion() {
+        final javax.jdo.Transaction transaction = isisJdoSupport.getJdoPersistenceManager().currentTransaction();
+        if (!transaction.isActive()) {
+            return null;
+        }
+        final Synchronization synchronization = transaction.getSynchronization();
+        if (synchronization instanceof Completion && !((Completion) synchronization).isCompleted()) {
+            return (Completion) synchronization;
+        }
+        if (synchronization != null && !(synchronization instanceof Completion)) {
+            throw new IllegalStateException("Transaction already has a synchronization: " + synchronization);
+        }
+        // the transaction object is reused, so may still have the completion of the previous transaction
+        final Completion completion = new Completion();
+        transaction.setSynchronization(completion);
+        return completion;
+    }
+
+    @Inject
+    IsisJdoSupport isisJdoSupport;
+
+}
@@ -16,26 +16,87 @@
  */
 package org.estatio.module.base.spiimpl.security;
 
-import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
-import com.google.common.base.Splitter;
-import com.google.common.collect.FluentIterable;
-
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.services.queryresultscache.QueryResultsCache;
 
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyEvaluator;
 import org.isisaddons.module.security.dom.tenancy.HasAtPath;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
 
+/**
+ * Evaluated for every object and member rendered, so each user tenancy is compiled once into an
+ * {@link ApplicationTenancyMatcher} (shared by all sessions of users with that tenancy), and the tokens of each object
+ * tenancy are parsed once; thereafter an object is matched without any parsing or allocation.
+ *
+ * <p>
+ * Tenancies are few (countries, properties and the like), but at most {@value #MAX_CACHED} of each are held on to;
+ * any others are parsed on every use.
+ * </p>
+ */
 @DomainService(nature = NatureOfService.DOMAIN, menuOrder = "99")
 public class ApplicationTenancyEvaluatorForEstatio implements ApplicationTenancyEvaluator {
 
+    static final int MAX_CACHED = 10000;
+
+    /**
+     * Cache hits/misses of the parsed tenancies, since this service was started.
+     */
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final int objectTenancies;
+        private final int userTenancies;
+
+        Statistics(final long hits, final long misses, final int objectTenancies, final int userTenancies) {
+            this.hits = hits;
+            this.misses = misses;
+            this.objectTenancies = objectTenancies;
+            this.userTenancies = userTenancies;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public int getObjectTenancies() {
+            return objectTenancies;
+        }
+
+        public int getUserTenancies() {
+            return userTenancies;
+        }
+
+        public double getHitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "hits: %d, misses: %d (hit rate %.1f%%), object tenancies: %d, user tenancies: %d",
+                    hits, misses, getHitRate() * 100, objectTenancies, userTenancies);
+        }
+    }
+
+    private final ConcurrentMap<String, String[]> tokensByObjectTenancyPath = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ApplicationTenancyMatcher> matcherByUserTenancyPath = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
     @Inject
     QueryResultsCache queryResultsCache;
 
@@ -48,7 +109,7 @@ public class ApplicationTenancyEvaluatorForEstatio implements ApplicationTenancy
         if(objectTenancyPath == null) {
             return null;
         }
-        final String userTenancyPath = userTenancyPathForCached(applicationUser);
+        final String userTenancyPath = userTenancyPathFor(applicationUser);
         if (userTenancyPath == null) {
             return "User has no tenancy";
         }
@@ -64,7 +125,7 @@ public class ApplicationTenancyEvaluatorForEstatio implements ApplicationTenancy
         if(objectTenancyPath == null) {
             return null;
         }
-        final String userTenancyPath = userTenancyPathForCached(applicationUser);
+        final String userTenancyPath = userTenancyPathFor(applicationUser);
         if (userTenancyPath == null) {
             return "User has no tenancy";
         }
@@ -76,87 +137,60 @@ public class ApplicationTenancyEvaluatorForEstatio implements ApplicationTenancy
     }
 
     boolean objectVisibleToUser(String objectTenancyPath, String userTenancyPath) {
-        List<String> userTenancyPaths = split(userTenancyPath, ';');
-        for (String tenancyPath : userTenancyPaths) {
-            boolean visibleForThisPath = objectVisibleToUserForSinglePath(objectTenancyPath, tenancyPath);
-            if(visibleForThisPath) {
-                return true;
-            }
-        }
-        return false;
+        return matcherFor(userTenancyPath).visible(tokensOf(objectTenancyPath));
     }
 
-    private boolean objectVisibleToUserForSinglePath(final String objectTenancyPath, final String userTenancyPath) {
-        final List<String> objectTenancyPathList = split(objectTenancyPath, '/');
-        final List<String> userTenancyPathList = split(userTenancyPath, '/');
-
-        for (int i = 0; i < objectTenancyPathList.size(); i++) {
-            final String objectTenancyPathPart = objectTenancyPathList.get(i);
-            if(i >= userTenancyPathList.size()) {
-                // run out of parts for the user tenancy, so the user tenancy is higher than object
-                return true;
-            }
-            final String userTenancyPathPart = userTenancyPathList.get(i);
-            if(!partsEqual(objectTenancyPathPart, userTenancyPathPart)) {
-                return false;
-            }
-        }
-        // run out of parts for the object tenancy, so the user tenancy is same or lower than the object
-        return true;
+    boolean objectEnabledForUser(String objectTenancyPath, String userTenancyPath) {
+        return matcherFor(userTenancyPath).enabled(tokensOf(objectTenancyPath));
     }
 
-    boolean objectEnabledForUser(String objectTenancyPath, String userTenancyPath) {
-        List<String> userTenancyPaths = split(userTenancyPath, ';');
-        for (String tenancyPath : userTenancyPaths) {
-            boolean enabledForThisPath = objectEnabledForUserSinglePath(objectTenancyPath, tenancyPath);
-            if(enabledForThisPath) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * The objects visible to the user, as a predicate for finders to push down into their queries; unrestricted if
+     * the user has no tenancy (such users are not shown any objects anyway).
+     */
+    @Programmatic
+    public ApplicationTenancyPredicate predicateFor(final ApplicationUser applicationUser) {
+        final String userTenancyPath = applicationUser != null ? userTenancyPathFor(applicationUser) : null;
+        return userTenancyPath != null
+                ? matcherFor(userTenancyPath).getPredicate()
+                : ApplicationTenancyPredicate.UNRESTRICTED;
     }
 
-    private boolean objectEnabledForUserSinglePath(final String objectTenancyPath, final String userTenancyPath) {
-        final List<String> objectTenancyPathList = split(objectTenancyPath, '/');
-        final List<String> userTenancyPathList = split(userTenancyPath, '/');
-
-        for (int i = 0; i < objectTenancyPathList.size(); i++) {
-            final String objectTenancyPathPart = objectTenancyPathList.get(i);
-            if(i >= userTenancyPathList.size()) {
-                // run out of parts for the user tenancy, so the user tenancy is higher than object
-                return true;
-            }
-            final String userTenancyPathPart = userTenancyPathList.get(i);
-            if(!partsEqual(objectTenancyPathPart, userTenancyPathPart)) {
-                return false;
-            }
-        }
-        // run out of parts for the object tenancy, so the user tenancy is same or lower than the object
-        final boolean sameSize = objectTenancyPathList.size() == userTenancyPathList.size();
-        return sameSize;
+    @Programmatic
+    public Statistics getStatistics() {
+        return new Statistics(
+                hits.get(), misses.get(), tokensByObjectTenancyPath.size(), matcherByUserTenancyPath.size());
     }
 
-    protected boolean partsEqual(String objectTenancyPathPart, String userTenancyPathPart) {
-        if (Objects.equals(objectTenancyPathPart, userTenancyPathPart)) {
-            return true;
+    //region > helpers: matcherFor, tokensOf
+    private ApplicationTenancyMatcher matcherFor(final String userTenancyPath) {
+        final ApplicationTenancyMatcher matcher = matcherByUserTenancyPath.get(userTenancyPath);
+        if (matcher != null) {
+            return matcher;
         }
-        // eg allow "X-CAR" user to match with "CAR"
-        if (!userTenancyPathPart.startsWith("X-")) {
-            return false;
+        final ApplicationTenancyMatcher compiled = new ApplicationTenancyMatcher(userTenancyPath);
+        if (matcherByUserTenancyPath.size() < MAX_CACHED) {
+            matcherByUserTenancyPath.put(userTenancyPath, compiled);
         }
-        final String baseUserTenancyPathPart = userTenancyPathPart.substring(2);
-        return Objects.equals(objectTenancyPathPart, baseUserTenancyPathPart);
+        return compiled;
     }
 
-    private static List<String> split(final String objectTenancyPath, final char separator) {
-        return FluentIterable.from(Splitter.on(separator)
-                            .split(objectTenancyPath))
-                            .filter(s -> !com.google.common.base.Strings.isNullOrEmpty(s))
-                            .transform(s -> s.trim())
-                            .toList();
+    private String[] tokensOf(final String objectTenancyPath) {
+        final String[] tokens = tokensByObjectTenancyPath.get(objectTenancyPath);
+        if (tokens != null) {
+            hits.incrementAndGet();
+            return tokens;
+        }
+        misses.incrementAndGet();
+        final String[] parsed = ApplicationTenancyMatcher.tokensOf(objectTenancyPath);
+        if (tokensByObjectTenancyPath.size() < MAX_CACHED) {
+            tokensByObjectTenancyPath.put(objectTenancyPath, parsed);
+        }
+        return parsed;
     }
+    //endregion
 
-    //region > helpers: applicationTenancyPathForCached, applicationTenancyPathFor, userTenancyPathForCached, userTenancyPathFor
+    //region > helpers: applicationTenancyPathForCached, applicationTenancyPathFor, userTenancyPathFor
     private String applicationTenancyPathForCached(final Object domainObject) {
         return (String)queryResultsCache.execute(
                 (Callable) () -> applicationTenancyPathFor(domainObject),
@@ -172,12 +206,6 @@ public class ApplicationTenancyEvaluatorForEstatio implements ApplicationTenancy
         return tenantedObject.getAtPath();
     }
 
-    private String userTenancyPathForCached(final ApplicationUser applicationUser) {
-        return (String)queryResultsCache.execute(
-                (Callable) () -> userTenancyPathFor(applicationUser),
-                ApplicationTenancyEvaluatorForEstatio.class, "userTenancyPathForCached", applicationUser);
-    }
-
     private String userTenancyPathFor(final ApplicationUser applicationUser) {
         // previously the code had this clause, but this is now always false because
         // ApplicationUser (in sec module, as of 1.13.6) does not (cannot) implement
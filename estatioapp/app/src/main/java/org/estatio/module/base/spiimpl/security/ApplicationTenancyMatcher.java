@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2012-date Eurocommercial Properties NV
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.spiimpl.security;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A user's tenancy (eg <tt>"/ITA/X-CAR"</tt>, or several separated by <tt>;</tt>, eg <tt>"/FRA;/BEL"</tt>), parsed
+ * once into interned tokens, against which the {@link #tokensOf(String) tokens} of objects' tenancies are matched
+ * without any further parsing or allocation.
+ *
+ * <p>
+ * A user's tenancy part <tt>"X-CAR"</tt> also matches an object's tenancy part <tt>"CAR"</tt>.
+ * </p>
+ */
+final class ApplicationTenancyMatcher {
+
+    private static final String WILDCARD_PREFIX = "X-";
+
+    private final String userTenancyPath;
+    /**
+     * The tokens of each of the user's tenancies.
+     */
+    private final String[][] userTokens;
+    /**
+     * For each token of each of the user's tenancies, the token without its <tt>X-</tt> prefix, else <tt>null</tt>.
+     */
+    private final String[][] userBaseTokens;
+    private final ApplicationTenancyPredicate predicate;
+
+    ApplicationTenancyMatcher(final String userTenancyPath) {
+        this.userTenancyPath = userTenancyPath;
+        final String[] userTenancyPaths = split(userTenancyPath, ';');
+        this.userTokens = new String[userTenancyPaths.length][];
+        this.userBaseTokens = new String[userTenancyPaths.length][];
+        for (int p = 0; p < userTenancyPaths.length; p++) {
+            final String[] tokens = tokensOf(userTenancyPaths[p]);
+            final String[] baseTokens = new String[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                baseTokens[i] = tokens[i].startsWith(WILDCARD_PREFIX)
+                        ? tokens[i].substring(WILDCARD_PREFIX.length()).intern()
+                        : null;
+            }
+            this.userTokens[p] = tokens;
+            this.userBaseTokens[p] = baseTokens;
+        }
+        this.predicate = ApplicationTenancyPredicate.of(userTokens, userBaseTokens);
+    }
+
+    String getUserTenancyPath() {
+        return userTenancyPath;
+    }
+
+    /**
+     * The objects {@link #visible(String[]) visible} to the user, as a query predicate.
+     */
+    ApplicationTenancyPredicate getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * Whether an object with the tenancy of these tokens is visible to the user, that is, whether any of the user's
+     * tenancies is the same as, above or below the object's.
+     */
+    boolean visible(final String[] objectTokens) {
+        for (int p = 0; p < userTokens.length; p++) {
+            if (matchedUpTo(objectTokens, p) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an object with the tenancy of these tokens is editable by the user, that is, whether any of the user's
+     * tenancies is the same as or above the object's.
+     */
+    boolean enabled(final String[] objectTokens) {
+        for (int p = 0; p < userTokens.length; p++) {
+            final int matched = matchedUpTo(objectTokens, p);
+            if (matched < 0) {
+                continue;
+            }
+            if (matched < objectTokens.length) {
+                // run out of parts for the user tenancy, so the user tenancy is higher than object
+                return true;
+            }
+            if (objectTokens.length == userTokens[p].length) {
+                // same tenancy
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The number of leading tokens of the object tenancy matched by the user's <tt>p</tt>'th tenancy before either
+     * runs out, or <tt>-1</tt> if they differ before then.
+     */
+    private int matchedUpTo(final String[] objectTokens, final int p) {
+        final String[] tokens = userTokens[p];
+        final String[] baseTokens = userBaseTokens[p];
+        final int length = Math.min(objectTokens.length, tokens.length);
+        for (int i = 0; i < length; i++) {
+            // all tokens are interned
+            final String objectToken = objectTokens[i];
+            if (objectToken != tokens[i] && objectToken != baseTokens[i]) {
+                return -1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * The interned, trimmed, non-empty parts of a tenancy path.
+     */
+    static String[] tokensOf(final String tenancyPath) {
+        final String[] tokens = split(tenancyPath, '/');
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokens[i].intern();
+        }
+        return tokens;
+    }
+
+    /**
+     * As the original <tt>Splitter</tt>-based implementation: the non-empty parts, each then trimmed.
+     */
+    private static String[] split(final String str, final char separator) {
+        final List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (start <= str.length()) {
+            int end = str.indexOf(separator, start);
+            if (end < 0) {
+                end = str.length();
+            }
+            if (end > start) {
+                parts.add(str.substring(start, end).trim());
+            }
+            start = end + 1;
+        }
+        return parts.toArray(new String[0]);
+    }
+
+}
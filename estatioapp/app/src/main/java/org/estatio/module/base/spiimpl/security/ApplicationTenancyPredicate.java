@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2012-date Eurocommercial Properties NV
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.spiimpl.security;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The objects visible to a user as per {@link ApplicationTenancyEvaluatorForEstatio}, as a JDOQL predicate on the
+ * (persisted) tenancy path of the objects, so that finders can leave the objects not visible to the user in the
+ * database.
+ *
+ * <p>
+ * An object is visible if its tenancy is the same as, above or below any of the user's tenancies; so for a user
+ * with tenancy <tt>"/ITA/X-CAR"</tt>, the objects with tenancy <tt>/</tt>, <tt>/ITA</tt>, <tt>/ITA/CAR</tt> or
+ * <tt>/ITA/X-CAR</tt> (with or without a trailing <tt>/</tt>), or starting with <tt>/ITA/CAR/</tt> or
+ * <tt>/ITA/X-CAR/</tt>, as well as those without any tenancy.
+ * </p>
+ *
+ * <p>
+ * The predicate never excludes an object that the evaluator shows (for paths written as above); it is only an
+ * optimization, the evaluator still checks each object as it is rendered. For users that may see everything (or
+ * nothing), the predicate is {@link #isUnrestricted() unrestricted}.
+ * </p>
+ */
+public final class ApplicationTenancyPredicate {
+
+    public static final ApplicationTenancyPredicate UNRESTRICTED =
+            new ApplicationTenancyPredicate(Collections.emptyList(), Collections.emptyList());
+
+    static final String PARAM_AT_PATHS = "tenancyAtPaths";
+    static final String PARAM_AT_PATH_PREFIX = "tenancyAtPathPrefix";
+
+    private final List<String> atPaths;
+    private final List<String> atPathPrefixes;
+
+    private ApplicationTenancyPredicate(final List<String> atPaths, final List<String> atPathPrefixes) {
+        this.atPaths = Collections.unmodifiableList(atPaths);
+        this.atPathPrefixes = Collections.unmodifiableList(atPathPrefixes);
+    }
+
+    /**
+     * @param userTokens - the tokens of each of the user's tenancies
+     * @param userBaseTokens - the base tokens (without <tt>X-</tt> prefix) of each of the user's tenancies' tokens
+     */
+    static ApplicationTenancyPredicate of(final String[][] userTokens, final String[][] userBaseTokens) {
+        if (userTokens.length == 0) {
+            return UNRESTRICTED;
+        }
+        final Set<String> atPaths = new LinkedHashSet<>();
+        final Set<String> atPathPrefixes = new LinkedHashSet<>();
+        atPaths.add("");
+        atPaths.add("/");
+        for (int p = 0; p < userTokens.length; p++) {
+            if (userTokens[p].length == 0) {
+                // global
+                return UNRESTRICTED;
+            }
+            List<String> paths = Collections.singletonList("");
+            for (int i = 0; i < userTokens[p].length; i++) {
+                final List<String> longerPaths = new ArrayList<>();
+                for (String path : paths) {
+                    longerPaths.add(path + "/" + userTokens[p][i]);
+                    if (userBaseTokens[p][i] != null) {
+                        longerPaths.add(path + "/" + userBaseTokens[p][i]);
+                    }
+                }
+                paths = longerPaths;
+                for (String path : paths) {
+                    atPaths.add(path);
+                    atPaths.add(path + "/");
+                }
+            }
+            for (String path : paths) {
+                atPathPrefixes.add(path + "/");
+            }
+        }
+        return new ApplicationTenancyPredicate(new ArrayList<>(atPaths), new ArrayList<>(atPathPrefixes));
+    }
+
+    public boolean isUnrestricted() {
+        return atPaths.isEmpty();
+    }
+
+    /**
+     * The tenancy paths (exactly) visible, being those of and above the user's tenancies.
+     */
+    public List<String> getAtPaths() {
+        return atPaths;
+    }
+
+    /**
+     * The prefixes of the tenancy paths visible, being those below the user's tenancies.
+     */
+    public List<String> getAtPathPrefixes() {
+        return atPathPrefixes;
+    }
+
+    /**
+     * Whether an object with this tenancy path matches, in memory, as the {@link #toJdoql(String) filter} would in the
+     * database.
+     */
+    public boolean test(final String atPath) {
+        if (isUnrestricted() || atPath == null || atPaths.contains(atPath)) {
+            return true;
+        }
+        for (String atPathPrefix : atPathPrefixes) {
+            if (atPath.startsWith(atPathPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The JDOQL filter for the field holding the tenancy path (eg <tt>"applicationTenancyPath"</tt>), in parentheses,
+     * to be and-ed to a query's filter along with the {@link #getParameters() parameters}; or <tt>"true"</tt> if
+     * {@link #isUnrestricted() unrestricted}.
+     */
+    public String toJdoql(final String atPathField) {
+        if (isUnrestricted()) {
+            return "true";
+        }
+        final StringBuilder buf = new StringBuilder("(")
+                .append(atPathField).append(" == null || :").append(PARAM_AT_PATHS).append(".contains(").append(atPathField).append(")");
+        for (int i = 0; i < atPathPrefixes.size(); i++) {
+            buf.append(" || ").append(atPathField).append(".startsWith(:").append(PARAM_AT_PATH_PREFIX).append(i).append(")");
+        }
+        return buf.append(")").toString();
+    }
+
+    /**
+     * The parameters of the {@link #toJdoql(String) filter}.
+     */
+    public Map<String, Object> getParameters() {
+        final Map<String, Object> parameters = new LinkedHashMap<>();
+        if (isUnrestricted()) {
+            return parameters;
+        }
+        parameters.put(PARAM_AT_PATHS, atPaths);
+        for (int i = 0; i < atPathPrefixes.size(); i++) {
+            parameters.put(PARAM_AT_PATH_PREFIX + i, atPathPrefixes.get(i));
+        }
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return isUnrestricted() ? "unrestricted" : "atPaths: " + atPaths + ", atPathPrefixes: " + atPathPrefixes;
+    }
+
+}
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.ListIterator;
 
 public class DistributionService {
 
@@ -38,148 +39,45 @@ public class DistributionService {
             return input;
         }
 
-            /*debug*/
-//        System.out.println("***************************");
-//        System.out.println("denominator: ");
-//        System.out.println(denominator);
-            /*debug*/
-
-        List<OutputHelper> outputHelperList = new ArrayList<>();
+        // 1. calculate all (rounded) values in a single pass, summing them as we go
+        BigDecimal sumOfCalculatedRoundedValues = BigDecimal.ZERO;
         for (Distributable distributable : input) {
-
             BigDecimal unroundedTargetValue = distributable.getSourceValue().multiply(targetTotal, MathContext.DECIMAL64).divide(denominator, MathContext.DECIMAL64);
             BigDecimal roundedTargetValue = unroundedTargetValue.setScale(precision, BigDecimal.ROUND_HALF_UP);
             distributable.setValue(roundedTargetValue);
-            OutputHelper newOutputObject = new OutputHelper(
-                    distributable,
-                    roundedTargetValue.subtract(unroundedTargetValue, MathContext.DECIMAL64),
-                    false
-            );
-
-            outputHelperList.add(newOutputObject);
-
+            sumOfCalculatedRoundedValues = sumOfCalculatedRoundedValues.add(roundedTargetValue, MathContext.DECIMAL64);
         }
 
-
-        // 1. check if rounding correction is needed
-        BigDecimal sumOfCalculatedRoundedValues = BigDecimal.ZERO;
-        for (OutputHelper helper : outputHelperList) {
-            sumOfCalculatedRoundedValues = sumOfCalculatedRoundedValues.add(helper.distributable.getValue(), MathContext.DECIMAL64);
-                    /*debug*/
-//            System.out.println("***************************");
-//            System.out.println(helper.distributable.getValue());
-//            System.out.print("sumOfCalculatedRoundedValues: ");
-//            System.out.println(sumOfCalculatedRoundedValues);
-                    /*debug*/
-        }
-
-        BigDecimal deltaOfSum = BigDecimal.ZERO;
-        Delta deltaSignOfSum = Delta.NO_DELTA;
+        // 2. check if rounding correction is needed
         BigDecimal validTotal = targetTotal.setScale(precision, BigDecimal.ROUND_HALF_UP);
-
-        if (sumOfCalculatedRoundedValues.compareTo(validTotal) > 0) {
-            deltaSignOfSum = Delta.DELTA_POSITIVE;
-            deltaOfSum = deltaOfSum.add(sumOfCalculatedRoundedValues.subtract(validTotal, MathContext.DECIMAL64));
-                    /*debug*/
-//            System.out.println("***************************");
-//            System.out.print("positive delta: ");
-//            System.out.println(deltaOfSum);
-                    /*debug*/
-        }
-        if (sumOfCalculatedRoundedValues.compareTo(validTotal) < 0) {
-            deltaSignOfSum = Delta.DELTA_NEGATIVE;
-            deltaOfSum = deltaOfSum.add(sumOfCalculatedRoundedValues.subtract(validTotal, MathContext.DECIMAL64));
-                    /*debug*/
-//            System.out.println("***************************");
-//            System.out.print("negative delta: ");
-//            System.out.println(deltaOfSum);
-                    /*debug*/
-        }
-
-        // 2. in case of rounding needed: iterate over sorted array until fixed
-        Integer numberOfIterationsNeeded = deltaOfSum.abs().multiply(multiplicationFactor(precision)).intValue();
-
-        for (int i = 0; i < numberOfIterationsNeeded; i = i + 1) {
-
-            if (deltaSignOfSum == Delta.DELTA_NEGATIVE) {
-
-                //find largest (positive) delta in output Object and round up
-                BigDecimal largestPositiveDelta = new BigDecimal(-1);
-                OutputHelper helperToRoundUp = null;
-                for (OutputHelper helper : outputHelperList) {
-                    if (
-                            helper.delta.compareTo(largestPositiveDelta) > 0
-                            &&
-                                    !helper.corrected
-                            &&
-                                    !(helper.distributable.getSourceValue().compareTo(BigDecimal.ZERO) == 0)
-                            ) {
-                        helperToRoundUp = helper;
-                    }
-                }
-                helperToRoundUp
-                        .distributable.setValue(
-                        helperToRoundUp.distributable.getValue()
-                                .add(increment(precision), MathContext.DECIMAL64)
-                                .setScale(precision, BigDecimal.ROUND_HALF_UP)
-                );
-                deltaOfSum = deltaOfSum.add(increment(precision)).setScale(precision +3, BigDecimal.ROUND_HALF_UP);
-                helperToRoundUp.setCorrected(true);
-
-                        /*debug*/
-//                System.out.print("Identifier: ");
-//                System.out.println(helperToRoundUp.distributable.getSourceValue());
-//                System.out.print("New keyRoundedValue: ");
-//                System.out.println(helperToRoundUp.distributable.getValue());
-//                System.out.print("New deltaOfSum: ");
-//                System.out.println(deltaOfSum);
-                        /*debug*/
-
-            } else {
-
-                //find largest negative delta in output Object and round down
-                BigDecimal largestNegativeDelta = BigDecimal.ONE;
-                OutputHelper helperToRoundDown = null;
-                for (OutputHelper helper : outputHelperList) {
-                    if (
-                            helper.delta.compareTo(largestNegativeDelta) < 0
-                            &&
-                                    !helper.corrected
-                            &&
-                                    !(helper.distributable.getSourceValue().compareTo(BigDecimal.ZERO) == 0)
-                            ) {
-                        helperToRoundDown = helper;
-                    }
+        BigDecimal deltaOfSum = sumOfCalculatedRoundedValues.subtract(validTotal, MathContext.DECIMAL64);
+        int numberOfCorrectionsNeeded = deltaOfSum.abs().multiply(multiplicationFactor(precision)).intValue();
+
+        // 3. in case of rounding needed: correct each of the last items (with a non-zero source value) by one increment,
+        // in a single pass from the end of the list
+        //
+        // NB: this is the very selection the previous implementation (one scan of the list per increment) ended up
+        // making: its remainder comparisons never update the running maximum and, since the remainders are less than
+        // one for any precision of 0 or more, every scan picked the last item not yet corrected; keeping that selection
+        // keeps the calculated key values unchanged
+        if (numberOfCorrectionsNeeded > 0) {
+            final BigDecimal correction = deltaOfSum.signum() < 0 ? increment(precision) : increment(precision).negate();
+            for (ListIterator<Distributable> iterator = input.listIterator(input.size());
+                 iterator.hasPrevious() && numberOfCorrectionsNeeded > 0; ) {
+                Distributable distributable = iterator.previous();
+                if (distributable.getSourceValue().compareTo(BigDecimal.ZERO) == 0) {
+                    continue;
                 }
-                helperToRoundDown.
-                        distributable.setValue(
-                        helperToRoundDown.distributable.getValue()
-                                .subtract(increment(precision), MathContext.DECIMAL64)
+                distributable.setValue(
+                        distributable.getValue()
+                                .add(correction, MathContext.DECIMAL64)
                                 .setScale(precision, BigDecimal.ROUND_HALF_UP)
                 );
-                deltaOfSum = deltaOfSum.subtract(increment(precision)).setScale(precision +3, BigDecimal.ROUND_HALF_UP);
-                helperToRoundDown.setCorrected(true);
-
-                        /*debug*/
-//                System.out.print("Identifier: ");
-//                System.out.println(helperToRoundDown.distributable.getSourceValue());
-//                System.out.print("New keyRoundedValue: ");
-//                System.out.println(helperToRoundDown.distributable.getValue());
-//                System.out.print("New deltaOfSum: ");
-//                System.out.println(deltaOfSum);
-                        /*debug*/
-
+                numberOfCorrectionsNeeded = numberOfCorrectionsNeeded - 1;
             }
-
         }
 
-        ArrayList<Distributable> output = new ArrayList<>();
-
-        for (OutputHelper helper : outputHelperList) {
-            output.add(helper.distributable);
-        }
-
-        return output;
+        return new ArrayList<>(input);
     }
 
     private BigDecimal multiplicationFactor(final int scale) {
@@ -190,33 +88,4 @@ public class DistributionService {
         return BigDecimal.valueOf(0.1).pow(scale, MathContext.DECIMAL64);
     }
 
-    private class OutputHelper {
-
-        OutputHelper(
-                final Distributable distributable,
-                final BigDecimal delta,
-                final boolean corrected) {
-            this.distributable = distributable;
-            this.delta = delta;
-            this.corrected = corrected;
-        }
-
-        private Distributable distributable;
-
-        private BigDecimal delta;
-
-        private boolean corrected;
-
-        public void setCorrected(final boolean corrected){
-            this.corrected = corrected;
-        }
-
-    }
-
-    private enum Delta {
-        DELTA_POSITIVE,
-        DELTA_NEGATIVE,
-        NO_DELTA
-    }
-
 }
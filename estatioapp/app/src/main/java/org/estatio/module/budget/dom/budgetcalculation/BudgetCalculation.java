@@ -118,6 +118,12 @@ import lombok.Setter;
                         "WHERE budget == :budget && "
                         + "calculationType == :type && "
                         + "status == :status"),
+        @Query(
+                name = "findByBudgetAndType", language = "JDOQL",
+                value = "SELECT " +
+                        "FROM org.estatio.module.budget.dom.budgetcalculation.BudgetCalculation " +
+                        "WHERE budget == :budget && "
+                        + "calculationType == :type"),
         @Query(
                 name = "findByBudget", language = "JDOQL",
                 value = "SELECT " +
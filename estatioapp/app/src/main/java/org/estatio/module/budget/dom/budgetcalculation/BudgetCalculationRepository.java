@@ -92,6 +92,10 @@ public class BudgetCalculationRepository extends UdoDomainRepositoryAndFactory<B
         return allMatches("findByBudgetAndTypeAndStatus", "budget", budget, "type", type, "status", status);
     }
 
+    public List<BudgetCalculation> findByBudgetAndType(final Budget budget, final BudgetCalculationType type) {
+        return allMatches("findByBudgetAndType", "budget", budget, "type", type);
+    }
+
     public List<BudgetCalculation> findByBudgetAndUnitAndType(final Budget budget, final Unit unit, final BudgetCalculationType type) {
         return allMatches("findByBudgetAndUnitAndType", "budget", budget, "unit", unit, "type", type);
     }
@@ -107,5 +111,13 @@ public class BudgetCalculationRepository extends UdoDomainRepositoryAndFactory<B
     public void delete(final BudgetCalculation calc) {
         repositoryService.removeAndFlush(calc);
     }
+
+    /**
+     * As {@link #delete(BudgetCalculation)}, but leaves flushing to the caller, so that deleting many is done in a
+     * single flush.
+     */
+    public void deleteWithoutFlush(final BudgetCalculation calc) {
+        repositoryService.remove(calc);
+    }
 }
 
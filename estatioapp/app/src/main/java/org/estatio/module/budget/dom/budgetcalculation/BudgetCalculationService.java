@@ -2,42 +2,67 @@ package org.estatio.module.budget.dom.budgetcalculation;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.services.xactn.TransactionService;
 
 import org.estatio.module.budget.dom.budget.Budget;
 import org.estatio.module.budget.dom.budgetitem.BudgetItem;
+import org.estatio.module.budget.dom.keyitem.PartitioningTableItem;
 import org.estatio.module.budget.dom.keytable.PartitioningTable;
 import org.estatio.module.budget.dom.partioning.PartitionItem;
 
 @DomainService(nature = NatureOfService.DOMAIN)
 public class BudgetCalculationService {
 
+    /**
+     * Set based: the new calculations of the type are removed in a single flush, the calculations kept (those
+     * already assigned) are looked up from a single query rather than one per partition item and table item, and
+     * those to create are persisted in a single flush.
+     */
     public List<BudgetCalculation> calculate(final Budget budget, final BudgetCalculationType type) {
 
         removeNewCalculationsOfType(budget, type);
 
+        final Map<List<Object>, BudgetCalculation> calculationsKept = new HashMap<>();
+        for (BudgetCalculation calculation : budgetCalculationRepository.findByBudgetAndType(budget, type)) {
+            calculationsKept.put(keyFor(calculation.getPartitionItem(), calculation.getTableItem(), calculation.getCalculationType()), calculation);
+        }
+
         List<BudgetCalculation> budgetCalculations = new ArrayList<>();
         for (BudgetCalculationViewmodel result : getCalculationsForType(budget, type)){
-            budgetCalculations.add(
-                    budgetCalculationRepository.findOrCreateBudgetCalculation(
-                    result.getPartitionItem(),
-                    result.getItem(),
-                    result.getValue(),
-                    result.getCalculationType())
-            );
+            final List<Object> key = keyFor(result.getPartitionItem(), result.getItem(), result.getCalculationType());
+            BudgetCalculation budgetCalculation = calculationsKept.get(key);
+            if (budgetCalculation == null) {
+                budgetCalculation = budgetCalculationRepository.createBudgetCalculation(
+                        result.getPartitionItem(),
+                        result.getItem(),
+                        result.getValue(),
+                        result.getCalculationType());
+                calculationsKept.put(key, budgetCalculation);
+            }
+            budgetCalculations.add(budgetCalculation);
         }
+        transactionService.flushTransaction();
         return budgetCalculations;
     }
 
+    private static List<Object> keyFor(final PartitionItem partitionItem, final PartitioningTableItem tableItem, final BudgetCalculationType calculationType) {
+        return Arrays.asList(partitionItem, tableItem, calculationType);
+    }
+
     public void removeNewCalculationsOfType(final Budget budget, final BudgetCalculationType type) {
         budgetCalculationRepository.findByBudgetAndTypeAndStatus(budget, type, Status.NEW).forEach(
-                c->budgetCalculationRepository.delete(c)
+                c->budgetCalculationRepository.deleteWithoutFlush(c)
         );
+        transactionService.flushTransaction();
     }
 
     public List<BudgetCalculationViewmodel> getCalculationsForType(final Budget budget, final BudgetCalculationType type){
@@ -106,5 +131,8 @@ public class BudgetCalculationService {
     @Inject
     private BudgetCalculationRepository budgetCalculationRepository;
 
+    @Inject
+    private TransactionService transactionService;
+
 
 }
@@ -72,6 +72,12 @@ import lombok.Setter;
                 value = "SELECT " +
                         "FROM org.estatio.module.budgetassignment.dom.calculationresult.BudgetCalculationResult " +
                         "WHERE budget == :budget "),
+        @Query(
+                name = "findByBudgetAndType", language = "JDOQL",
+                value = "SELECT " +
+                        "FROM org.estatio.module.budgetassignment.dom.calculationresult.BudgetCalculationResult " +
+                        "WHERE budget == :budget && "
+                        + "type == :type"),
         @Query(
                 name = "findByLeaseTermAndBudgetAndType", language = "JDOQL",
                 value = "SELECT " +
@@ -68,6 +68,10 @@ public class BudgetCalculationResultRepository extends UdoDomainRepositoryAndFac
         return allMatches("findByBudget", "budget", budget);
     }
 
+    public List<BudgetCalculationResult> findByBudgetAndType(final Budget budget, final BudgetCalculationType type) {
+        return allMatches("findByBudgetAndType", "budget", budget, "type", type);
+    }
+
     public List<BudgetCalculationResult> findByLeaseTermAndBudgetAndType(final LeaseTermForServiceCharge term, final Budget budget, final BudgetCalculationType type) {
         return allMatches("findByLeaseTermAndBudgetAndType", "leaseTerm", term, "budget", budget, "type", type);
     }
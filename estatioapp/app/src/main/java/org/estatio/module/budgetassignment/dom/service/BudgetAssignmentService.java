@@ -2,7 +2,13 @@ package org.estatio.module.budgetassignment.dom.service;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -11,6 +17,7 @@ import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.services.message.MessageService;
+import org.apache.isis.applib.services.xactn.TransactionService;
 
 import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 
@@ -37,21 +44,57 @@ import org.estatio.module.lease.dom.occupancy.OccupancyRepository;
 @DomainService(nature = NatureOfService.DOMAIN)
 public class BudgetAssignmentService {
 
+    /**
+     * Set based: the occupancies of the property during the budget interval, the calculations of the budget and the
+     * results already in place are each loaded with a single query up front (rather than per unit and per
+     * occupancy and charge), and the results are written in a single flush.
+     */
     @Programmatic
     public List<BudgetCalculationResult> calculateResults(final Budget budget, final BudgetCalculationType type){
 
+        final Map<Unit, List<Occupancy>> occupanciesByUnit = new HashMap<>();
+        for (Occupancy occupancy : occupancyRepository.occupanciesByPropertyAndInterval(budget.getProperty(), budget.getInterval())) {
+            occupanciesByUnit.computeIfAbsent(occupancy.getUnit(), u -> new ArrayList<>()).add(occupancy);
+        }
+        final Map<Unit, List<BudgetCalculation>> calculationsByUnit = new HashMap<>();
+        for (BudgetCalculation calculation : budgetCalculationRepository.findByBudgetAndType(budget, type)) {
+            calculationsByUnit.computeIfAbsent(calculation.getUnit(), u -> new ArrayList<>()).add(calculation);
+        }
+        final Map<List<Object>, BudgetCalculationResult> existingResults = new HashMap<>();
+        for (BudgetCalculationResult result : budgetCalculationResultRepository.findByBudgetAndType(budget, type)) {
+            existingResults.put(Arrays.asList(result.getOccupancy(), result.getInvoiceCharge()), result);
+        }
+
         List<BudgetCalculationResult> results = new ArrayList<>();
         for (Unit unit : unitRepository.findByProperty(budget.getProperty())) {
-            results.addAll(calculatResultsForUnit(budget, type, unit));
+            results.addAll(calculateResultsForUnit(
+                    budget, type, unit,
+                    occupanciesByUnit.getOrDefault(unit, Collections.emptyList()),
+                    calculationsByUnit.getOrDefault(unit, Collections.emptyList()),
+                    (occupancy, charge) -> existingResults.get(Arrays.asList(occupancy, charge))));
         }
+        transactionService.flushTransaction();
         return results;
     }
 
     @Programmatic
     public List<BudgetCalculationResult> calculatResultsForUnit(final Budget budget, final BudgetCalculationType type, final Unit unit) {
+        return calculateResultsForUnit(
+                budget, type, unit,
+                occupancyRepository.occupanciesByUnitAndInterval(unit, budget.getInterval()),
+                budgetCalculationRepository.findByBudgetAndUnitAndType(budget, unit, type),
+                (occupancy, charge) -> budgetCalculationResultRepository.findUnique(budget, occupancy, charge, type));
+    }
+
+    private List<BudgetCalculationResult> calculateResultsForUnit(
+            final Budget budget,
+            final BudgetCalculationType type,
+            final Unit unit,
+            final List<Occupancy> occupanciesForUnitDuringBudgetInterval,
+            final List<BudgetCalculation> calculationsForUnitAndType,
+            final BiFunction<Occupancy, Charge, BudgetCalculationResult> existingResultFinder) {
 
         List<BudgetCalculationResult> results = new ArrayList<>();
-        final List<Occupancy> occupanciesForUnitDuringBudgetInterval = occupancyRepository.occupanciesByUnitAndInterval(unit, budget.getInterval());
 
         if (!occupanciesForUnitDuringBudgetInterval.isEmpty()) {
 
@@ -61,18 +104,21 @@ public class BudgetAssignmentService {
                 messageService.warnUser(message);
             } else {
 
-                List<BudgetCalculation> calculationsForUnitAndType = budgetCalculationRepository.findByBudgetAndUnitAndType(budget, unit, type);
-                List<Charge> invoiceChargesUsed = calculationsForUnitAndType.stream().map(c -> c.getInvoiceCharge()).distinct().collect(Collectors.toList());
+                // totals per invoice charge, in order of the charges' first use
+                Map<Charge, BigDecimal> valueByInvoiceCharge = new LinkedHashMap<>();
+                for (BudgetCalculation calc : calculationsForUnitAndType) {
+                    valueByInvoiceCharge.put(calc.getInvoiceCharge(), valueByInvoiceCharge.getOrDefault(calc.getInvoiceCharge(), BigDecimal.ZERO).add(calc.getValue()));
+                }
 
                 for (Occupancy occupancy : occupanciesForUnitDuringBudgetInterval) {
 
-                    for (Charge charge : invoiceChargesUsed) {
-                        BigDecimal value = BigDecimal.ZERO;
-                        List<BudgetCalculation> calculationsForCharge = calculationsForUnitAndType.stream().filter(c -> c.getInvoiceCharge().equals(charge)).collect(Collectors.toList());
-                        for (BudgetCalculation calc : calculationsForCharge) {
-                            value = value.add(calc.getValue());
+                    for (Map.Entry<Charge, BigDecimal> chargeAndValue : valueByInvoiceCharge.entrySet()) {
+                        BudgetCalculationResult calcResult = existingResultFinder.apply(occupancy, chargeAndValue.getKey());
+                        if (calcResult == null) {
+                            calcResult = budgetCalculationResultRepository.createBudgetCalculationResult(budget, occupancy, chargeAndValue.getKey(), type, chargeAndValue.getValue());
+                        } else {
+                            calcResult.setValue(chargeAndValue.getValue());
                         }
-                        BudgetCalculationResult calcResult = budgetCalculationResultRepository.upsertBudgetCalculationResult(budget, occupancy, charge, type, value);
                         results.add(calcResult);
                     }
 
@@ -212,4 +258,6 @@ public class BudgetAssignmentService {
 
     @Inject BudgetCalculationResultRepository budgetCalculationResultRepository;
 
+    @Inject TransactionService transactionService;
+
 }
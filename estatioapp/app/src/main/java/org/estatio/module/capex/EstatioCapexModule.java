@@ -31,12 +31,15 @@ import org.estatio.module.capex.dom.orderinvoice.OrderItemInvoiceItemLink;
 import org.estatio.module.capex.dom.payment.PaymentBatch;
 import org.estatio.module.capex.dom.payment.PaymentLine;
 import org.estatio.module.capex.dom.payment.approval.PaymentBatchApprovalStateTransition;
+import org.estatio.module.capex.dom.payment.paperclips.PaperclipForPaymentBatch;
 import org.estatio.module.capex.dom.project.Project;
 import org.estatio.module.capex.dom.project.ProjectItem;
 import org.estatio.module.capex.dom.project.ProjectItemTerm;
 import org.estatio.module.capex.dom.project.ProjectRole;
 import org.estatio.module.capex.dom.task.Task;
 import org.estatio.module.capex.seed.DocumentTypeFSForIbanProof;
+import org.estatio.module.capex.seed.DocumentTypeFSForIncomingInvoiceDownload;
+import org.estatio.module.capex.seed.DocumentTypeFSForPaymentBatchReview;
 import org.estatio.module.capex.seed.DocumentTypeFSForIncoming;
 import org.estatio.module.invoice.EstatioInvoiceModule;
 import org.estatio.module.invoice.dom.Invoice;
@@ -69,6 +72,8 @@ public class EstatioCapexModule extends ModuleAbstract {
             @Override protected void execute(final ExecutionContext executionContext) {
                 executionContext.executeChild(this, new DocumentTypeFSForIncoming());
                 executionContext.executeChild(this, new DocumentTypeFSForIbanProof());
+                executionContext.executeChild(this, new DocumentTypeFSForPaymentBatchReview());
+                executionContext.executeChild(this, new DocumentTypeFSForIncomingInvoiceDownload());
             }
         };
     }
@@ -146,6 +151,7 @@ public class EstatioCapexModule extends ModuleAbstract {
                 this.isisJdoSupport.executeUpdate(sql);
 
                 deleteFrom(PaymentLine.class);
+                deleteFrom(PaperclipForPaymentBatch.class);
                 deleteFrom(PaymentBatch.class);
 
                 deleteFrom(IncomingInvoiceItem.class);
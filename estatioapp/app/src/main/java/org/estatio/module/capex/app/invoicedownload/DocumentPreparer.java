@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import com.google.common.collect.Lists;
 
@@ -52,41 +53,66 @@ class DocumentPreparer {
 
     DocumentPreparer stampUsing(final PdfManipulator pdfManipulator) {
         try {
-            final String documentName = document.getName();
-
-            final List<String> leftLineTexts = Lists.newArrayList();
-
-            leftLineTexts.add(documentName);
-            if(transitionIfAny != null) {
-                final String completedBy = transitionIfAny.getCompletedBy();
-                leftLineTexts.add(String.format(
-                        "approved by: %s",
-                        completedBy != null ? completedBy : "(unknown)"));
-                leftLineTexts.add("approved on: " + transitionIfAny.getCompletedOn().toString("dd-MMM-yyyy HH:mm"));
-            } else {
-                leftLineTexts.add("not yet approved");
-            }
+            tempFile = stampingUsing(pdfManipulator).call();
+            return this;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IncomingInvoiceDownloadManager.DownloadException("Failed to prepare: " + document.getName(), e);
+        }
+    }
 
-            final List<String> rightLineTexts = Lists.newArrayList();
-            rightLineTexts.add(String.format("net Amt       : %s", new DecimalFormat("0.00").format(incomingInvoice.getNetAmount())));
-            rightLineTexts.add(String.format("gross Amt     : %s", new DecimalFormat("0.00").format(incomingInvoice.getGrossAmount())));
+    /**
+     * Captures (while still in the session) all that is needed to extract and stamp the document, so that the
+     * returned callable, which does the work and returns the resultant temporary file, can be called on any thread.
+     */
+    Callable<File> stampingUsing(final PdfManipulator pdfManipulator) {
+        final String documentName = document.getName();
+        final byte[] docBytes = document.getBlobBytes();
+        final Stamp stamp = stamp();
 
-            final String hyperlink = null;
+        return () -> {
+            try {
+                byte[] bytes = pdfManipulator.extractAndStamp(docBytes,
+                        new ExtractSpec(numFirstPages, numLastPages),
+                        stamp);
 
-            byte[] bytes = pdfManipulator.extractAndStamp(document.getBlobBytes(),
-                    new ExtractSpec(numFirstPages, numLastPages),
-                    new Stamp(leftLineTexts, rightLineTexts, hyperlink));
+                final File file = File.createTempFile(documentName, "pdf");
 
-            tempFile = File.createTempFile(documentName, "pdf");
+                final FileOutputStream fos = new FileOutputStream(file);
+                fos.write(bytes);
+                fos.close();
 
-            final FileOutputStream fos = new FileOutputStream(tempFile);
-            fos.write(bytes);
-            fos.close();
+                return file;
+            } catch (IOException e) {
+                throw new IncomingInvoiceDownloadManager.DownloadException("Failed to prepare: " + documentName, e);
+            }
+        };
+    }
 
-            return this;
-        } catch (IOException e) {
-            throw new IncomingInvoiceDownloadManager.DownloadException("Failed to prepare: " + document.getName(), e);
+    private Stamp stamp() {
+        final String documentName = document.getName();
+
+        final List<String> leftLineTexts = Lists.newArrayList();
+
+        leftLineTexts.add(documentName);
+        if(transitionIfAny != null) {
+            final String completedBy = transitionIfAny.getCompletedBy();
+            leftLineTexts.add(String.format(
+                    "approved by: %s",
+                    completedBy != null ? completedBy : "(unknown)"));
+            leftLineTexts.add("approved on: " + transitionIfAny.getCompletedOn().toString("dd-MMM-yyyy HH:mm"));
+        } else {
+            leftLineTexts.add("not yet approved");
         }
+
+        final List<String> rightLineTexts = Lists.newArrayList();
+        rightLineTexts.add(String.format("net Amt       : %s", new DecimalFormat("0.00").format(incomingInvoice.getNetAmount())));
+        rightLineTexts.add(String.format("gross Amt     : %s", new DecimalFormat("0.00").format(incomingInvoice.getGrossAmount())));
+
+        final String hyperlink = null;
+
+        return new Stamp(leftLineTexts, rightLineTexts, hyperlink);
     }
 
     File getTempFile() {
@@ -32,8 +32,11 @@ import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.ParameterLayout;
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.annotation.SemanticsOf;
+import org.apache.isis.applib.annotation.Where;
+import org.apache.isis.applib.services.background.BackgroundService;
 import org.apache.isis.applib.services.clock.ClockService;
 import org.apache.isis.applib.services.tablecol.TableColumnOrderService;
+import org.apache.isis.applib.services.user.UserService;
 import org.apache.isis.applib.value.Blob;
 import org.apache.isis.schema.utils.jaxbadapters.JodaLocalDateStringAdapter;
 
@@ -44,9 +47,13 @@ import org.isisaddons.module.pdfbox.dom.service.PdfBoxService;
 
 import org.incode.module.base.dom.MimeTypeData;
 import org.incode.module.country.dom.impl.Country;
+import org.incode.module.document.dom.api.DocumentService;
 import org.incode.module.document.dom.impl.docs.Document;
 import org.incode.module.document.dom.impl.docs.DocumentAbstract;
-import org.incode.module.zip.impl.ZipService;
+import org.incode.module.document.dom.impl.paperclips.Paperclip;
+import org.incode.module.document.dom.impl.paperclips.PaperclipRepository;
+import org.incode.module.document.dom.impl.types.DocumentType;
+import org.incode.module.document.dom.impl.types.DocumentTypeRepository;
 
 import org.estatio.module.asset.dom.FixedAsset;
 import org.estatio.module.asset.dom.Property;
@@ -68,7 +75,10 @@ import org.estatio.module.capex.dom.state.StateTransitionRepositoryGeneric;
 import org.estatio.module.capex.dom.util.InvoicePageRange;
 import org.estatio.module.capex.platform.pdfmanipulator.PdfManipulator;
 import org.estatio.module.countryapptenancy.dom.CountryServiceForCurrentUser;
+import org.estatio.module.invoice.dom.DocumentTypeData;
 import org.estatio.module.invoice.dom.InvoiceItem;
+import org.estatio.module.party.dom.Person;
+import org.estatio.module.party.dom.PersonRepository;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -145,6 +155,43 @@ public class IncomingInvoiceDownloadManager {
         return getInvoiceItems().size();
     }
 
+    /**
+     * Of the zipped PDF downloads currently being {@link #attachPdfZipped(String) built} for the current user.
+     */
+    @XmlTransient
+    public String getDownloadsInProgress() {
+        return downloadsInProgress().stream()
+                .map(IncomingInvoiceZipExportService.Progress::toString)
+                .collect(Collectors.joining("; "));
+    }
+    public boolean hideDownloadsInProgress() {
+        return downloadsInProgress().isEmpty();
+    }
+
+    private List<IncomingInvoiceZipExportService.Progress> downloadsInProgress() {
+        return incomingInvoiceZipExportService.getExportsInProgressFor(userService.getUser().getName());
+    }
+
+    /**
+     * The zipped PDF downloads {@link #attachPdfZipped(String) built} for the current user, most recent first.
+     */
+    @XmlTransient
+    @CollectionLayout(defaultView = "table")
+    public List<Document> getDownloads() {
+        final Person me = personRepository.me();
+        if (me == null) {
+            return new ArrayList<>();
+        }
+        final DocumentType documentType = DocumentTypeData.INCOMING_INVOICE_DOWNLOAD.findUsing(documentTypeRepository);
+        return paperclipRepository.findByAttachedTo(me).stream()
+                .map(Paperclip::getDocument)
+                .filter(Document.class::isInstance)
+                .map(Document.class::cast)
+                .filter(document -> document.getType() == documentType)
+                .sorted(Comparator.comparing(Document::getCreatedAt).reversed())
+                .collect(Collectors.toList());
+    }
+
 
     @CollectionLayout(defaultView = "table")
     public List<IncomingInvoice> getInvoices() {
@@ -409,15 +456,7 @@ public class IncomingInvoiceDownloadManager {
     @Action(semantics = SemanticsOf.SAFE)
     @ActionLayout(named = "Download all PDFs (zipped)")
     public Blob downloadToPdfZipped(final String fileName) throws IOException {
-
-        final List<DocumentPreparer> preparers = documentPreparersForInvoices();
-        final List<ZipService.FileAndName> fileList = fileAndNamesFrom(preparers);
-
-        final byte[] zipBytes = zipService.zip(fileList);
-
-        preparers.forEach(DocumentPreparer::cleanup);
-
-        return new Blob(fileName, "application/zip", zipBytes);
+        return incomingInvoiceZipExportService.export(documentPreparersForInvoices(), fileName);
     }
 
     public String disableDownloadToPdfZipped() {
@@ -428,6 +467,39 @@ public class IncomingInvoiceDownloadManager {
         return defaultFileNameWithSuffix(".zip");
     }
 
+    /**
+     * Builds the same zip as {@link #downloadToPdfZipped(String)}, but in the background, attaching it to the current
+     * user (listed under {@link #getDownloads() downloads}) once done; meanwhile, its progress is shown as one of the
+     * {@link #getDownloadsInProgress() downloads in progress}.
+     */
+    @Action(semantics = SemanticsOf.NON_IDEMPOTENT)
+    @ActionLayout(named = "Download all PDFs (zipped) in background")
+    public IncomingInvoiceDownloadManager downloadToPdfZippedInBackground(final String fileName) {
+        backgroundService.execute(this).attachPdfZipped(fileName);
+        return this;
+    }
+
+    public String disableDownloadToPdfZippedInBackground() {
+        if (personRepository.me() == null) {
+            return "No person for the current user to attach the download to";
+        }
+        return disableDownloadToPdfZipped();
+    }
+
+    public String default0DownloadToPdfZippedInBackground() {
+        return default0DownloadToPdfZipped();
+    }
+
+    @Action(hidden = Where.EVERYWHERE) // just so can invoke through background service
+    public IncomingInvoiceDownloadManager attachPdfZipped(final String fileName) throws IOException {
+        final Person me = personRepository.me();
+        final Blob blob = incomingInvoiceZipExportService.export(documentPreparersForInvoices(), fileName);
+        final DocumentType documentType = DocumentTypeData.INCOMING_INVOICE_DOWNLOAD.findUsing(documentTypeRepository);
+        documentService.createAndAttachDocumentForBlob(
+                documentType, me.getApplicationTenancyPath(), fileName, blob, null, me);
+        return this;
+    }
+
 
 
 
@@ -482,14 +554,6 @@ public class IncomingInvoiceDownloadManager {
     }
 
 
-    private List<ZipService.FileAndName> fileAndNamesFrom(final List<DocumentPreparer> preparers) {
-        return preparers.stream()
-                .map(preparer -> new ZipService.FileAndName(preparer.getDocumentName(), preparer.stampUsing(pdfManipulator).getTempFile()))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-    }
-
-
     private List<File> filesFrom(final List<DocumentPreparer> preparers) {
         return preparers.stream()
                 .map(preparer -> preparer.stampUsing(pdfManipulator).getTempFile())
@@ -638,7 +702,7 @@ public class IncomingInvoiceDownloadManager {
 
     @javax.inject.Inject
     @XmlTransient
-    ZipService zipService;
+    IncomingInvoiceZipExportService incomingInvoiceZipExportService;
 
     @javax.inject.Inject
     @XmlTransient
@@ -648,5 +712,29 @@ public class IncomingInvoiceDownloadManager {
     @XmlTransient
     CountryServiceForCurrentUser countryServiceForCurrentUser;
 
+    @javax.inject.Inject
+    @XmlTransient
+    UserService userService;
+
+    @javax.inject.Inject
+    @XmlTransient
+    PersonRepository personRepository;
+
+    @javax.inject.Inject
+    @XmlTransient
+    BackgroundService backgroundService;
+
+    @javax.inject.Inject
+    @XmlTransient
+    DocumentService documentService;
+
+    @javax.inject.Inject
+    @XmlTransient
+    DocumentTypeRepository documentTypeRepository;
+
+    @javax.inject.Inject
+    @XmlTransient
+    PaperclipRepository paperclipRepository;
+
 
 }
@@ -0,0 +1,177 @@
+package org.estatio.module.capex.app.invoicedownload;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.user.UserService;
+import org.apache.isis.applib.value.Blob;
+
+import org.estatio.module.base.platform.parallel.OrderedPipeline;
+import org.estatio.module.capex.platform.pdfmanipulator.PdfManipulator;
+
+/**
+ * Builds the zip of the stamped invoice PDFs for {@link IncomingInvoiceDownloadManager#downloadToPdfZipped(String)}
+ * and {@link IncomingInvoiceDownloadManager#attachPdfZipped(String)}.
+ *
+ * <p>
+ * The documents are extracted and stamped on a bounded pool of worker threads (an {@link OrderedPipeline}), each
+ * into a temporary file, and written to the zip (itself a temporary file) in order, as soon as they are ready; no
+ * more than twice as many documents as there are threads are ever pending, so the heap used does not grow with the
+ * number of invoices.
+ * </p>
+ *
+ * <p>
+ * The exports currently being built for a user can be {@link #getExportsInProgressFor(String) listed}, as progress
+ * for long exports run in the background.
+ * </p>
+ *
+ * <p>
+ * Configured using <tt>estatio.capex.invoiceDownload.maxThreads</tt> (defaults to the number of available
+ * processors, at most 4).
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class IncomingInvoiceZipExportService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IncomingInvoiceZipExportService.class);
+
+    static final String KEY_MAX_THREADS = "estatio.capex.invoiceDownload.maxThreads";
+
+    /**
+     * An export being built.
+     */
+    public static class Progress {
+
+        private final String userName;
+        private final String fileName;
+        private final int total;
+        private final long startedAt;
+        private final AtomicInteger written = new AtomicInteger();
+
+        Progress(final String userName, final String fileName, final int total) {
+            this.userName = userName;
+            this.fileName = fileName;
+            this.total = total;
+            this.startedAt = System.currentTimeMillis();
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getWritten() {
+            return written.get();
+        }
+
+        public long getElapsedMillis() {
+            return System.currentTimeMillis() - startedAt;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s: %d of %d documents, %d s",
+                    fileName, getWritten(), total, getElapsedMillis() / 1000);
+        }
+    }
+
+    private final List<Progress> exportsInProgress = new CopyOnWriteArrayList<>();
+
+    private OrderedPipeline pipeline;
+
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        pipeline = new OrderedPipeline("invoice-zip", OrderedPipeline.maxThreads(properties, KEY_MAX_THREADS, 4));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    /**
+     * One zip entry per preparer, named after its document, in the order of the preparers.
+     */
+    Blob export(final List<DocumentPreparer> preparers, final String fileName) throws IOException {
+
+        final Progress progress = new Progress(userService.getUser().getName(), fileName, preparers.size());
+        exportsInProgress.add(progress);
+        final File zipFile = File.createTempFile("invoice-download", ".zip");
+        try {
+            final Iterator<Callable<File>> stampings = preparers.stream()
+                    .map(preparer -> preparer.stampingUsing(pdfManipulator))
+                    .iterator();
+            final Iterator<DocumentPreparer> entries = preparers.iterator();
+            try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+                pipeline.run(
+                        stampings,
+                        file -> {
+                            try {
+                                zos.putNextEntry(new ZipEntry(entries.next().getDocumentName()));
+                                Files.copy(file.toPath(), zos);
+                                zos.closeEntry();
+                            } finally {
+                                Files.deleteIfExists(file.toPath());
+                            }
+                            progress.written.incrementAndGet();
+                        },
+                        file -> file.delete());
+            }
+            LOG.info("Invoice download {}: {} documents, {} bytes in {} ms",
+                    fileName, progress.getWritten(), zipFile.length(), progress.getElapsedMillis());
+            return new Blob(fileName, "application/zip", Files.readAllBytes(zipFile.toPath()));
+        } finally {
+            exportsInProgress.remove(progress);
+            Files.deleteIfExists(zipFile.toPath());
+        }
+    }
+
+    /**
+     * Of the exports currently being built, those started by the user.
+     */
+    @Programmatic
+    public List<Progress> getExportsInProgressFor(final String userName) {
+        return exportsInProgress.stream()
+                .filter(progress -> progress.getUserName().equals(userName))
+                .collect(Collectors.toList());
+    }
+
+    @Inject
+    PdfManipulator pdfManipulator;
+
+    @Inject
+    UserService userService;
+
+}
@@ -7,6 +7,7 @@ import java.util.stream.Collectors;
 import javax.inject.Inject;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 import org.datanucleus.query.typesafe.TypesafeQuery;
@@ -25,6 +26,7 @@ import org.incode.module.document.dom.impl.paperclips.Paperclip;
 import org.incode.module.document.dom.impl.paperclips.PaperclipRepository;
 
 import org.estatio.module.asset.dom.Property;
+import org.estatio.module.base.dom.apptenancy.ApplicationTenancyQueryService;
 import org.estatio.module.capex.dom.documents.IncomingDocumentRepository;
 import org.estatio.module.capex.dom.invoice.approval.IncomingInvoiceApprovalState;
 import org.estatio.module.capex.dom.invoice.approval.IncomingInvoiceApprovalStateTransitionType;
@@ -116,6 +118,27 @@ public class IncomingInvoiceRepository {
         return incomingInvoices;
     }
 
+    /**
+     * As {@link #findByAtPathPrefixesAndApprovalState(List, IncomingInvoiceApprovalState)}, but only those invoices
+     * also visible to the current user are loaded.
+     */
+    @Programmatic
+    public List<IncomingInvoice> findByAtPathPrefixesAndApprovalStateVisibleToCurrentUser(
+            final List<String> atPathPrefixes,
+            final IncomingInvoiceApprovalState approvalState) {
+        final List<IncomingInvoice> incomingInvoices = Lists.newArrayList();
+        for (final String atPathPrefix : atPathPrefixes) {
+            incomingInvoices.addAll(applicationTenancyQueryService.allMatchesVisibleToCurrentUser(
+                    IncomingInvoice.class,
+                    "approvalState == :approvalState && applicationTenancyPath.startsWith(:atPathPrefix)",
+                    ImmutableMap.of(
+                            "atPathPrefix", atPathPrefix,
+                            "approvalState", approvalState),
+                    null));
+        }
+        return incomingInvoices;
+    }
+
     @Programmatic
     List<IncomingInvoice> findByApprovalStateAndPaymentMethod(
             final IncomingInvoiceApprovalState approvalState,
@@ -511,5 +534,7 @@ public class IncomingInvoiceRepository {
     CurrencyRepository currencyRepository;
     @Inject
     InvoiceRepository invoiceRepository;
+    @Inject
+    ApplicationTenancyQueryService applicationTenancyQueryService;
 
 }
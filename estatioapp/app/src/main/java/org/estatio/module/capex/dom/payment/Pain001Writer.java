@@ -0,0 +1,145 @@
+package org.estatio.module.capex.dom.payment;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import iso.std.iso._20022.tech.xsd.pain_001_001.CreditTransferTransactionInformation10;
+import iso.std.iso._20022.tech.xsd.pain_001_001.Document;
+import iso.std.iso._20022.tech.xsd.pain_001_001.GroupHeader32;
+
+/**
+ * Writes the pain.001 (SEPA credit transfer initiation) XML for a sequence of {@link CreditTransfer}s, one at a
+ * time, rather than building the JAXB object graph of all of them first.
+ *
+ * <p>
+ * The marshaller (normally {@link org.apache.isis.applib.services.jaxb.JaxbService#toXml(Object)}) is only ever
+ * given the envelope with at most one transaction: each transaction is marshalled within the envelope, and the
+ * lines of its <tt>CdtTrfTxInf</tt> element are cut out and spooled to a temporary file, while the number of
+ * transactions and the control sum are accumulated. The envelope, now with its group header complete, is then
+ * marshalled once more with a single empty transaction, in place of which the spooled transactions are copied.
+ * </p>
+ *
+ * <p>
+ * Because (formatted) JAXB output of a list is the concatenation of the output of each of its elements, the result
+ * is the same, byte for byte, as that of marshalling the whole document in one go.
+ * </p>
+ */
+class Pain001Writer {
+
+    private static final Pattern TX_START = Pattern.compile("<(\\w+:)?CdtTrfTxInf[\\s/>]");
+    private static final Pattern TX_END = Pattern.compile("</(\\w+:)?CdtTrfTxInf>|<(\\w+:)?CdtTrfTxInf/>");
+
+    private final Function<Document, String> marshaller;
+
+    Pain001Writer(final Function<Document, String> marshaller) {
+        this.marshaller = marshaller;
+    }
+
+    /**
+     * @param envelope - the document, complete except for the number of transactions and control sum of its
+     *                 group header, and with a single payment information block but no transactions yet
+     * @param transfers - the transfers, in the order in which to write them
+     */
+    void write(
+            final Document envelope,
+            final Iterator<CreditTransfer> transfers,
+            final Writer writer) throws IOException {
+
+        final GroupHeader32 grpHdr = envelope.getCstmrCdtTrfInitn().getGrpHdr();
+        final List<CreditTransferTransactionInformation10> cdtTrfTxInfList =
+                envelope.getCstmrCdtTrfInitn().getPmtInves().get(0).getCdtTrfTxInves();
+        cdtTrfTxInfList.clear();
+
+        final File spoolFile = File.createTempFile("pain001", ".xml");
+        try {
+            int nbOfTxs = 0;
+            BigDecimal ctrlSum = BigDecimal.ZERO;
+            try (Writer spool = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(spoolFile), StandardCharsets.UTF_8))) {
+                while (transfers.hasNext()) {
+                    final CreditTransfer transfer = transfers.next();
+                    cdtTrfTxInfList.add(transfer.asXml());
+                    final String xml = marshaller.apply(envelope);
+                    cdtTrfTxInfList.clear();
+
+                    final int start = transactionStart(xml);
+                    spool.write(xml, start, transactionEnd(xml) - start);
+
+                    nbOfTxs++;
+                    ctrlSum = ctrlSum.add(transfer.getAmount());
+                }
+            }
+
+            grpHdr.setNbOfTxs("" + nbOfTxs);
+            grpHdr.setCtrlSum(ctrlSum);
+
+            if (nbOfTxs == 0) {
+                writer.write(marshaller.apply(envelope));
+                return;
+            }
+
+            cdtTrfTxInfList.add(new CreditTransferTransactionInformation10());
+            final String xml = marshaller.apply(envelope);
+            cdtTrfTxInfList.clear();
+
+            final int start = transactionStart(xml);
+            final int end = transactionEnd(xml);
+            writer.write(xml, 0, start);
+            try (Reader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(spoolFile), StandardCharsets.UTF_8))) {
+                final char[] buf = new char[8192];
+                int read;
+                while ((read = reader.read(buf)) != -1) {
+                    writer.write(buf, 0, read);
+                }
+            }
+            writer.write(xml, end, xml.length() - end);
+        } finally {
+            Files.deleteIfExists(spoolFile.toPath());
+        }
+    }
+
+    /**
+     * The start of the line on which the (only) transaction starts, so including its indentation.
+     */
+    static int transactionStart(final String xml) {
+        final Matcher matcher = TX_START.matcher(xml);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No CdtTrfTxInf element found");
+        }
+        return xml.lastIndexOf('\n', matcher.start()) + 1;
+    }
+
+    /**
+     * The end of the line on which the (only) transaction ends, so including its line separator.
+     */
+    static int transactionEnd(final String xml) {
+        final Matcher matcher = TX_END.matcher(xml);
+        int end = -1;
+        while (matcher.find()) {
+            end = matcher.end();
+        }
+        if (end == -1) {
+            throw new IllegalStateException("No CdtTrfTxInf element found");
+        }
+        final int newline = xml.indexOf('\n', end);
+        return newline == -1 ? xml.length() : newline + 1;
+    }
+
+}
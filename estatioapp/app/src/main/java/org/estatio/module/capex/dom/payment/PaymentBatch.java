@@ -1,26 +1,21 @@
 package org.estatio.module.capex.dom.payment;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.MalformedURLException;
-import java.net.URI;
-import java.nio.file.Files;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
-import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -41,7 +36,9 @@ import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
 
 import org.joda.time.DateTime;
 
@@ -60,6 +57,7 @@ import org.apache.isis.applib.annotation.Property;
 import org.apache.isis.applib.annotation.Publishing;
 import org.apache.isis.applib.annotation.SemanticsOf;
 import org.apache.isis.applib.annotation.Where;
+import org.apache.isis.applib.services.background.BackgroundService;
 import org.apache.isis.applib.services.factory.FactoryService;
 import org.apache.isis.applib.services.jaxb.JaxbService;
 import org.apache.isis.applib.services.linking.DeepLinkService;
@@ -72,18 +70,18 @@ import org.apache.isis.applib.value.Clob;
 import org.apache.isis.schema.utils.jaxbadapters.PersistentEntityAdapter;
 
 import org.isisaddons.module.excel.dom.ExcelService;
-import org.isisaddons.module.pdfbox.dom.service.PdfBoxService;
 import org.isisaddons.module.security.app.user.MeService;
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
 import org.isisaddons.module.security.dom.tenancy.HasAtPath;
 
-import org.incode.module.base.dom.MimeTypeData;
+import org.incode.module.document.dom.api.DocumentService;
+import org.incode.module.document.dom.impl.types.DocumentType;
+import org.incode.module.document.dom.impl.types.DocumentTypeRepository;
 
 import org.estatio.module.base.dom.UdoDomainObject2;
 import org.estatio.module.capex.app.credittransfer.CreditTransferExportLine;
 import org.estatio.module.capex.app.credittransfer.CreditTransferExportService;
 import org.estatio.module.capex.app.paymentline.PaymentLineForExcelExportV1;
-import org.estatio.module.capex.dom.documents.LookupAttachedPdfService;
 import org.estatio.module.capex.dom.invoice.IncomingInvoice;
 import org.estatio.module.capex.dom.invoice.IncomingInvoiceType;
 import org.estatio.module.capex.dom.invoice.approval.IncomingInvoiceApprovalStateTransitionType;
@@ -96,9 +94,6 @@ import org.estatio.module.capex.dom.state.StateTransitionService;
 import org.estatio.module.capex.dom.state.StateTransitionType;
 import org.estatio.module.capex.dom.state.Stateful;
 import org.estatio.module.capex.dom.util.InvoicePageRange;
-import org.estatio.module.capex.platform.pdfmanipulator.ExtractSpec;
-import org.estatio.module.capex.platform.pdfmanipulator.PdfManipulator;
-import org.estatio.module.capex.platform.pdfmanipulator.Stamp;
 import org.estatio.module.financial.dom.BankAccount;
 import org.estatio.module.invoice.dom.DocumentTypeData;
 import org.estatio.module.party.dom.Person;
@@ -115,7 +110,6 @@ import iso.std.iso._20022.tech.xsd.pain_001_001.GroupHeader32;
 import iso.std.iso._20022.tech.xsd.pain_001_001.PartyIdentification32;
 import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentInstructionInformation3;
 import iso.std.iso._20022.tech.xsd.pain_001_001.PaymentMethod3Code;
-import static java.util.stream.Collectors.groupingBy;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -470,63 +464,75 @@ public class PaymentBatch extends UdoDomainObject2<PaymentBatch> implements Stat
     }
 
     private List<CreditTransfer> doGetCreditTransfers() {
-        List<CreditTransfer> transfers = Lists.newArrayList();
-
-        final Map<BankAccount, List<PaymentLine>> lineBySeller =
-                Lists.newArrayList(getLines()).stream()
-                        .sorted(Comparator.comparing(PaymentLine::getSequence))
-                        .collect(groupingBy(PaymentLine::getCreditorBankAccount,
-                                TreeMap::new,
-                                toSortedList(Comparator.comparing(PaymentLine::getSequence))));
-
-        for (Map.Entry<BankAccount, List<PaymentLine>> linesByBankAccount : lineBySeller.entrySet()) {
-            final CreditTransfer creditTransfer = new CreditTransfer();
-            creditTransfer.setBatch(this);
-
-            final BankAccount bankAccount = linesByBankAccount.getKey();
-            final List<PaymentLine> lines = linesByBankAccount.getValue();
+        return Lists.newArrayList(creditTransfersInOrder());
+    }
 
-            final String sequenceNums = extractAndJoin(lines, line -> "" + line.getSequence(), "-");
-            final String endToEndId = String.format("%s-%s", getId(), sequenceNums);
-            creditTransfer.setEndToEndId(endToEndId);
+    /**
+     * The credit transfers, one per creditor bank account (in order of bank account), each of the lines to that bank
+     * account (in order of sequence).
+     *
+     * <p>
+     * The lines are sorted once, and each transfer is only created as it is iterated over.
+     * </p>
+     */
+    Iterator<CreditTransfer> creditTransfersInOrder() {
+        final List<PaymentLine> sortedLines = Lists.newArrayList(getLines());
+        sortedLines.sort(Comparator.comparing(PaymentLine::getCreditorBankAccount)
+                .thenComparing(PaymentLine::getSequence));
+        final PeekingIterator<PaymentLine> lineIterator = Iterators.peekingIterator(sortedLines.iterator());
+
+        return new Iterator<CreditTransfer>() {
+            @Override
+            public boolean hasNext() {
+                return lineIterator.hasNext();
+            }
 
-            creditTransfer.setSellerBankAccount(bankAccount);
+            @Override
+            public CreditTransfer next() {
+                final BankAccount bankAccount = lineIterator.peek().getCreditorBankAccount();
+                final List<PaymentLine> lines = Lists.newArrayList();
+                while (lineIterator.hasNext() && lineIterator.peek().getCreditorBankAccount().compareTo(bankAccount) == 0) {
+                    lines.add(lineIterator.next());
+                }
+                return newCreditTransfer(bankAccount, lines);
+            }
+        };
+    }
 
-            creditTransfer.setLines(lines);
+    private CreditTransfer newCreditTransfer(final BankAccount bankAccount, final List<PaymentLine> lines) {
+        final CreditTransfer creditTransfer = new CreditTransfer();
+        creditTransfer.setBatch(this);
 
-            final BigDecimal amount = lines.stream()
-                    .map(PaymentLine::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            if (!lines.isEmpty()) {
-                // should always be non-empty, just playing safe...
-                final PaymentLine firstLine = lines.get(0);
-                creditTransfer.setCurrency(firstLine.getCurrency());
-            }
-            creditTransfer.setAmount(amount);
+        final String sequenceNums = extractAndJoin(lines, line -> "" + line.getSequence(), "-");
+        final String endToEndId = String.format("%s-%s", getId(), sequenceNums);
+        creditTransfer.setEndToEndId(endToEndId);
 
-            //  -PM-19229-12-2016-2-RO
-            //  -2017-01-04-RO
-            //  -L 17-01-302-RO
-            //  -FC-1702CS1-0002-RO
-            //  -AF1T2017ASL-RO
-            final String remittanceInformation = extractAndJoin(lines, line -> line.getInvoice().getInvoiceNumber() + (line.getInvoice().getCommunicationNumber() != null ? " (" + line.getInvoice().getCommunicationNumber() + ")" : ""), ";");
-            creditTransfer.setRemittanceInformation(remittanceInformation);
+        creditTransfer.setSellerBankAccount(bankAccount);
 
-            creditTransfer.setSeller(bankAccount.getOwner());
-            creditTransfer.setSellerPostalAddressCountry(ctryFor(bankAccount.getOwner()));
+        creditTransfer.setLines(lines);
 
-            transfers.add(creditTransfer);
+        final BigDecimal amount = lines.stream()
+                .map(PaymentLine::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (!lines.isEmpty()) {
+            // should always be non-empty, just playing safe...
+            final PaymentLine firstLine = lines.get(0);
+            creditTransfer.setCurrency(firstLine.getCurrency());
         }
+        creditTransfer.setAmount(amount);
 
-        return transfers;
-    }
+        //  -PM-19229-12-2016-2-RO
+        //  -2017-01-04-RO
+        //  -L 17-01-302-RO
+        //  -FC-1702CS1-0002-RO
+        //  -AF1T2017ASL-RO
+        final String remittanceInformation = extractAndJoin(lines, line -> line.getInvoice().getInvoiceNumber() + (line.getInvoice().getCommunicationNumber() != null ? " (" + line.getInvoice().getCommunicationNumber() + ")" : ""), ";");
+        creditTransfer.setRemittanceInformation(remittanceInformation);
 
-    private static <T> Collector<T, ?, List<T>> toSortedList(Comparator<? super T> c) {
-        return Collectors.collectingAndThen(
-                Collectors.toCollection(ArrayList::new), l -> {
-                    l.sort(c);
-                    return l;
-                });
+        creditTransfer.setSeller(bankAccount.getOwner());
+        creditTransfer.setSellerPostalAddressCountry(ctryFor(bankAccount.getOwner()));
+
+        return creditTransfer;
     }
 
     String extractAndJoin(final List<PaymentLine> lines, final Function<PaymentLine, String> func, final String separator) {
@@ -587,10 +593,10 @@ public class PaymentBatch extends UdoDomainObject2<PaymentBatch> implements Stat
 
         @Action(semantics = SemanticsOf.SAFE)
         @ActionLayout(contributed = Contributed.AS_ACTION)
-        public Clob act(final String documentName) {
-            Document document = paymentBatch.convertToXmlDocument();
-            String xml = jaxbService.toXml(document);
-            return new Clob(documentName, "text/xml", xml);
+        public Clob act(final String documentName) throws IOException {
+            final StringWriter writer = new StringWriter();
+            paymentBatch.writeXmlDocument(jaxbService::toXml, writer);
+            return new Clob(documentName, "text/xml", writer.toString());
         }
 
         public String disableAct() {
@@ -619,103 +625,7 @@ public class PaymentBatch extends UdoDomainObject2<PaymentBatch> implements Stat
             @ParameterLayout(named = "How many first pages of each invoice's PDF?") final Integer numFirstPages,
             @ParameterLayout(named = "How many final pages of each invoice's PDF?") final Integer numLastPages) throws IOException {
 
-        final List<File> pdfFiles = Lists.newArrayList();
-
-        final List<CreditTransfer> transfers = this.getTransfers();
-        for (CreditTransfer transfer : transfers) {
-            final List<PaymentLine> lines = transfer.getLines();
-
-            for (final PaymentLine line : lines) {
-                final IncomingInvoice invoice = line.getInvoice();
-
-                final BankAccount bankAccount = invoice.getBankAccount();
-
-                final Optional<org.incode.module.document.dom.impl.docs.Document> invoiceDocIfAny =
-                        lookupAttachedPdfService.lookupIncomingInvoicePdfFrom(invoice);
-
-                if (invoiceDocIfAny.isPresent()) {
-                    final org.incode.module.document.dom.impl.docs.Document invoiceDoc = invoiceDocIfAny.get();
-                    final byte[] invoiceDocBytes = invoiceDoc.asBytes();
-
-                    final Optional<org.incode.module.document.dom.impl.docs.Document> ibanProofDocIfAny = lookupAttachedPdfService
-                            .lookupIbanProofPdfFrom(bankAccount);
-
-                    List<String> leftLines = Lists.newArrayList();
-                    leftLines.add("xfer id: " + transfer.getEndToEndId() + " / " + line.getSequence());
-                    for (IncomingInvoice.ApprovalString approvalString : invoice.getApprovals()) {
-                        leftLines.add(String.format(
-                                "approved by: %s",
-                                approvalString.getCompletedBy()));
-                        leftLines.add("on: " + approvalString.getCompletedOn());
-                    }
-
-                    final List<String> rightLines = Lists.newArrayList();
-                    rightLines.add(String.format("debtor IBAN: %s", line.getBatch().getDebtorBankAccount().getIban()));
-                    rightLines.add(String.format("crdtor IBAN: %s", line.getCreditorBankAccount().getIban()));
-                    rightLines.add(String.format("gross Amt  : %s", new DecimalFormat("0.00").format(line.getAmount())));
-
-                    boolean attachProof = false;
-                    final String proof;
-                    if (ibanProofDocIfAny.isPresent()) {
-                        final org.incode.module.document.dom.impl.docs.Document ibanProofDoc = ibanProofDocIfAny.get();
-                        if (DocumentTypeData.IBAN_PROOF.isDocTypeFor(ibanProofDoc)) {
-                            proof = "Separate IBAN proof (next page)";
-                            attachProof = true;
-                        } else {
-                            proof = "Invoice used as IBAN proof";
-                        }
-                    } else {
-                        proof = "No IBAN proof";
-                    }
-                    rightLines.add(proof);
-
-                    URI uri = deepLinkService.deepLinkFor(invoice);
-
-                    final Stamp stamp = new Stamp(leftLines, rightLines, uri.toString());
-                    final byte[] extractedInvoiceDocBytes =
-                            pdfManipulator.extractAndStamp(invoiceDocBytes, new ExtractSpec(numFirstPages, numLastPages), stamp);
-
-                    appendTempFile(extractedInvoiceDocBytes, documentName, pdfFiles);
-
-                    if (attachProof) {
-                        final org.incode.module.document.dom.impl.docs.Document ibanProofDoc = ibanProofDocIfAny.get();
-                        final byte[] ibanProofBytes = ibanProofDoc.asBytes();
-                        final byte[] firstPageIbanProofDocBytes =
-                                pdfManipulator.extract(ibanProofBytes, ExtractSpec.FIRST_PAGE_ONLY);
-
-                        appendTempFile(firstPageIbanProofDocBytes, documentName, pdfFiles);
-                    }
-                }
-            }
-        }
-
-        byte[] pdfMergedBytes = pdfBoxService.merge(pdfFiles);
-
-        pdfFiles.stream().forEach(this::cleanup);
-
-        return new Blob(documentName, MimeTypeData.APPLICATION_PDF.asStr(), pdfMergedBytes);
-    }
-
-    void cleanup(File tempFile) {
-        if (tempFile != null) {
-            try {
-                Files.delete(tempFile.toPath());
-                tempFile.delete();
-            } catch (Exception e) {
-                // ignore
-            }
-        }
-    }
-
-    void appendTempFile(final byte[] pdfBytes, final String documentName, final List<File> pdfFiles)
-            throws IOException {
-        File tempFile = File.createTempFile(documentName, "pdf");
-
-        final FileOutputStream fos = new FileOutputStream(tempFile);
-        fos.write(pdfBytes);
-        fos.close();
-
-        pdfFiles.add(tempFile);
+        return paymentBatchReviewPdfService.build(this, documentName, numFirstPages, numLastPages);
     }
 
     public String default0DownloadReviewPdf() {
@@ -745,6 +655,55 @@ public class PaymentBatch extends UdoDomainObject2<PaymentBatch> implements Stat
         return null;
     }
 
+    /**
+     * Produces the same PDF as {@link #downloadReviewPdf(String, Integer, Integer)}, but in the background, attaching
+     * it to this batch once done.
+     */
+    @Action(semantics = SemanticsOf.IDEMPOTENT)
+    public PaymentBatch attachReviewPdfInBackground(
+            final String documentName,
+            @ParameterLayout(named = "How many first pages of each invoice's PDF?") final Integer numFirstPages,
+            @ParameterLayout(named = "How many final pages of each invoice's PDF?") final Integer numLastPages) {
+        backgroundService.execute(this).attachReviewPdf(documentName, numFirstPages, numLastPages);
+        return this;
+    }
+
+    public String default0AttachReviewPdfInBackground() {
+        return default0DownloadReviewPdf();
+    }
+
+    public Integer default1AttachReviewPdfInBackground() {
+        return default1DownloadReviewPdf();
+    }
+
+    public List<Integer> choices1AttachReviewPdfInBackground() {
+        return choices1DownloadReviewPdf();
+    }
+
+    public Integer default2AttachReviewPdfInBackground() {
+        return default2DownloadReviewPdf();
+    }
+
+    public List<Integer> choices2AttachReviewPdfInBackground() {
+        return choices2DownloadReviewPdf();
+    }
+
+    public String disableAttachReviewPdfInBackground() {
+        return disableDownloadReviewPdf();
+    }
+
+    @Action(hidden = Where.EVERYWHERE) // just so can invoke through background service
+    public PaymentBatch attachReviewPdf(
+            final String documentName,
+            final Integer numFirstPages,
+            final Integer numLastPages) throws IOException {
+        final Blob blob = paymentBatchReviewPdfService.build(this, documentName, numFirstPages, numLastPages);
+        final DocumentType documentType = DocumentTypeData.PAYMENT_BATCH_REVIEW.findUsing(documentTypeRepository);
+        documentService.createAndAttachDocumentForBlob(
+                documentType, getApplicationTenancy().getPath(), documentName, blob, null, this);
+        return this;
+    }
+
     @Action(
             semantics = SemanticsOf.SAFE
     )
@@ -824,16 +783,19 @@ public class PaymentBatch extends UdoDomainObject2<PaymentBatch> implements Stat
     }
 
     @Inject
-    PdfBoxService pdfBoxService;
+    DeepLinkService deepLinkService;
 
     @Inject
-    LookupAttachedPdfService lookupAttachedPdfService;
+    PaymentBatchReviewPdfService paymentBatchReviewPdfService;
 
     @Inject
-    DeepLinkService deepLinkService;
+    BackgroundService backgroundService;
+
+    @Inject
+    DocumentService documentService;
 
     @Inject
-    PdfManipulator pdfManipulator;
+    DocumentTypeRepository documentTypeRepository;
 
     @Programmatic
     public String fileNameWithSuffix(String suffix) {
@@ -850,6 +812,31 @@ public class PaymentBatch extends UdoDomainObject2<PaymentBatch> implements Stat
 
         final List<CreditTransfer> transfers = getTransfers();
 
+        final Document document = newXmlEnvelope();
+        final GroupHeader32 grpHdr = document.getCstmrCdtTrfInitn().getGrpHdr();
+        grpHdr.setNbOfTxs("" + transfers.size());
+        grpHdr.setCtrlSum(ctrlSum());
+
+        final List<CreditTransferTransactionInformation10> cdtTrfTxInfList =
+                document.getCstmrCdtTrfInitn().getPmtInves().get(0).getCdtTrfTxInves();
+        cdtTrfTxInfList.addAll(transfers.stream().map(CreditTransfer::asXml).collect(Collectors.toList()));
+
+        return document;
+    }
+
+    /**
+     * Writes the same XML as marshalling {@link #convertToXmlDocument()}, but walking the lines only once and
+     * without holding all of the transactions in memory; see {@link Pain001Writer}.
+     */
+    void writeXmlDocument(final Function<Document, String> marshaller, final Writer writer) throws IOException {
+        new Pain001Writer(marshaller).write(newXmlEnvelope(), creditTransfersInOrder(), writer);
+    }
+
+    /**
+     * The document without any transactions, nor their number and control sum.
+     */
+    private Document newXmlEnvelope() {
+
         Document document = new Document();
         CustomerCreditTransferInitiationV03 cstmrCdtTrfInitn = new CustomerCreditTransferInitiationV03();
         document.setCstmrCdtTrfInitn(cstmrCdtTrfInitn);
@@ -858,8 +845,6 @@ public class PaymentBatch extends UdoDomainObject2<PaymentBatch> implements Stat
         cstmrCdtTrfInitn.setGrpHdr(grpHdr);
         grpHdr.setMsgId(msgId());
         grpHdr.setCreDtTm(newDateTime(getCreatedOn()));
-        grpHdr.setNbOfTxs("" + transfers.size());
-        grpHdr.setCtrlSum(ctrlSum());
         grpHdr.setInitgPty(newPartyIdentification32ForDebtorOwner());
 
         List<PaymentInstructionInformation3> pmtInfList = cstmrCdtTrfInitn.getPmtInves();
@@ -875,9 +860,6 @@ public class PaymentBatch extends UdoDomainObject2<PaymentBatch> implements Stat
         pmtInf.setDbtrAcct(cashAccountFor(getDebtorBankAccount()));
         pmtInf.setDbtrAgt(agentFor(getDebtorBankAccount()));
 
-        final List<CreditTransferTransactionInformation10> cdtTrfTxInfList = pmtInf.getCdtTrfTxInves();
-        cdtTrfTxInfList.addAll(transfers.stream().map(CreditTransfer::asXml).collect(Collectors.toList()));
-
         return document;
     }
 
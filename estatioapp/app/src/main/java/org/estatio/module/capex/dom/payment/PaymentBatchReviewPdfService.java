@@ -0,0 +1,314 @@
+package org.estatio.module.capex.dom.payment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.linking.DeepLinkService;
+import org.apache.isis.applib.value.Blob;
+
+import org.incode.module.base.dom.MimeTypeData;
+import org.incode.module.document.dom.impl.docs.Document;
+import org.incode.module.document.dom.impl.docs.DocumentSort;
+import org.incode.module.document.spi.minio.ExternalUrlDownloadService;
+
+import org.estatio.module.base.platform.parallel.OrderedPipeline;
+import org.estatio.module.capex.dom.documents.LookupAttachedPdfService;
+import org.estatio.module.capex.dom.invoice.IncomingInvoice;
+import org.estatio.module.capex.platform.pdfmanipulator.ExtractSpec;
+import org.estatio.module.capex.platform.pdfmanipulator.IncrementalPdfMerger;
+import org.estatio.module.capex.platform.pdfmanipulator.PdfManipulator;
+import org.estatio.module.capex.platform.pdfmanipulator.Stamp;
+import org.estatio.module.financial.dom.BankAccount;
+import org.estatio.module.invoice.dom.DocumentTypeData;
+
+/**
+ * Builds the review PDF of a {@link PaymentBatch}: for each of its {@link PaymentLine line}s (in order of credit
+ * transfer), the stamped first/last pages of the invoice, followed (if there is a separate one) by the first page of
+ * the IBAN proof.
+ *
+ * <p>
+ * The stamps are worked out in the caller's session, but the invoice PDFs are downloaded (if stored externally),
+ * extracted and stamped on a bounded pool of worker threads (an {@link OrderedPipeline}), each into a temporary file. An invoice (or IBAN proof)
+ * that cannot be obtained is replaced by a stamped placeholder page saying so, rather than left out.
+ * </p>
+ *
+ * <p>
+ * Completed lines are merged in order while later ones are still being worked on; no more than twice as many lines
+ * as there are threads are ever pending. The documents being parsed and merged buffer their content in scratch files
+ * beyond a small amount of memory, and the {@link IncrementalPdfMerger merger} only keeps a bounded number of
+ * documents open, so the heap used while building does not grow with the size of the batch. The resulting PDF itself
+ * is returned as a {@link Blob}, so is held in memory.
+ * </p>
+ *
+ * <p>
+ * Configured using <tt>estatio.capex.reviewPdf.maxThreads</tt> (defaults to the number of available processors,
+ * at most 4) and <tt>estatio.capex.reviewPdf.maxMainMemoryBytes</tt> (per document, default 4MB).
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class PaymentBatchReviewPdfService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PaymentBatchReviewPdfService.class);
+
+    static final String KEY_MAX_THREADS = "estatio.capex.reviewPdf.maxThreads";
+    static final String KEY_MAX_MAIN_MEMORY_BYTES = "estatio.capex.reviewPdf.maxMainMemoryBytes";
+
+    static final String INVOICE_NOT_OBTAINED = "Invoice PDF could not be obtained";
+    static final String IBAN_PROOF_NOT_OBTAINED = "IBAN proof PDF could not be obtained";
+
+    private OrderedPipeline pipeline;
+    private long maxMainMemoryBytes;
+
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        pipeline = new OrderedPipeline("review-pdf", OrderedPipeline.maxThreads(properties, KEY_MAX_THREADS, 4));
+        final String maxMainMemoryBytesValue = properties.get(KEY_MAX_MAIN_MEMORY_BYTES);
+        maxMainMemoryBytes = maxMainMemoryBytesValue != null
+                ? Long.parseLong(maxMainMemoryBytesValue)
+                : 4L * 1024 * 1024;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    /**
+     * The work for a single line, described by values only, so that it can be done outside of the session.
+     */
+    static class LinePart {
+
+        private final String documentName;
+        private final Supplier<byte[]> invoiceDocBytes;
+        private final ExtractSpec extractSpec;
+        private final Stamp stamp;
+        private final Supplier<byte[]> ibanProofDocBytesIfAny;
+
+        LinePart(
+                final String documentName,
+                final Supplier<byte[]> invoiceDocBytes,
+                final ExtractSpec extractSpec,
+                final Stamp stamp,
+                final Supplier<byte[]> ibanProofDocBytesIfAny) {
+            this.documentName = documentName;
+            this.invoiceDocBytes = invoiceDocBytes;
+            this.extractSpec = extractSpec;
+            this.stamp = stamp;
+            this.ibanProofDocBytesIfAny = ibanProofDocBytesIfAny;
+        }
+
+        List<File> render(
+                final PdfManipulator pdfManipulator,
+                final MemoryUsageSetting memoryUsageSetting) throws IOException {
+            final List<File> files = Lists.newArrayList();
+            final byte[] invoiceDocBytes = this.invoiceDocBytes.get();
+            if (invoiceDocBytes == null) {
+                LOG.warn("Could not obtain invoice PDF for {}; replaced by a placeholder page", stamp.getHyperlink());
+                files.add(writeTempFile(pdfManipulator.placeholder(INVOICE_NOT_OBTAINED, stamp)));
+            } else {
+                files.add(writeTempFile(
+                        pdfManipulator.extractAndStamp(invoiceDocBytes, extractSpec, stamp, memoryUsageSetting)));
+            }
+
+            if (ibanProofDocBytesIfAny != null) {
+                final byte[] ibanProofBytes = ibanProofDocBytesIfAny.get();
+                if (ibanProofBytes == null) {
+                    LOG.warn("Could not obtain IBAN proof PDF for {}; replaced by a placeholder page", stamp.getHyperlink());
+                    files.add(writeTempFile(pdfManipulator.placeholder(IBAN_PROOF_NOT_OBTAINED, null)));
+                } else {
+                    files.add(writeTempFile(pdfManipulator.extractAndStamp(
+                            ibanProofBytes, ExtractSpec.FIRST_PAGE_ONLY, null, memoryUsageSetting)));
+                }
+            }
+            return files;
+        }
+
+        private File writeTempFile(final byte[] pdfBytes) throws IOException {
+            final File tempFile = File.createTempFile(documentName, "pdf");
+            try (OutputStream os = new FileOutputStream(tempFile)) {
+                os.write(pdfBytes);
+            }
+            return tempFile;
+        }
+    }
+
+    @Programmatic
+    public Blob build(
+            final PaymentBatch paymentBatch,
+            final String documentName,
+            final Integer numFirstPages,
+            final Integer numLastPages) throws IOException {
+
+        final ExtractSpec extractSpec = new ExtractSpec(numFirstPages, numLastPages);
+        // lazily, so that the stamps are worked out only as the lines are submitted
+        final Iterator<LinePart> lineParts = paymentBatch.getTransfers().stream()
+                .flatMap(transfer -> transfer.getLines().stream()
+                        .map(line -> linePartFor(transfer, line, documentName, extractSpec)))
+                .filter(Objects::nonNull)
+                .iterator();
+        return build(documentName, lineParts);
+    }
+
+    Blob build(
+            final String documentName,
+            final Iterator<LinePart> lineParts) throws IOException {
+
+        final long start = System.currentTimeMillis();
+        final MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+
+        final Iterator<Callable<List<File>>> renderings = Iterators.transform(
+                lineParts,
+                linePart -> () -> linePart.render(pdfManipulator, memoryUsageSetting));
+        try (final IncrementalPdfMerger merger = new IncrementalPdfMerger(memoryUsageSetting)) {
+            pipeline.run(
+                    renderings,
+                    files -> {
+                        for (File file : files) {
+                            merger.append(file);
+                        }
+                    },
+                    PaymentBatchReviewPdfService::delete);
+
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            merger.save(baos);
+            LOG.info("Review PDF {}: {} documents, {} pages in {} ms",
+                    documentName, merger.getNumberOfDocuments(), merger.getNumberOfPages(),
+                    System.currentTimeMillis() - start);
+            return new Blob(documentName, MimeTypeData.APPLICATION_PDF.asStr(), baos.toByteArray());
+        }
+    }
+
+    private static void delete(final List<File> files) {
+        for (File file : files) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private LinePart linePartFor(
+            final CreditTransfer transfer,
+            final PaymentLine line,
+            final String documentName,
+            final ExtractSpec extractSpec) {
+
+        final IncomingInvoice invoice = line.getInvoice();
+        final BankAccount bankAccount = invoice.getBankAccount();
+
+        final Optional<Document> invoiceDocIfAny = lookupAttachedPdfService.lookupIncomingInvoicePdfFrom(invoice);
+        if (!invoiceDocIfAny.isPresent()) {
+            return null;
+        }
+        final Document invoiceDoc = invoiceDocIfAny.get();
+
+        final Optional<Document> ibanProofDocIfAny = lookupAttachedPdfService.lookupIbanProofPdfFrom(bankAccount);
+
+        final List<String> leftLines = Lists.newArrayList();
+        leftLines.add("xfer id: " + transfer.getEndToEndId() + " / " + line.getSequence());
+        for (IncomingInvoice.ApprovalString approvalString : invoice.getApprovals()) {
+            leftLines.add(String.format(
+                    "approved by: %s",
+                    approvalString.getCompletedBy()));
+            leftLines.add("on: " + approvalString.getCompletedOn());
+        }
+
+        final List<String> rightLines = Lists.newArrayList();
+        rightLines.add(String.format("debtor IBAN: %s", line.getBatch().getDebtorBankAccount().getIban()));
+        rightLines.add(String.format("crdtor IBAN: %s", line.getCreditorBankAccount().getIban()));
+        rightLines.add(String.format("gross Amt  : %s", new DecimalFormat("0.00").format(line.getAmount())));
+
+        Document ibanProofDocToAttach = null;
+        final String proof;
+        if (ibanProofDocIfAny.isPresent()) {
+            final Document ibanProofDoc = ibanProofDocIfAny.get();
+            if (DocumentTypeData.IBAN_PROOF.isDocTypeFor(ibanProofDoc)) {
+                proof = "Separate IBAN proof (next page)";
+                ibanProofDocToAttach = ibanProofDoc;
+            } else {
+                proof = "Invoice used as IBAN proof";
+            }
+        } else {
+            proof = "No IBAN proof";
+        }
+        rightLines.add(proof);
+
+        final URI uri = deepLinkService.deepLinkFor(invoice);
+
+        final Stamp stamp = new Stamp(leftLines, rightLines, uri.toString());
+        return new LinePart(
+                documentName,
+                bytesOf(invoiceDoc),
+                extractSpec,
+                stamp,
+                ibanProofDocToAttach != null ? bytesOf(ibanProofDocToAttach) : null);
+    }
+
+    /**
+     * Externally stored documents are downloaded by the worker thread; the content of all others is read now,
+     * while in the session. A document that cannot be downloaded is supplied as <tt>null</tt> (and replaced by a
+     * placeholder page).
+     */
+    private Supplier<byte[]> bytesOf(final Document document) {
+        if (document.getBlobBytes() == null && document.getSort() == DocumentSort.EXTERNAL_BLOB) {
+            final String name = document.getName();
+            final String externalUrl = document.getExternalUrl();
+            return () -> {
+                try {
+                    final Blob blob =
+                            externalUrlDownloadService.downloadAsBlob(name, externalUrl);
+                    return blob != null ? blob.getBytes() : null;
+                } catch (RuntimeException e) {
+                    // eg. failing to warn the user, there being no session on this thread
+                    LOG.warn("Could not download {} from {}", name, externalUrl, e);
+                    return null;
+                }
+            };
+        }
+        final byte[] bytes = document.asBytes();
+        return () -> bytes;
+    }
+
+    @Inject
+    LookupAttachedPdfService lookupAttachedPdfService;
+
+    @Inject
+    DeepLinkService deepLinkService;
+
+    @Inject
+    PdfManipulator pdfManipulator;
+
+    @Inject
+    ExternalUrlDownloadService externalUrlDownloadService;
+
+}
@@ -0,0 +1,89 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.capex.dom.payment.paperclips;
+
+import javax.jdo.annotations.Column;
+import javax.jdo.annotations.IdentityType;
+import javax.jdo.annotations.InheritanceStrategy;
+import javax.jdo.annotations.NotPersistent;
+
+import org.apache.isis.applib.annotation.BookmarkPolicy;
+import org.apache.isis.applib.annotation.DomainObject;
+import org.apache.isis.applib.annotation.DomainObjectLayout;
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.Mixin;
+import org.apache.isis.applib.annotation.NatureOfService;
+
+import org.incode.module.document.dom.impl.paperclips.Paperclip;
+import org.incode.module.document.dom.impl.paperclips.PaperclipRepository;
+import org.incode.module.document.dom.mixins.T_documents;
+
+import org.estatio.module.capex.dom.payment.PaymentBatch;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@javax.jdo.annotations.PersistenceCapable(
+        identityType= IdentityType.DATASTORE
+        ,schema = "dbo"
+)
+@javax.jdo.annotations.Inheritance(strategy = InheritanceStrategy.NEW_TABLE)
+@DomainObject(
+        objectType = "payment.PaperclipForPaymentBatch"
+)
+@DomainObjectLayout(
+        bookmarking = BookmarkPolicy.AS_ROOT
+)
+public class PaperclipForPaymentBatch extends Paperclip {
+
+
+    @Column(allowsNull = "false", name = "paymentBatchId")
+    @Getter @Setter
+    private PaymentBatch paymentBatch;
+
+
+    @NotPersistent
+    @Override
+    public Object getAttachedTo() {
+        return getPaymentBatch();
+    }
+    @Override
+    protected void setAttachedTo(final Object object) {
+        setPaymentBatch((PaymentBatch) object);
+    }
+
+
+    @DomainService(nature = NatureOfService.DOMAIN)
+    public static class SubtypeProvider extends PaperclipRepository.SubtypeProviderAbstract {
+        public SubtypeProvider() {
+            super(PaymentBatch.class, PaperclipForPaymentBatch.class);
+        }
+    }
+
+
+
+    @Mixin
+    public static class _documents extends T_documents<PaymentBatch> {
+        public _documents(final PaymentBatch paymentBatch) {
+            super(paymentBatch);
+        }
+    }
+
+
+}
@@ -19,7 +19,9 @@
 package org.estatio.module.capex.dom.project;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -37,6 +39,7 @@ import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 
 import org.estatio.module.asset.dom.FixedAsset;
 import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
+import org.estatio.module.base.dom.search.SearchIndexService;
 import org.estatio.module.numerator.dom.Numerator;
 
 
@@ -105,13 +108,39 @@ public class ProjectRepository extends UdoDomainRepositoryAndFactory<Project> {
     }
 
     public List<Project> autoComplete(final String searchPhrase) {
-
+        if (searchIndexService.isAvailableFor(searchIndexDefinition, searchPhrase)) {
+            final List<Project> projects = searchIndexService.search(searchIndexDefinition, searchPhrase);
+            if (projects != null) {
+                return projects.stream().filter(p->!p.isArchived()).collect(Collectors.toList());
+            }
+        }
         final String refRegex = StringUtils.wildcardToCaseInsensitiveRegex("*".concat(searchPhrase).concat("*"));
         return allMatches("matchByReferenceOrName",
                 "matcher", refRegex
         ).stream().filter(p->!p.isArchived()).collect(Collectors.toList());
     }
 
+    private final SearchIndexService.Definition<Project> searchIndexDefinition =
+            new SearchIndexService.Definition<Project>(Project.class) {
+
+        @Override
+        protected List<Project> loadAll() {
+            return allInstances();
+        }
+
+        @Override
+        protected List<String> termsOf(final Project project) {
+            return Arrays.asList(project.getReference(), project.getName());
+        }
+    };
+
+    @Programmatic
+    @Override
+    public void init(final Map<String, String> properties) {
+        super.init(properties);
+        searchIndexService.register(searchIndexDefinition);
+    }
+
     public List<Project> findByFixedAsset(final FixedAsset fixedAsset){
         List<Project> result = new ArrayList<>();
         for (Project project : allUnarchivedProjects()){
@@ -161,4 +190,7 @@ public class ProjectRepository extends UdoDomainRepositoryAndFactory<Project> {
     @Inject
     NumeratorForProjectsRepository numeratorForProjectsRepository;
 
+    @Inject
+    SearchIndexService searchIndexService;
+
 }
@@ -39,13 +39,13 @@ import org.apache.isis.applib.services.metamodel.MetaModelService3;
 import org.apache.isis.applib.services.title.TitleService;
 import org.apache.isis.applib.services.user.UserService;
 import org.apache.isis.applib.types.DescriptionType;
-import org.apache.isis.applib.util.ObjectContracts;
 import org.apache.isis.schema.utils.jaxbadapters.PersistentEntityAdapter;
 
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyRepository;
 import org.isisaddons.module.security.dom.tenancy.HasAtPath;
 
+import org.estatio.module.base.dom.UdoObjectContract;
 import org.estatio.module.base.dom.apptenancy.WithApplicationTenancy;
 import org.estatio.module.capex.app.taskreminder.TaskOverview;
 import org.estatio.module.capex.dom.state.State;
@@ -363,7 +363,7 @@ public class Task implements Comparable<Task>, WithApplicationTenancy {
 
     @Override
     public int compareTo(final Task other) {
-        return ObjectContracts.compare(this, other, "createdOn,transitionObjectType,description,comment");
+        return UdoObjectContract.of(getClass(), "createdOn,transitionObjectType,description,comment").compare(this, other);
     }
 
     @Inject
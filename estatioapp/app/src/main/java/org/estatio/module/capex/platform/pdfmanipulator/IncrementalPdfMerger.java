@@ -0,0 +1,143 @@
+package org.estatio.module.capex.platform.pdfmanipulator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Merges PDF files one at a time, in the order in which they are {@link #append(File) appended}, into a single
+ * document that is then {@link #save(OutputStream) saved} to a stream.
+ *
+ * <p>
+ * Each of the documents (including the merged one) is read from its file and buffers any other content according to
+ * the {@link MemoryUsageSetting} provided (eg {@link MemoryUsageSetting#setupMixed(long)} or
+ * {@link MemoryUsageSetting#setupTempFileOnly()}).
+ * </p>
+ *
+ * <p>
+ * The appended documents share their resources with the merged one, so must be kept open (and their files kept)
+ * until the merged one is saved. So that the number of open documents does not grow with the size of the result,
+ * once <tt>maxOpenDocuments</tt> have been appended the merged document is saved to a temporary file and reopened
+ * from there, and the appended documents are closed and their files deleted.
+ * </p>
+ */
+public class IncrementalPdfMerger implements Closeable {
+
+    public static final int DEFAULT_MAX_OPEN_DOCUMENTS = 50;
+
+    private final MemoryUsageSetting memoryUsageSetting;
+    private final int maxOpenDocuments;
+    private final PDFMergerUtility mergerUtility = new PDFMergerUtility();
+    private PDDocument destination;
+    private File destinationFile;
+    private final List<PDDocument> sources = Lists.newArrayList();
+    private final List<File> files = Lists.newArrayList();
+    private int numberOfDocuments;
+
+    public IncrementalPdfMerger(final MemoryUsageSetting memoryUsageSetting) {
+        this(memoryUsageSetting, DEFAULT_MAX_OPEN_DOCUMENTS);
+    }
+
+    public IncrementalPdfMerger(final MemoryUsageSetting memoryUsageSetting, final int maxOpenDocuments) {
+        this.memoryUsageSetting = memoryUsageSetting;
+        this.maxOpenDocuments = Math.max(1, maxOpenDocuments);
+        this.destination = new PDDocument(memoryUsageSetting);
+    }
+
+    /**
+     * Appends all pages of the file, which is deleted once no longer needed (at the latest when this merger is closed).
+     */
+    public void append(final File pdfFile) throws IOException {
+        if (sources.size() >= maxOpenDocuments) {
+            reopenDestination();
+        }
+        files.add(pdfFile);
+        final PDDocument source = PDDocument.load(pdfFile, memoryUsageSetting);
+        sources.add(source);
+        mergerUtility.appendDocument(destination, source);
+        numberOfDocuments++;
+    }
+
+    private void reopenDestination() throws IOException {
+        final File newDestinationFile = File.createTempFile("merged", "pdf");
+        try {
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(newDestinationFile))) {
+                destination.save(os);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(newDestinationFile.toPath());
+            throw e;
+        }
+        closeSourcesAndDestination();
+        destinationFile = newDestinationFile;
+        destination = PDDocument.load(newDestinationFile, memoryUsageSetting);
+    }
+
+    public int getNumberOfDocuments() {
+        return numberOfDocuments;
+    }
+
+    /**
+     * The number of appended documents currently kept open; never more than <tt>maxOpenDocuments</tt>.
+     */
+    public int getNumberOfOpenDocuments() {
+        return sources.size();
+    }
+
+    public int getNumberOfPages() {
+        return destination.getNumberOfPages();
+    }
+
+    public void save(final OutputStream outputStream) throws IOException {
+        destination.save(outputStream);
+    }
+
+    @Override
+    public void close() {
+        closeSourcesAndDestination();
+    }
+
+    private void closeSourcesAndDestination() {
+        for (PDDocument source : sources) {
+            closeQuietly(source);
+        }
+        sources.clear();
+        closeQuietly(destination);
+        for (File file : files) {
+            deleteQuietly(file);
+        }
+        files.clear();
+        if (destinationFile != null) {
+            deleteQuietly(destinationFile);
+            destinationFile = null;
+        }
+    }
+
+    private static void closeQuietly(final PDDocument document) {
+        try {
+            document.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static void deleteQuietly(final File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+}
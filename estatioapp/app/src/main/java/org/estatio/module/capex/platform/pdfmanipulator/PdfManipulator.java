@@ -9,6 +9,7 @@ import javax.inject.Inject;
 
 import com.google.common.collect.Lists;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.multipdf.Splitter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -69,10 +70,23 @@ public class PdfManipulator {
             final byte[] docBytes,
             final ExtractSpec extractSpec,
             final Stamp stamp) throws IOException {
+        return extractAndStamp(docBytes, extractSpec, stamp, MemoryUsageSetting.setupMainMemoryOnly());
+    }
+
+    /**
+     * As {@link #extractAndStamp(byte[], ExtractSpec, Stamp)}, with the content of the document being parsed buffered
+     * as per the {@link MemoryUsageSetting} (eg in a scratch file) rather than in memory.
+     */
+    @Programmatic
+    public byte[] extractAndStamp(
+            final byte[] docBytes,
+            final ExtractSpec extractSpec,
+            final Stamp stamp,
+            final MemoryUsageSetting memoryUsageSetting) throws IOException {
 
         List<byte[]> extractedPageDocBytes = Lists.newArrayList();
 
-        final PDDocument pdDoc = PDDocument.load(docBytes);
+        final PDDocument pdDoc = PDDocument.load(docBytes, "", null, null, memoryUsageSetting);
 
         try {
 
@@ -114,6 +128,38 @@ public class PdfManipulator {
         return mergedBytes;
     }
 
+    /**
+     * A single page in place of a document that could not be obtained, stating the reason and stamped as the pages of
+     * the document would have been.
+     */
+    @Programmatic
+    public byte[] placeholder(
+            final String reason,
+            final Stamp stamp) throws IOException {
+
+        try (final PDDocument doc = new PDDocument()) {
+            final PDPage page = new PDPage(PDRectangle.A4);
+            doc.addPage(page);
+
+            final PDPageContentStream cs = new PDPageContentStream(doc, page);
+            try {
+                cs.setNonStrokingColor(Color.RED);
+                cs.beginText();
+                cs.setFont(PDType1Font.HELVETICA_BOLD, 14);
+                cs.newLineAtOffset(X_MARGIN_LEFT, page.getMediaBox().getHeight() - 2 * X_MARGIN_LEFT);
+                cs.showText(reason);
+                cs.endText();
+            } finally {
+                cs.close();
+            }
+
+            if (stamp == null) {
+                return asBytes(doc);
+            }
+            return stamp(doc, stamp.getLeftLinesWithHyperlinkIfAny(), stamp.getRightLines());
+        }
+    }
+
     private static byte[] asBytes(final PDDocument doc) throws IOException {
 
         final ByteArrayOutputStream baos = new ByteArrayOutputStream();
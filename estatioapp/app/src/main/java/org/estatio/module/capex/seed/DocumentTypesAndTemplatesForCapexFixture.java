@@ -47,6 +47,8 @@ public class DocumentTypesAndTemplatesForCapexFixture extends DiscoverableFixtur
 
         ec.executeChild(this, new DocumentTypeFSForIncoming());
         ec.executeChild(this, new DocumentTypeFSForIbanProof());
+        ec.executeChild(this, new DocumentTypeFSForPaymentBatchReview());
+        ec.executeChild(this, new DocumentTypeFSForIncomingInvoiceDownload());
 
         ec.executeChild(this, new DocumentTypeFSForOrderConfirm());
 
@@ -18,7 +18,11 @@
  */
 package org.estatio.module.charge.dom;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
@@ -40,6 +44,7 @@ import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
 import org.incode.module.base.dom.utils.StringUtils;
 
 import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
+import org.estatio.module.base.dom.search.SearchIndexService;
 import org.estatio.module.base.dom.apptenancy.ApplicationTenancyLevel;
 import org.estatio.module.tax.dom.Tax;
 
@@ -203,9 +208,38 @@ public class ChargeRepository extends UdoDomainRepositoryAndFactory<Charge> {
 
     @Programmatic
     public List<Charge> autoComplete(@MinLength(3) final String search) {
+        if (searchIndexService.isAvailableFor(searchIndexDefinition, search)) {
+            final List<Charge> charges = searchIndexService.search(searchIndexDefinition, search);
+            if (charges != null) {
+                return charges.stream()
+                        .sorted(Comparator.comparing(Charge::getReference))
+                        .collect(Collectors.toList());
+            }
+        }
         return matchOnReferenceOrName(StringUtils.wildcardToCaseInsensitiveRegex("*" + search + "*"));
     }
 
+    private final SearchIndexService.Definition<Charge> searchIndexDefinition =
+            new SearchIndexService.Definition<Charge>(Charge.class) {
+
+        @Override
+        protected List<Charge> loadAll() {
+            return allInstances();
+        }
+
+        @Override
+        protected List<String> termsOf(final Charge charge) {
+            return Arrays.asList(charge.getReference(), charge.getName());
+        }
+    };
+
+    @Programmatic
+    @Override
+    public void init(final Map<String, String> properties) {
+        super.init(properties);
+        searchIndexService.register(searchIndexDefinition);
+    }
+
     public Charge findOrCreate(final String atPath, final String reference, final String name, final String description, Applicability applicability) {
         final Charge charge = findByReference(reference);
         if (charge != null)
@@ -217,4 +251,6 @@ public class ChargeRepository extends UdoDomainRepositoryAndFactory<Charge> {
 
     @Inject RepositoryService repositoryService;
 
+    @Inject SearchIndexService searchIndexService;
+
 }
@@ -1117,6 +1117,47 @@ public class CodaDocHead implements Comparable<CodaDocHead>, HasAtPath {
                Objects.equals(getStatPay(), other.getStatPay());
     }
 
+    /**
+     * Whether the content of this head (ignoring its lines, the {@link #getStatPay() payment status} and everything
+     * derived when validated) differs from the other's.
+     */
+    boolean contentDiffersFrom(final CodaDocHead other) {
+        return getCodaTimeStamp() != other.getCodaTimeStamp() ||
+               !Objects.equals(getSha256(), other.getSha256()) ||
+               !Objects.equals(getInputDate(), other.getInputDate()) ||
+               !Objects.equals(getDocDate(), other.getDocDate()) ||
+               !Objects.equals(getCodaPeriod(), other.getCodaPeriod()) ||
+               !Objects.equals(getLocation(), other.getLocation()) ||
+               getNumberOfLines() != other.getNumberOfLines();
+    }
+
+    void copyContentFrom(final CodaDocHead other) {
+        setCodaTimeStamp(other.getCodaTimeStamp());
+        setSha256(other.getSha256());
+        setInputDate(other.getInputDate());
+        setDocDate(other.getDocDate());
+        setCodaPeriod(other.getCodaPeriod());
+        setLocation(other.getLocation());
+        setNumberOfLines(other.getNumberOfLines());
+    }
+
+    boolean statusDiffersFrom(final CodaDocHead other) {
+        return !Objects.equals(getStatPay(), other.getStatPay()) ||
+               !Objects.equals(getStatPayPaidDate(), other.getStatPayPaidDate());
+    }
+
+    void copyStatusFrom(final CodaDocHead other) {
+        setStatPay(other.getStatPay());
+        setStatPayPaidDate(other.getStatPayPaidDate());
+    }
+
+    /**
+     * For when the lines have been changed (in place).
+     */
+    void linesChanged() {
+        analysisLineDataByLineNumber = null;
+    }
+
     private boolean legacyAnalysisLineWithNullDocValue_StateDiffers(final CodaDocHead one, final CodaDocHead other) {
         return one.isLegacyAnalysisLineWithNullDocValue() && !other.isLegacyAnalysisLineWithNullDocValue();
     }
@@ -1,10 +1,15 @@
 package org.estatio.module.coda.dom.doc;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
@@ -16,6 +21,8 @@ import org.apache.isis.applib.services.title.TitleService;
 
 import org.estatio.module.capex.dom.invoice.IncomingInvoice;
 
+import lombok.Getter;
+
 @DomainService(
         nature = NatureOfService.DOMAIN,
         repositoryFor = CodaDocHead.class,
@@ -23,6 +30,8 @@ import org.estatio.module.capex.dom.invoice.IncomingInvoice;
 )
 public class CodaDocHeadRepository {
 
+    private static final Logger LOG = LoggerFactory.getLogger(CodaDocHeadRepository.class);
+
     static final String STAT_PAY_PAID = "paid";
 
     @Programmatic
@@ -55,8 +64,89 @@ public class CodaDocHeadRepository {
         return findByCmpCodeAndDocCodeAndDocNum(cmpCode, docCode, docNum);
     }
 
+    /**
+     * What {@link #upsert(CodaDocHead)} did.
+     */
+    public static class Upsert {
+
+        public enum Type {
+            /**
+             * No previous doc head, so persisted the one received.
+             */
+            CREATED,
+            /**
+             * Neither head nor lines have changed, so nothing to do.
+             */
+            UNCHANGED,
+            /**
+             * Only the {@link CodaDocHead#getStatPay() payment status} has changed, so validation still holds.
+             */
+            STATUS_UPDATED,
+            /**
+             * The head and/or (some of) its lines have changed, so updated in place and revalidated.
+             */
+            CONTENT_UPDATED
+        }
+
+        @Getter
+        private final CodaDocHead docHead;
+        @Getter
+        private final Type type;
+        @Getter
+        private final int linesAdded;
+        @Getter
+        private final int linesUpdated;
+        @Getter
+        private final int linesRemoved;
+
+        Upsert(
+                final CodaDocHead docHead,
+                final Type type,
+                final int linesAdded,
+                final int linesUpdated,
+                final int linesRemoved) {
+            this.docHead = docHead;
+            this.type = type;
+            this.linesAdded = linesAdded;
+            this.linesUpdated = linesUpdated;
+            this.linesRemoved = linesRemoved;
+        }
+
+        /**
+         * Whether the Estatio objects derived from the doc head (incoming invoice and so on) may need updating.
+         */
+        public boolean isKickRequired() {
+            return type != Type.UNCHANGED;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s (lines added: %d, updated: %d, removed: %d)",
+                    type, docHead.title(), linesAdded, linesUpdated, linesRemoved);
+        }
+    }
+
+    /**
+     * @see #upsert(CodaDocHead)
+     */
     @Programmatic
     public CodaDocHead persistAsReplacementIfRequired(final CodaDocHead codaDocHead) {
+        return upsert(codaDocHead).getDocHead();
+    }
+
+    /**
+     * Persists the (not yet persistent) doc head received from Coda, or rather updates the existing doc head with the
+     * same cmpCode, docCode and docNum (if any) with whatever has changed.
+     *
+     * <p>
+     * Lines are matched up by their number and compared by their {@link CodaDocLine#contentHash() content}; only
+     * those that differ are updated, and those no longer received are removed. The existing doc head is revalidated
+     * only if its content changed (not just its status); it and the Estatio objects derived from it otherwise keep
+     * their state, so do not need to be {@link Upsert#isKickRequired() kicked} unless anything changed at all.
+     * </p>
+     */
+    @Programmatic
+    public Upsert upsert(final CodaDocHead codaDocHead) {
         // sanity check
         if(repositoryService.isPersistent(codaDocHead)) {
             throw new IllegalStateException(
@@ -67,10 +157,63 @@ public class CodaDocHeadRepository {
 
         deriveStatPayPaidDateIfRequired(codaDocHead, existingCodaDocHead);
 
-        if (existingCodaDocHead != null) {
-            delete(existingCodaDocHead);
+        final Upsert upsert;
+        if (existingCodaDocHead == null) {
+            upsert = new Upsert(
+                    repositoryService.persistAndFlush(codaDocHead), Upsert.Type.CREATED,
+                    codaDocHead.getLines().size(), 0, 0);
+        } else {
+            upsert = update(existingCodaDocHead, codaDocHead);
+        }
+        LOG.debug("{}", upsert);
+        return upsert;
+    }
+
+    private Upsert update(final CodaDocHead existingCodaDocHead, final CodaDocHead codaDocHead) {
+
+        final Map<Integer, CodaDocLine> existingLineByLineNum = Maps.newHashMap();
+        for (final CodaDocLine existingLine : existingCodaDocHead.getLines()) {
+            existingLineByLineNum.put(existingLine.getLineNum(), existingLine);
+        }
+
+        int linesAdded = 0;
+        int linesUpdated = 0;
+        for (final CodaDocLine line : Lists.newArrayList(codaDocHead.getLines())) {
+            final CodaDocLine existingLine = existingLineByLineNum.remove(line.getLineNum());
+            if (existingLine == null) {
+                line.setDocHead(existingCodaDocHead);
+                existingCodaDocHead.getLines().add(line);
+                repositoryService.persistAndFlush(line);
+                linesAdded++;
+            } else if (!existingLine.contentHash().equals(line.contentHash())) {
+                existingLine.copyContentFrom(line);
+                linesUpdated++;
+            }
+        }
+        // no longer received; deleted as dependent elements
+        final int linesRemoved = existingLineByLineNum.size();
+        existingCodaDocHead.getLines().removeAll(existingLineByLineNum.values());
+
+        final boolean headContentChanged = existingCodaDocHead.contentDiffersFrom(codaDocHead);
+        if (headContentChanged) {
+            existingCodaDocHead.copyContentFrom(codaDocHead);
+        }
+        final boolean statusChanged = existingCodaDocHead.statusDiffersFrom(codaDocHead);
+        if (statusChanged) {
+            existingCodaDocHead.copyStatusFrom(codaDocHead);
+        }
+
+        final Upsert.Type type;
+        if (headContentChanged || linesAdded + linesUpdated + linesRemoved > 0) {
+            existingCodaDocHead.linesChanged();
+            existingCodaDocHead.revalidateOnly();
+            type = Upsert.Type.CONTENT_UPDATED;
+        } else if (statusChanged) {
+            type = Upsert.Type.STATUS_UPDATED;
+        } else {
+            type = Upsert.Type.UNCHANGED;
         }
-        return repositoryService.persistAndFlush(codaDocHead);
+        return new Upsert(existingCodaDocHead, type, linesAdded, linesUpdated, linesRemoved);
     }
 
     void deriveStatPayPaidDateIfRequired(final CodaDocHead codaDocHead, final CodaDocHead existingCodaDocHead) {
@@ -2,6 +2,7 @@ package org.estatio.module.coda.dom.doc;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Objects;
 
 import javax.inject.Inject;
@@ -20,7 +21,9 @@ import javax.jdo.annotations.Uniques;
 import javax.jdo.annotations.Version;
 import javax.jdo.annotations.VersionStrategy;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ComparisonChain;
+import com.google.common.hash.Hashing;
 
 import org.axonframework.eventhandling.annotation.EventHandler;
 import org.joda.time.LocalDate;
@@ -613,6 +616,51 @@ public class CodaDocLine implements Comparable<CodaDocLine>, HasAtPath {
     @Getter @Setter
     private Handling handling;
 
+    /**
+     * A hash of the content of this line as received from Coda (so ignoring everything derived when validated), to
+     * tell whether a line received again has changed.
+     */
+    @Programmatic
+    public String contentHash() {
+        final StringBuilder buf = new StringBuilder();
+        for (final Object value : Arrays.asList(
+                getLineType(), getAccountCode(), getDescription(), getDocValue(), getDocSumTax(), getDueDate(),
+                getValueDate(), getExtRef2(), getExtRef3(), getExtRef4(), getExtRef5(), getElmBankAccount(),
+                getUserRef1(), getUserStatus(), getMediaCode())) {
+            if (value == null) {
+                buf.append('\u0000');
+            } else if (value instanceof BigDecimal) {
+                // as read from the database (scale 2) and as parsed from Coda
+                buf.append(((BigDecimal) value).stripTrailingZeros().toPlainString());
+            } else {
+                buf.append(value);
+            }
+            buf.append('\u001f');
+        }
+        return Hashing.sha256().hashString(buf.toString(), Charsets.UTF_8).toString();
+    }
+
+    /**
+     * Copies the content {@link #contentHash() hashed} from the other line (of the same number).
+     */
+    void copyContentFrom(final CodaDocLine other) {
+        setLineType(other.getLineType());
+        setAccountCode(other.getAccountCode());
+        setDescription(other.getDescription());
+        setDocValue(other.getDocValue());
+        setDocSumTax(other.getDocSumTax());
+        setDueDate(other.getDueDate());
+        setValueDate(other.getValueDate());
+        setExtRef2(other.getExtRef2());
+        setExtRef3(other.getExtRef3());
+        setExtRef4(other.getExtRef4());
+        setExtRef5(other.getExtRef5());
+        setElmBankAccount(other.getElmBankAccount());
+        setUserRef1(other.getUserRef1());
+        setUserStatus(other.getUserStatus());
+        setMediaCode(other.getMediaCode());
+    }
+
     @Override
     public int compareTo(final CodaDocLine other) {
         return ComparisonChain.start()
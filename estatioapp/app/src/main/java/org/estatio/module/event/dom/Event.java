@@ -44,6 +44,7 @@ import org.incode.module.base.dom.types.NotesType;
 import org.incode.module.base.dom.utils.TitleBuilder;
 
 import org.estatio.module.base.dom.UdoDomainObject2;
+import org.estatio.module.base.dom.UdoObjectContract;
 import org.estatio.module.base.dom.apptenancy.WithApplicationTenancyProperty;
 import org.estatio.module.event.dom.types.CalendarNameType;
 
@@ -216,7 +217,7 @@ public class Event
     @Override
     public String toString() {
         // TODO: have (temporarily?) removed source from this, cos hitting an infinite loop :-(
-        return UDO_OBJECT_CONTRACTS.toStringOf(this, "date, calendarName");
+        return UdoObjectContract.of(getClass(), "date, calendarName").toStringOf(this);
     }
 
     @Inject
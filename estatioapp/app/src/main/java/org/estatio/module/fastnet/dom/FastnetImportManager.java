@@ -50,7 +50,13 @@ import lombok.Setter;
                 "linesForItemCreation",
                 "activeLeasesNotInImport",
                 "leasesWithActiveRentNotInImport",
-                "discardedLines"
+                "discardedLines",
+                "linesToApply",
+                "linesApplied",
+                "linesNotApplied",
+                "chunksCommitted",
+                "chunksFailed",
+                "applyMillis"
         }
 )
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -58,6 +64,8 @@ import lombok.Setter;
 @NoArgsConstructor
 public class FastnetImportManager {
 
+    static final int DEFAULT_CHUNK_SIZE = 250;
+
     public String title() {
         return "Fastnet Import " + getExportDate().toString("yyyy-MM-dd");
     }
@@ -170,6 +178,33 @@ public class FastnetImportManager {
         return this.leasesWithActiveRentNotInImport;
     }
 
+    // progress of the apply phase, when run in chunks
+
+    @Getter @Setter
+    private int linesToApply;
+
+    @Getter @Setter
+    private int linesApplied;
+
+    @Getter @Setter
+    private int linesNotApplied;
+
+    @Getter @Setter
+    private int chunksCommitted;
+
+    @Getter @Setter
+    private int chunksFailed;
+
+    @Getter @Setter
+    private long applyMillis;
+
+    /**
+     * As of the last chunk committed, also while still being applied (eg as seen from another session).
+     */
+    public String getApplyProgress() {
+        return fastnetImportService.progressOf(getExportDate());
+    }
+
     @Action(publishing = Publishing.DISABLED, semantics = SemanticsOf.NON_IDEMPOTENT_ARE_YOU_SURE)
     @ActionLayout(named = "import and apply")
     @CollectionLayout(defaultView = "excel")
@@ -194,6 +229,24 @@ public class FastnetImportManager {
         return downloadImportLog();
     }
 
+    /**
+     * As {@link #doImport()}, but committing every chunk of lines on its own; if interrupted, the import for the
+     * same export date can be rerun to apply the remaining lines.
+     */
+    @Action(publishing = Publishing.DISABLED, semantics = SemanticsOf.NON_IDEMPOTENT_ARE_YOU_SURE)
+    @ActionLayout(named = "import and apply in chunks")
+    public FastnetImportManager doImportInChunks(final int chunkSize) {
+        return fastnetImportService.applyInChunks(this, chunkSize);
+    }
+
+    public int default0DoImportInChunks() {
+        return DEFAULT_CHUNK_SIZE;
+    }
+
+    public String validate0DoImportInChunks(final int chunkSize) {
+        return chunkSize < 1 ? "Chunk size must be at least 1" : null;
+    }
+
     @Action()
     public Blob downloadAnalysis() {
 //        WorksheetSpec spec0 = new WorksheetSpec(LeaseViewModel.class, "activeLeasesNotInImport");
@@ -223,7 +276,8 @@ public class FastnetImportManager {
         return excelService.toExcel(Arrays.asList(content00, content1, content2, content4, content5, content8, content9, content10), "analysis export date " + getExportDate().toString("yyyy-MM-dd") + ".xlsx");
     }
 
-    private Blob downloadImportLog(){
+    @Action(semantics = SemanticsOf.SAFE, publishing = Publishing.DISABLED)
+    public Blob downloadImportLog(){
         return fastnetImportMenu.fastnetImportLog(getExportDate());
     }
 
@@ -6,12 +6,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
+import com.google.common.collect.Lists;
+
 import org.joda.time.LocalDate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.xactn.TransactionService;
 
 import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 import org.incode.module.country.dom.impl.Country;
@@ -26,6 +33,7 @@ import org.incode.module.country.dom.impl.CountryRepository;
 
 import org.estatio.module.asset.dom.Property;
 import org.estatio.module.asset.dom.PropertyRepository;
+import org.estatio.module.base.platform.parallel.ParallelWorkService;
 import org.estatio.module.charge.dom.Charge;
 import org.estatio.module.charge.dom.ChargeGroup;
 import org.estatio.module.charge.dom.ChargeRepository;
@@ -41,6 +49,8 @@ import org.estatio.module.lease.dom.LeaseTerm;
 import org.estatio.module.lease.dom.LeaseTermForFixed;
 import org.estatio.module.lease.dom.LeaseTermForServiceCharge;
 
+import lombok.Getter;
+
 @DomainService(nature = NatureOfService.DOMAIN)
 public class FastnetImportService {
 
@@ -91,83 +101,115 @@ public class FastnetImportService {
         fastnetImportManager.getLeasesWithActiveRentNotInImport().addAll(toViewmodels2);
         long activeleasesnotinimport = System.currentTimeMillis();
 
-        List<FastNetChargingOnLeaseDataLine> chargingDataLinesChargeNotFound = chargingDataLines
-                .stream()
-                .filter(x -> x.getChargeReference() == null)
-                .collect(Collectors.toList());
-        chargingDataLines.removeAll(chargingDataLinesChargeNotFound);
-        fastnetImportManager.setChargeNotFound(chargingDataLinesChargeNotFound);
+        classifyChargingDataLines(fastnetImportManager, chargingDataLines, matchingRentRollDataLines);
+        long chargenotfoundandnotinmatchingdatalines = System.currentTimeMillis();
+
+        logger.info(String.format("Potentials: %d", (potentials - start) / 1000));
+        logger.info(String.format("Partials: %d", (partials - potentials) / 1000));
+        logger.info(String.format("Nonmatching lines: %d", (nonmatching - partials) / 1000));
+        logger.info(String.format("Nokontraktnr lines: %d", (nokontraktnr - nonmatching) / 1000));
+        logger.info(String.format("Matching lines: %d", (matchinglines - nokontraktnr) / 1000));
+        logger.info(String.format("No charging details and doubles: %d", (nochargingdetailsanddoubles - matchinglines) / 1000));
+        logger.info(String.format("Charging data lines: %d", (chargingDatalines - nochargingdetailsanddoubles) / 1000));
+        logger.info(String.format("Charge not found: %d", (chargenotfoundandnotinmatchingdatalines - chargingDatalines) / 1000));
+        logger.info(String.format("Active leases not in import: %d", (activeleasesnotinimport - chargenotfoundandnotinmatchingdatalines) / 1000));
+
+        return fastnetImportManager;
+    }
+
+    /**
+     * Sorts the charging data lines of an export into the buckets of the {@link FastnetImportManager}, in a single
+     * pass.
+     *
+     * <p>
+     * Lines are matched against the rent roll on their lease external reference, and grouped on lease external
+     * reference and charge reference to find duplicates, using hash lookups rather than list scans; the data lines
+     * do not implement <tt>equals</tt>, so membership of the resulting buckets is by identity (as it was when they
+     * were filtered using {@link List#removeAll(java.util.Collection)}).
+     * </p>
+     */
+    void classifyChargingDataLines(
+            final FastnetImportManager fastnetImportManager,
+            final List<FastNetChargingOnLeaseDataLine> chargingDataLines,
+            final List<FastNetRentRollOnLeaseDataLine> matchingRentRollDataLines) {
+
+        final Set<String> matchingKeys = matchingRentRollDataLines.stream()
+                .map(FastNetRentRollOnLeaseDataLine::getKeyToLeaseExternalReference)
+                .collect(Collectors.toCollection(HashSet::new));
+
+        final List<FastNetChargingOnLeaseDataLine> chargeNotFound = new ArrayList<>();
+        final List<FastNetChargingOnLeaseDataLine> linesToDiscard = new ArrayList<>();
+        final List<FastNetChargingOnLeaseDataLine> candidates = new ArrayList<>(chargingDataLines.size());
+        final List<FastNetChargingOnLeaseDataLine> noUpdateNeeded = new ArrayList<>();
+        final Set<FastNetChargingOnLeaseDataLine> noUpdateNeededSet = newIdentitySet();
+        final Set<FastNetChargingOnLeaseDataLine> notInMatchingRentRollDataLines = newIdentitySet();
+        final Map<String, List<FastNetChargingOnLeaseDataLine>> chargeRefLineMap = new HashMap<>();
+
+        for (FastNetChargingOnLeaseDataLine cdl : chargingDataLines) {
+            if (cdl.getChargeReference() == null) {
+                chargeNotFound.add(cdl);
+                continue;
+            }
+            if (cdl.getChargeGroupReference().equals("SE_DISCARD")) {
+                linesToDiscard.add(cdl);
+                continue;
+            }
+            candidates.add(cdl);
 
-        List<FastNetChargingOnLeaseDataLine> chargingDataLinesToDiscard = chargingDataLines
-                .stream()
-                .filter(x -> x.getChargeGroupReference().equals("SE_DISCARD"))
-                .collect(Collectors.toList());
-        chargingDataLines.removeAll(chargingDataLinesToDiscard);
-        fastnetImportManager.setDiscardedLines(chargingDataLinesToDiscard);
-
-        // cleaning
-        // again ugly, but might save some time because we iterate once over charging data lines
-        List<String> matchingKeys = matchingRentRollDataLines.stream().map(l -> l.getKeyToLeaseExternalReference()).collect(Collectors.toList());
-        List<FastNetChargingOnLeaseDataLine> notInMatchingRentRollDataLines = new ArrayList<>();
-        List<FastNetChargingOnLeaseDataLine> noUpdateNeeded = new ArrayList<>();
-        Map<String, List<FastNetChargingOnLeaseDataLine>> chargeRefLineMap = new HashMap<>();
-        chargingDataLines.forEach(cdl -> {
             // check against matchingRentRollDataLines
             if (!matchingKeys.contains(cdl.getKeyToLeaseExternalReference())) {
                 notInMatchingRentRollDataLines.add(cdl);
             }
-
-            if (!chargeRefLineMap.containsKey(getChargeRefMapKey(cdl))) {
-                chargeRefLineMap.put(getChargeRefMapKey(cdl), new ArrayList<>(Arrays.asList(cdl)));
-            } else {
-                chargeRefLineMap.get(getChargeRefMapKey(cdl)).add(cdl);
-            }
+            chargeRefLineMap.computeIfAbsent(getChargeRefMapKey(cdl), k -> new ArrayList<>(1)).add(cdl);
             // determine no update needed
             if (hasNoEffectAtAll(cdl)) {
                 noUpdateNeeded.add(cdl);
+                noUpdateNeededSet.add(cdl);
             }
-
-        });
-
-        chargeRefLineMap.entrySet().removeIf(pair -> pair.getValue().size() == 1);
-        List<FastNetChargingOnLeaseDataLine> duplicateChargeReferences = chargeRefLineMap.values().stream().flatMap(List::stream).collect(Collectors.toList());
+        }
 
         // not all of these duplicates need to be filtered
         // there are two categories: non overlapping (these should be imported in the right order
         // overlapping (like counter bookings): these can be aggregated when at least the end dates (tomdat's) are the same.
+        final List<FastNetChargingOnLeaseDataLine> duplicateChargeReferences = new ArrayList<>();
+        final Set<FastNetChargingOnLeaseDataLine> duplicateSet = newIdentitySet();
+        for (List<FastNetChargingOnLeaseDataLine> linesForKey : chargeRefLineMap.values()) {
+            if (linesForKey.size() > 1) {
+                duplicateChargeReferences.addAll(linesForKey);
+                duplicateSet.addAll(linesForKey);
+            }
+        }
 
-        chargingDataLines.removeAll(duplicateChargeReferences);
-        chargingDataLines.removeAll(notInMatchingRentRollDataLines);
-        chargingDataLines.removeAll(noUpdateNeeded);
-
-        noUpdateNeeded.removeAll(duplicateChargeReferences);
+        final List<FastNetChargingOnLeaseDataLine> chargingDataLinesForItemUpdate = new ArrayList<>();
+        final List<FastNetChargingOnLeaseDataLine> chargingDataLinesForItemCreation = new ArrayList<>();
+        for (FastNetChargingOnLeaseDataLine cdl : candidates) {
+            if (duplicateSet.contains(cdl) || notInMatchingRentRollDataLines.contains(cdl) || noUpdateNeededSet.contains(cdl)) {
+                continue;
+            }
+            if (cdl.getLeaseTermStartDate() != null) {
+                chargingDataLinesForItemUpdate.add(cdl);
+            } else {
+                chargingDataLinesForItemCreation.add(cdl);
+            }
+        }
 
-        duplicateChargeReferences.removeAll(notInMatchingRentRollDataLines);
+        noUpdateNeeded.removeIf(duplicateSet::contains);
+        duplicateChargeReferences.removeIf(notInMatchingRentRollDataLines::contains);
 
+        fastnetImportManager.setChargeNotFound(chargeNotFound);
+        fastnetImportManager.setDiscardedLines(linesToDiscard);
         fastnetImportManager.setDuplicateChargeReferences(duplicateChargeReferences);
         fastnetImportManager.setNoUpdateNeeded(noUpdateNeeded);
-
-        List<FastNetChargingOnLeaseDataLine> chargingDataLinesForItemUpdate = chargingDataLines.stream().filter(cl -> cl.getLeaseTermStartDate() != null).collect(Collectors.toList());
-        List<FastNetChargingOnLeaseDataLine> chargingDataLinesForItemCreation = chargingDataLines.stream().filter(cl -> cl.getLeaseTermStartDate() == null).collect(Collectors.toList());
         fastnetImportManager.setLinesForItemUpdate(chargingDataLinesForItemUpdate);
         fastnetImportManager.setLinesForItemCreation(chargingDataLinesForItemCreation);
-        long chargenotfoundandnotinmatchingdatalines = System.currentTimeMillis();
-
-        logger.info(String.format("Potentials: %d", (potentials - start) / 1000));
-        logger.info(String.format("Partials: %d", (partials - potentials) / 1000));
-        logger.info(String.format("Nonmatching lines: %d", (nonmatching - partials) / 1000));
-        logger.info(String.format("Nokontraktnr lines: %d", (nokontraktnr - nonmatching) / 1000));
-        logger.info(String.format("Matching lines: %d", (matchinglines - nokontraktnr) / 1000));
-        logger.info(String.format("No charging details and doubles: %d", (nochargingdetailsanddoubles - matchinglines) / 1000));
-        logger.info(String.format("Charging data lines: %d", (chargingDatalines - nochargingdetailsanddoubles) / 1000));
-        logger.info(String.format("Charge not found: %d", (chargenotfoundandnotinmatchingdatalines - chargingDatalines) / 1000));
-        logger.info(String.format("Active leases not in import: %d", (activeleasesnotinimport - chargenotfoundandnotinmatchingdatalines) / 1000));
+    }
 
-        return fastnetImportManager;
+    private static <T> Set<T> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
     }
 
     List<Lease> getLeasesNotInImport(final List<FastNetChargingOnLeaseDataLine> chargingDataLines, final LocalDate exportDate) {
-        final List<String> externalRefsInChargingDataLines = chargingDataLines.stream().map(FastNetChargingOnLeaseDataLine::getKeyToLeaseExternalReference).collect(Collectors.toList());
+        final Set<String> externalRefsInChargingDataLines = chargingDataLines.stream().map(FastNetChargingOnLeaseDataLine::getKeyToLeaseExternalReference).collect(Collectors.toCollection(HashSet::new));
         List<Lease> activeLeasesNotInImport = activeSwedishLeases(exportDate);
         activeLeasesNotInImport.removeIf(lease -> externalRefsInChargingDataLines.contains(lease.getExternalReference()));
         return activeLeasesNotInImport;
@@ -244,16 +286,16 @@ public class FastnetImportService {
                 dataLinesWithoutChargingDetails.add(line);
             }
 
-            if (!externalRefLinePairs.containsKey(line.getKeyToLeaseExternalReference())) {
-                externalRefLinePairs.put(line.getKeyToLeaseExternalReference(), new ArrayList<>(Arrays.asList(line)));
-            } else {
-                externalRefLinePairs.get(line.getKeyToLeaseExternalReference()).add(line);
-            }
+            externalRefLinePairs.computeIfAbsent(line.getKeyToLeaseExternalReference(), k -> new ArrayList<>(1)).add(line);
         });
-        matchingRentRollDataLines.removeAll(dataLinesWithoutChargingDetails);
+        final Set<FastNetRentRollOnLeaseDataLine> withoutChargingDetails = newIdentitySet();
+        withoutChargingDetails.addAll(dataLinesWithoutChargingDetails);
+        matchingRentRollDataLines.removeIf(withoutChargingDetails::contains);
         externalRefLinePairs.entrySet().removeIf(pair -> pair.getValue().size() == 1);
         doubleExternalReferences = externalRefLinePairs.values().stream().flatMap(List::stream).collect(Collectors.toList());
-        matchingRentRollDataLines.removeAll(doubleExternalReferences);
+        final Set<FastNetRentRollOnLeaseDataLine> doubles = newIdentitySet();
+        doubles.addAll(doubleExternalReferences);
+        matchingRentRollDataLines.removeIf(doubles::contains);
         ////////
         fastnetImportManager.setNoChargingDetails(dataLinesWithoutChargingDetails);
         fastnetImportManager.setDoubleExternalReferences(doubleExternalReferences);
@@ -262,7 +304,7 @@ public class FastnetImportService {
 
     List<FastNetRentRollOnLeaseDataLine> getNonMatchingDataLines(final List<FastNetRentRollOnLeaseDataLine> potentiallyPartialMatchingDataLines, final List<FastNetRentRollOnLeaseDataLine> partialMatchingDataLines) {
         List<FastNetRentRollOnLeaseDataLine> nonMatchingDataLines = new ArrayList<>();
-        List<String> partialKeys = partialMatchingDataLines.stream().map(FastNetRentRollOnLeaseDataLine::getKeyToLeaseExternalReference).collect(Collectors.toList());
+        Set<String> partialKeys = partialMatchingDataLines.stream().map(FastNetRentRollOnLeaseDataLine::getKeyToLeaseExternalReference).collect(Collectors.toCollection(HashSet::new));
         potentiallyPartialMatchingDataLines.forEach(nml -> {
             if (!partialKeys.contains(nml.getKeyToLeaseExternalReference())) {
                 nonMatchingDataLines.add(nml);
@@ -339,6 +381,173 @@ public class FastnetImportService {
         return dateString != null ? LocalDate.parse(dateString) : null;
     }
 
+    /**
+     * What to do with the charging line of a data line, identified by value so that it can be looked up again in
+     * another session.
+     */
+    static class LineOperation {
+
+        enum Type {
+            APPLY,
+            DISCARD,
+            NO_UPDATE
+        }
+
+        @Getter
+        private final Type type;
+        @Getter
+        private final String keyToLeaseExternalReference;
+        @Getter
+        private final String keyToChargeReference;
+        @Getter
+        private final String fromDat;
+        @Getter
+        private final String tomDat;
+        @Getter
+        private final BigDecimal arsBel;
+        @Getter
+        private final LocalDate exportDate;
+
+        LineOperation(final Type type, final FastNetChargingOnLeaseDataLine cdl) {
+            this.type = type;
+            this.keyToLeaseExternalReference = cdl.getKeyToLeaseExternalReference();
+            this.keyToChargeReference = cdl.getKeyToChargeReference();
+            this.fromDat = cdl.getFromDat();
+            this.tomDat = cdl.getTomDat();
+            this.arsBel = cdl.getArsBel();
+            this.exportDate = cdl.getExportDate();
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + keyToLeaseExternalReference + " " + keyToChargeReference + " " + fromDat;
+        }
+    }
+
+    /**
+     * The operations of the apply phase, in the same order as {@link FastnetImportManager#doImport()} performs them.
+     */
+    List<LineOperation> lineOperationsFor(final FastnetImportManager fastnetImportManager) {
+        final List<LineOperation> operations = new ArrayList<>();
+        fastnetImportManager.getLinesForItemUpdate().forEach(cdl -> operations.add(new LineOperation(LineOperation.Type.APPLY, cdl)));
+        fastnetImportManager.getLinesForItemCreation().forEach(cdl -> operations.add(new LineOperation(LineOperation.Type.APPLY, cdl)));
+        fastnetImportManager.getDuplicateChargeReferences().forEach(cdl -> operations.add(new LineOperation(LineOperation.Type.APPLY, cdl)));
+        fastnetImportManager.getDiscardedLines().forEach(cdl -> operations.add(new LineOperation(LineOperation.Type.DISCARD, cdl)));
+        fastnetImportManager.getNoUpdateNeeded().forEach(cdl -> operations.add(new LineOperation(LineOperation.Type.NO_UPDATE, cdl)));
+        return operations;
+    }
+
+    /**
+     * Applies the lines of the import in chunks, each chunk in its own session and committed in its own transaction,
+     * so that neither the persistence context nor the transaction grows with the size of the export.
+     *
+     * <p>
+     * The {@link ChargingLine#getImportStatus() import status} and {@link ChargingLine#getApplied() applied} date of
+     * each line act as the checkpoint: a failing chunk is rolled back on its own, and because lines that are already
+     * applied, discarded or aggregated are skipped (and not even picked up by {@link #importFastnetData(LocalDate)}
+     * again), rerunning the import for the same export date resumes with the lines that were not yet committed.
+     * </p>
+     *
+     * <p>
+     * Once the operations are worked out, the manager no longer holds on to the data lines themselves (the analysis
+     * can be rerun to see the lines still to apply). The progress is updated as each chunk is committed, and is
+     * also {@link #progressOf(LocalDate) available} to other sessions while the chunks are being applied.
+     * </p>
+     */
+    @Programmatic
+    public FastnetImportManager applyInChunks(final FastnetImportManager fastnetImportManager, final int chunkSize) {
+        final List<LineOperation> operations = lineOperationsFor(fastnetImportManager);
+        final List<List<LineOperation>> chunks = Lists.partition(operations, Math.max(1, chunkSize));
+
+        fastnetImportManager.setLinesForItemUpdate(new ArrayList<>());
+        fastnetImportManager.setLinesForItemCreation(new ArrayList<>());
+        fastnetImportManager.setDuplicateChargeReferences(new ArrayList<>());
+        fastnetImportManager.setDiscardedLines(new ArrayList<>());
+        fastnetImportManager.setNoUpdateNeeded(new ArrayList<>());
+
+        fastnetImportManager.setLinesToApply(operations.size());
+        fastnetImportManager.setLinesApplied(0);
+        fastnetImportManager.setLinesNotApplied(0);
+        fastnetImportManager.setChunksCommitted(0);
+        fastnetImportManager.setChunksFailed(0);
+        fastnetImportManager.setApplyMillis(0);
+
+        // anything done so far must be visible to the sessions applying the chunks
+        transactionService.nextTransaction();
+
+        final long start = System.currentTimeMillis();
+        int chunkNumber = 0;
+        for (List<LineOperation> chunk : chunks) {
+            chunkNumber++;
+            final ParallelWorkService.Outcome<List<LineOperation>, Integer> outcome =
+                    parallelWorkService.executeOne(chunk, this::applyChunk);
+            if (outcome.isFailed()) {
+                fastnetImportManager.setChunksFailed(fastnetImportManager.getChunksFailed() + 1);
+                fastnetImportManager.setLinesNotApplied(fastnetImportManager.getLinesNotApplied() + chunk.size());
+                logger.warn(String.format("Fastnet import %s: chunk %d of %d rolled back", fastnetImportManager.getExportDate(), chunkNumber, chunks.size()), outcome.getFailure());
+            } else {
+                fastnetImportManager.setChunksCommitted(fastnetImportManager.getChunksCommitted() + 1);
+                fastnetImportManager.setLinesApplied(fastnetImportManager.getLinesApplied() + outcome.getResult());
+                fastnetImportManager.setLinesNotApplied(fastnetImportManager.getLinesNotApplied() + chunk.size() - outcome.getResult());
+            }
+            fastnetImportManager.setApplyMillis(System.currentTimeMillis() - start);
+            publishProgress(fastnetImportManager, chunkNumber, chunks.size());
+        }
+
+        return fastnetImportManager;
+    }
+
+    private final Map<LocalDate, String> progressByExportDate = new ConcurrentHashMap<>();
+
+    private void publishProgress(final FastnetImportManager fastnetImportManager, final int chunkNumber, final int numberOfChunks) {
+        final String progress = String.format(
+                "chunk %d of %d: %d of %d lines applied, %d not applied, %d chunks failed, %d ms",
+                chunkNumber, numberOfChunks,
+                fastnetImportManager.getLinesApplied(), fastnetImportManager.getLinesToApply(),
+                fastnetImportManager.getLinesNotApplied(), fastnetImportManager.getChunksFailed(),
+                fastnetImportManager.getApplyMillis());
+        progressByExportDate.put(fastnetImportManager.getExportDate(), progress);
+        logger.info(String.format("Fastnet import %s: %s", fastnetImportManager.getExportDate(), progress));
+    }
+
+    /**
+     * The progress of the latest {@link #applyInChunks(FastnetImportManager, int) apply in chunks} of the export
+     * date (since started), as of its last chunk; <tt>null</tt> if none.
+     */
+    @Programmatic
+    public String progressOf(final LocalDate exportDate) {
+        return exportDate != null ? progressByExportDate.get(exportDate) : null;
+    }
+
+    /**
+     * @return the number of lines of the chunk that were actually applied, discarded or marked as not needing an
+     * update; lines that already were (or that could not be applied) are not counted
+     */
+    Integer applyChunk(final List<LineOperation> chunk) {
+        int applied = 0;
+        for (LineOperation operation : chunk) {
+            final ChargingLine cLine = chargingLineRepository.findUnique(operation.getKeyToLeaseExternalReference(), operation.getKeyToChargeReference(), operation.getFromDat(), operation.getTomDat(), operation.getArsBel(), operation.getExportDate(), null);
+            if (cLine == null || cLine.discardedOrAggregatedOrApplied()) {
+                continue;
+            }
+            switch (operation.getType()) {
+            case APPLY:
+                cLine.apply();
+                break;
+            case DISCARD:
+                cLine.discard();
+                break;
+            case NO_UPDATE:
+                cLine.noUpdate();
+                break;
+            }
+            if (cLine.discardedOrAggregatedOrApplied()) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
     void updateOrCreateItem(final FastNetChargingOnLeaseDataLine cdl) {
         final ChargingLine cLine = chargingLineRepository.findUnique(cdl.getKeyToLeaseExternalReference(), cdl.getKeyToChargeReference(), cdl.getFromDat(), cdl.getTomDat(), cdl.getArsBel(), cdl.getExportDate(), null);
         if (cLine!=null) cLine.apply();
@@ -862,4 +1071,8 @@ public class FastnetImportService {
     @Inject FastNetRentRollOnLeaseDataLineRepo rentRollOnLeaseDataLineRepo;
 
     @Inject FastNetChargingOnLeaseDataLineRepo chargingOnLeaseDataLineRepo;
+
+    @Inject ParallelWorkService parallelWorkService;
+
+    @Inject TransactionService transactionService;
 }
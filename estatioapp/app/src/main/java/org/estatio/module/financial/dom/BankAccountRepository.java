@@ -19,7 +19,9 @@
 
 package org.estatio.module.financial.dom;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -35,6 +37,7 @@ import org.apache.isis.applib.annotation.Programmatic;
 import org.incode.module.base.dom.utils.StringUtils;
 
 import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
+import org.estatio.module.base.dom.search.SearchIndexService;
 import org.estatio.module.party.dom.Organisation;
 import org.estatio.module.party.dom.Party;
 
@@ -106,6 +109,14 @@ public class BankAccountRepository extends UdoDomainRepositoryAndFactory<BankAcc
     }
 
     public List<BankAccount> autoComplete(@MinLength(3) final String search){
+        if (searchIndexService.isAvailableFor(searchIndexDefinition, search)) {
+            final List<BankAccount> bankAccounts = searchIndexService.search(searchIndexDefinition, search);
+            if (bankAccounts != null) {
+                return bankAccounts.stream()
+                        .filter(x->x.getDeprecated()==null || !x.getDeprecated())
+                        .collect(Collectors.toList());
+            }
+        }
         String regex = StringUtils.wildcardToCaseInsensitiveRegex("*" + search + "*");
         return findByReferenceMatches(regex)
                 .stream()
@@ -119,7 +130,31 @@ public class BankAccountRepository extends UdoDomainRepositoryAndFactory<BankAcc
                 null : findBankAccountsByOwner(party).get(0);
     }
 
+    private final SearchIndexService.Definition<BankAccount> searchIndexDefinition =
+            new SearchIndexService.Definition<BankAccount>(BankAccount.class) {
+
+        @Override
+        protected List<BankAccount> loadAll() {
+            return allInstances();
+        }
+
+        @Override
+        protected List<String> termsOf(final BankAccount bankAccount) {
+            return Collections.singletonList(bankAccount.getReference());
+        }
+    };
+
+    @Programmatic
+    @Override
+    public void init(final Map<String, String> properties) {
+        super.init(properties);
+        searchIndexService.register(searchIndexDefinition);
+    }
+
     @Inject
     FinancialAccountRepository financialAccountRepository;
 
+    @Inject
+    SearchIndexService searchIndexService;
+
 }
@@ -182,8 +182,7 @@ public class Index
     @Programmatic
     public BigDecimal getIndexValueForDate(final LocalDate date) {
         if (date != null) {
-            IndexValue indexValue = indexValueRepository.findByIndexAndStartDate(this, date);
-            return indexValue == null ? null : indexValue.getValue();
+            return indexTimeSeriesService.timeSeriesFor(this).valueForDate(date);
         }
         return null;
     }
@@ -193,12 +192,7 @@ public class Index
         if (baseIndexStartDate == null || nextIndexStartDate == null) {
             return null;
         }
-        IndexValue nextIndexValue = indexValueRepository.findByIndexAndStartDate(this, nextIndexStartDate);
-        if (nextIndexValue != null) {
-            final BigDecimal rebaseFactor = nextIndexValue.getIndexBase().factorForDate(baseIndexStartDate);
-            return rebaseFactor;
-        }
-        return null;
+        return indexTimeSeriesService.timeSeriesFor(this).rebaseFactorForDates(baseIndexStartDate, nextIndexStartDate);
     }
 
     @MemberOrder(name = "indexbases", sequence = "1")
@@ -221,9 +215,10 @@ public class Index
 
     @Programmatic
     public void initialize(final Indexable input) {
-        input.setBaseIndexValue(getIndexValueForDate(input.getBaseIndexStartDate()));
-        input.setNextIndexValue(getIndexValueForDate(input.getNextIndexStartDate()));
-        input.setRebaseFactor(getRebaseFactorForDates(input.getBaseIndexStartDate(), input.getNextIndexStartDate()));
+        final IndexTimeSeries timeSeries = indexTimeSeriesService.timeSeriesFor(this);
+        input.setBaseIndexValue(timeSeries.valueForDate(input.getBaseIndexStartDate()));
+        input.setNextIndexValue(timeSeries.valueForDate(input.getNextIndexStartDate()));
+        input.setRebaseFactor(timeSeries.rebaseFactorForDates(input.getBaseIndexStartDate(), input.getNextIndexStartDate()));
     }
 
     @Inject
@@ -232,4 +227,7 @@ public class Index
     @Inject
     private IndexBaseRepository indexBaseRepository;
 
+    @Inject
+    IndexTimeSeriesService indexTimeSeriesService;
+
 }
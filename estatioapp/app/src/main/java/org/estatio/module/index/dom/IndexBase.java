@@ -46,6 +46,9 @@ import org.apache.isis.applib.annotation.Property;
 import org.apache.isis.applib.annotation.PropertyLayout;
 import org.apache.isis.applib.annotation.RenderType;
 import org.apache.isis.applib.annotation.SemanticsOf;
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
 
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
 
@@ -96,7 +99,10 @@ import lombok.Setter;
 })
 @DomainObject(
         editing = Editing.DISABLED,
-        objectType = "org.estatio.dom.index.IndexBase"
+        objectType = "org.estatio.dom.index.IndexBase",
+        persistedLifecycleEvent = IndexBase.PersistedLifecycleEvent.class,
+        updatedLifecycleEvent = IndexBase.UpdatedLifecycleEvent.class,
+        removingLifecycleEvent = IndexBase.RemovingLifecycleEvent.class
 )
 public class IndexBase
         extends UdoDomainObject2<IndexBase>
@@ -104,6 +110,10 @@ public class IndexBase
 
     public static final int FACTOR_SCALE = 4;
 
+    public static class PersistedLifecycleEvent extends ObjectPersistedEvent<IndexBase> {}
+    public static class UpdatedLifecycleEvent extends ObjectUpdatedEvent<IndexBase> {}
+    public static class RemovingLifecycleEvent extends ObjectRemovingEvent<IndexBase> {}
+
     public IndexBase() {
         super("index, startDate desc");
     }
@@ -21,6 +21,8 @@ package org.estatio.module.index.dom;
 import java.math.BigDecimal;
 import java.util.List;
 
+import javax.inject.Inject;
+
 import org.joda.time.LocalDate;
 
 import org.apache.isis.applib.annotation.DomainService;
@@ -47,6 +49,7 @@ public class IndexBaseRepository
         indexBase.setFactor(factor);
         indexBase.setIndex(index);
         persistIfNotAlready(indexBase);
+        indexTimeSeriesService.invalidate(index);
         return indexBase;
     }
 
@@ -84,4 +87,7 @@ public class IndexBaseRepository
         return allInstances();
     }
 
+    @Inject
+    IndexTimeSeriesService indexTimeSeriesService;
+
 }
@@ -0,0 +1,221 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.index.dom;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.time.LocalDate;
+
+/**
+ * An immutable snapshot of the {@link IndexValue values} and {@link IndexBase bases} of an {@link Index}, answering
+ * the same questions as {@link Index#getIndexValueForDate(LocalDate)} and
+ * {@link Index#getRebaseFactorForDates(LocalDate, LocalDate)} without any query.
+ *
+ * <p>
+ * Values are held in a dense array with one slot per month, starting at the month of the first value; the (rare)
+ * values that do not start on the first of a month are held separately. For every base, the
+ * {@link IndexBase#factorForDate(LocalDate) rebase factor} is precomputed for each of the periods between the
+ * start dates of the bases, so that it is a lookup rather than a walk over the chain of previous bases.
+ * </p>
+ *
+ * <p>
+ * Holds no reference to any (persistent) domain object, so can be shared across sessions.
+ * </p>
+ */
+public class IndexTimeSeries {
+
+    private static final int NO_BASE = -1;
+
+    private final int firstMonth;
+    private final BigDecimal[] monthValues;
+    private final int[] monthBases;
+    private final Map<LocalDate, Integer> irregularDates;
+    private final BigDecimal[] irregularValues;
+    private final int[] irregularBases;
+
+    private final LocalDate[] baseStartDates;
+    /**
+     * For base <tt>k</tt> and a date in period <tt>p</tt> (<tt>0</tt> before the first base, <tt>p</tt> on or
+     * after the start of the <tt>p</tt>-th base), the rebase factor is <tt>rebaseFactors[k][p]</tt>.
+     */
+    private final BigDecimal[][] rebaseFactors;
+
+    /**
+     * @param indexBases - all the bases of the index
+     * @param indexValues - all the values of the index, in order of start date; if there is more than one value for
+     *                    a start date, the first one is used
+     */
+    public IndexTimeSeries(final Collection<IndexBase> indexBases, final List<IndexValue> indexValues) {
+
+        // bases
+        final List<IndexBase> bases = new ArrayList<>(indexBases);
+        bases.sort((b1, b2) -> b1.getStartDate().compareTo(b2.getStartDate()));
+        final Map<IndexBase, Integer> ordinals = new IdentityHashMap<>();
+        baseStartDates = new LocalDate[bases.size()];
+        for (int i = 0; i < bases.size(); i++) {
+            ordinals.put(bases.get(i), i);
+            baseStartDates[i] = bases.get(i).getStartDate();
+        }
+        rebaseFactors = new BigDecimal[bases.size()][bases.size() + 1];
+        for (int k = 0; k < bases.size(); k++) {
+            for (int p = 0; p <= bases.size(); p++) {
+                // any date within the period will do, because only its position relative to the start dates matters
+                final LocalDate representative = p == 0 ? baseStartDates[0].minusDays(1) : baseStartDates[p - 1];
+                rebaseFactors[k][p] = factorForDate(bases.get(k), representative);
+            }
+        }
+
+        // values
+        final List<IndexValue> regular = new ArrayList<>();
+        final List<IndexValue> irregular = new ArrayList<>();
+        for (IndexValue indexValue : indexValues) {
+            (indexValue.getStartDate().getDayOfMonth() == 1 ? regular : irregular).add(indexValue);
+        }
+
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        for (IndexValue indexValue : regular) {
+            final int month = monthOf(indexValue.getStartDate());
+            first = Math.min(first, month);
+            last = Math.max(last, month);
+        }
+        firstMonth = regular.isEmpty() ? 0 : first;
+        final int size = regular.isEmpty() ? 0 : last - first + 1;
+        monthValues = new BigDecimal[size];
+        monthBases = new int[size];
+        Arrays.fill(monthBases, NO_BASE);
+        for (IndexValue indexValue : regular) {
+            final int slot = monthOf(indexValue.getStartDate()) - firstMonth;
+            if (monthValues[slot] == null) {
+                monthValues[slot] = indexValue.getValue();
+                monthBases[slot] = ordinalOf(ordinals, indexValue.getIndexBase());
+            }
+        }
+
+        irregularDates = new HashMap<>();
+        irregularValues = new BigDecimal[irregular.size()];
+        irregularBases = new int[irregular.size()];
+        for (IndexValue indexValue : irregular) {
+            if (!irregularDates.containsKey(indexValue.getStartDate())) {
+                final int slot = irregularDates.size();
+                irregularDates.put(indexValue.getStartDate(), slot);
+                irregularValues[slot] = indexValue.getValue();
+                irregularBases[slot] = ordinalOf(ordinals, indexValue.getIndexBase());
+            }
+        }
+    }
+
+    private static int ordinalOf(final Map<IndexBase, Integer> ordinals, final IndexBase indexBase) {
+        final Integer ordinal = ordinals.get(indexBase);
+        return ordinal != null ? ordinal : NO_BASE;
+    }
+
+    /**
+     * Same as {@link IndexBase#factorForDate(LocalDate)}; a factor that is missing where it is needed yields
+     * <tt>null</tt> (rather than an exception).
+     */
+    private static BigDecimal factorForDate(final IndexBase indexBase, final LocalDate date) {
+        if (!date.isBefore(indexBase.getStartDate())) {
+            return BigDecimal.ONE;
+        }
+        if (indexBase.getFactor() == null) {
+            return null;
+        }
+        if (indexBase.getPrevious() == null) {
+            return indexBase.getFactor().multiply(BigDecimal.ONE);
+        }
+        final BigDecimal previousFactor = factorForDate(indexBase.getPrevious(), date);
+        return previousFactor == null ? null : indexBase.getFactor().multiply(previousFactor);
+    }
+
+    static int monthOf(final LocalDate date) {
+        return date.getYear() * 12 + date.getMonthOfYear() - 1;
+    }
+
+    /**
+     * Same as {@link Index#getIndexValueForDate(LocalDate)}.
+     */
+    public BigDecimal valueForDate(final LocalDate date) {
+        if (date == null) {
+            return null;
+        }
+        if (date.getDayOfMonth() != 1) {
+            final Integer slot = irregularDates.get(date);
+            return slot == null ? null : irregularValues[slot];
+        }
+        final int slot = monthOf(date) - firstMonth;
+        return slot < 0 || slot >= monthValues.length ? null : monthValues[slot];
+    }
+
+    /**
+     * Same as {@link Index#getRebaseFactorForDates(LocalDate, LocalDate)}.
+     */
+    public BigDecimal rebaseFactorForDates(final LocalDate baseIndexStartDate, final LocalDate nextIndexStartDate) {
+        if (baseIndexStartDate == null || nextIndexStartDate == null) {
+            return null;
+        }
+        final int base = baseOfValueForDate(nextIndexStartDate);
+        if (base == NO_BASE) {
+            return null;
+        }
+        return rebaseFactors[base][periodOf(baseIndexStartDate)];
+    }
+
+    private int baseOfValueForDate(final LocalDate date) {
+        if (date.getDayOfMonth() != 1) {
+            final Integer slot = irregularDates.get(date);
+            return slot == null ? NO_BASE : irregularBases[slot];
+        }
+        final int slot = monthOf(date) - firstMonth;
+        return slot < 0 || slot >= monthValues.length || monthValues[slot] == null ? NO_BASE : monthBases[slot];
+    }
+
+    private int periodOf(final LocalDate date) {
+        // the number of bases starting on or before the date
+        int low = 0;
+        int high = baseStartDates.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (baseStartDates[mid].isAfter(date)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    public int getNumberOfValues() {
+        int count = irregularDates.size();
+        for (BigDecimal monthValue : monthValues) {
+            if (monthValue != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.index.dom;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+
+/**
+ * Holds an {@link IndexTimeSeries} per {@link Index}, loaded with a single query on first use.
+ *
+ * <p>
+ * A time series is discarded once a transaction in which any {@link IndexValue value} or {@link IndexBase base} of
+ * its index was created, changed or removed has committed, and is then reloaded on next use. Until then, the
+ * changing transaction itself uses a time series of its own (reloaded after each change), while all other sessions
+ * keep using the committed one. A time series loaded while a discard happens is not cached, as it may be stale.
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class IndexTimeSeriesService {
+
+    /**
+     * Cache hits/misses, since this service was started.
+     */
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final int cached;
+
+        Statistics(final long hits, final long misses, final int cached) {
+            this.hits = hits;
+            this.misses = misses;
+            this.cached = cached;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public int getCached() {
+            return cached;
+        }
+
+        public double getHitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "hits: %d, misses: %d (hit rate %.1f%%), indices cached: %d",
+                    hits, misses, getHitRate() * 100, cached);
+        }
+    }
+
+    /**
+     * The indices changed by a transaction, and the time series it has loaded for them since.
+     */
+    static class Changes {
+        private boolean all;
+        private final Set<String> references = new HashSet<>();
+        private final Map<String, IndexTimeSeries> timeSeriesByReference = new HashMap<>();
+
+        boolean contains(final String reference) {
+            return all || references.contains(reference);
+        }
+    }
+
+    private final ConcurrentMap<String, IndexTimeSeries> timeSeriesByReference = new ConcurrentHashMap<>();
+    private final AtomicLong discards = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        eventBusService.register(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+    }
+
+    @Programmatic
+    public IndexTimeSeries timeSeriesFor(final Index index) {
+        final String reference = index.getReference();
+
+        final Changes changes = changesOfTransaction();
+        if (changes.contains(reference)) {
+            // not (yet) visible to other sessions, so not shared
+            final IndexTimeSeries changed = changes.timeSeriesByReference.get(reference);
+            if (changed != null) {
+                hits.incrementAndGet();
+                return changed;
+            }
+            misses.incrementAndGet();
+            final IndexTimeSeries timeSeries = load(index);
+            changes.timeSeriesByReference.put(reference, timeSeries);
+            return timeSeries;
+        }
+
+        final IndexTimeSeries cached = timeSeriesByReference.get(reference);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        final long discardsBefore = discards.get();
+        final IndexTimeSeries timeSeries = load(index);
+        timeSeriesByReference.put(reference, timeSeries);
+        if (discards.get() != discardsBefore) {
+            // may have been loaded before the changes being discarded were committed
+            timeSeriesByReference.remove(reference, timeSeries);
+        }
+        return timeSeries;
+    }
+
+    private IndexTimeSeries load(final Index index) {
+        return new IndexTimeSeries(index.getIndexBases(), indexValueRepository.findByIndex(index));
+    }
+
+    /**
+     * Discards the time series of the index (or of all indices, if <tt>null</tt>) for the current transaction now,
+     * and for all other sessions once the transaction has committed.
+     */
+    @Programmatic
+    public void invalidate(final Index index) {
+        final Changes changes = changesOfTransaction();
+        if (index != null && index.getReference() != null) {
+            changes.references.add(index.getReference());
+            changes.timeSeriesByReference.remove(index.getReference());
+        } else {
+            changes.all = true;
+            changes.timeSeriesByReference.clear();
+        }
+        transactionCompletionService.afterCommit(this, () -> discard(changes));
+    }
+
+    private Changes changesOfTransaction() {
+        return transactionCompletionService.transactionState(this, Changes::new);
+    }
+
+    private void discard(final Changes changes) {
+        discards.incrementAndGet();
+        if (changes.all) {
+            timeSeriesByReference.clear();
+        } else {
+            for (String reference : changes.references) {
+                timeSeriesByReference.remove(reference);
+            }
+        }
+    }
+
+    @Programmatic
+    public void invalidateCache() {
+        discards.incrementAndGet();
+        timeSeriesByReference.clear();
+    }
+
+    @Programmatic
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), timeSeriesByReference.size());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final IndexValue.PersistedLifecycleEvent ev) {
+        invalidate(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final IndexValue.UpdatedLifecycleEvent ev) {
+        invalidate(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final IndexValue.RemovingLifecycleEvent ev) {
+        invalidate(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final IndexBase.PersistedLifecycleEvent ev) {
+        invalidate(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final IndexBase.UpdatedLifecycleEvent ev) {
+        invalidate(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final IndexBase.RemovingLifecycleEvent ev) {
+        invalidate(ev.getSource());
+    }
+
+    @Programmatic
+    public void invalidate(final IndexValue indexValue) {
+        invalidate(indexValue == null ? null : indexValue.getIndexBase());
+    }
+
+    @Programmatic
+    public void invalidate(final IndexBase indexBase) {
+        invalidate(indexBase == null ? null : indexBase.getIndex());
+    }
+
+    @Inject
+    IndexValueRepository indexValueRepository;
+
+    @Inject
+    EventBusService eventBusService;
+
+    @Inject
+    TransactionCompletionService transactionCompletionService;
+
+}
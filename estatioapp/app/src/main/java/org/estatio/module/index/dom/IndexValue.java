@@ -33,6 +33,9 @@ import org.apache.isis.applib.annotation.PropertyLayout;
 import org.apache.isis.applib.annotation.SemanticsOf;
 import org.apache.isis.applib.annotation.Where;
 import org.apache.isis.applib.services.eventbus.ActionDomainEvent;
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
 import org.apache.isis.applib.services.repository.RepositoryService;
 import org.apache.isis.applib.services.user.UserService;
 
@@ -75,13 +78,22 @@ import lombok.Setter;
                 value = "SELECT "
                         + "FROM org.estatio.module.index.dom.IndexValue "
                         + "WHERE indexBase.index == :index "
-                        + "ORDER BY startDate DESC")
+                        + "ORDER BY startDate DESC"),
+        @javax.jdo.annotations.Query(
+                name = "findByIndex", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.module.index.dom.IndexValue "
+                        + "WHERE indexBase.index == :index "
+                        + "ORDER BY startDate ASC")
 })
 @javax.jdo.annotations.Unique(
         name = "IndexValue_indexBase_startDate_IDX",
         members = { "indexBase", "startDate" })
 @DomainObject(
-        objectType = "org.estatio.dom.index.IndexValue"
+        objectType = "org.estatio.dom.index.IndexValue",
+        persistedLifecycleEvent = IndexValue.PersistedLifecycleEvent.class,
+        updatedLifecycleEvent = IndexValue.UpdatedLifecycleEvent.class,
+        removingLifecycleEvent = IndexValue.RemovingLifecycleEvent.class
 )
 public class IndexValue
         extends UdoDomainObject2<IndexValue>
@@ -130,6 +142,10 @@ public class IndexValue
         return !EstatioRole.SUPERUSER.isApplicableFor(userService.getUser()) ? "You need Superuser rights to remove" : null;
     }
 
+    public static class PersistedLifecycleEvent extends ObjectPersistedEvent<IndexValue> {}
+    public static class UpdatedLifecycleEvent extends ObjectUpdatedEvent<IndexValue> {}
+    public static class RemovingLifecycleEvent extends ObjectRemovingEvent<IndexValue> {}
+
     public static class RemoveEvent extends ActionDomainEvent<IndexValue> {
         private static final long serialVersionUID = 1L;
     }
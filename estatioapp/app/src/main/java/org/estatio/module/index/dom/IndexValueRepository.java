@@ -58,6 +58,9 @@ public class IndexValueRepository
             indexValue = create(indexBase, startDate, value);
         }
         indexValue.setValue(value);
+        // the terms verified by the subscribers of the event below must see the new value (other sessions only will
+        // once this transaction has committed)
+        indexTimeSeriesService.invalidate(indexBase.getIndex());
         // we're not sure this is good practice, but we don't have any better pattern defined in
         // the framework to follow at the moment.
         // The WrapperFactory currently is too much focused on the UI,
@@ -96,6 +99,12 @@ public class IndexValueRepository
                 IndexValueRepository.class, "findIndexValueByIndexAndStartDate", index, startDate);
     }
 
+    public List<IndexValue> findByIndex(
+            final Index index) {
+        return allMatches("findByIndex",
+                "index", index);
+    }
+
     public IndexValue findLastByIndex(
             final Index index) {
         return firstMatch("findLastByIndex",
@@ -117,4 +126,7 @@ public class IndexValueRepository
 
     @Inject
     EventBusService eventBusService;
+
+    @Inject
+    IndexTimeSeriesService indexTimeSeriesService;
 }
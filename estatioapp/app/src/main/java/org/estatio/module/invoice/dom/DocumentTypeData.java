@@ -216,6 +216,20 @@ public enum DocumentTypeData {
             null,
             new DocumentTemplateData[]{}
     ),
+    PAYMENT_BATCH_REVIEW(
+            "PAYMENT_BATCH_REVIEW", "Payment batch review",
+            Nature.NOT_SPECIFIED, null,
+            null,
+            null,
+            new DocumentTemplateData[]{}
+    ),
+    INCOMING_INVOICE_DOWNLOAD(
+            "INCOMING_INVOICE_DOWNLOAD", "Incoming invoice download",
+            Nature.NOT_SPECIFIED, null,
+            null,
+            null,
+            new DocumentTemplateData[]{}
+    ),
     DOCFLOW_METADATA(
             "DOCFLOW_METADATA", "DocFlow Metadata",
             Nature.INCOMING, null,
@@ -25,7 +25,11 @@ public class InvoicingInterval extends AbstractInterval<InvoicingInterval> {
     }
 
     public InvoicingInterval(final LocalDateInterval interval, final LocalDate dueDate) {
-        super(interval.startDate(), interval.endDateExcluding(), IntervalEnding.EXCLUDING_END_DATE);
+        this(interval.startDate(), interval.endDateExcluding(), dueDate);
+    }
+
+    public InvoicingInterval(final LocalDate startDate, final LocalDate endDateExcluding, final LocalDate dueDate) {
+        super(startDate, endDateExcluding, IntervalEnding.EXCLUDING_END_DATE);
         this.dueDate = dueDate;
     }
 
@@ -56,6 +56,7 @@ import org.estatio.module.lease.dom.breaks.BreakOptionRepository;
 import org.estatio.module.lease.dom.breaks.EventSourceLinkForBreakOption;
 import org.estatio.module.lease.dom.invoicing.InvoiceForLease;
 import org.estatio.module.lease.dom.invoicing.InvoiceItemForLease;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal;
 import org.estatio.module.lease.dom.occupancy.Occupancy;
 import org.estatio.module.lease.dom.occupancy.tags.Activity;
 import org.estatio.module.lease.dom.occupancy.tags.Brand;
@@ -132,6 +133,7 @@ public final class EstatioLeaseModule extends ModuleAbstract {
 
                 deleteFrom(InvoiceItemForLease.class);
                 deleteFrom(InvoiceForLease.class);
+                deleteFrom(InvoiceSummaryTotal.class);
 
                 deleteFrom(BreakOption.class); // superclass handles the subclasses
                 deleteFrom(LeaseItemSource.class);
@@ -177,7 +177,7 @@ public class InvoiceServiceMenu extends UdoDomainService<InvoiceServiceMenu> {
             final LocalDate invoiceDueDate,
             final LocalDate startDueDate,
             final LocalDate nextDueDate) {
-        final String runId = invoiceCalculationService.calculateAndInvoice(
+        final InvoiceCalculationService.Run run = invoiceCalculationService.calculateAndInvoiceRun(
                 InvoiceCalculationParameters.builder()
                         .property(property)
                         .leaseItemTypes(leaseItemTypes)
@@ -185,7 +185,11 @@ public class InvoiceServiceMenu extends UdoDomainService<InvoiceServiceMenu> {
                         .invoiceDueDate(invoiceDueDate)
                         .startDueDate(startDueDate)
                         .nextDueDate(nextDueDate).build());
-        return invoiceSummaries.findByRunId(runId);
+        if (!run.failuresByLeaseReference().isEmpty()) {
+            getContainer().warnUser(String.format(
+                    "Could not calculate lease(s) %s", run.failuresByLeaseReference()));
+        }
+        return invoiceSummaries.findByRunId(run.runId());
     }
 
     private InvoiceRunType doDefault1CalculateInvoicesForProperty() {
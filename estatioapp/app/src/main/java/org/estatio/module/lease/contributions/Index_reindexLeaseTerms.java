@@ -0,0 +1,73 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.contributions;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.Action;
+import org.apache.isis.applib.annotation.Mixin;
+import org.apache.isis.applib.annotation.SemanticsOf;
+import org.apache.isis.applib.services.message.MessageService;
+
+import org.estatio.module.index.dom.Index;
+import org.estatio.module.index.dom.IndexValue;
+import org.estatio.module.index.dom.IndexValueRepository;
+import org.estatio.module.lease.dom.indexation.BulkIndexationService;
+
+/**
+ * This cannot be inlined (needs to be a mixin) because Index does not know about leases
+ */
+@Mixin(method = "exec")
+public class Index_reindexLeaseTerms {
+
+    private final Index index;
+
+    public Index_reindexLeaseTerms(final Index index) {
+        this.index = index;
+    }
+
+    @Action(semantics = SemanticsOf.IDEMPOTENT)
+    public Index exec(final LocalDate startDate) {
+        final BulkIndexationService.Report report = bulkIndexationService.reindex(index, startDate);
+        messageService.informUser(report.toString());
+        for (Map.Entry<String, String> failure : report.getFailures().entrySet()) {
+            messageService.warnUser(String.format("%s: %s", failure.getKey(), failure.getValue()));
+        }
+        return index;
+    }
+
+    public LocalDate default0Exec() {
+        final IndexValue last = indexValueRepository.findLastByIndex(index);
+        return last == null ? null : last.getStartDate();
+    }
+
+    @Inject
+    BulkIndexationService bulkIndexationService;
+
+    @Inject
+    IndexValueRepository indexValueRepository;
+
+    @Inject
+    MessageService messageService;
+
+}
@@ -33,6 +33,7 @@ import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 
 import org.estatio.module.invoice.dom.InvoicingInterval;
 import org.estatio.module.lease.dom.util.CalendarUtils;
+import org.estatio.module.lease.dom.util.RecurrenceCalendar;
 
 public enum InvoicingFrequency {
 
@@ -109,12 +110,14 @@ public enum InvoicingFrequency {
             final BigDecimal denominator) {
 
         this.rrule = frequency == null ? null : frequency.getRrule();
+        this.calendar = RecurrenceCalendar.of(this.rrule);
         this.numerator = numerator;
         this.denominator = denominator;
         this.paidIn = paidIn;
     }
 
     private final String rrule;
+    private final RecurrenceCalendar calendar;
     private final PaidIn paidIn;
     private final BigDecimal numerator;
     private final BigDecimal denominator;
@@ -126,6 +129,10 @@ public enum InvoicingFrequency {
         return paidIn == PaidIn.ADVANCE ? new LocalDate(interval.getStartMillis()) : new LocalDate(interval.getEndMillis()).minusDays(1);
     }
 
+    private LocalDate dueDateOfInterval(final LocalDate startDate, final LocalDate endDateExcluding) {
+        return paidIn == PaidIn.ADVANCE ? startDate : endDateExcluding.minusDays(1);
+    }
+
     private LocalDate dueDateOfInterval(final LocalDateInterval interval) {
         if (interval == null) {
             return null;
@@ -134,16 +141,21 @@ public enum InvoicingFrequency {
     }
 
     public InvoicingInterval intervalContaining(final LocalDate date) {
-        Interval interval = CalendarUtils.intervalContaining(date, rrule);
-        return new InvoicingInterval(interval, dueDateOfInterval(interval));
+        if (calendar == null || date == null) {
+            Interval interval = CalendarUtils.intervalContaining(date, rrule);
+            return new InvoicingInterval(interval, dueDateOfInterval(interval));
+        }
+        final LocalDate startDate = calendar.startDateOfIntervalContaining(date);
+        final LocalDate endDateExcluding = calendar.endDateOfIntervalContaining(date);
+        return new InvoicingInterval(startDate, endDateExcluding, dueDateOfInterval(startDate, endDateExcluding));
     }
 
     public InvoicingInterval intervalMatching(final LocalDate startDate) {
-        final Interval interval = CalendarUtils.intervalMatching(startDate, this.rrule);
-        if (interval == null) {
+        if (calendar == null || startDate == null || !calendar.isIntervalStart(startDate)) {
             return null;
         }
-        return new InvoicingInterval(interval, dueDateOfInterval(interval));
+        final LocalDate endDateExcluding = calendar.endDateOfIntervalContaining(startDate);
+        return new InvoicingInterval(startDate, endDateExcluding, dueDateOfInterval(startDate, endDateExcluding));
     }
 
     public List<InvoicingInterval> intervalsInRange(final LocalDateInterval interval) {
@@ -151,9 +163,14 @@ public enum InvoicingFrequency {
     }
 
     public List<InvoicingInterval> intervalsInRange(final LocalDate periodStartDate, final LocalDate nextPeriodStartDate) {
+        if (periodStartDate.compareTo(nextPeriodStartDate) > 0) {
+            throw new IllegalArgumentException(
+                    String.format("Start date %s is after end date %s", periodStartDate.toString(), nextPeriodStartDate.toString()));
+        }
         List<InvoicingInterval> invoicingIntervals = new ArrayList<>();
-        for (Interval interval : CalendarUtils.intervalsInRange(periodStartDate, nextPeriodStartDate, this.rrule)) {
-            invoicingIntervals.add(new InvoicingInterval(interval, dueDateOfInterval(interval)));
+        if (calendar != null) {
+            calendar.forEachIntervalInRange(periodStartDate, nextPeriodStartDate,
+                    (start, end) -> invoicingIntervals.add(new InvoicingInterval(start, end, dueDateOfInterval(start, end))));
         }
         return invoicingIntervals;
     }
@@ -162,13 +179,13 @@ public enum InvoicingFrequency {
             final LocalDate periodStartDate,
             final LocalDate periodEndDate) {
         List<InvoicingInterval> invoicingIntervals = new ArrayList<>();
-        if (periodEndDate.compareTo(periodStartDate) > 0) {
-            for (Interval interval : CalendarUtils.intervalsInRange(periodStartDate, periodEndDate, this.rrule)) {
-                LocalDate dueDate = dueDateOfInterval(interval);
+        if (periodEndDate.compareTo(periodStartDate) > 0 && calendar != null) {
+            calendar.forEachIntervalInRange(periodStartDate, periodEndDate, (start, end) -> {
+                LocalDate dueDate = dueDateOfInterval(start, end);
                 if (dueDate.compareTo(periodEndDate) < 0) {
-                    invoicingIntervals.add(new InvoicingInterval(interval, dueDate));
+                    invoicingIntervals.add(new InvoicingInterval(start, end, dueDate));
                 }
-            }
+            });
         }
         return invoicingIntervals;
     }
@@ -184,15 +201,15 @@ public enum InvoicingFrequency {
                 invoicingIntervals.add(new InvoicingInterval(intervalToUse, dueDateOfSourceInterval));
             }
         } else {
-            for (Interval interval : CalendarUtils.intervalsInRange(
+            calendar.forEachIntervalInRange(
                     rangeInterval.startDate(),
                     rangeInterval.endDateExcluding(),
-                    this.rrule)) {
-                LocalDate dueDate = dueDateOfInterval(interval);
-                if (rangeInterval.contains(dueDate)) {
-                    invoicingIntervals.add(new InvoicingInterval(interval, dueDate));
-                }
-            }
+                    (start, end) -> {
+                        LocalDate dueDate = dueDateOfInterval(start, end);
+                        if (rangeInterval.contains(dueDate)) {
+                            invoicingIntervals.add(new InvoicingInterval(start, end, dueDate));
+                        }
+                    });
         }
         return invoicingIntervals;
     }
@@ -19,8 +19,10 @@
 
 package org.estatio.module.lease.dom;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -48,6 +50,7 @@ import org.estatio.module.agreement.dom.type.AgreementTypeRepository;
 import org.estatio.module.asset.dom.FixedAsset;
 import org.estatio.module.asset.dom.Property;
 import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
+import org.estatio.module.base.dom.search.SearchIndexService;
 import org.estatio.module.lease.dom.occupancy.tags.Brand;
 import org.estatio.module.party.dom.Party;
 
@@ -187,9 +190,39 @@ public class LeaseRepository extends UdoDomainRepositoryAndFactory<Lease> {
 
     @Programmatic
     public List<Lease> autoComplete(final String searchPhrase) {
-        return searchPhrase.length() > 2
-                ? matchByReferenceOrName("*" + searchPhrase + "*", true)
-                : Lists.<Lease>newArrayList();
+        if (searchPhrase.length() <= 2) {
+            return Lists.newArrayList();
+        }
+        if (searchIndexService.isAvailableFor(searchIndexDefinition, searchPhrase)) {
+            final List<Lease> leases = searchIndexService.search(searchIndexDefinition, searchPhrase);
+            if (leases != null) {
+                return leases.stream()
+                        .sorted(Comparator.comparing(Lease::getReference))
+                        .collect(Collectors.toList());
+            }
+        }
+        return matchByReferenceOrName("*" + searchPhrase + "*", true);
+    }
+
+    private final SearchIndexService.Definition<Lease> searchIndexDefinition =
+            new SearchIndexService.Definition<Lease>(Lease.class) {
+
+        @Override
+        protected List<Lease> loadAll() {
+            return allInstances();
+        }
+
+        @Override
+        protected List<String> termsOf(final Lease lease) {
+            return Arrays.asList(lease.getReference(), lease.getName(), lease.getExternalReference());
+        }
+    };
+
+    @Programmatic
+    @Override
+    public void init(final Map<String, String> properties) {
+        super.init(properties);
+        searchIndexService.register(searchIndexDefinition);
     }
 
     // //////////////////////////////////////
@@ -203,6 +236,9 @@ public class LeaseRepository extends UdoDomainRepositoryAndFactory<Lease> {
     @Inject
     ClockService clockService;
 
+    @Inject
+    SearchIndexService searchIndexService;
+
     @Inject
     AgreementRoleCommunicationChannelTypeRepository agreementRoleCommunicationChannelTypeRepository;
 }
@@ -56,7 +56,14 @@ import lombok.Setter;
                 value = "SELECT "
                         + "FROM org.estatio.module.lease.dom.LeaseTermForIndexable "
                         + "WHERE index == :index "
-                        + "   && (baseIndexStartDate == :date || nextIndexStartDate == :date) ")
+                        + "   && (baseIndexStartDate == :date || nextIndexStartDate == :date) "),
+        @javax.jdo.annotations.Query(
+                name = "findByIndexAndStatusAndIndexStartDateOnOrAfter", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.module.lease.dom.LeaseTermForIndexable "
+                        + "WHERE index == :index "
+                        + "   && status == :status "
+                        + "   && (baseIndexStartDate >= :date || nextIndexStartDate >= :date) ")
 })
 public class LeaseTermForIndexable extends LeaseTerm implements Indexable {
 
@@ -268,6 +275,15 @@ public class LeaseTermForIndexable extends LeaseTerm implements Indexable {
         }
     }
 
+    /**
+     * Recomputes the indexation of this term (only terms that are still {@link LeaseTermStatus#NEW new} are
+     * indexed), without verifying the rest of its lease item.
+     */
+    @Programmatic
+    public void reindex() {
+        doAlign();
+    }
+
     // //////////////////////////////////////
 
     @Override
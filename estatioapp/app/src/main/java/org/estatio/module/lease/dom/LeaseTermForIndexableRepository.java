@@ -41,5 +41,16 @@ public class LeaseTermForIndexableRepository extends UdoDomainRepositoryAndFacto
         return allMatches("findByIndexAndDate", "index", index, "date", date);
     }
 
+    /**
+     * The terms with the given status that use a value of the index starting on or after the given date, either as
+     * base or as next index value.
+     */
+    public List<LeaseTermForIndexable> findByIndexAndStatusAndIndexStartDateOnOrAfter(
+            final Index index,
+            final LeaseTermStatus status,
+            final LocalDate date) {
+        return allMatches("findByIndexAndStatusAndIndexStartDateOnOrAfter", "index", index, "status", status, "date", date);
+    }
+
 
 }
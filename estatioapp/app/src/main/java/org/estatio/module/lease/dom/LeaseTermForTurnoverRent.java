@@ -54,8 +54,7 @@ public class LeaseTermForTurnoverRent extends LeaseTerm {
     private String turnoverRentRule;
 
     public String validateTurnoverRentRule(final String turnoverRentrule) {
-        TurnoverRentRuleHelper helper = new TurnoverRentRuleHelper(turnoverRentrule);
-        if (!helper.isValid()) {
+        if (!TurnoverRentRule.of(turnoverRentrule).isValid()) {
             return "'" + turnoverRentrule + "' is not a valid rule";
         }
         return null;
@@ -202,8 +201,7 @@ public class LeaseTermForTurnoverRent extends LeaseTerm {
             // Audited Turnover Rent
             if (getTurnoverRentRule() != null) {
                 // Ignore the rule when empty
-                TurnoverRentRuleHelper helper = new TurnoverRentRuleHelper(getTurnoverRentRule());
-                BigDecimal newAuditedTurnoverRent = helper.calculateRent(getAuditedTurnover()).subtract(getContractualRent());
+                BigDecimal newAuditedTurnoverRent = TurnoverRentRule.of(getTurnoverRentRule()).calculateRent(getAuditedTurnover()).subtract(getContractualRent());
                 if (ObjectUtils.compare(newAuditedTurnoverRent, BigDecimal.ZERO) < 0) {
                     newAuditedTurnoverRent = BigDecimal.ZERO;
                 }
@@ -20,7 +20,7 @@ package org.estatio.module.lease.dom;
 
 import org.joda.time.LocalDate;
 
-import org.estatio.module.lease.dom.util.CalendarUtils;
+import org.estatio.module.lease.dom.util.RecurrenceCalendar;
 import org.incode.module.base.dom.utils.StringUtils;
 
 
@@ -32,6 +32,7 @@ public enum LeaseTermFrequency {
 
     private LeaseTermFrequency(final String rrule) {
         this.rrule = rrule;
+        this.calendar = RecurrenceCalendar.of(rrule);
     }
     
     
@@ -40,6 +41,7 @@ public enum LeaseTermFrequency {
     }
 
     private String rrule;
+    private RecurrenceCalendar calendar;
 
     public String rrule() {
         return rrule;
@@ -48,7 +50,7 @@ public enum LeaseTermFrequency {
     // //////////////////////////////////////
 
     public LocalDate nextDate(final LocalDate date) {
-        return CalendarUtils.nextDate(date, this.rrule);
+        return calendar == null ? null : calendar.nextDate(date);
     }
 
 
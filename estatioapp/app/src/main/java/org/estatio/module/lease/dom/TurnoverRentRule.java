@@ -0,0 +1,155 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.estatio.module.invoice.dom.InvoiceConstants;
+
+/**
+ * A parsed turnover rent rule, for example <tt>500000;5;750000;6;7</tt>: 5% up to a turnover of 500000, 6% up to
+ * 750000 and 7% above that.
+ *
+ * <p>
+ * Instances are immutable and are obtained using {@link #of(String)}, which keeps the most recently used rules so
+ * that the (few distinct) rules of a portfolio are only parsed once.
+ * </p>
+ */
+public final class TurnoverRentRule {
+
+    static final int MAX_CACHED = 1000;
+
+    private static final Pattern NUMERIC = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    private static final TurnoverRentRule INVALID = new TurnoverRentRule(null, false, new BigDecimal[0], new BigDecimal[0]);
+
+    private static final Map<String, TurnoverRentRule> CACHE =
+            Collections.synchronizedMap(new LinkedHashMap<String, TurnoverRentRule>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, TurnoverRentRule> eldest) {
+                    return size() > MAX_CACHED;
+                }
+            });
+
+    private final String text;
+    private final boolean valid;
+    /**
+     * The upper bound of each tier but the last.
+     */
+    private final BigDecimal[] caps;
+    /**
+     * The fraction (not percentage) of each tier, one more than the number of caps.
+     */
+    private final BigDecimal[] fractions;
+
+    private TurnoverRentRule(final String text, final boolean valid, final BigDecimal[] caps, final BigDecimal[] fractions) {
+        this.text = text;
+        this.valid = valid;
+        this.caps = caps;
+        this.fractions = fractions;
+    }
+
+    public static TurnoverRentRule of(final String text) {
+        if (text == null || text.trim().length() == 0) {
+            return INVALID;
+        }
+        final TurnoverRentRule cached = CACHE.get(text);
+        if (cached != null) {
+            return cached;
+        }
+        final TurnoverRentRule rule = parse(text);
+        CACHE.put(text, rule);
+        return rule;
+    }
+
+    static TurnoverRentRule parse(final String text) {
+        final String[] tokens = text.split(";");
+        if (tokens.length % 2 == 0) {
+            return new TurnoverRentRule(text, false, new BigDecimal[0], new BigDecimal[0]);
+        }
+        for (String token : tokens) {
+            if (!isNumeric(token)) {
+                return new TurnoverRentRule(text, false, new BigDecimal[0], new BigDecimal[0]);
+            }
+        }
+        final int tiers = tokens.length / 2;
+        final BigDecimal[] caps = new BigDecimal[tiers];
+        final BigDecimal[] fractions = new BigDecimal[tiers + 1];
+        for (int i = 0; i < tiers; i++) {
+            caps[i] = new BigDecimal(tokens[2 * i]);
+            fractions[i] = new BigDecimal(tokens[2 * i + 1]).divide(InvoiceConstants.PERCENTAGE_DIVISOR);
+        }
+        fractions[tiers] = new BigDecimal(tokens[tokens.length - 1]).divide(InvoiceConstants.PERCENTAGE_DIVISOR);
+        return new TurnoverRentRule(text, true, caps, fractions);
+    }
+
+    public static boolean isNumeric(final String str) {
+        // match a number with optional '-' and decimal.
+        return NUMERIC.matcher(str).matches();
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * The rent for the turnover, rounded to 2 decimals (as is the rent of each tier); zero if the rule is not valid or
+     * there is no turnover.
+     */
+    public BigDecimal calculateRent(final BigDecimal turnover) {
+        BigDecimal total = BigDecimal.ZERO;
+        if (valid && turnover != null) {
+            BigDecimal prevCap = BigDecimal.ZERO;
+            for (int i = 0; i < caps.length; i++) {
+                final BigDecimal cap = caps[i];
+                BigDecimal base = BigDecimal.ZERO;
+                if (turnover.compareTo(cap) > 0) {
+                    base = cap.subtract(prevCap);
+                } else if (turnover.compareTo(prevCap) > 0) {
+                    base = turnover.subtract(prevCap);
+                }
+                total = total.add(base.multiply(fractions[i]).setScale(2, RoundingMode.HALF_UP));
+                prevCap = cap;
+            }
+            // the last or single tier
+            final BigDecimal base = turnover.compareTo(prevCap) > 0 ? turnover.subtract(prevCap) : BigDecimal.ZERO;
+            total = total.add(base.multiply(fractions[caps.length]).setScale(2, RoundingMode.HALF_UP));
+        }
+        return total.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    static int cachedCount() {
+        return CACHE.size();
+    }
+
+    @Override
+    public String toString() {
+        return valid ? text : "invalid rule '" + text + "'";
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.indexation;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.inject.Inject;
+
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
+import org.apache.isis.applib.services.xactn.TransactionService;
+
+import org.estatio.module.base.platform.parallel.ParallelWorkService;
+import org.estatio.module.index.dom.Index;
+import org.estatio.module.lease.dom.LeaseTermForIndexable;
+import org.estatio.module.lease.dom.LeaseTermForIndexableRepository;
+import org.estatio.module.lease.dom.LeaseTermStatus;
+
+/**
+ * Recomputes the indexation of all the (new) terms that use the values of an {@link Index} from a given date onwards,
+ * typically after the monthly publication of a new value.
+ *
+ * <p>
+ * The terms are found with a single query, and reindexed through the {@link IndexationService} on the
+ * {@link ParallelWorkService}: the terms of a lease item are reindexed one after the other (as the indexation of a
+ * term may depend on the previous one), each in its own transaction, while different lease items are reindexed in
+ * parallel.
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class BulkIndexationService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkIndexationService.class);
+
+    /**
+     * Counts and timings of a {@link #reindex(Index, LocalDate) bulk reindexation}.
+     */
+    public static class Report {
+
+        private int termsFound;
+        private int termsReindexed;
+        private int termsChanged;
+        private long millis;
+        private long totalTermMillis;
+        private long maxTermMillis;
+        private final Map<String, String> failures = new LinkedHashMap<>();
+
+        public int getTermsFound() {
+            return termsFound;
+        }
+
+        public int getTermsReindexed() {
+            return termsReindexed;
+        }
+
+        /**
+         * The terms whose indexed value changed.
+         */
+        public int getTermsChanged() {
+            return termsChanged;
+        }
+
+        public int getTermsFailed() {
+            return failures.size();
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public double getAverageTermMillis() {
+            return termsFound == 0 ? 0 : (double) totalTermMillis / termsFound;
+        }
+
+        public long getMaxTermMillis() {
+            return maxTermMillis;
+        }
+
+        /**
+         * The reason of each failure, keyed by a description of the term.
+         */
+        public Map<String, String> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d terms found, %d reindexed (%d changed), %d failed in %d ms (avg %.0f ms, max %d ms per term)",
+                    termsFound, termsReindexed, termsChanged, getTermsFailed(), millis, getAverageTermMillis(), maxTermMillis);
+        }
+    }
+
+    @Programmatic
+    public Report reindex(final Index index, final LocalDate startDate) {
+        final long start = System.currentTimeMillis();
+        final Report report = new Report();
+
+        final List<LeaseTermForIndexable> terms = new ArrayList<>(
+                leaseTermForIndexableRepository.findByIndexAndStatusAndIndexStartDateOnOrAfter(index, LeaseTermStatus.NEW, startDate));
+        terms.sort(Comparator
+                .comparing((LeaseTermForIndexable term) -> term.getLeaseItem().getLease().getReference())
+                .thenComparing(term -> term.getLeaseItem().getSequence())
+                .thenComparing(LeaseTermForIndexable::getStartDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+        report.termsFound = terms.size();
+
+        // one partition per lease item
+        final Map<Bookmark, List<Bookmark>> partitions = new LinkedHashMap<>();
+        final Map<Bookmark, String> descriptions = new LinkedHashMap<>();
+        for (LeaseTermForIndexable term : terms) {
+            final Bookmark termBookmark = bookmarkService.bookmarkFor(term);
+            partitions.computeIfAbsent(bookmarkService.bookmarkFor(term.getLeaseItem()), k -> new ArrayList<>()).add(termBookmark);
+            descriptions.put(termBookmark, describe(term));
+        }
+        transactionService.nextTransaction();
+
+        final List<ParallelWorkService.Outcome<Bookmark, Boolean>> outcomes =
+                parallelWorkService.executeEachInPartitions(new ArrayList<>(partitions.values()), termBookmark -> {
+                    final LeaseTermForIndexable term = (LeaseTermForIndexable) bookmarkService.lookup(termBookmark);
+                    final BigDecimal indexedValueBefore = term.getIndexedValue();
+                    term.reindex();
+                    return !Objects.equals(indexedValueBefore, term.getIndexedValue());
+                });
+
+        for (ParallelWorkService.Outcome<Bookmark, Boolean> outcome : outcomes) {
+            report.totalTermMillis += outcome.getMillis();
+            report.maxTermMillis = Math.max(report.maxTermMillis, outcome.getMillis());
+            if (outcome.isFailed()) {
+                report.failures.put(descriptions.get(outcome.getUnit()), String.valueOf(outcome.getFailure().getMessage()));
+            } else {
+                report.termsReindexed++;
+                if (Boolean.TRUE.equals(outcome.getResult())) {
+                    report.termsChanged++;
+                }
+            }
+        }
+        report.millis = System.currentTimeMillis() - start;
+
+        LOG.info("Reindexed terms of index {} from {}: {}", index.getReference(), startDate, report);
+        return report;
+    }
+
+    private static String describe(final LeaseTermForIndexable term) {
+        return String.format("%s %s %s",
+                term.getLeaseItem().getLease().getReference(),
+                term.getLeaseItem().getType(),
+                term.getStartDate());
+    }
+
+    @Inject
+    LeaseTermForIndexableRepository leaseTermForIndexableRepository;
+
+    @Inject
+    ParallelWorkService parallelWorkService;
+
+    @Inject
+    BookmarkService bookmarkService;
+
+    @Inject
+    TransactionService transactionService;
+
+}
@@ -22,9 +22,14 @@ import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
@@ -37,6 +42,7 @@ import org.joda.time.LocalDateTime;
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.bookmark.Bookmark;
 
 import org.incode.module.base.dom.valuetypes.AbstractInterval.IntervalEnding;
 import org.incode.module.base.dom.valuetypes.LocalDateInterval;
@@ -44,6 +50,7 @@ import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 import org.estatio.module.base.dom.UdoDomainService;
 import org.estatio.module.lease.dom.settings.LeaseInvoicingSettingsService;
 import org.estatio.module.base.platform.docfragment.FragmentRenderService;
+import org.estatio.module.base.platform.parallel.ParallelWorkService;
 import org.estatio.module.charge.dom.Charge;
 import org.estatio.module.invoice.dom.InvoiceRunType;
 import org.estatio.module.invoice.dom.InvoicingInterval;
@@ -51,13 +58,14 @@ import org.estatio.module.lease.dom.LeaseAgreementRoleTypeEnum;
 import org.estatio.module.lease.dom.Lease;
 import org.estatio.module.lease.dom.LeaseItem;
 import org.estatio.module.lease.dom.LeaseItemStatus;
+import org.estatio.module.lease.dom.LeaseItemType;
 import org.estatio.module.lease.dom.LeaseRepository;
 import org.estatio.module.lease.dom.LeaseStatus;
 import org.estatio.module.lease.dom.LeaseTerm;
 import org.estatio.module.lease.dom.LeaseTermValueType;
 import org.estatio.module.lease.dom.invoicing.ssrs.InvoiceItemAttributesVM;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotalService;
 
-//@RequestScoped  // TODO: this should be @RequestScoped, I think, since has a field
 @DomainService(menuOrder = "50", nature = NatureOfService.DOMAIN)
 public class InvoiceCalculationService extends UdoDomainService<InvoiceCalculationService> {
 
@@ -136,56 +144,177 @@ public class InvoiceCalculationService extends UdoDomainService<InvoiceCalculati
         return defaultEpochDate;
     }
 
-    private String interactionId;
-
-    private void startInteraction(final String parameters) {
-        if (interactionId == null) {
-            interactionId = LocalDateTime.now().toString().concat(" - ").concat(parameters);
-        }
+    private static String newRunId(final InvoiceCalculationParameters parameters) {
+        return LocalDateTime.now().toString().concat(" - ").concat(parameters.toString());
     }
 
-    private void endInteraction() {
-        interactionId = null;
+    private List<Lease> leasesToCalculate(final InvoiceCalculationParameters parameters) {
+        final List<Lease> leases = parameters.leases();
+        return leases.size() == 0 ? leaseRepository.findLeasesByProperty(parameters.property()) : leases;
     }
 
+    /**
+     * Calculates and invoices all leases of the run, serially, in the current transaction.
+     *
+     * @return the id of the run, as set on all invoices created.
+     */
     @Programmatic
     public String calculateAndInvoice(InvoiceCalculationParameters parameters) {
-        String lastInteractionId = null;
         invoiceForLeaseRepository.removeRuns(parameters);
-        try {
-            startInteraction(parameters.toString());
-            final List<Lease> leases = parameters.leases();
-            for (Lease lease : leases.size() == 0 ? leaseRepository.findLeasesByProperty(parameters.property()) : leases) {
-                lease.verifyUntil(parameters.dueDateRange().endDateExcluding());
-                if (lease.getStatus() != LeaseStatus.SUSPENDED) {
-                    SortedSet<LeaseItem> leaseItems =
-                            parameters.leaseItem() == null ?
-                                    lease.getItems() :
-                                    new TreeSet<>(Arrays.asList(parameters.leaseItem()));
-                    for (LeaseItem leaseItem : leaseItems) {
-                        if (!leaseItem.getStatus().equals(LeaseItemStatus.SUSPENDED) && leaseItem.getInvoicedBy().equals(
-                                LeaseAgreementRoleTypeEnum.LANDLORD)) {
-                            //TODO: We only filter the Landlords
-                            if (parameters.leaseItemTypes() == null || parameters.leaseItemTypes().contains(leaseItem.getType())) {
-                                SortedSet<LeaseTerm> leaseTerms =
-                                        parameters.leaseTerm() == null ?
-                                                leaseItem.getTerms() :
-                                                new TreeSet<>(Arrays.asList(parameters.leaseTerm()));
-                                for (LeaseTerm leaseTerm : leaseTerms) {
-                                    final List<CalculationResult> results;
-                                    results = calculateDueDateRange(leaseTerm, parameters);
-                                    createInvoiceItems(leaseTerm, parameters, results);
-                                }
-                            }
+        final String runId = newRunId(parameters);
+        final List<Lease> leases = leasesToCalculate(parameters);
+        final InvoicedValueLedger ledger = invoiceItemForLeaseRepository.ledgerFor(leases);
+        for (Lease lease : leases) {
+            calculateAndInvoice(lease, parameters, runId, ledger);
+        }
+        return runId;
+    }
+
+    /**
+     * The result of a {@link #calculateAndInvoiceRun(InvoiceCalculationParameters) run}.
+     */
+    public static class Run {
+
+        private final String runId;
+        private final Map<String, String> failuresByLeaseReference = new LinkedHashMap<>();
+
+        Run(final String runId) {
+            this.runId = runId;
+        }
+
+        public String runId() {
+            return runId;
+        }
+
+        /**
+         * The leases that could not be calculated (and so have no invoices in this run), keyed by reference.
+         */
+        public Map<String, String> failuresByLeaseReference() {
+            return Collections.unmodifiableMap(failuresByLeaseReference);
+        }
+    }
+
+    static final String KEY_PARALLEL = "estatio.invoicing.parallel";
+
+    boolean parallel;
+
+    @Programmatic
+    @Override
+    public void init(final Map<String, String> properties) {
+        super.init(properties);
+        parallel = Boolean.parseBoolean(properties.get(KEY_PARALLEL));
+    }
+
+    /**
+     * Calculates and invoices all leases of the run; {@link #calculateAndInvoiceInParallel(InvoiceCalculationParameters) in parallel}
+     * if <tt>estatio.invoicing.parallel</tt> is set, otherwise {@link #calculateAndInvoice(InvoiceCalculationParameters) serially}.
+     */
+    @Programmatic
+    public Run calculateAndInvoiceRun(final InvoiceCalculationParameters parameters) {
+        return parallel
+                ? calculateAndInvoiceInParallel(parameters)
+                : new Run(calculateAndInvoice(parameters));
+    }
+
+    /**
+     * Calculates and invoices the leases of the run as independent units of work, one lease per unit, each in its
+     * own transaction on the {@link ParallelWorkService}'s bounded pool; the invoices of all units share one run id.
+     *
+     * <p>
+     * Each unit looks up its own lease and removes the previous (new) invoices of that lease along with creating the
+     * new ones, so a lease that fails is rolled back on its own, keeps its previous invoices and is reported in the
+     * {@link Run}; the other leases are unaffected. Once all units are done, any remaining previous invoices of the
+     * property (of leases no longer calculated) are removed in the current transaction.
+     * Leases are submitted in order of reference, so the outcome does not depend on the order the units complete.
+     * The invoice summaries changed by the units are recalculated once, by the current transaction.
+     * Runs for a single lease item or term are not partitioned and are calculated serially.
+     * </p>
+     */
+    @Programmatic
+    public Run calculateAndInvoiceInParallel(final InvoiceCalculationParameters parameters) {
+        if (parameters.leaseItem() != null || parameters.leaseTerm() != null) {
+            return new Run(calculateAndInvoice(parameters));
+        }
+
+        final String runId = newRunId(parameters);
+        final List<Bookmark> leaseBookmarks = leasesToCalculate(parameters).stream()
+                .sorted(Comparator.comparing(Lease::getReference))
+                .map(bookmarkService::bookmarkFor)
+                .collect(Collectors.toList());
+
+        // the units run in their own sessions, so are given values rather than the objects of this session
+        final List<LeaseItemType> leaseItemTypes = Lists.newArrayList(parameters.leaseItemTypes());
+        final InvoiceRunType invoiceRunType = parameters.invoiceRunType();
+        final LocalDate invoiceDueDate = parameters.invoiceDueDate();
+        final LocalDate startDueDate = parameters.dueDateRange().startDate();
+        final LocalDate nextDueDate = parameters.dueDateRange().endDateExcluding();
+
+        // all units change the summaries of the run, which are recalculated once all are done rather than by each
+        final InvoiceSummaryTotalService.DeferredKeys summaryKeys = invoiceSummaryTotalService.newDeferredKeys();
+
+        final List<ParallelWorkService.Outcome<Bookmark, String>> outcomes =
+                parallelWorkService.executeEach(leaseBookmarks, leaseBookmark -> {
+                    invoiceSummaryTotalService.deferRefreshTo(summaryKeys);
+                    final Lease lease = (Lease) bookmarkService.lookup(leaseBookmark);
+                    final InvoiceCalculationParameters leaseParameters = InvoiceCalculationParameters.builder()
+                            .lease(lease)
+                            .leaseItemTypes(leaseItemTypes)
+                            .invoiceRunType(invoiceRunType)
+                            .invoiceDueDate(invoiceDueDate)
+                            .startDueDate(startDueDate)
+                            .nextDueDate(nextDueDate)
+                            .build();
+                    invoiceForLeaseRepository.removeRuns(leaseParameters, lease);
+                    final InvoicedValueLedger ledger =
+                            invoiceItemForLeaseRepository.ledgerFor(Collections.singletonList(lease));
+                    calculateAndInvoice(lease, leaseParameters, runId, ledger);
+                    return lease.getReference();
+                });
+
+        final Run run = new Run(runId);
+        final List<Lease> failedLeases = Lists.newArrayList();
+        for (ParallelWorkService.Outcome<Bookmark, String> outcome : outcomes) {
+            if (outcome.isFailed()) {
+                final Lease lease = (Lease) bookmarkService.lookup(outcome.getUnit());
+                failedLeases.add(lease);
+                run.failuresByLeaseReference.put(lease.getReference(), String.valueOf(outcome.getFailure().getMessage()));
+            }
+        }
+        invoiceForLeaseRepository.removeRuns(parameters, invoice ->
+                !runId.equals(invoice.getRunId()) && !failedLeases.contains(invoice.getLease()));
+        invoiceSummaryTotalService.refreshBeforeCommit(summaryKeys);
+        return run;
+    }
+
+    void calculateAndInvoice(
+            final Lease lease,
+            final InvoiceCalculationParameters parameters,
+            final String runId,
+            final InvoicedValueLedger ledger) {
+        lease.verifyUntil(parameters.dueDateRange().endDateExcluding());
+        if (lease.getStatus() != LeaseStatus.SUSPENDED) {
+            SortedSet<LeaseItem> leaseItems =
+                    parameters.leaseItem() == null ?
+                            lease.getItems() :
+                            new TreeSet<>(Arrays.asList(parameters.leaseItem()));
+            for (LeaseItem leaseItem : leaseItems) {
+                if (!leaseItem.getStatus().equals(LeaseItemStatus.SUSPENDED) && leaseItem.getInvoicedBy().equals(
+                        LeaseAgreementRoleTypeEnum.LANDLORD)) {
+                    //TODO: We only filter the Landlords
+                    if (parameters.leaseItemTypes() == null || parameters.leaseItemTypes().contains(leaseItem.getType())) {
+                        SortedSet<LeaseTerm> leaseTerms =
+                                parameters.leaseTerm() == null ?
+                                        leaseItem.getTerms() :
+                                        new TreeSet<>(Arrays.asList(parameters.leaseTerm()));
+                        for (LeaseTerm leaseTerm : leaseTerms) {
+                            final List<CalculationResult> results;
+                            results = calculateDueDateRange(leaseTerm, parameters);
+                            createInvoiceItems(leaseTerm, parameters, results, runId, ledger);
                         }
                     }
                 }
             }
-        } finally {
-            lastInteractionId = interactionId;
-            endInteraction();
         }
-        return lastInteractionId;
     }
 
     /**
@@ -297,18 +426,25 @@ public class InvoiceCalculationService extends UdoDomainService<InvoiceCalculati
     /**
      * Calculates an invoice item with the difference between the already
      * invoiced and calculated value.
+     *
+     * <p>
+     * The already invoiced values are looked up in the (run-scoped) ledger rather than queried for, and the
+     * items created are recorded in it.
+     * </p>
      */
     void createInvoiceItems(
             final LeaseTerm leaseTerm,
             final InvoiceCalculationParameters parameters,
-            final List<CalculationResult> results) {
+            final List<CalculationResult> results,
+            final String runId,
+            final InvoicedValueLedger ledger) {
 
         for (CalculationResult result : results) {
             // TODO: this is a hack to speed up processing by ignoring zero
             // values on a normal run
             if (result.value().compareTo(BigDecimal.ZERO) != 0 || parameters.invoiceRunType().equals(InvoiceRunType.RETRO_RUN)) {
                 final LocalDateInterval invoicingInterval = result.invoicingInterval().asLocalDateInterval();
-                BigDecimal invoicedValue = invoiceItemForLeaseRepository.invoicedValue(leaseTerm, invoicingInterval);
+                BigDecimal invoicedValue = ledger.invoicedValue(leaseTerm, invoicingInterval);
                 BigDecimal newValue = result.value().subtract(invoicedValue);
 
                 //
@@ -318,7 +454,7 @@ public class InvoiceCalculationService extends UdoDomainService<InvoiceCalculati
                 if (newValue.compareTo(BigDecimal.ZERO) != 0) {
                     if (invoicedValue.compareTo(BigDecimal.ZERO) != 0) {
                         // Has been invoiced before
-                        if (invoiceItemForLeaseRepository.findByLeaseTermAndEffectiveInterval(leaseTerm, calculationInterval).size() > 0) {
+                        if (ledger.isInvoicedForEffectiveInterval(leaseTerm, calculationInterval)) {
                             // this exact period has been invoiced before so it is an adjusment
                             adjustment = true;
                         } else {
@@ -334,7 +470,7 @@ public class InvoiceCalculationService extends UdoDomainService<InvoiceCalculati
                                     calculationInterval,
                                     effectiveInterval,
                                     parameters.invoiceDueDate(),
-                                    interactionId);
+                                    runId);
                     invoiceItem.setNetAmount(newValue);
                     invoiceItem.setQuantity(BigDecimal.ONE);
                     LeaseItem leaseItem = leaseTerm.getLeaseItem();
@@ -349,6 +485,8 @@ public class InvoiceCalculationService extends UdoDomainService<InvoiceCalculati
 
                     invoiceItem.verify();
                     invoiceItem.setAdjustment(adjustment);
+
+                    ledger.record(invoiceItem);
                 }
             }
         }
@@ -363,13 +501,20 @@ public class InvoiceCalculationService extends UdoDomainService<InvoiceCalculati
     LeaseInvoicingSettingsService leaseInvoicingSettingsService;
 
     @Inject
-    private InvoiceForLeaseRepository invoiceForLeaseRepository;
+    InvoiceForLeaseRepository invoiceForLeaseRepository;
 
     @Inject
-    private InvoiceItemForLeaseRepository invoiceItemForLeaseRepository;
+    InvoiceItemForLeaseRepository invoiceItemForLeaseRepository;
 
     @Inject
-    private LeaseRepository leaseRepository;
+    LeaseRepository leaseRepository;
+
+    @Inject
+    ParallelWorkService parallelWorkService;
+
+    @Inject
+    InvoiceSummaryTotalService invoiceSummaryTotalService;
+
 
 
     public static LocalDateInterval attemptToCalculateRightSideLeftover(final LocalDateInterval ldi1, final LocalDateInterval ldi2){
@@ -53,6 +53,10 @@ import org.apache.isis.applib.annotation.RestrictTo;
 import org.apache.isis.applib.annotation.SemanticsOf;
 import org.apache.isis.applib.annotation.Where;
 import org.apache.isis.applib.services.clock.ClockService;
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatingEvent;
 import org.apache.isis.applib.services.factory.FactoryService;
 import org.apache.isis.applib.services.message.MessageService;
 import org.apache.isis.applib.services.title.TitleService;
@@ -131,6 +135,15 @@ import lombok.Setter;
                         "status == :status && " +
                         "dueDate == :dueDate " +
                         "ORDER BY invoiceNumber"),
+        @javax.jdo.annotations.Query(
+                name = "findByFixedAssetAndLeaseAndDueDateAndStatus", language = "JDOQL",
+                value = "SELECT FROM org.estatio.module.invoice.dom.Invoice " +
+                        "WHERE " +
+                        "fixedAsset == :fixedAsset && " +
+                        "lease == :lease && " +
+                        "status == :status && " +
+                        "dueDate == :dueDate " +
+                        "ORDER BY invoiceNumber"),
         @javax.jdo.annotations.Query(
                 name = "findByFixedAssetAndDueDate", language = "JDOQL",
                 value = "SELECT FROM org.estatio.module.invoice.dom.Invoice " +
@@ -186,14 +199,23 @@ import lombok.Setter;
                 members = { "fixedAsset", "dueDate", "status" }),
 })
 @DomainObject(
-        editing = Editing.DISABLED
+        editing = Editing.DISABLED,
         // objectType inferred from @Discriminator
+        persistedLifecycleEvent = InvoiceForLease.PersistedLifecycleEvent.class,
+        updatingLifecycleEvent = InvoiceForLease.UpdatingLifecycleEvent.class,
+        updatedLifecycleEvent = InvoiceForLease.UpdatedLifecycleEvent.class,
+        removingLifecycleEvent = InvoiceForLease.RemovingLifecycleEvent.class
 )
 @DomainObjectLayout(bookmarking = BookmarkPolicy.AS_ROOT)
 @XmlJavaTypeAdapter(PersistentEntityAdapter.class)
 public class InvoiceForLease
         extends Invoice<InvoiceForLease> {
 
+    public static class PersistedLifecycleEvent extends ObjectPersistedEvent<InvoiceForLease> {}
+    public static class UpdatingLifecycleEvent extends ObjectUpdatingEvent<InvoiceForLease> {}
+    public static class UpdatedLifecycleEvent extends ObjectUpdatedEvent<InvoiceForLease> {}
+    public static class RemovingLifecycleEvent extends ObjectRemovingEvent<InvoiceForLease> {}
+
     public InvoiceForLease() {
         super("invoiceNumber, collectionNumber, buyer, dueDate, lease, uuid");
     }
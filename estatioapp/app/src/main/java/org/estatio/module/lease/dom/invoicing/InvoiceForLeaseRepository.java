@@ -20,6 +20,7 @@ package org.estatio.module.lease.dom.invoicing;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -237,8 +238,40 @@ public class InvoiceForLeaseRepository extends UdoDomainRepositoryAndFactory<Inv
 
 
 
+    public List<InvoiceForLease> findByFixedAssetAndLeaseAndDueDateAndStatus(
+            final FixedAsset fixedAsset,
+            final Lease lease,
+            final LocalDate dueDate,
+            final InvoiceStatus status) {
+        return allMatches("findByFixedAssetAndLeaseAndDueDateAndStatus",
+                "fixedAsset", fixedAsset,
+                "lease", lease,
+                "dueDate", dueDate,
+                "status", status);
+    }
+
     public void removeRuns(InvoiceCalculationParameters parameters) {
+        removeRuns(parameters, invoice -> true);
+    }
+
+    /**
+     * As {@link #removeRuns(InvoiceCalculationParameters)}, but only the invoices matching the filter.
+     */
+    public void removeRuns(InvoiceCalculationParameters parameters, Predicate<InvoiceForLease> filter) {
         List<InvoiceForLease> invoices = findByFixedAssetAndDueDateAndStatus(parameters.property(), parameters.invoiceDueDate(), InvoiceStatus.NEW);
+        remove(invoices.stream().filter(filter).collect(Collectors.toList()));
+    }
+
+    /**
+     * As {@link #removeRuns(InvoiceCalculationParameters)}, but only the invoices of the lease; for when each lease of
+     * a run is calculated in its own transaction.
+     */
+    public void removeRuns(InvoiceCalculationParameters parameters, Lease lease) {
+        List<InvoiceForLease> invoices = findByFixedAssetAndLeaseAndDueDateAndStatus(parameters.property(), lease, parameters.invoiceDueDate(), InvoiceStatus.NEW);
+        remove(invoices);
+    }
+
+    private void remove(final List<InvoiceForLease> invoices) {
         for (Invoice invoice : invoices) {
             factoryService.mixin(Invoice._remove.class, invoice).exec();
         }
@@ -33,6 +33,9 @@ import org.apache.isis.applib.annotation.Optionality;
 import org.apache.isis.applib.annotation.Property;
 import org.apache.isis.applib.annotation.PropertyLayout;
 import org.apache.isis.applib.annotation.Where;
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
 
 import org.incode.module.base.dom.utils.TitleBuilder;
 
@@ -68,6 +71,11 @@ import lombok.Setter;
                 value = "SELECT " +
                         "FROM org.estatio.module.lease.dom.invoicing.InvoiceItemForLease " +
                         "WHERE leaseTerm == :leaseTerm "),
+        @javax.jdo.annotations.Query(
+                name = "findByLeases", language = "JDOQL",
+                value = "SELECT " +
+                        "FROM org.estatio.module.lease.dom.invoicing.InvoiceItemForLease " +
+                        "WHERE :leases.contains(lease) "),
         @javax.jdo.annotations.Query(
                 name = "findByLeaseTermAndInterval", language = "JDOQL",
                 value = "SELECT " +
@@ -119,12 +127,19 @@ import lombok.Setter;
 
 })
 @DomainObject(
-        editing = Editing.DISABLED
+        editing = Editing.DISABLED,
         // objectType inferred from @Discriminator
+        persistedLifecycleEvent = InvoiceItemForLease.PersistedLifecycleEvent.class,
+        updatedLifecycleEvent = InvoiceItemForLease.UpdatedLifecycleEvent.class,
+        removingLifecycleEvent = InvoiceItemForLease.RemovingLifecycleEvent.class
 )
 public class InvoiceItemForLease
         extends InvoiceItem<InvoiceForLease, InvoiceItemForLease> {
 
+    public static class PersistedLifecycleEvent extends ObjectPersistedEvent<InvoiceItemForLease> {}
+    public static class UpdatedLifecycleEvent extends ObjectUpdatedEvent<InvoiceItemForLease> {}
+    public static class RemovingLifecycleEvent extends ObjectRemovingEvent<InvoiceItemForLease> {}
+
     public InvoiceItemForLease() {
     }
 
@@ -24,6 +24,8 @@ import java.util.Optional;
 
 import javax.inject.Inject;
 
+import com.google.common.collect.Lists;
+
 import org.joda.time.LocalDate;
 
 import org.apache.isis.applib.ApplicationException;
@@ -115,6 +117,11 @@ public class InvoiceItemForLeaseRepository extends UdoDomainRepositoryAndFactory
     }
 
 
+    @Programmatic
+    public List<InvoiceItemForLease> findByLeases(final List<Lease> leases){
+        return allMatches("findByLeases", "leases", leases);
+    }
+
     @Programmatic
     public List<InvoiceItemForLease> findByLeaseTermAndInterval(
             final LeaseTerm leaseTerm,
@@ -225,6 +232,22 @@ public class InvoiceItemForLeaseRepository extends UdoDomainRepositoryAndFactory
         return invoicedValue;
     }
 
+    /**
+     * Loads the items of all given leases into an {@link InvoicedValueLedger}, a batch of leases per query.
+     */
+    @Programmatic
+    public InvoicedValueLedger ledgerFor(final List<Lease> leases) {
+        final InvoicedValueLedger ledger = new InvoicedValueLedger();
+        for (List<Lease> batch : Lists.partition(leases, LEDGER_BATCH_SIZE)) {
+            for (InvoiceItemForLease invoiceItem : findByLeases(batch)) {
+                ledger.record(invoiceItem);
+            }
+        }
+        return ledger;
+    }
+
+    private static final int LEDGER_BATCH_SIZE = 250;
+
     // //////////////////////////////////////
 
     @Inject
@@ -0,0 +1,135 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.invoicing;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.joda.time.LocalDate;
+
+import org.incode.module.base.dom.valuetypes.LocalDateInterval;
+
+import org.estatio.module.lease.dom.LeaseTerm;
+import org.estatio.module.lease.dom.LeaseTermValueType;
+
+/**
+ * Run-scoped, in-memory view of the {@link InvoiceItemForLease invoice items} already created for a set of leases,
+ * answering the same questions as {@link InvoiceItemForLeaseRepository#invoicedValue(LeaseTerm, LocalDateInterval)}
+ * and {@link InvoiceItemForLeaseRepository#findByLeaseTermAndEffectiveInterval(LeaseTerm, LocalDateInterval)}
+ * without a query per term per invoicing interval.
+ *
+ * <p>
+ * Loaded using {@link InvoiceItemForLeaseRepository#ledgerFor(List)}; items created during the run must be
+ * {@link #record(InvoiceItemForLease) recorded} so that later lookups see them, just as the queries would.
+ * </p>
+ */
+public class InvoicedValueLedger {
+
+    private static class Entry {
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final LocalDate calculationStartDate;
+        private final LocalDate calculationEndDate;
+        private final LocalDate effectiveStartDate;
+        private final LocalDate effectiveEndDate;
+        private final BigDecimal netAmount;
+
+        private Entry(final InvoiceItemForLease item) {
+            this.startDate = item.getStartDate();
+            this.endDate = item.getEndDate();
+            this.calculationStartDate = item.getCalculationStartDate();
+            this.calculationEndDate = item.getCalculationEndDate();
+            this.effectiveStartDate = item.getEffectiveStartDate();
+            this.effectiveEndDate = item.getEffectiveEndDate();
+            this.netAmount = item.getNetAmount();
+        }
+
+        /**
+         * @see InvoiceItemForLease named query <tt>findByLeaseTermAndInterval</tt>
+         */
+        private boolean matchesInterval(final LocalDateInterval interval) {
+            return Objects.equals(startDate, interval.startDate()) && Objects.equals(endDate, interval.endDate());
+        }
+
+        /**
+         * @see InvoiceItemForLease named query <tt>findByLeaseTermAndEffectiveInterval</tt>
+         */
+        private boolean matchesEffectiveInterval(final LocalDateInterval interval) {
+            final LocalDate start = interval.startDate();
+            final LocalDate end = interval.endDate();
+            return (Objects.equals(calculationStartDate, start) || Objects.equals(effectiveStartDate, start))
+                    && (Objects.equals(calculationEndDate, end) || Objects.equals(effectiveEndDate, end));
+        }
+    }
+
+    // keyed by identity; all terms of a run come from the same persistence context
+    private final Map<LeaseTerm, List<Entry>> entriesByTerm = new IdentityHashMap<>();
+
+    InvoicedValueLedger() {
+    }
+
+    /**
+     * Adds an item that was loaded or created during the run.
+     */
+    public void record(final InvoiceItemForLease item) {
+        final LeaseTerm leaseTerm = item.getLeaseTerm();
+        if (leaseTerm == null) {
+            return;
+        }
+        entriesByTerm.computeIfAbsent(leaseTerm, x -> new ArrayList<>()).add(new Entry(item));
+    }
+
+    /**
+     * Equivalent to {@link InvoiceItemForLeaseRepository#invoicedValue(LeaseTerm, LocalDateInterval)}.
+     */
+    public BigDecimal invoicedValue(final LeaseTerm leaseTerm, final LocalDateInterval interval) {
+        BigDecimal invoicedValue = new BigDecimal(0);
+        final boolean fixed = leaseTerm.valueType() == LeaseTermValueType.FIXED;
+        for (Entry entry : entriesFor(leaseTerm)) {
+            if (fixed || entry.matchesInterval(interval)) {
+                invoicedValue = invoicedValue.add(entry.netAmount);
+            }
+        }
+        return invoicedValue;
+    }
+
+    /**
+     * Equivalent to
+     * <tt>!{@link InvoiceItemForLeaseRepository#findByLeaseTermAndEffectiveInterval(LeaseTerm, LocalDateInterval)}.isEmpty()</tt>.
+     */
+    public boolean isInvoicedForEffectiveInterval(final LeaseTerm leaseTerm, final LocalDateInterval effectiveInterval) {
+        for (Entry entry : entriesFor(leaseTerm)) {
+            if (entry.matchesEffectiveInterval(effectiveInterval)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Entry> entriesFor(final LeaseTerm leaseTerm) {
+        final List<Entry> entries = entriesByTerm.get(leaseTerm);
+        return entries != null ? entries : Collections.emptyList();
+    }
+
+}
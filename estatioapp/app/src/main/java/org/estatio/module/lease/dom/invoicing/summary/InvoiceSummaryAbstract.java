@@ -18,6 +18,8 @@
 package org.estatio.module.lease.dom.invoicing.summary;
 
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.inject.Inject;
 
@@ -43,6 +45,9 @@ import org.estatio.module.invoice.dom.InvoiceRepository;
 import org.estatio.module.invoice.dom.InvoiceStatus;
 import org.estatio.module.lease.dom.invoicing.InvoiceForLease;
 import org.estatio.module.lease.dom.invoicing.InvoiceForLeaseRepository;
+import org.estatio.module.lease.dom.invoicing.NumeratorForOutgoingInvoicesRepository;
+import org.estatio.module.numerator.dom.Numerator;
+import org.estatio.module.numerator.dom.NumeratorRepository;
 
 public abstract class InvoiceSummaryAbstract implements WithApplicationTenancy, WithApplicationTenancyAny {
 
@@ -66,17 +71,30 @@ public abstract class InvoiceSummaryAbstract implements WithApplicationTenancy,
 
     @Action(semantics = SemanticsOf.IDEMPOTENT_ARE_YOU_SURE)
     public Object collectAll() {
-        for (Invoice invoice : getInvoices()) {
-            try {
-                wrap(mixin(InvoiceForLease._collect.class, invoice)).$$();
-            } catch(InteractionException ex) {
-                // we simply ignore any exceptions thrown; we rely on the wrapper around Invoice#collect(...) action
-                // to check its invariants.
-                //
-                // from the end-user's perspective, some invoices simply won't transition into a COLLECTED state
-                // and no event will be published (so no posting of prelim letters to Coda)
+        final List<InvoiceForLease> invoices = getInvoices();
+
+        // reserve the collection numbers up front, with a single (locking) update of the numerator
+        final Map<Numerator, Integer> numbersRequired = new TreeMap<>();
+        for (InvoiceForLease invoice : invoices) {
+            final InvoiceForLease._collect collect = mixin(InvoiceForLease._collect.class, invoice);
+            if (!collect.hide$$() && collect.disable$$() == null) {
+                numbersRequired.merge(numeratorForOutgoingInvoicesRepository.findCollectionNumberNumerator(), 1, Integer::sum);
             }
         }
+
+        withNumbersReserved(numbersRequired, () -> {
+            for (Invoice invoice : invoices) {
+                try {
+                    wrap(mixin(InvoiceForLease._collect.class, invoice)).$$();
+                } catch(InteractionException ex) {
+                    // we simply ignore any exceptions thrown; we rely on the wrapper around Invoice#collect(...) action
+                    // to check its invariants.
+                    //
+                    // from the end-user's perspective, some invoices simply won't transition into a COLLECTED state
+                    // and no event will be published (so no posting of prelim letters to Coda)
+                }
+            }
+        });
         return this;
     }
 
@@ -86,17 +104,33 @@ public abstract class InvoiceSummaryAbstract implements WithApplicationTenancy,
 
     @Action(semantics = SemanticsOf.NON_IDEMPOTENT_ARE_YOU_SURE)
     public Object invoiceAll(final LocalDate invoiceDate, final boolean allowInvoiceDateInFuture) {
-        for (Invoice invoice : getInvoices()) {
-            try {
-                wrap(mixin(InvoiceForLease._invoice.class, invoice)).$$(invoiceDate);
-            } catch(InteractionException ex) {
-                // we simply ignore any exceptions thrown; we rely on the wrapper around Invoice#invoice(...) action
-                // to check its invariants.
-                //
-                // from the end-user's perspective, some invoices simply won't transition into an INVOICED state
-                // and no event will be published (so no posting to Coda)
+        final List<InvoiceForLease> invoices = getInvoices();
+
+        // reserve the invoice numbers up front, with a single (locking) update of each numerator involved; the
+        // invoices are then numbered in the order in which they are listed
+        final Map<Numerator, Integer> numbersRequired = new TreeMap<>();
+        for (InvoiceForLease invoice : invoices) {
+            final InvoiceForLease._invoice invoiceMixin = mixin(InvoiceForLease._invoice.class, invoice);
+            if (invoiceMixin.disable$$() == null && invoiceMixin.validate0$$(invoiceDate) == null) {
+                final Numerator numerator = numeratorForOutgoingInvoicesRepository
+                        .findInvoiceNumberNumerator(invoice.getProperty(), invoice.getSeller());
+                numbersRequired.merge(numerator, 1, Integer::sum);
             }
         }
+
+        withNumbersReserved(numbersRequired, () -> {
+            for (Invoice invoice : invoices) {
+                try {
+                    wrap(mixin(InvoiceForLease._invoice.class, invoice)).$$(invoiceDate);
+                } catch(InteractionException ex) {
+                    // we simply ignore any exceptions thrown; we rely on the wrapper around Invoice#invoice(...) action
+                    // to check its invariants.
+                    //
+                    // from the end-user's perspective, some invoices simply won't transition into an INVOICED state
+                    // and no event will be published (so no posting to Coda)
+                }
+            }
+        });
         return this;
     }
 
@@ -144,6 +178,20 @@ public abstract class InvoiceSummaryAbstract implements WithApplicationTenancy,
     @CollectionLayout(defaultView = "table")
     public abstract List<InvoiceForLease> getInvoices();
 
+    /**
+     * Reserves the numbers required of each numerator (locking the numerators, always in the same order, so that
+     * concurrent bulk actions wait for each other rather than deadlock), runs the work, and then gives back any
+     * numbers that were not used (because an invoice was rejected by the wrapper after all), so no gaps are left.
+     */
+    private void withNumbersReserved(final Map<Numerator, Integer> numbersRequired, final Runnable work) {
+        try {
+            numbersRequired.forEach(numeratorRepository::reserve);
+            work.run();
+        } finally {
+            numbersRequired.keySet().forEach(Numerator::releaseReserved);
+        }
+    }
+
     private <T> T wrap(final T mixin) {
         return wrapperFactory.wrap(mixin);
     }
@@ -158,6 +206,12 @@ public abstract class InvoiceSummaryAbstract implements WithApplicationTenancy,
     @Inject
     protected InvoiceRepository invoiceRepository;
 
+    @Inject
+    protected NumeratorForOutgoingInvoicesRepository numeratorForOutgoingInvoicesRepository;
+
+    @Inject
+    protected NumeratorRepository numeratorRepository;
+
     @Inject
     protected ApplicationTenancyRepository applicationTenancyRepository;
 
@@ -46,6 +46,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 // NOTE: this view also is maintained by fly db
+// the totals are materialized in InvoiceSummaryTotal, see InvoiceSummaryTotalService (filled in initially by
+// InvoiceSummaryTotalSeedService)
 /**
  * View model that surfaces information about each runId along with summary
  * details of its invoices in their various states.
@@ -66,24 +68,15 @@ import lombok.Setter;
                                 "  {this.grossAmount} " +
                                 ") AS " +
                                 "SELECT " +
-                                "   i.\"atPath\" , " +
-                                "   i.\"runId\" , " +
-                                "   COUNT(DISTINCT(i.\"id\")) AS \"total\", " +
-                                "   SUM(ii.\"netAmount\") AS \"netAmount\", " +
-                                "   SUM(ii.\"vatAmount\") AS \"vatAmount\", " +
-                                "   SUM(ii.\"grossAmount\") AS \"grossAmount\" " +
-                                "FROM \"dbo\".\"Invoice\" i " +
-                                "  INNER JOIN \"dbo\".\"Lease\" l  " +
-                                "    ON i.\"leaseId\" = l.\"id\" " +
-                                "  INNER JOIN \"dbo\".\"FixedAsset\" fa " +
-                                "    ON fa.\"id\"  = i.\"fixedAssetId\" " +
-                                "  INNER JOIN \"dbo\".\"InvoiceItem\" ii " +
-                                "    ON ii.\"invoiceId\" = i.\"id\" " +
-                                "WHERE " +
-                                "   NOT i.\"runId\" IS NULL " +
-                                "   AND i.\"discriminator\" = 'org.estatio.dom.invoice.Invoice' " +
-                                "GROUP BY " +
-                                "   i.\"runId\", i.\"atPath\"")
+                                "  t.\"atPath\", " +
+                                "  t.\"runId\", " +
+                                "  t.\"total\", " +
+                                "  t.\"netAmount\", " +
+                                "  t.\"vatAmount\", " +
+                                "  t.\"grossAmount\" " +
+                                "FROM \"dbo\".\"InvoiceSummaryTotal\" t " +
+                                "WHERE t.\"summaryType\" = 'INVOICE_RUN' " +
+                                "  AND t.\"total\" > 0")
         })
 @javax.jdo.annotations.Queries({
         @javax.jdo.annotations.Query(
@@ -45,6 +45,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 // NOTE: this view also is maintained by fly db
+// the totals are materialized in InvoiceSummaryTotal, see InvoiceSummaryTotalService (filled in initially by
+// InvoiceSummaryTotalSeedService)
 @javax.jdo.annotations.PersistenceCapable(
         identityType = IdentityType.NONDURABLE,
         table = "InvoiceSummaryForPropertyInvoiceDate",
@@ -62,23 +64,16 @@ import lombok.Setter;
                                 "  {this.grossAmount} " +
                                 ") AS " +
                                 "SELECT " +
-                                "  i.\"atPath\", " +
-                                "  p.\"reference\" , " +
-                                "  i.\"invoiceDate\", " +
-                                "  COUNT(DISTINCT(i.\"id\")) AS \"total\", " +
-                                "   SUM(ii.\"netAmount\") AS \"netAmount\", " +
-                                "   SUM(ii.\"vatAmount\") AS \"vatAmount\", " +
-                                "   SUM(ii.\"grossAmount\") AS \"grossAmount\" " +
-                                "FROM \"dbo\".\"Invoice\" i " +
-                                "  INNER JOIN \"dbo\".\"InvoiceItem\" ii " +
-                                "    ON ii.\"invoiceId\" = i.\"id\" " +
-                                "  INNER JOIN \"dbo\".\"Party\" p " +
-                                "    ON p.\"id\" = i.\"sellerPartyId\" " +
-                                "WHERE i.\"discriminator\" = 'org.estatio.dom.invoice.Invoice' " +
-                                "GROUP BY " +
-                                "  i.\"atPath\", " +
-                                "  p.\"reference\", " +
-                                "  i.\"invoiceDate\"")
+                                "  t.\"atPath\", " +
+                                "  t.\"sellerReference\", " +
+                                "  t.\"invoiceDate\", " +
+                                "  t.\"total\", " +
+                                "  t.\"netAmount\", " +
+                                "  t.\"vatAmount\", " +
+                                "  t.\"grossAmount\" " +
+                                "FROM \"dbo\".\"InvoiceSummaryTotal\" t " +
+                                "WHERE t.\"summaryType\" = 'PROPERTY_INVOICE_DATE' " +
+                                "  AND t.\"total\" > 0")
         })
 @javax.jdo.annotations.Queries({
         @javax.jdo.annotations.Query(
@@ -0,0 +1,270 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.invoicing.summary;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import javax.jdo.annotations.IdGeneratorStrategy;
+import javax.jdo.annotations.IdentityType;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.DomainObject;
+import org.apache.isis.applib.annotation.Editing;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.annotation.Property;
+import org.apache.isis.applib.annotation.Where;
+
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
+
+import org.incode.module.base.dom.types.ReferenceType;
+import org.incode.module.base.dom.utils.TitleBuilder;
+import org.incode.module.document.dom.types.AtPathType;
+
+import org.estatio.module.base.dom.UdoDomainObject2;
+import org.estatio.module.base.dom.apptenancy.WithApplicationTenancyAny;
+import org.estatio.module.invoice.dom.InvoiceStatus;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The materialized totals behind the {@link InvoiceSummaryForPropertyDueDateStatus},
+ * {@link InvoiceSummaryForInvoiceRun} and {@link InvoiceSummaryForPropertyInvoiceDate} views: one row per
+ * {@link Key}, so that the views no longer need to aggregate all invoices and their items.
+ *
+ * <p>
+ * Rows are recalculated by the {@link InvoiceSummaryTotalService} whenever an invoice (or one of its items) that
+ * contributes to them changes, once per transaction just before it commits. The key is unique (SQL Server treats the
+ * <tt>null</tt>s of a unique constraint as equal).
+ * </p>
+ */
+@javax.jdo.annotations.PersistenceCapable(
+        identityType = IdentityType.DATASTORE
+        ,schema = "dbo"    // Isis' ObjectSpecId inferred from @DomainObject#objectType
+)
+@javax.jdo.annotations.DatastoreIdentity(
+        strategy = IdGeneratorStrategy.NATIVE,
+        column = "id")
+@javax.jdo.annotations.Uniques({
+        @javax.jdo.annotations.Unique(
+                name = "InvoiceSummaryTotal_key_UNQ",
+                members = { "summaryType", "atPath", "sellerReference", "dueDate", "status", "invoiceDate", "runId" })
+})
+@javax.jdo.annotations.Indices({
+        @javax.jdo.annotations.Index(
+                name = "InvoiceSummaryTotal_summaryType_runId_IDX",
+                members = { "summaryType", "runId" })
+})
+@javax.jdo.annotations.Queries({
+        @javax.jdo.annotations.Query(
+                name = "findBySummaryType", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal "
+                        + "WHERE summaryType == :summaryType")
+})
+@DomainObject(
+        editing = Editing.DISABLED,
+        objectType = "lease.InvoiceSummaryTotal"
+)
+public class InvoiceSummaryTotal
+        extends UdoDomainObject2<InvoiceSummaryTotal>
+        implements WithApplicationTenancyAny {
+
+    public enum SummaryType {
+        /**
+         * @see InvoiceSummaryForPropertyDueDateStatus
+         */
+        PROPERTY_DUE_DATE_STATUS,
+        /**
+         * @see InvoiceSummaryForInvoiceRun
+         */
+        INVOICE_RUN,
+        /**
+         * @see InvoiceSummaryForPropertyInvoiceDate
+         */
+        PROPERTY_INVOICE_DATE
+    }
+
+    /**
+     * What the invoices of a row have in common; the properties that are not part of the
+     * {@link #getSummaryType() summary type} are <tt>null</tt>.
+     */
+    public static class Key {
+
+        @Getter
+        private final SummaryType summaryType;
+        @Getter
+        private final String atPath;
+        @Getter
+        private final String sellerReference;
+        @Getter
+        private final LocalDate dueDate;
+        @Getter
+        private final InvoiceStatus status;
+        @Getter
+        private final LocalDate invoiceDate;
+        @Getter
+        private final String runId;
+
+        private Key(
+                final SummaryType summaryType,
+                final String atPath,
+                final String sellerReference,
+                final LocalDate dueDate,
+                final InvoiceStatus status,
+                final LocalDate invoiceDate,
+                final String runId) {
+            this.summaryType = summaryType;
+            this.atPath = atPath;
+            this.sellerReference = sellerReference;
+            this.dueDate = dueDate;
+            this.status = status;
+            this.invoiceDate = invoiceDate;
+            this.runId = runId;
+        }
+
+        public static Key forPropertyDueDateStatus(
+                final String atPath, final String sellerReference, final LocalDate dueDate, final InvoiceStatus status) {
+            return new Key(SummaryType.PROPERTY_DUE_DATE_STATUS, atPath, sellerReference, dueDate, status, null, null);
+        }
+
+        public static Key forInvoiceRun(final String atPath, final String runId) {
+            return new Key(SummaryType.INVOICE_RUN, atPath, null, null, null, null, runId);
+        }
+
+        public static Key forPropertyInvoiceDate(
+                final String atPath, final String sellerReference, final LocalDate invoiceDate) {
+            return new Key(SummaryType.PROPERTY_INVOICE_DATE, atPath, sellerReference, null, null, invoiceDate, null);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return summaryType == key.summaryType &&
+                    Objects.equals(atPath, key.atPath) &&
+                    Objects.equals(sellerReference, key.sellerReference) &&
+                    Objects.equals(dueDate, key.dueDate) &&
+                    status == key.status &&
+                    Objects.equals(invoiceDate, key.invoiceDate) &&
+                    Objects.equals(runId, key.runId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(summaryType, atPath, sellerReference, dueDate, status, invoiceDate, runId);
+        }
+
+        @Override
+        public String toString() {
+            return TitleBuilder.start()
+                    .withName(summaryType)
+                    .withName(atPath)
+                    .withName(sellerReference)
+                    .withName(dueDate)
+                    .withName(status)
+                    .withName(invoiceDate)
+                    .withName(runId)
+                    .toString();
+        }
+    }
+
+    public InvoiceSummaryTotal() {
+        super("summaryType, atPath, sellerReference, dueDate, status, invoiceDate, runId");
+    }
+
+    public String title() {
+        return getKey().toString();
+    }
+
+    @Property(hidden = Where.EVERYWHERE)
+    public ApplicationTenancy getApplicationTenancy() {
+        return securityApplicationTenancyRepository.findByPathCached(getAtPath());
+    }
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = 30)
+    @Getter @Setter
+    private SummaryType summaryType;
+
+    @javax.jdo.annotations.Column(allowsNull = "false", length = AtPathType.Meta.MAX_LEN)
+    @Getter @Setter
+    private String atPath;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", length = ReferenceType.Meta.MAX_LEN)
+    @Getter @Setter
+    private String sellerReference;
+
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    @Getter @Setter
+    private LocalDate dueDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", length = InvoiceStatus.Meta.MAX_LEN)
+    @Getter @Setter
+    private InvoiceStatus status;
+
+    @javax.jdo.annotations.Column(allowsNull = "true")
+    @Getter @Setter
+    private LocalDate invoiceDate;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", length = 512)
+    @Getter @Setter
+    private String runId;
+
+    /**
+     * The number of invoices (with at least one item).
+     */
+    @Getter @Setter
+    private int total;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", scale = 2)
+    @Getter @Setter
+    private BigDecimal netAmount;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", scale = 2)
+    @Getter @Setter
+    private BigDecimal vatAmount;
+
+    @javax.jdo.annotations.Column(allowsNull = "true", scale = 2)
+    @Getter @Setter
+    private BigDecimal grossAmount;
+
+    @Programmatic
+    public Key getKey() {
+        return new Key(getSummaryType(), getAtPath(), getSellerReference(), getDueDate(), getStatus(), getInvoiceDate(), getRunId());
+    }
+
+    @Programmatic
+    public void setKey(final Key key) {
+        setSummaryType(key.getSummaryType());
+        setAtPath(key.getAtPath());
+        setSellerReference(key.getSellerReference());
+        setDueDate(key.getDueDate());
+        setStatus(key.getStatus());
+        setInvoiceDate(key.getInvoiceDate());
+        setRunId(key.getRunId());
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.invoicing.summary;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+import javax.jdo.Transaction;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.jdosupport.IsisJdoSupport;
+
+import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal.Key;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal.SummaryType;
+
+/**
+ * Other than {@link #findBySummaryType(SummaryType)}, queries and changes the totals through the persistence manager
+ * directly, so that the {@link InvoiceSummaryTotalService} can also use it while the transaction is committing.
+ */
+@DomainService(nature = NatureOfService.DOMAIN, repositoryFor = InvoiceSummaryTotal.class)
+public class InvoiceSummaryTotalRepository extends UdoDomainRepositoryAndFactory<InvoiceSummaryTotal> {
+
+    public InvoiceSummaryTotalRepository() {
+        super(InvoiceSummaryTotalRepository.class, InvoiceSummaryTotal.class);
+    }
+
+    @Programmatic
+    public List<InvoiceSummaryTotal> findBySummaryType(final SummaryType summaryType) {
+        return allMatches("findBySummaryType",
+                "summaryType", summaryType);
+    }
+
+    @Programmatic
+    public boolean isEmpty() {
+        final Query query = newQuery("SELECT FROM " + InvoiceSummaryTotal.class.getName());
+        query.setRange(0, 1);
+        return ((List<?>) query.execute()).isEmpty();
+    }
+
+    /**
+     * Reads the total of the key (if any) with a <tt>SELECT ... FOR UPDATE</tt>, so that it is locked until the end of
+     * the transaction: another transaction recalculating the same key waits until this one has committed, and then
+     * sees its invoices.
+     */
+    @Programmatic
+    public InvoiceSummaryTotal findByKeyForUpdate(final Key key) {
+        final QInvoiceSummaryTotal q = QInvoiceSummaryTotal.candidate();
+        final PersistenceManager pm = isisJdoSupport.getJdoPersistenceManager();
+        final Transaction tx = pm.currentTransaction();
+        final Boolean serializeRead = tx.getSerializeRead();
+        try {
+            tx.setSerializeRead(true);
+            // null dates (and statuses) are matched by IS NULL
+            final List<InvoiceSummaryTotal> summaryTotals = isisJdoSupport.executeQuery(
+                    InvoiceSummaryTotal.class,
+                    q.summaryType.eq(key.getSummaryType())
+                            .and(q.atPath.eq(key.getAtPath()))
+                            .and(q.sellerReference.eq(key.getSellerReference()))
+                            .and(q.dueDate.eq(key.getDueDate()))
+                            .and(q.status.eq(key.getStatus()))
+                            .and(q.invoiceDate.eq(key.getInvoiceDate()))
+                            .and(q.runId.eq(key.getRunId())));
+            // unique, see InvoiceSummaryTotal
+            return summaryTotals.isEmpty() ? null : summaryTotals.get(0);
+        } finally {
+            tx.setSerializeRead(serializeRead);
+        }
+    }
+
+    @Programmatic
+    public InvoiceSummaryTotal create(final Key key) {
+        final InvoiceSummaryTotal total = new InvoiceSummaryTotal();
+        total.setKey(key);
+        isisJdoSupport.getJdoPersistenceManager().makePersistent(total);
+        return total;
+    }
+
+    @Programmatic
+    public void delete(final InvoiceSummaryTotal total) {
+        isisJdoSupport.getJdoPersistenceManager().deletePersistent(total);
+    }
+
+    @Inject
+    IsisJdoSupport isisJdoSupport;
+
+}
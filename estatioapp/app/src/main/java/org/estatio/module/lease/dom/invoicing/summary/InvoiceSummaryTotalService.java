@@ -0,0 +1,529 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.invoicing.summary;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+import org.apache.isis.applib.services.jdosupport.IsisJdoSupport;
+
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+import org.estatio.module.invoice.dom.Invoice;
+import org.estatio.module.invoice.dom.InvoiceItem;
+import org.estatio.module.invoice.dom.InvoiceRepository;
+import org.estatio.module.lease.dom.invoicing.InvoiceForLease;
+import org.estatio.module.lease.dom.invoicing.InvoiceItemForLease;
+import org.estatio.module.lease.dom.invoicing.QInvoiceForLease;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal.Key;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal.SummaryType;
+import org.estatio.module.party.dom.Party;
+
+/**
+ * Maintains the {@link InvoiceSummaryTotal}s from the lifecycle events of {@link InvoiceForLease}s and their
+ * {@link InvoiceItemForLease items}.
+ *
+ * <p>
+ * A change to an invoice or item only collects the keys that the invoice belonged to (before it was first changed in
+ * the transaction) and belongs to (now); just before the transaction commits, the totals of each of these keys are
+ * recalculated from their invoices, once. A bulk operation on many invoices of the same summary therefore
+ * recalculates that summary once, rather than once per invoice.
+ * </p>
+ *
+ * <p>
+ * Each total is {@link InvoiceSummaryTotalRepository#findByKeyForUpdate(Key) locked} before it is recalculated, so
+ * concurrent transactions recalculating the same key do so one after the other, each seeing the invoices of those
+ * committed before; should two transactions both create the first total of a key, then its unique constraint fails
+ * the later one rather than letting it add a duplicate. The transactions of a parallel run, which all change the
+ * same keys (eg of the run itself), instead {@link #deferRefreshTo(DeferredKeys) defer} them to the transaction that
+ * started the run, which {@link #refreshBeforeCommit(DeferredKeys) recalculates} them once all are done. Should the
+ * totals ever drift (eg should invoices be changed directly in the database) then {@link #verify(boolean)} reports
+ * and optionally repairs the differences.
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class InvoiceSummaryTotalService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InvoiceSummaryTotalService.class);
+
+    static final int MAX_DIFFERENCES_REPORTED = 20;
+
+    /**
+     * The number of invoices (that have items) and the sums of the amounts of their items; as aggregated by the
+     * original views.
+     */
+    static class Totals {
+
+        int total;
+        BigDecimal netAmount;
+        BigDecimal vatAmount;
+        BigDecimal grossAmount;
+
+        void add(final Invoice<?> invoice) {
+            final Collection<? extends InvoiceItem> items = invoice.getItems();
+            if (items.isEmpty()) {
+                return;
+            }
+            total++;
+            for (InvoiceItem item : items) {
+                netAmount = sum(netAmount, item.getNetAmount());
+                vatAmount = sum(vatAmount, item.getVatAmount());
+                grossAmount = sum(grossAmount, item.getGrossAmount());
+            }
+        }
+
+        /**
+         * As SQL's <tt>SUM</tt>: nulls are ignored, and the sum of nothing but nulls is null.
+         */
+        private static BigDecimal sum(final BigDecimal sum, final BigDecimal amount) {
+            if (amount == null) {
+                return sum;
+            }
+            return sum == null ? amount : sum.add(amount);
+        }
+
+        boolean isSameAs(final InvoiceSummaryTotal summaryTotal) {
+            return total == summaryTotal.getTotal()
+                    && isSame(netAmount, summaryTotal.getNetAmount())
+                    && isSame(vatAmount, summaryTotal.getVatAmount())
+                    && isSame(grossAmount, summaryTotal.getGrossAmount());
+        }
+
+        private static boolean isSame(final BigDecimal amount, final BigDecimal other) {
+            return amount == null ? other == null : other != null && amount.compareTo(other) == 0;
+        }
+
+        void applyTo(final InvoiceSummaryTotal summaryTotal) {
+            summaryTotal.setTotal(total);
+            summaryTotal.setNetAmount(netAmount);
+            summaryTotal.setVatAmount(vatAmount);
+            summaryTotal.setGrossAmount(grossAmount);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d invoices, net %s, vat %s, gross %s", total, netAmount, vatAmount, grossAmount);
+        }
+    }
+
+    /**
+     * The keys changed by the transactions of a parallel run, to be recalculated once by the transaction that started
+     * the run; shared by the sessions of the run.
+     */
+    public static class DeferredKeys {
+        private final Set<Key> keys = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * The keys changed by the current transaction.
+     */
+    static class StaleKeys {
+        final Set<Key> keys = new LinkedHashSet<>();
+        DeferredKeys deferredTo;
+    }
+
+    /**
+     * The outcome of {@link #verify(boolean)}.
+     */
+    public static class Verification {
+
+        private int keys;
+        private int missing;
+        private int different;
+        private int surplus;
+        private boolean repaired;
+        private final List<String> differences = new ArrayList<>();
+
+        public int getKeys() {
+            return keys;
+        }
+
+        public int getMissing() {
+            return missing;
+        }
+
+        public int getDifferent() {
+            return different;
+        }
+
+        public int getSurplus() {
+            return surplus;
+        }
+
+        public boolean isConsistent() {
+            return missing + different + surplus == 0;
+        }
+
+        /**
+         * A description of (at most {@value #MAX_DIFFERENCES_REPORTED} of) the differences found.
+         */
+        public List<String> getDifferences() {
+            return Collections.unmodifiableList(differences);
+        }
+
+        private void report(final String difference) {
+            if (differences.size() < MAX_DIFFERENCES_REPORTED) {
+                differences.add(difference);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d invoice summaries: %d missing, %d different, %d surplus%s",
+                    keys, missing, different, surplus, isConsistent() ? "" : repaired ? " (repaired)" : "");
+        }
+    }
+
+    /**
+     * The keys of the summaries that include the invoice; mirrors the joins and <tt>GROUP BY</tt>s of the original
+     * view definitions.
+     */
+    static Set<Key> keysOf(final InvoiceForLease invoice) {
+        final Set<Key> keys = new LinkedHashSet<>();
+        final String atPath = invoice.getApplicationTenancyPath();
+        if (atPath == null) {
+            return keys;
+        }
+        final Party seller = invoice.getSeller();
+        if (seller != null) {
+            keys.add(Key.forPropertyDueDateStatus(atPath, seller.getReference(), invoice.getDueDate(), invoice.getStatus()));
+            keys.add(Key.forPropertyInvoiceDate(atPath, seller.getReference(), invoice.getInvoiceDate()));
+        }
+        if (invoice.getRunId() != null && invoice.getLease() != null && invoice.getFixedAsset() != null) {
+            keys.add(Key.forInvoiceRun(atPath, invoice.getRunId()));
+        }
+        return keys;
+    }
+
+    @PostConstruct
+    public void init() {
+        eventBusService.register(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+    }
+
+    //region > event subscribers
+
+    /**
+     * Fired before the invoice is first changed in the transaction, so with the keys it was included in until now.
+     */
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final InvoiceForLease.UpdatingLifecycleEvent ev) {
+        invoiceChanged(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final InvoiceForLease.PersistedLifecycleEvent ev) {
+        invoiceChanged(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final InvoiceForLease.UpdatedLifecycleEvent ev) {
+        invoiceChanged(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final InvoiceForLease.RemovingLifecycleEvent ev) {
+        invoiceChanged(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final InvoiceItemForLease.PersistedLifecycleEvent ev) {
+        itemChanged(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final InvoiceItemForLease.UpdatedLifecycleEvent ev) {
+        itemChanged(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final InvoiceItemForLease.RemovingLifecycleEvent ev) {
+        itemChanged(ev.getSource());
+    }
+
+    private void itemChanged(final InvoiceItemForLease item) {
+        final Invoice<?> invoice = item.getInvoice();
+        if (invoice instanceof InvoiceForLease) {
+            invoiceChanged((InvoiceForLease) invoice);
+        }
+    }
+
+    private void invoiceChanged(final InvoiceForLease invoice) {
+        final Set<Key> keys = keysOf(invoice);
+        if (keys.isEmpty()) {
+            return;
+        }
+        final StaleKeys staleKeys = staleKeys();
+        if (staleKeys.deferredTo != null) {
+            staleKeys.deferredTo.keys.addAll(keys);
+            return;
+        }
+        markStale(staleKeys, keys);
+    }
+
+    private StaleKeys staleKeys() {
+        return transactionCompletionService.transactionState(this, StaleKeys::new);
+    }
+
+    private void markStale(final StaleKeys staleKeys, final Set<Key> keys) {
+        staleKeys.keys.addAll(keys);
+        transactionCompletionService.beforeCommit(this, () -> refresh(staleKeys.keys));
+    }
+
+    //endregion
+
+    //region > deferred refresh
+
+    @Programmatic
+    public DeferredKeys newDeferredKeys() {
+        return new DeferredKeys();
+    }
+
+    /**
+     * The keys changed by the current transaction (a unit of a parallel run) are not recalculated by it, but collected
+     * for the transaction that started the run.
+     */
+    @Programmatic
+    public void deferRefreshTo(final DeferredKeys deferredKeys) {
+        staleKeys().deferredTo = deferredKeys;
+    }
+
+    /**
+     * Recalculates the keys collected from the transactions of a parallel run just before the current transaction
+     * commits (along with any it changed itself); call once all of the run's transactions are done.
+     */
+    @Programmatic
+    public void refreshBeforeCommit(final DeferredKeys deferredKeys) {
+        if (deferredKeys.keys.isEmpty()) {
+            return;
+        }
+        markStale(staleKeys(), new LinkedHashSet<>(deferredKeys.keys));
+    }
+
+    //endregion
+
+    //region > refresh
+
+    /**
+     * Recalculates the totals of the keys, creating or removing them as required; always locked in the same order, so
+     * that transactions recalculating some of the same keys do not deadlock.
+     */
+    void refresh(final Set<Key> keys) {
+        final long start = System.currentTimeMillis();
+        keys.stream()
+                .sorted(Comparator.comparing(Key::toString))
+                .forEach(this::refresh);
+        LOG.debug("Refreshed {} invoice summaries in {} ms", keys.size(), System.currentTimeMillis() - start);
+    }
+
+    private void refresh(final Key key) {
+        // locked first, so that the invoices are read as committed by any other transaction recalculating the key
+        final InvoiceSummaryTotal existing = invoiceSummaryTotalRepository.findByKeyForUpdate(key);
+        final Totals totals = totalsFor(key);
+        if (totals.total == 0) {
+            if (existing != null) {
+                invoiceSummaryTotalRepository.delete(existing);
+            }
+            return;
+        }
+        final InvoiceSummaryTotal summaryTotal = existing != null
+                ? existing
+                : invoiceSummaryTotalRepository.create(key);
+        if (!totals.isSameAs(summaryTotal)) {
+            totals.applyTo(summaryTotal);
+        }
+    }
+
+    /**
+     * Aggregates the same invoices as listed by the summary of the key.
+     */
+    Totals totalsFor(final Key key) {
+        final Totals totals = new Totals();
+        for (InvoiceForLease invoice : invoicesFor(key)) {
+            // as verify(), so that both agree on which invoices are included
+            if (keysOf(invoice).contains(key)) {
+                totals.add(invoice);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * The candidate invoices of the key; queried through the persistence manager directly, as this is called while
+     * the transaction is committing.
+     */
+    List<InvoiceForLease> invoicesFor(final Key key) {
+        final QInvoiceForLease q = QInvoiceForLease.candidate();
+        switch (key.getSummaryType()) {
+        case INVOICE_RUN:
+            return isisJdoSupport.executeQuery(
+                    InvoiceForLease.class,
+                    q.runId.eq(key.getRunId())
+                            .and(q.applicationTenancyPath.eq(key.getAtPath())));
+        case PROPERTY_DUE_DATE_STATUS:
+            return isisJdoSupport.executeQuery(
+                    InvoiceForLease.class,
+                    q.applicationTenancyPath.eq(key.getAtPath())
+                            .and(q.seller.reference.eq(key.getSellerReference()))
+                            .and(q.dueDate.eq(key.getDueDate()))
+                            .and(q.status.eq(key.getStatus())));
+        case PROPERTY_INVOICE_DATE:
+            return isisJdoSupport.executeQuery(
+                    InvoiceForLease.class,
+                    q.applicationTenancyPath.eq(key.getAtPath())
+                            .and(q.seller.reference.eq(key.getSellerReference()))
+                            .and(q.invoiceDate.eq(key.getInvoiceDate())));
+        default:
+            throw new IllegalArgumentException("Unknown summary type " + key.getSummaryType());
+        }
+    }
+
+    //endregion
+
+    //region > verify
+
+    /**
+     * Recalculates the totals of all invoices and compares them with the materialized ones.
+     *
+     * @param repair - whether to correct any differences found
+     */
+    @Programmatic
+    public Verification verify(final boolean repair) {
+        final long start = System.currentTimeMillis();
+
+        final Map<Key, Totals> expected = new LinkedHashMap<>();
+        for (Invoice<?> invoice : invoiceRepository.allInvoices()) {
+            if (!(invoice instanceof InvoiceForLease)) {
+                continue;
+            }
+            for (Key key : keysOf((InvoiceForLease) invoice)) {
+                expected.computeIfAbsent(key, k -> new Totals()).add(invoice);
+            }
+        }
+        expected.values().removeIf(totals -> totals.total == 0);
+
+        final Map<Key, List<InvoiceSummaryTotal>> actual = new LinkedHashMap<>();
+        for (SummaryType summaryType : SummaryType.values()) {
+            for (InvoiceSummaryTotal summaryTotal : invoiceSummaryTotalRepository.findBySummaryType(summaryType)) {
+                actual.computeIfAbsent(summaryTotal.getKey(), k -> new ArrayList<>()).add(summaryTotal);
+            }
+        }
+
+        final Verification verification = new Verification();
+        verification.keys = expected.size();
+        verification.repaired = repair;
+        for (Map.Entry<Key, Totals> entry : expected.entrySet()) {
+            final Key key = entry.getKey();
+            final Totals totals = entry.getValue();
+            final List<InvoiceSummaryTotal> summaryTotals = actual.remove(key);
+            if (summaryTotals == null) {
+                verification.missing++;
+                verification.report(String.format("%s: missing, expected %s", key, totals));
+                if (repair) {
+                    totals.applyTo(invoiceSummaryTotalRepository.create(key));
+                }
+                continue;
+            }
+            final InvoiceSummaryTotal summaryTotal = summaryTotals.get(0);
+            if (!totals.isSameAs(summaryTotal)) {
+                verification.different++;
+                verification.report(String.format("%s: %d invoices, expected %s", key, summaryTotal.getTotal(), totals));
+                if (repair) {
+                    totals.applyTo(summaryTotal);
+                }
+            }
+            for (InvoiceSummaryTotal duplicate : summaryTotals.subList(1, summaryTotals.size())) {
+                verification.surplus++;
+                verification.report(String.format("%s: duplicate", key));
+                if (repair) {
+                    invoiceSummaryTotalRepository.delete(duplicate);
+                }
+            }
+        }
+        for (Map.Entry<Key, List<InvoiceSummaryTotal>> entry : actual.entrySet()) {
+            for (InvoiceSummaryTotal summaryTotal : entry.getValue()) {
+                verification.surplus++;
+                verification.report(String.format("%s: surplus, no invoices", entry.getKey()));
+                if (repair) {
+                    invoiceSummaryTotalRepository.delete(summaryTotal);
+                }
+            }
+        }
+
+        LOG.info("Verified invoice summaries in {} ms: {}", System.currentTimeMillis() - start, verification);
+        return verification;
+    }
+
+    //endregion
+
+    @Inject
+    InvoiceSummaryTotalRepository invoiceSummaryTotalRepository;
+
+    @Inject
+    InvoiceRepository invoiceRepository;
+
+    @Inject
+    TransactionCompletionService transactionCompletionService;
+
+    @Inject
+    IsisJdoSupport isisJdoSupport;
+
+    @Inject
+    EventBusService eventBusService;
+
+}
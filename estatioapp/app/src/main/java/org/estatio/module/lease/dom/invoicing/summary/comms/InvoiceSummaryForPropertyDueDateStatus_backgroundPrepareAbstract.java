@@ -19,7 +19,10 @@
 package org.estatio.module.lease.dom.invoicing.summary.comms;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -35,6 +38,7 @@ import org.apache.isis.applib.services.factory.FactoryService;
 import org.incode.module.document.dom.impl.docs.Document;
 import org.incode.module.document.dom.impl.docs.DocumentState;
 import org.incode.module.document.dom.impl.docs.DocumentTemplate;
+import org.incode.module.document.dom.services.DocumentCreatorService;
 
 import org.estatio.module.invoice.dom.DocumentTypeData;
 import org.estatio.module.invoice.dom.Invoice;
@@ -62,6 +66,25 @@ public abstract class InvoiceSummaryForPropertyDueDateStatus_backgroundPrepareAb
         return this.invoiceSummary;
     }
 
+    /**
+     * Prepares the documents straight away rather than in the background; those of the same template are rendered
+     * {@link DocumentTemplate#renderAll(List, List) together}, so that their conversions to PDF overlap.
+     */
+    InvoiceSummaryForPropertyDueDateStatus prepareAll() {
+        final Map<DocumentTemplate, List<InvoiceForLease>> invoicesByTemplate = new LinkedHashMap<>();
+        for (InvoiceForLease invoice : invoicesToPrepare()) {
+            invoicesByTemplate.computeIfAbsent(documentTemplateFor(invoice), template -> new ArrayList<>()).add(invoice);
+        }
+        invoicesByTemplate.forEach((template, invoices) -> {
+            final List<Document> documents = new ArrayList<>();
+            for (InvoiceForLease invoice : invoices) {
+                documents.add(documentCreatorService.createDocumentAndAttachPaperclips(invoice, template));
+            }
+            template.renderAll(documents, invoices);
+        });
+        return this.invoiceSummary;
+    }
+
     public String disable$$() {
         return invoicesToPrepare().isEmpty()? "No invoices available to be prepared": null;
     }
@@ -95,5 +118,8 @@ public abstract class InvoiceSummaryForPropertyDueDateStatus_backgroundPrepareAb
     @Inject
     InvoiceDocAndCommService invoiceDocAndCommService;
 
+    @Inject
+    DocumentCreatorService documentCreatorService;
+
 
 }
@@ -0,0 +1,47 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.invoicing.summary.comms;
+
+import org.apache.isis.applib.annotation.Action;
+import org.apache.isis.applib.annotation.ActionLayout;
+import org.apache.isis.applib.annotation.Contributed;
+import org.apache.isis.applib.annotation.Mixin;
+import org.apache.isis.applib.annotation.SemanticsOf;
+
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryForPropertyDueDateStatus;
+
+/**
+ * As {@link InvoiceSummaryForPropertyDueDateStatus_backgroundPrepareInvoiceDocs}, but rendering straight away, in bulk.
+ */
+@Mixin
+public class InvoiceSummaryForPropertyDueDateStatus_prepareInvoiceDocs
+        extends InvoiceSummaryForPropertyDueDateStatus_backgroundPrepareInvoiceDocs {
+
+    public InvoiceSummaryForPropertyDueDateStatus_prepareInvoiceDocs(final InvoiceSummaryForPropertyDueDateStatus invoiceSummary) {
+        super(invoiceSummary);
+    }
+
+    @Action(semantics = SemanticsOf.NON_IDEMPOTENT_ARE_YOU_SURE)
+    @ActionLayout(contributed = Contributed.AS_ACTION)
+    @Override
+    public InvoiceSummaryForPropertyDueDateStatus $$() {
+        return prepareAll();
+    }
+
+}
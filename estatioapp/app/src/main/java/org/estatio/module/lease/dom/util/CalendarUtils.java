@@ -34,11 +34,6 @@ import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 
 public final class CalendarUtils {
 
-    /**
-     * TODO: EST-112
-     */
-    private static final LocalDate START_DATE_DEFAULT = new LocalDate(2000, 1, 1);
-
     private CalendarUtils() {
     }
 
@@ -65,7 +60,10 @@ public final class CalendarUtils {
      * @return
      */
     public static Interval intervalContaining(final LocalDate containingDate, final String rrule) {
-        return currentInterval(containingDate, rrule, START_DATE_DEFAULT);
+        if (containingDate == null || rrule == null) {
+            return null;
+        }
+        return RecurrenceCalendar.of(rrule).intervalContaining(containingDate);
     }
 
     public static Interval currentInterval(
@@ -102,7 +100,7 @@ public final class CalendarUtils {
      * @return
      */
     public static LocalDate nextDate(final LocalDate date, final String rrule) {
-        return date == null || rrule == null ? null : currentInterval(date, rrule, date).getEnd().toLocalDate();
+        return date == null || rrule == null ? null : RecurrenceCalendar.of(rrule).nextDate(date);
     }
 
     public static boolean isBetween(final LocalDate date, final LocalDate startDate, final LocalDate endDate) {
@@ -120,17 +118,10 @@ public final class CalendarUtils {
             throw new IllegalArgumentException(
                     String.format("Start date %s is after end date %s", startDate.toString(), endDate.toString()));
         }
-        List<Interval> intervals = Lists.newArrayList();
-        LocalDate start = startDate;
-        Interval interval = null;
-        do {
-            interval = intervalContaining(start, rrule);
-            if (interval != null) {
-                intervals.add(interval);
-                start = interval.getEnd().toLocalDate();
-            }
-        } while (interval != null && start.isBefore(endDate));
-        return intervals;
+        if (rrule == null) {
+            return Lists.newArrayList();
+        }
+        return RecurrenceCalendar.of(rrule).intervalsInRange(startDate, endDate);
     }
 
     public static List<LocalDateInterval> localDateIintervalsInRange(
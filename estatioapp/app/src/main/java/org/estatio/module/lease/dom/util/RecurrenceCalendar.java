@@ -0,0 +1,250 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.util;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.ical.compat.jodatime.LocalDateIterator;
+import com.google.ical.compat.jodatime.LocalDateIteratorFactory;
+
+import org.joda.time.Interval;
+import org.joda.time.LocalDate;
+
+import org.incode.module.base.dom.IncodeApplicationException;
+
+/**
+ * An rrule compiled into an immutable table of interval boundaries, so that containing-interval and range queries
+ * are a binary search rather than a walk of the recurrence from {@link #ANCHOR_DATE}.
+ *
+ * <p>
+ * The table holds the anchor date followed by every occurrence of the rule up to and including the first one after
+ * {@link #HORIZON_DATE}; the interval containing a date is <tt>[boundary(k-1), boundary(k))</tt> where <tt>k</tt>
+ * is the first boundary strictly after that date. This is exactly what {@link CalendarUtils#currentInterval} returns
+ * for the same anchor; dates beyond the table fall back to that (iterating) implementation.
+ * </p>
+ *
+ * <p>
+ * Instances are shared: obtain them using {@link #of(String)}, which compiles each distinct rrule only once.
+ * </p>
+ */
+public final class RecurrenceCalendar {
+
+    /**
+     * TODO: EST-112 (same anchor as {@link CalendarUtils#intervalContaining(LocalDate, String)})
+     */
+    static final LocalDate ANCHOR_DATE = new LocalDate(2000, 1, 1);
+
+    static final LocalDate HORIZON_DATE = new LocalDate(2200, 1, 1);
+
+    private static final ConcurrentMap<String, RecurrenceCalendar> CALENDARS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the (shared) compiled calendar for the rrule, or <tt>null</tt> if there is no rrule.
+     */
+    public static RecurrenceCalendar of(final String rrule) {
+        if (rrule == null) {
+            return null;
+        }
+        return CALENDARS.computeIfAbsent(rrule, RecurrenceCalendar::compile);
+    }
+
+    private static RecurrenceCalendar compile(final String rrule) {
+        final List<LocalDate> dates = new ArrayList<>();
+        dates.add(ANCHOR_DATE);
+        try {
+            final LocalDateIterator iter =
+                    LocalDateIteratorFactory.createLocalDateIterator(rrule, ANCHOR_DATE, true);
+            while (iter.hasNext()) {
+                final LocalDate nextDate = iter.next();
+                dates.add(nextDate);
+                if (nextDate.isAfter(HORIZON_DATE)) {
+                    break;
+                }
+            }
+        } catch (final ParseException ex) {
+            throw new IncodeApplicationException("Unable to parse rrule >>" + rrule + "<<", ex);
+        }
+        return new RecurrenceCalendar(rrule, dates.toArray(new LocalDate[dates.size()]));
+    }
+
+    private final String rrule;
+    private final LocalDate[] boundaryDates;
+    private final int[] boundaryDays;
+
+    private RecurrenceCalendar(final String rrule, final LocalDate[] boundaryDates) {
+        this.rrule = rrule;
+        this.boundaryDates = boundaryDates;
+        this.boundaryDays = new int[boundaryDates.length];
+        for (int i = 0; i < boundaryDates.length; i++) {
+            this.boundaryDays[i] = epochDay(boundaryDates[i]);
+        }
+    }
+
+    public String getRrule() {
+        return rrule;
+    }
+
+    // //////////////////////////////////////
+
+    /**
+     * Callback for the interval queries, so that callers can build whichever interval type they need (or none at all).
+     */
+    public interface IntervalConsumer {
+        void accept(LocalDate startDate, LocalDate endDateExcluding);
+    }
+
+    /**
+     * Returns the index of the interval containing the date (the first boundary strictly after it), or <tt>-1</tt>
+     * if the date lies beyond the compiled table.
+     */
+    int indexOfIntervalContaining(final LocalDate date) {
+        final int day = epochDay(date);
+        int low = 1;
+        int high = boundaryDays.length - 1;
+        if (boundaryDays[high] <= day) {
+            return -1;
+        }
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (boundaryDays[mid] > day) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    public LocalDate startDateOfIntervalContaining(final LocalDate date) {
+        if (date == null) {
+            return null;
+        }
+        final int index = indexOfIntervalContaining(date);
+        return index < 0 ? fallbackIntervalContaining(date).getStart().toLocalDate() : boundaryDates[index - 1];
+    }
+
+    public LocalDate endDateOfIntervalContaining(final LocalDate date) {
+        if (date == null) {
+            return null;
+        }
+        final int index = indexOfIntervalContaining(date);
+        return index < 0 ? fallbackIntervalContaining(date).getEnd().toLocalDate() : boundaryDates[index];
+    }
+
+    public boolean isIntervalStart(final LocalDate date) {
+        return date != null && date.equals(startDateOfIntervalContaining(date));
+    }
+
+    public Interval intervalContaining(final LocalDate date) {
+        if (date == null) {
+            return null;
+        }
+        final int index = indexOfIntervalContaining(date);
+        if (index < 0) {
+            return fallbackIntervalContaining(date);
+        }
+        return toInterval(boundaryDates[index - 1], boundaryDates[index]);
+    }
+
+    /**
+     * Visits the consecutive intervals starting with the one containing <tt>startDate</tt>, up to and including the
+     * one in which <tt>endDate</tt> falls (same semantics as {@link CalendarUtils#intervalsInRange}).
+     */
+    public void forEachIntervalInRange(
+            final LocalDate startDate,
+            final LocalDate endDate,
+            final IntervalConsumer consumer) {
+        if (startDate.compareTo(endDate) > 0) {
+            throw new IllegalArgumentException(
+                    String.format("Start date %s is after end date %s", startDate.toString(), endDate.toString()));
+        }
+        LocalDate start = startDate;
+        int index = indexOfIntervalContaining(start);
+        while (index > 0) {
+            final LocalDate end = boundaryDates[index];
+            consumer.accept(boundaryDates[index - 1], end);
+            if (!end.isBefore(endDate)) {
+                return;
+            }
+            start = end;
+            index = index + 1 < boundaryDates.length ? index + 1 : -1;
+        }
+        // beyond the compiled table
+        Interval interval;
+        do {
+            interval = fallbackIntervalContaining(start);
+            if (interval != null) {
+                final LocalDate end = interval.getEnd().toLocalDate();
+                consumer.accept(interval.getStart().toLocalDate(), end);
+                start = end;
+            }
+        } while (interval != null && start.isBefore(endDate));
+    }
+
+    public List<Interval> intervalsInRange(final LocalDate startDate, final LocalDate endDate) {
+        final List<Interval> intervals = new ArrayList<>();
+        forEachIntervalInRange(startDate, endDate, (start, end) -> intervals.add(toInterval(start, end)));
+        return intervals;
+    }
+
+    /**
+     * The first occurrence after the date of this rule when anchored on that same date
+     * (see {@link CalendarUtils#nextDate(LocalDate, String)}).
+     *
+     * <p>
+     * Because the anchor moves with the date this cannot be read from the boundary table, but it is only ever a
+     * couple of iterations.
+     * </p>
+     */
+    public LocalDate nextDate(final LocalDate date) {
+        return date == null ? null : CalendarUtils.currentInterval(date, rrule, date).getEnd().toLocalDate();
+    }
+
+    private Interval fallbackIntervalContaining(final LocalDate date) {
+        return CalendarUtils.currentInterval(date, rrule, ANCHOR_DATE);
+    }
+
+    // //////////////////////////////////////
+
+    private static Interval toInterval(final LocalDate startDate, final LocalDate endDateExcluding) {
+        return new Interval(
+                startDate.toInterval().getStartMillis(),
+                endDateExcluding.toInterval().getStartMillis());
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar, computed from the fields so as not to allocate.
+     */
+    static int epochDay(final LocalDate date) {
+        int year = date.getYear();
+        final int month = date.getMonthOfYear();
+        final int day = date.getDayOfMonth();
+        year -= month <= 2 ? 1 : 0;
+        final int era = (year >= 0 ? year : year - 399) / 400;
+        final int yearOfEra = year - era * 400;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.seed;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotalRepository;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotalService;
+
+/**
+ * Fills in the {@link InvoiceSummaryTotal}s from the existing invoices, once: when the table (as created by
+ * DataNucleus along with the rest of the schema) is still empty.
+ */
+@DomainService(nature = NatureOfService.DOMAIN, menuOrder = "99")
+public class InvoiceSummaryTotalSeedService {
+
+    @PostConstruct
+    public void init() {
+        if(System.getProperty("isis.headless") != null) {
+            return;
+        }
+
+        if(invoiceSummaryTotalRepository.isEmpty()) {
+            invoiceSummaryTotalService.verify(true);
+        }
+    }
+
+    @Inject
+    InvoiceSummaryTotalRepository invoiceSummaryTotalRepository;
+    @Inject
+    InvoiceSummaryTotalService invoiceSummaryTotalService;
+}
@@ -19,6 +19,8 @@
 package org.estatio.module.numerator.dom;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.jdo.annotations.Column;
@@ -348,22 +350,117 @@ public class Numerator
         return format(nextIncrement());
     }
 
+    /**
+     * The last value handed out; while values are {@link #reserve(int) reserved}, this is the last of those handed
+     * out so far (rather than the last one reserved).
+     */
     @Programmatic
     public String lastIncrementStr(){
-        return format(getLastIncrement());
+        return format(reservedNext != null ? reservedNext.subtract(BigInteger.ONE) : getLastIncrement());
     }
     
 
+    /**
+     * Allocates the next <tt>count</tt> values in one go, with a single update of the {@link #getLastIncrement() last
+     * increment}; the values are returned in ascending order.
+     *
+     * <p>
+     * To serialize concurrent allocators (rather than have all but one fail on the optimistic lock), allocate
+     * through {@link NumeratorRepository#allocate(Numerator, int)} instead.
+     * </p>
+     */
+    @Programmatic
+    public List<String> nextIncrementStrs(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count cannot be negative: " + count);
+        }
+        final BigInteger last = lastIncrementOrZero();
+        setLastIncrement(last.add(BigInteger.valueOf(count)));
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            values.add(format(last.add(BigInteger.valueOf(i))));
+        }
+        return values;
+    }
+
+    /**
+     * Reserves the next <tt>count</tt> values, with a single update of the {@link #getLastIncrement() last increment};
+     * subsequent calls to {@link #nextIncrementStr()} on this (in-memory) instance hand them out in order, without
+     * any further update, until the reservation is used up or {@link #releaseReserved() released}.
+     *
+     * <p>
+     * Intended for bulk actions that assign numbers one object at a time, through the usual (wrapped) action; use
+     * {@link NumeratorRepository#reserve(Numerator, int)} so that concurrent allocators are serialized.
+     * </p>
+     */
+    @Programmatic
+    public void reserve(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count cannot be negative: " + count);
+        }
+        releaseReserved();
+        if (count == 0) {
+            return;
+        }
+        final BigInteger last = lastIncrementOrZero();
+        reservedNext = last.add(BigInteger.ONE);
+        reservedLast = last.add(BigInteger.valueOf(count));
+        setLastIncrement(reservedLast);
+    }
+
+    /**
+     * The number of {@link #reserve(int) reserved} values not yet handed out.
+     */
+    @Programmatic
+    public int getReservedRemaining() {
+        return reservedNext == null ? 0 : reservedLast.subtract(reservedNext).intValue() + 1;
+    }
+
+    /**
+     * Gives back any {@link #reserve(int) reserved} values that were not handed out, so that no gap is left in the
+     * sequence; the reserved values are always the most recent ones, because they are handed out in order.
+     *
+     * @return the number of values given back.
+     */
+    @Programmatic
+    public int releaseReserved() {
+        final int remaining = getReservedRemaining();
+        if (remaining > 0 && reservedLast.equals(getLastIncrement())) {
+            setLastIncrement(reservedNext.subtract(BigInteger.ONE));
+        }
+        reservedNext = null;
+        reservedLast = null;
+        return remaining;
+    }
+
     private BigInteger nextIncrement() {
-        BigInteger last = getLastIncrement();
-        if (last == null) {
-            last = BigInteger.ZERO;
+        if (reservedNext != null) {
+            final BigInteger next = reservedNext;
+            reservedNext = next.equals(reservedLast) ? null : next.add(BigInteger.ONE);
+            if (reservedNext == null) {
+                reservedLast = null;
+            }
+            return next;
         }
-        BigInteger next = last.add(BigInteger.ONE);
+        BigInteger next = lastIncrementOrZero().add(BigInteger.ONE);
         setLastIncrement(next);
         return next;
     }
 
+    private BigInteger lastIncrementOrZero() {
+        final BigInteger last = getLastIncrement();
+        return last != null ? last : BigInteger.ZERO;
+    }
+
+    /**
+     * The next value of a {@link #reserve(int) reservation}, if any; not persisted.
+     */
+    @NotPersistent
+    private BigInteger reservedNext;
+
+    @NotPersistent
+    private BigInteger reservedLast;
+
     // //////////////////////////////////////
 
 
@@ -21,9 +21,13 @@ package org.estatio.module.numerator.dom;
 import java.math.BigInteger;
 import java.util.List;
 
+import javax.jdo.PersistenceManager;
+import javax.jdo.Transaction;
+
 import org.apache.isis.applib.RecoverableException;
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.services.bookmark.Bookmark;
 
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
@@ -164,4 +168,48 @@ public class NumeratorRepository extends UdoDomainRepositoryAndFactory<Numerator
     }
 
 
+    /**
+     * Allocates the next <tt>count</tt> values of the numerator with a single update, holding a lock on the
+     * numerator's row until the end of the transaction.
+     *
+     * <p>
+     * Concurrent allocators of the same numerator therefore wait for each other (rather than all but one failing
+     * on the optimistic version check, and retrying), and the values allocated are gapless.
+     * </p>
+     */
+    @Programmatic
+    public List<String> allocate(final Numerator numerator, final int count) {
+        lock(numerator);
+        return numerator.nextIncrementStrs(count);
+    }
+
+    /**
+     * As {@link #allocate(Numerator, int)}, but the values are handed out by subsequent calls to
+     * {@link Numerator#nextIncrementStr()}; see {@link Numerator#reserve(int)}.
+     */
+    @Programmatic
+    public void reserve(final Numerator numerator, final int count) {
+        lock(numerator);
+        numerator.reserve(count);
+    }
+
+    /**
+     * Re-reads the numerator with a <tt>SELECT ... FOR UPDATE</tt> (so that it is locked until the end of the
+     * transaction, and its last increment is the committed one).
+     */
+    @Programmatic
+    public void lock(final Numerator numerator) {
+        final PersistenceManager pm = getIsisJdoSupport().getJdoPersistenceManager();
+        // any changes pending in this transaction are flushed first, so that the refresh does not discard them
+        pm.flush();
+        final Transaction tx = pm.currentTransaction();
+        final Boolean serializeRead = tx.getSerializeRead();
+        try {
+            tx.setSerializeRead(true);
+            pm.refresh(numerator);
+        } finally {
+            tx.setSerializeRead(serializeRead);
+        }
+    }
+
 }
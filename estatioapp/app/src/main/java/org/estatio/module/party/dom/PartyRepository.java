@@ -18,11 +18,17 @@
  */
 package org.estatio.module.party.dom;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 import org.apache.isis.applib.annotation.DomainService;
@@ -32,8 +38,11 @@ import org.apache.isis.applib.annotation.Programmatic;
 import org.incode.module.base.dom.utils.StringUtils;
 
 import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
+import org.estatio.module.base.dom.apptenancy.ApplicationTenancyQueryService;
+import org.estatio.module.base.dom.search.SearchIndexService;
 import org.estatio.module.capex.dom.invoice.IncomingInvoiceRoleTypeEnum;
 import org.estatio.module.party.dom.role.IPartyRoleType;
+import org.estatio.module.party.dom.role.PartyRole;
 import org.estatio.module.party.dom.role.PartyRoleType;
 import org.estatio.module.party.dom.role.PartyRoleTypeEnum;
 import org.estatio.module.party.dom.role.PartyRoleTypeRepository;
@@ -128,33 +137,115 @@ public class PartyRepository extends UdoDomainRepositoryAndFactory<Party> {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * The organisations whose tenancy path contains the one provided (typically that of the document for which a
+     * supplier is being chosen); only those also visible to the current user are loaded.
+     */
     @Programmatic
     public List<Party> autoCompleteSupplier(final String searchPhrase, final String atPath){
-        return autoComplete(searchPhrase).stream()
-                .filter(Organisation.class::isInstance)
-                .filter(x->x.getAtPath().contains(atPath))
-                .collect(Collectors.toList());
+        if (searchPhrase.length() <= 2) {
+            return Lists.newArrayList();
+        }
+        final List<Organisation> organisations = applicationTenancyQueryService.allMatchesVisibleToCurrentUser(
+                Organisation.class,
+                "(reference.matches(:referenceOrName) || name.matches(:referenceOrName)) "
+                        + "&& applicationTenancyPath.indexOf(:atPath) >= 0",
+                ImmutableMap.of(
+                        "referenceOrName", StringUtils.wildcardToCaseInsensitiveRegex("*" + searchPhrase + "*"),
+                        "atPath", atPath),
+                null);
+        return Lists.newArrayList(organisations);
     }
 
     @Programmatic
     public List<Party> autoComplete(final String searchPhrase) {
-        return searchPhrase.length() > 2
-                ? findParties("*" + searchPhrase + "*")
-                : Lists.<Party>newArrayList();
+        if (searchPhrase.length() <= 2) {
+            return Lists.newArrayList();
+        }
+        if (searchIndexService.isAvailableFor(searchIndexDefinition, searchPhrase)) {
+            final List<Party> parties = searchIndexService.search(searchIndexDefinition, searchPhrase);
+            if (parties != null) {
+                return parties;
+            }
+        }
+        return findParties("*" + searchPhrase + "*");
     }
 
     @Programmatic
     public List<Party> autoCompleteWithRole(final String searchPhrase, final IPartyRoleType roleType) {
         final PartyRoleType partyRoleType = partyRoleTypeRepository.findOrCreate(roleType);
+        if (searchIndexService.isAvailableFor(searchIndexDefinition, searchPhrase)) {
+            final List<Party> parties = searchIndexService.search(searchIndexDefinition, searchPhrase, partyRoleType.getKey());
+            if (parties != null) {
+                return parties;
+            }
+        }
         return autoComplete(searchPhrase)
                 .stream()
                 .filter(party -> party.hasPartyRoleType(partyRoleType))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Parties by reference and name, partitioned by the keys of their roles.
+     */
+    private final SearchIndexService.Definition<Party> searchIndexDefinition =
+            new SearchIndexService.Definition<Party>(Party.class) {
+
+        @Override
+        protected List<Party> loadAll() {
+            return allInstances();
+        }
+
+        @Override
+        protected List<String> termsOf(final Party party) {
+            return Arrays.asList(party.getReference(), party.getName());
+        }
+
+        @Override
+        protected String atPathOf(final Party party) {
+            return party.getApplicationTenancyPath();
+        }
+
+        @Override
+        protected Collection<String> partitionsOf(final Party party) {
+            return party.getRoles().stream()
+                    .map(role -> role.getRoleType().getKey())
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        protected Map<Party, Collection<String>> partitionsOfAll(final List<Party> parties) {
+            final Map<Party, Collection<String>> partitionsByParty = new HashMap<>();
+            for (PartyRole role : repositoryService.allInstances(PartyRole.class)) {
+                partitionsByParty.computeIfAbsent(role.getParty(), party -> new ArrayList<>())
+                        .add(role.getRoleType().getKey());
+            }
+            return partitionsByParty;
+        }
+
+        @Override
+        protected Party affectedBy(final Object changed) {
+            return changed instanceof PartyRole ? ((PartyRole) changed).getParty() : super.affectedBy(changed);
+        }
+    };
+
+    @Programmatic
+    @Override
+    public void init(final Map<String, String> properties) {
+        super.init(properties);
+        searchIndexService.register(searchIndexDefinition);
+    }
+
     @Inject
     PartyRoleTypeRepository partyRoleTypeRepository;
 
+    @Inject
+    ApplicationTenancyQueryService applicationTenancyQueryService;
+
+    @Inject
+    SearchIndexService searchIndexService;
+
     // //////////////////////////////////////
 
     @Programmatic
@@ -33,6 +33,7 @@ import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.RestrictTo;
 import org.apache.isis.applib.annotation.SemanticsOf;
 import org.apache.isis.applib.services.clock.ClockService;
+import org.apache.isis.applib.services.message.MessageService;
 import org.apache.isis.applib.services.registry.ServiceRegistry2;
 
 import org.estatio.module.asset.dom.Property;
@@ -58,11 +59,10 @@ public class TurnoverMenu  {
     @Action
     public void createEmptyTurnoversForPeriod(final LocalDate startDate, final LocalDate endDate, @Nullable final Property property){
         if (!endDate.isBefore(startDate)){
-            if (property != null) {
-                turnoverEntryService.produceEmptyTurnoversForPropertyAndPeriod(startDate, endDate, property);
-            } else {
-                turnoverEntryService.produceEmptyTurnoversForPeriod(startDate, endDate);
-            }
+            final TurnoverEntryService.EmptyTurnoversProduced produced = property != null
+                    ? turnoverEntryService.produceEmptyTurnoversForPropertyAndPeriod(startDate, endDate, property)
+                    : turnoverEntryService.produceEmptyTurnoversForPeriod(startDate, endDate);
+            messageService.informUser(produced.toString());
         }
     }
 
@@ -141,4 +141,6 @@ public class TurnoverMenu  {
 
     @Inject ClockService clockService;
 
+    @Inject MessageService messageService;
+
 }
@@ -7,17 +7,35 @@ public enum Frequency {
         @Override public boolean hasStartDate(final LocalDate date) {
             return date.getDayOfWeek()<=5;
         }
+        @Override public LocalDate firstStartDateOnOrAfter(final LocalDate date) {
+            return date.getDayOfWeek()<=5 ? date : date.plusDays(8 - date.getDayOfWeek());
+        }
     },
     MONTHLY{
         @Override public boolean hasStartDate(final LocalDate date) {
             return date.getDayOfMonth()==1;
         }
+        @Override public LocalDate firstStartDateOnOrAfter(final LocalDate date) {
+            return date.getDayOfMonth()==1 ? date : date.plusMonths(1).withDayOfMonth(1);
+        }
     },
     YEARLY{
         @Override public boolean hasStartDate(final LocalDate date) {
             return date.getMonthOfYear()==1 && date.getDayOfMonth()==1;
         }
+        @Override public LocalDate firstStartDateOnOrAfter(final LocalDate date) {
+            return hasStartDate(date) ? date : new LocalDate(date.getYear() + 1, 1, 1);
+        }
     };
 
     abstract public boolean hasStartDate(final LocalDate date);
+
+    /**
+     * The first date, on or after the given one, for which {@link #hasStartDate(LocalDate)} holds.
+     */
+    abstract public LocalDate firstStartDateOnOrAfter(final LocalDate date);
+
+    public LocalDate nextStartDateAfter(final LocalDate date) {
+        return firstStartDateOnOrAfter(date.plusDays(1));
+    }
 }
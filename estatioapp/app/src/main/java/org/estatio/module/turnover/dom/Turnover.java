@@ -20,6 +20,9 @@ import org.apache.isis.applib.annotation.DomainObject;
 import org.apache.isis.applib.annotation.Editing;
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.annotation.SemanticsOf;
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
 
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
 
@@ -68,6 +71,20 @@ import lombok.Setter;
                         + "&& status == :status "
                         + "&& date < :threshold "
                         + "ORDER BY date DESC "),
+        @javax.jdo.annotations.Query(
+                name = "findByConfigReporterAndStatus", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.module.turnover.dom.Turnover "
+                        + "WHERE config.reporter == :reporter "
+                        + "&& status == :status "),
+        @javax.jdo.annotations.Query(
+                name = "findByConfigsOfTheirTypeAndDateBetween", language = "JDOQL",
+                value = "SELECT "
+                        + "FROM org.estatio.module.turnover.dom.Turnover "
+                        + "WHERE :configs.contains(config) "
+                        + "&& type == config.type "
+                        + "&& date >= :startDate "
+                        + "&& date <= :endDate "),
         @javax.jdo.annotations.Query(
                 name = "findByConfig", language = "JDOQL",
                 value = "SELECT "
@@ -107,10 +124,17 @@ import lombok.Setter;
 })
 @DomainObject(
         editing = Editing.DISABLED,
-        objectType = "org.estatio.module.turnover.dom.Turnover"
+        objectType = "org.estatio.module.turnover.dom.Turnover",
+        persistedLifecycleEvent = Turnover.PersistedLifecycleEvent.class,
+        updatedLifecycleEvent = Turnover.UpdatedLifecycleEvent.class,
+        removingLifecycleEvent = Turnover.RemovingLifecycleEvent.class
 )
 public class Turnover extends UdoDomainObject2<Turnover> {
 
+    public static class PersistedLifecycleEvent extends ObjectPersistedEvent<Turnover> {}
+    public static class UpdatedLifecycleEvent extends ObjectUpdatedEvent<Turnover> {}
+    public static class RemovingLifecycleEvent extends ObjectRemovingEvent<Turnover> {}
+
     public Turnover(){
         super("config, date, type");
     }
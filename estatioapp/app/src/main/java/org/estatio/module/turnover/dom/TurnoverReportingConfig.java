@@ -17,6 +17,9 @@ import org.apache.isis.applib.annotation.DomainObject;
 import org.apache.isis.applib.annotation.Editing;
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.annotation.SemanticsOf;
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
 import org.apache.isis.core.commons.lang.ArrayExtensions;
 
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
@@ -78,10 +81,17 @@ import lombok.Setter;
 })
 @DomainObject(
         editing = Editing.DISABLED,
-        objectType = "org.estatio.module.turnover.dom.TurnoverReportingConfig"
+        objectType = "org.estatio.module.turnover.dom.TurnoverReportingConfig",
+        persistedLifecycleEvent = TurnoverReportingConfig.PersistedLifecycleEvent.class,
+        updatedLifecycleEvent = TurnoverReportingConfig.UpdatedLifecycleEvent.class,
+        removingLifecycleEvent = TurnoverReportingConfig.RemovingLifecycleEvent.class
 )
 public class TurnoverReportingConfig extends UdoDomainObject2<Turnover> {
 
+    public static class PersistedLifecycleEvent extends ObjectPersistedEvent<TurnoverReportingConfig> {}
+    public static class UpdatedLifecycleEvent extends ObjectUpdatedEvent<TurnoverReportingConfig> {}
+    public static class RemovingLifecycleEvent extends ObjectRemovingEvent<TurnoverReportingConfig> {}
+
     public TurnoverReportingConfig(){
         super("occupancy, type");
     }
@@ -147,6 +157,26 @@ public class TurnoverReportingConfig extends UdoDomainObject2<Turnover> {
         }
     }
 
+    /**
+     * The dates within the period (inclusive) for which {@link #produceEmptyTurnover(LocalDate)} would produce a
+     * turnover (unless there is one already), worked out without visiting every day of the period.
+     */
+    @Programmatic
+    public List<LocalDate> emptyTurnoverDatesBetween(final LocalDate startDate, final LocalDate endDate) {
+        final List<LocalDate> result = new ArrayList<>();
+        final LocalDate activeFrom = activeFrom();
+        final LocalDate activeTo = getEndDate();
+        LocalDate date = getFrequency().firstStartDateOnOrAfter(startDate.isAfter(activeFrom) ? startDate : activeFrom);
+        while (!date.isAfter(endDate) && (activeTo == null || !date.isAfter(activeTo))) {
+            result.add(date);
+            date = getFrequency().nextStartDateAfter(date);
+        }
+        if (!result.isEmpty() && getOccupancy().getReportTurnover().equals(Occupancy.OccupancyReportingType.NO)) {
+            result.clear();
+        }
+        return result;
+    }
+
     @Programmatic
     public List<Person> allTurnoverReporters(){
         List<Person> result = new ArrayList<>();
@@ -171,23 +201,29 @@ public class TurnoverReportingConfig extends UdoDomainObject2<Turnover> {
 
     @Programmatic
     public boolean isActiveOnDate(final LocalDate date){
+        return getActiveInterval().contains(date);
+    }
+
+    /**
+     * The dates on which this config is {@link #isActiveOnDate(LocalDate) active}.
+     */
+    @Programmatic
+    public LocalDateInterval getActiveInterval(){
+        return LocalDateInterval.including(activeFrom(), getEndDate());
+    }
 
-        LocalDate startDateToUse;
+    private LocalDate activeFrom() {
         switch (getFrequency()){
 
             case MONTHLY:
-                startDateToUse = new LocalDate(getStartDate().getYear(), getStartDate().getMonthOfYear(), 1);
-            break;
+                return new LocalDate(getStartDate().getYear(), getStartDate().getMonthOfYear(), 1);
 
             case YEARLY:
-                startDateToUse = new LocalDate(getStartDate().getYear(), 1, 1);
-            break;
+                return new LocalDate(getStartDate().getYear(), 1, 1);
 
             default:
-                startDateToUse = getStartDate();
+                return getStartDate();
         }
-        LocalDateInterval interval = LocalDateInterval.including(startDateToUse, getEndDate());
-        return interval.contains(date);
     }
 
     @Programmatic
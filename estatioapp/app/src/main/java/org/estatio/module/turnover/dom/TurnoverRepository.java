@@ -21,6 +21,7 @@ package org.estatio.module.turnover.dom;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -39,6 +40,7 @@ import org.apache.isis.applib.services.repository.RepositoryService;
 import org.estatio.module.base.dom.UdoDomainRepositoryAndFactory;
 import org.estatio.module.currency.dom.Currency;
 import org.estatio.module.lease.dom.occupancy.Occupancy;
+import org.estatio.module.party.dom.Person;
 
 @DomainService(repositoryFor = Turnover.class, nature = NatureOfService.DOMAIN)
 public class TurnoverRepository extends UdoDomainRepositoryAndFactory<Turnover> {
@@ -137,6 +139,23 @@ public class TurnoverRepository extends UdoDomainRepositoryAndFactory<Turnover>
         return turnover;
     }
 
+    /**
+     * As {@link #createNewEmpty(TurnoverReportingConfig, LocalDate, Type, Frequency, Currency)}, but neither looking
+     * for an existing turnover first nor flushing; for bulk generation, where the caller has already established
+     * that there is none and flushes in batches.
+     */
+    public Turnover createNewEmptyWithoutLookup(
+            final TurnoverReportingConfig config,
+            final LocalDate turnoverDate,
+            final Type type,
+            final Frequency frequency,
+            final Currency currency) {
+        final Turnover turnover = new Turnover(config, turnoverDate, type, frequency, currency, Status.NEW);
+        serviceRegistry2.injectServicesInto(turnover);
+        repositoryService.persist(turnover);
+        return turnover;
+    }
+
     public Turnover findUnique(final TurnoverReportingConfig config, final LocalDate turnoverDate, final Type type) {
         return repositoryService.uniqueMatch(
                 new QueryDefault<>(
@@ -167,6 +186,23 @@ public class TurnoverRepository extends UdoDomainRepositoryAndFactory<Turnover>
         return result;
     }
 
+    /**
+     * The turnovers of the configs in the period, only those of the {@link TurnoverReportingConfig#getType() type} of
+     * their config (as the empty turnovers produced are).
+     */
+    public List<Turnover> findByConfigsOfTheirTypeAndDateBetween(
+            final Collection<TurnoverReportingConfig> configs,
+            final LocalDate startDate,
+            final LocalDate endDate) {
+        return repositoryService.allMatches(
+                new QueryDefault<>(
+                        Turnover.class,
+                        "findByConfigsOfTheirTypeAndDateBetween",
+                        "configs", configs,
+                        "startDate", startDate,
+                        "endDate", endDate));
+    }
+
     public List<Turnover> findByConfig(final TurnoverReportingConfig config) {
         return repositoryService.allMatches(
                 new QueryDefault<>(
@@ -184,6 +220,15 @@ public class TurnoverRepository extends UdoDomainRepositoryAndFactory<Turnover>
                         "status", Status.NEW));
     }
 
+    public List<Turnover> findByConfigReporterWithStatusNew(final Person reporter) {
+        return repositoryService.allMatches(
+                new QueryDefault<>(
+                        Turnover.class,
+                        "findByConfigReporterAndStatus",
+                        "reporter", reporter,
+                        "status", Status.NEW));
+    }
+
     public List<Turnover> findByConfigAndTypeWithStatusNew(final TurnoverReportingConfig config, final Type type) {
         return repositoryService.allMatches(
                 new QueryDefault<>(
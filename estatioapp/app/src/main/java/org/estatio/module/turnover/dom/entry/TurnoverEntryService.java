@@ -1,23 +1,40 @@
 package org.estatio.module.turnover.dom.entry;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
+import com.google.common.collect.Lists;
+
 import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.services.clock.ClockService;
+import org.apache.isis.applib.services.xactn.TransactionService;
+
+import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 
 import org.estatio.module.asset.dom.Property;
 import org.estatio.module.asset.dom.role.FixedAssetRoleRepository;
 import org.estatio.module.asset.dom.role.FixedAssetRoleTypeEnum;
+import org.estatio.module.lease.dom.occupancy.Occupancy;
+import org.estatio.module.lease.dom.occupancy.OccupancyRepository;
 import org.estatio.module.party.dom.Person;
 import org.estatio.module.turnover.dom.Turnover;
+import org.estatio.module.turnover.dom.TurnoverReportingConfig;
 import org.estatio.module.turnover.dom.TurnoverReportingConfigRepository;
 import org.estatio.module.turnover.dom.TurnoverRepository;
 import org.estatio.module.turnover.dom.Type;
@@ -25,12 +42,123 @@ import org.estatio.module.turnover.dom.Type;
 @DomainService(nature = NatureOfService.DOMAIN)
 public class TurnoverEntryService {
 
-    public void produceEmptyTurnoversForPeriod(final LocalDate startDate, final LocalDate endDate){
-        LocalDate date = startDate;
-        while (!date.isAfter(endDate)){
-            produceEmptyTurnoversFor(date);
-            date = date.plusDays(1);
+    private static final Logger LOG = LoggerFactory.getLogger(TurnoverEntryService.class);
+
+    /**
+     * The outcome of producing the empty turnovers for a period.
+     */
+    public static class EmptyTurnoversProduced {
+        private final int configs;
+        private final int created;
+        private final int alreadyExisting;
+        private final long millis;
+
+        EmptyTurnoversProduced(final int configs, final int created, final int alreadyExisting, final long millis) {
+            this.configs = configs;
+            this.created = created;
+            this.alreadyExisting = alreadyExisting;
+            this.millis = millis;
+        }
+
+        public int getConfigs() {
+            return configs;
+        }
+
+        public int getCreated() {
+            return created;
+        }
+
+        public int getAlreadyExisting() {
+            return alreadyExisting;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d empty turnovers created (%d already existed) for %d configs in %d ms",
+                    created, alreadyExisting, configs, millis);
+        }
+    }
+
+    static final int EMPTY_TURNOVER_BATCH_SIZE = 500;
+
+    static final int EXISTING_TURNOVER_CONFIG_BATCH_SIZE = 250;
+
+    /**
+     * Same outcome as calling {@link #produceEmptyTurnoversFor(LocalDate)} for every day of the period, but working out
+     * the turnovers required for each config from its frequency and validity, and looking up the existing turnovers
+     * of the period of those configs in batches.
+     */
+    public EmptyTurnoversProduced produceEmptyTurnoversForPeriod(final LocalDate startDate, final LocalDate endDate){
+        final Map<TurnoverReportingConfig, List<LocalDate>> datesByConfig = new LinkedHashMap<>();
+        for (TurnoverReportingConfig config : turnoverReportingConfigRepository.listAll()) {
+            datesByConfig.put(config, config.emptyTurnoverDatesBetween(startDate, endDate));
+        }
+        return produceEmptyTurnovers(datesByConfig, startDate, endDate);
+    }
+
+    /**
+     * As {@link #produceEmptyTurnoversForPeriod(LocalDate, LocalDate)}, for the configs of the occupancies of the
+     * property; as before, only for the dates on which the occupancy itself is active.
+     */
+    public EmptyTurnoversProduced produceEmptyTurnoversForPropertyAndPeriod(final LocalDate startDate, final LocalDate endDate, final Property property) {
+        final Map<TurnoverReportingConfig, List<LocalDate>> datesByConfig = new LinkedHashMap<>();
+        for (Occupancy occupancy : occupancyRepository.occupanciesByPropertyAndInterval(property, LocalDateInterval.including(startDate, endDate))) {
+            final LocalDateInterval occupancyInterval = occupancy.getInterval();
+            for (TurnoverReportingConfig config : turnoverReportingConfigRepository.findByOccupancy(occupancy)) {
+                datesByConfig.put(config, config.emptyTurnoverDatesBetween(startDate, endDate).stream()
+                        .filter(occupancyInterval::contains)
+                        .collect(Collectors.toList()));
+            }
+        }
+        return produceEmptyTurnovers(datesByConfig, startDate, endDate);
+    }
+
+    private EmptyTurnoversProduced produceEmptyTurnovers(
+            final Map<TurnoverReportingConfig, List<LocalDate>> datesByConfig,
+            final LocalDate startDate,
+            final LocalDate endDate) {
+
+        final long start = System.currentTimeMillis();
+
+        // only the configs requiring any turnover at all
+        final List<TurnoverReportingConfig> configs = datesByConfig.entrySet().stream()
+                .filter(e -> !e.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        final Map<TurnoverReportingConfig, Set<LocalDate>> existingDatesByConfig = new HashMap<>();
+        for (List<TurnoverReportingConfig> batch : Lists.partition(configs, EXISTING_TURNOVER_CONFIG_BATCH_SIZE)) {
+            for (Turnover turnover : turnoverRepository.findByConfigsOfTheirTypeAndDateBetween(batch, startDate, endDate)) {
+                existingDatesByConfig.computeIfAbsent(turnover.getConfig(), c -> new HashSet<>()).add(turnover.getDate());
+            }
+        }
+
+        int created = 0;
+        int alreadyExisting = 0;
+        for (Map.Entry<TurnoverReportingConfig, List<LocalDate>> entry : datesByConfig.entrySet()) {
+            final TurnoverReportingConfig config = entry.getKey();
+            final Set<LocalDate> existingDates = existingDatesByConfig.getOrDefault(config, Collections.emptySet());
+            for (LocalDate date : entry.getValue()) {
+                if (existingDates.contains(date)) {
+                    alreadyExisting++;
+                    continue;
+                }
+                turnoverRepository.createNewEmptyWithoutLookup(config, date, config.getType(), config.getFrequency(), config.getCurrency());
+                if (++created % EMPTY_TURNOVER_BATCH_SIZE == 0) {
+                    transactionService.flushTransaction();
+                }
+            }
         }
+        transactionService.flushTransaction();
+
+        final EmptyTurnoversProduced produced =
+                new EmptyTurnoversProduced(datesByConfig.size(), created, alreadyExisting, System.currentTimeMillis() - start);
+        LOG.info("Empty turnovers from {} to {}: {}", startDate, endDate, produced);
+        return produced;
     }
 
     public void produceEmptyTurnoversFor(final LocalDate date) {
@@ -47,85 +175,66 @@ public class TurnoverEntryService {
         }
     }
 
-    private void produceEmptyTurnoversFor(final LocalDate date, final Property property) {
-        turnoverReportingConfigRepository.findByPropertyActiveOnDate(property, date).forEach(
-                c->c.produceEmptyTurnover(date)
-        );
-    }
-
     public Turnover nextNewForReporter(final Person reporter, final Turnover current) {
 
         // return a result only if the reporter is specified on the config
         if (current.getConfig().getReporter()==null) return null;
 
+        final Property currentProperty = current.getOccupancy().getUnit().getProperty();
+        final List<Property> propertiesForReporter = propertiesForReporter(reporter);
+        final List<Property> otherPropertiesForReporter = propertiesForReporter.stream()
+                .filter(p -> p != currentProperty)
+                .collect(Collectors.toList());
+
+        // the queue selects by property and active date itself; checked again against the turnovers as looked up
+
         // first offer those of same property, type and date
-        List<Turnover> samePropertyTypeAndDay = findNewByReporterPropertyTypeAndDate(reporter, current.getOccupancy().getUnit().getProperty(), current.getType(), current.getDate());
-        if (!samePropertyTypeAndDay.isEmpty()) return samePropertyTypeAndDay.get(0);
+        Turnover next = firstOf(turnoverWorkQueueService.newForReporter(reporter, Collections.singletonList(currentProperty), current.getDate(), current.getType(), current.getDate()), t -> isActiveOnDate(t, current.getDate()));
+        if (next != null) return next;
 
         // first offer those of same type and date
-        List<Turnover> sameTypeAndDay = sameTypeAndDayOtherProperty(reporter, current);
-        if (!sameTypeAndDay.isEmpty()) return sameTypeAndDay.get(0);
+        next = firstOf(turnoverWorkQueueService.newForReporter(reporter, otherPropertiesForReporter, current.getDate(), current.getType(), current.getDate()), t -> isActiveOnDate(t, current.getDate()));
+        if (next != null) return next;
 
         // else offer those of same type
-        List<Turnover> sameType = sameType(reporter, current);
-        if (!sameType.isEmpty()) return sameType.get(0);
+        next = firstOf(turnoverWorkQueueService.newForReporter(reporter, propertiesForReporter, current.getDate(), current.getType(), null), t -> isActiveOnDate(t, current.getDate()));
+        if (next != null) return next;
 
         // else offer anything
-        List<Turnover> anythingNew = anythingNew(reporter, clockService.now());
-
-        return anythingNew.stream().findFirst().orElse(null);
+        final LocalDate now = clockService.now();
+        return firstOf(turnoverWorkQueueService.newForReporter(reporter, propertiesForReporter, now, null, null), t -> isActiveOnDate(t, now));
     }
 
+    /**
+     * Loaded with a single query (rather than through the {@link TurnoverWorkQueueService work queue}, which looks up
+     * the turnovers one by one), so as to include any changes of the current transaction.
+     */
     public List<Turnover> allNewForReporter(final Person reporter) {
-        return anythingNew(reporter, clockService.now());
-    }
-
-    private List<Turnover> anythingNew(final Person reporter, final LocalDate date) {
-        List<Turnover> anythingNew = new ArrayList<>();
-        propertiesForReporter(reporter).forEach(p->{
-            turnoverReportingConfigRepository.findByPropertyActiveOnDate(p, date)
-                    .stream()
-                    .filter(cf->cf.getReporter()!=null && cf.getReporter().equals(reporter))
-                    .forEach(cf->{
-                        anythingNew.addAll(turnoverRepository.findByConfigWithStatusNew(cf));
-                    });
-        });
-        return anythingNew.stream().sorted(turnoverComparatorByOccupancyThenDateDesc()).collect(Collectors.toList());
-    }
-
-    private List<Turnover> sameType(final Person reporter, final Turnover current) {
-        List<Turnover> sameType = new ArrayList<>();
-        propertiesForReporter(reporter).forEach(
-                p->{
-                    turnoverReportingConfigRepository.findByPropertyAndTypeActiveOnDate(p, current.getType(), current.getDate())
-                            .stream()
-                            .filter(cf->cf.getReporter()!=null && cf.getReporter().equals(reporter))
-                            .forEach(cf->{
-                                sameType.addAll(turnoverRepository.findByConfigAndTypeWithStatusNew(cf, current.getType()));
-                            });
-                }
-        );
-        return sameType.stream().sorted(turnoverComparatorByOccupancyThenDateDesc()).collect(Collectors.toList());
+        final List<Property> propertiesForReporter = propertiesForReporter(reporter);
+        final LocalDate now = clockService.now();
+        return turnoverRepository.findByConfigReporterWithStatusNew(reporter).stream()
+                .filter(t -> propertiesForReporter.contains(propertyOf(t)) && isActiveOnDate(t, now))
+                .sorted(turnoverComparatorByOccupancyThenDateDesc())
+                .collect(Collectors.toList());
     }
 
-    private List<Turnover> sameTypeAndDayOtherProperty(final Person reporter, final Turnover current) {
-        List<Property> otherPropertiesForReporter = propertiesForReporter(reporter)
-                .stream()
-                .filter(p->p!=current.getOccupancy().getUnit().getProperty())
-                .collect(Collectors.toList());
+    private static Turnover firstOf(final Iterable<Turnover> turnovers, final Predicate<Turnover> predicate) {
+        for (Turnover turnover : turnovers) {
+            if (predicate.test(turnover)) return turnover;
+        }
+        return null;
+    }
 
-        List<Turnover> sameTypeAndDay = new ArrayList<>();
-        otherPropertiesForReporter.forEach(
-                p->{
-                    turnoverReportingConfigRepository.findByPropertyAndTypeActiveOnDate(p, current.getType(), current.getDate())
-                            .stream()
-                            .filter(cf->cf.getReporter()!=null && cf.getReporter().equals(reporter))
-                            .forEach(cf->{
-                                sameTypeAndDay.addAll(turnoverRepository.findByConfigAndTypeAndDateWithStatusNew(cf, current.getType(), current.getDate()));
-                            });
-                }
-        );
-        return sameTypeAndDay.stream().sorted(turnoverComparatorByOccupancyThenDateDesc()).collect(Collectors.toList());
+    private static Property propertyOf(final Turnover turnover) {
+        return turnover.getOccupancy().getUnit().getProperty();
+    }
+
+    /**
+     * As per {@link TurnoverReportingConfigRepository#findByPropertyActiveOnDate(Property, LocalDate)}.
+     */
+    private static boolean isActiveOnDate(final Turnover turnover, final LocalDate date) {
+        return turnover.getOccupancy().getInterval().overlaps(LocalDateInterval.including(date, date))
+                && turnover.getConfig().isActiveOnDate(date);
     }
 
     public List<Turnover> findNewByReporterPropertyTypeAndDate(final Person reporter, final Property property, final Type type, final LocalDate date) {
@@ -173,4 +282,10 @@ public class TurnoverEntryService {
     @Inject FixedAssetRoleRepository fixedAssetRoleRepository;
 
     @Inject ClockService clockService;
+
+    @Inject OccupancyRepository occupancyRepository;
+
+    @Inject TransactionService transactionService;
+
+    @Inject TurnoverWorkQueueService turnoverWorkQueueService;
 }
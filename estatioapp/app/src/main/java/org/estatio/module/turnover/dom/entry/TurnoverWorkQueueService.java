@@ -0,0 +1,462 @@
+package org.estatio.module.turnover.dom.entry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import com.google.common.collect.Iterables;
+
+import org.joda.time.LocalDate;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+
+import org.incode.module.base.dom.valuetypes.LocalDateInterval;
+
+import org.estatio.module.asset.dom.Property;
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+import org.estatio.module.lease.dom.occupancy.Occupancy;
+import org.estatio.module.party.dom.Person;
+import org.estatio.module.turnover.dom.Status;
+import org.estatio.module.turnover.dom.Turnover;
+import org.estatio.module.turnover.dom.TurnoverReportingConfig;
+import org.estatio.module.turnover.dom.TurnoverRepository;
+import org.estatio.module.turnover.dom.Type;
+
+/**
+ * Holds, per reporter, the {@link Status#NEW new} {@link Turnover}s of the configs that the reporter is
+ * {@link TurnoverReportingConfig#getReporter() specified} on, partitioned by property, in the order in which they are
+ * to be entered (by occupancy, then latest date first), also indexed by type and by type and date.
+ *
+ * <p>
+ * A reporter's queue is loaded with a single query on first use, and from then on maintained as turnovers are
+ * created, entered (no longer new) and removed; it is discarded whenever any config changes, and reloaded
+ * every few minutes anyway (eg to pick up changed occupancy dates). These changes are applied once the transaction
+ * making them has committed, so the queue only ever holds turnovers that other sessions can see.
+ * </p>
+ *
+ * <p>
+ * The queue only holds the keys to order and select by (including the dates on which the turnover's occupancy and
+ * config are active) and bookmarks, never the turnovers themselves; the turnovers are looked up (in the caller's
+ * session) only as the caller iterates over those selected, and any that the caller's session sees as not new
+ * anymore are skipped.
+ * </p>
+ */
+@DomainService(nature = NatureOfService.DOMAIN)
+public class TurnoverWorkQueueService {
+
+    static final long MAX_AGE_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * A new turnover, by the keys of {@link TurnoverEntryService#turnoverComparatorByOccupancyThenDateDesc()}; that
+     * is, of its occupancy as per {@link Occupancy#compareTo(Object) Occupancy#compareTo} (lease, start date desc
+     * and unit), then its date (desc).
+     */
+    static class WorkItem {
+
+        static final Comparator<WorkItem> ORDER = Comparator
+                .comparing((WorkItem item) -> item.leaseTypeTitle, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparing(item -> item.leaseReference, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparing(item -> item.occupancyStartDate, Comparator.nullsLast(Comparator.<LocalDate>reverseOrder()))
+                .thenComparing(item -> item.unitName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparing(item -> item.date, Comparator.reverseOrder())
+                // not significant, but to tell apart turnovers of the same occupancy and date
+                .thenComparing(item -> item.type)
+                .thenComparing(item -> item.turnover.toString());
+
+        final Bookmark turnover;
+        final Bookmark property;
+        final String leaseTypeTitle;
+        final String leaseReference;
+        final LocalDate occupancyStartDate;
+        final String unitName;
+        final LocalDate date;
+        final Type type;
+        final LocalDateInterval occupancyInterval;
+        final LocalDateInterval configActiveInterval;
+
+        WorkItem(
+                final Bookmark turnover,
+                final Bookmark property,
+                final String leaseTypeTitle,
+                final String leaseReference,
+                final LocalDate occupancyStartDate,
+                final String unitName,
+                final LocalDate date,
+                final Type type,
+                final LocalDateInterval occupancyInterval,
+                final LocalDateInterval configActiveInterval) {
+            this.turnover = turnover;
+            this.property = property;
+            this.leaseTypeTitle = leaseTypeTitle;
+            this.leaseReference = leaseReference;
+            this.occupancyStartDate = occupancyStartDate;
+            this.unitName = unitName;
+            this.date = date;
+            this.type = type;
+            this.occupancyInterval = occupancyInterval;
+            this.configActiveInterval = configActiveInterval;
+        }
+
+        String typeAndDate() {
+            return typeAndDate(type, date);
+        }
+
+        static String typeAndDate(final Type type, final LocalDate date) {
+            return type + "@" + date;
+        }
+
+        /**
+         * As per {@link TurnoverEntryService#isActiveOnDate(Turnover, LocalDate)}.
+         */
+        boolean isActiveOnDate(final LocalDate activeOnDate) {
+            return occupancyInterval.overlaps(LocalDateInterval.including(activeOnDate, activeOnDate))
+                    && configActiveInterval.contains(activeOnDate);
+        }
+    }
+
+    /**
+     * The work items of a single property (of a single reporter); safe to read while being changed.
+     */
+    static class PropertyQueue {
+
+        private final NavigableSet<WorkItem> all = new ConcurrentSkipListSet<>(WorkItem.ORDER);
+        private final ConcurrentMap<Type, NavigableSet<WorkItem>> byType = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, NavigableSet<WorkItem>> byTypeAndDate = new ConcurrentHashMap<>();
+
+        void add(final WorkItem item) {
+            all.add(item);
+            byType.computeIfAbsent(item.type, t -> new ConcurrentSkipListSet<>(WorkItem.ORDER)).add(item);
+            byTypeAndDate.computeIfAbsent(item.typeAndDate(), k -> new ConcurrentSkipListSet<>(WorkItem.ORDER)).add(item);
+        }
+
+        void remove(final WorkItem item) {
+            all.remove(item);
+            final NavigableSet<WorkItem> ofType = byType.get(item.type);
+            if (ofType != null) {
+                ofType.remove(item);
+            }
+            final NavigableSet<WorkItem> ofTypeAndDate = byTypeAndDate.get(item.typeAndDate());
+            if (ofTypeAndDate != null) {
+                ofTypeAndDate.remove(item);
+            }
+        }
+
+        NavigableSet<WorkItem> select(final Type type, final LocalDate date) {
+            final NavigableSet<WorkItem> items =
+                    type == null ? all
+                    : date == null ? byType.get(type)
+                    : byTypeAndDate.get(WorkItem.typeAndDate(type, date));
+            return items != null ? items : Collections.emptyNavigableSet();
+        }
+    }
+
+    /**
+     * The work items of a single reporter; safe to read while being changed.
+     */
+    static class ReporterQueue {
+
+        private final long loadedAt;
+        private final ConcurrentMap<Bookmark, PropertyQueue> byProperty = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Bookmark, WorkItem> byTurnover = new ConcurrentHashMap<>();
+
+        ReporterQueue(final long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isExpired(final long now) {
+            return now - loadedAt > MAX_AGE_MILLIS;
+        }
+
+        synchronized void add(final WorkItem item) {
+            remove(item.turnover);
+            byTurnover.put(item.turnover, item);
+            byProperty.computeIfAbsent(item.property, p -> new PropertyQueue()).add(item);
+        }
+
+        synchronized void remove(final Bookmark turnover) {
+            final WorkItem item = byTurnover.remove(turnover);
+            if (item == null) {
+                return;
+            }
+            final PropertyQueue propertyQueue = byProperty.get(item.property);
+            if (propertyQueue != null) {
+                propertyQueue.remove(item);
+            }
+        }
+
+        /**
+         * The work items of the properties, optionally only those of a type and (if also specified) date, in order.
+         */
+        Iterable<WorkItem> select(final Collection<Bookmark> properties, final Type type, final LocalDate date) {
+            final List<Iterable<WorkItem>> ofProperties = properties.stream()
+                    .distinct()
+                    .map(byProperty::get)
+                    .filter(Objects::nonNull)
+                    .map(propertyQueue -> propertyQueue.select(type, date))
+                    .collect(Collectors.toList());
+            return Iterables.mergeSorted(ofProperties, WorkItem.ORDER);
+        }
+
+        int size() {
+            return byTurnover.size();
+        }
+    }
+
+    private final ConcurrentMap<Bookmark, ReporterQueue> queueByReporter = new ConcurrentHashMap<>();
+    private final AtomicLong changesApplied = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        eventBusService.register(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+    }
+
+    /**
+     * The new turnovers of the configs the reporter is specified on, of the properties and active on the date,
+     * optionally only those of a type and (if also specified) date, in order of occupancy then latest date first.
+     *
+     * <p>
+     * The turnovers are selected by the values held in the queue, and only those selected are looked up, lazily; so
+     * taking just the first few of them is cheap.
+     * </p>
+     */
+    @Programmatic
+    public Iterable<Turnover> newForReporter(
+            final Person reporter,
+            final Collection<Property> properties,
+            final LocalDate activeOnDate,
+            final Type type,
+            final LocalDate date) {
+        final Bookmark reporterBookmark = bookmarkService.bookmarkFor(reporter);
+        final ReporterQueue queue = queueFor(reporter, reporterBookmark);
+        final List<Bookmark> propertyBookmarks = properties.stream()
+                .map(bookmarkService::bookmarkFor)
+                .collect(Collectors.toList());
+        return () -> new Iterator<Turnover>() {
+
+            private final Iterator<WorkItem> items = queue.select(propertyBookmarks, type, date).iterator();
+            private Turnover next = advance();
+
+            private Turnover advance() {
+                while (items.hasNext()) {
+                    final WorkItem item = items.next();
+                    if (!item.isActiveOnDate(activeOnDate)) {
+                        continue;
+                    }
+                    final Turnover turnover = lookup(item.turnover);
+                    if (turnover != null
+                            && turnover.getStatus() == Status.NEW
+                            && reporter.equals(turnover.getConfig().getReporter())) {
+                        return turnover;
+                    }
+                    // entered or removed by the caller's own transaction; the queue is changed once that commits
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Turnover next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Turnover result = next;
+                next = advance();
+                return result;
+            }
+        };
+    }
+
+    private ReporterQueue queueFor(final Person reporter, final Bookmark reporterBookmark) {
+        final long now = System.currentTimeMillis();
+        final ReporterQueue queue = queueByReporter.get(reporterBookmark);
+        if (queue != null && !queue.isExpired(now)) {
+            return queue;
+        }
+        final long changesAppliedBefore = changesApplied.get();
+        final ReporterQueue loaded = new ReporterQueue(now);
+        for (Turnover turnover : turnoverRepository.findByConfigReporterWithStatusNew(reporter)) {
+            loaded.add(workItemFor(turnover));
+        }
+        if (!pendingChanges().isEmpty()) {
+            // includes changes of this transaction not (yet) visible to other sessions, so not shared
+            return loaded;
+        }
+        queueByReporter.put(reporterBookmark, loaded);
+        if (changesApplied.get() != changesAppliedBefore) {
+            // may have been loaded before the changes just applied were committed
+            queueByReporter.remove(reporterBookmark, loaded);
+        }
+        return loaded;
+    }
+
+    private WorkItem workItemFor(final Turnover turnover) {
+        final Occupancy occupancy = turnover.getOccupancy();
+        return new WorkItem(
+                bookmarkService.bookmarkFor(turnover),
+                bookmarkService.bookmarkFor(occupancy.getUnit().getProperty()),
+                occupancy.getLease().getType() != null ? occupancy.getLease().getType().getTitle() : null,
+                occupancy.getLease().getReference(),
+                occupancy.getStartDate(),
+                occupancy.getUnit().getName(),
+                turnover.getDate(),
+                turnover.getType(),
+                occupancy.getInterval(),
+                turnover.getConfig().getActiveInterval());
+    }
+
+    private Turnover lookup(final Bookmark bookmark) {
+        try {
+            final Object object = bookmarkService.lookup(bookmark);
+            return object instanceof Turnover ? (Turnover) object : null;
+        } catch (RuntimeException e) {
+            // deleted
+            return null;
+        }
+    }
+
+    @Programmatic
+    public void invalidate() {
+        changesApplied.incrementAndGet();
+        queueByReporter.clear();
+    }
+
+    @Programmatic
+    public int getNumberOfReportersLoaded() {
+        return queueByReporter.size();
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final Turnover.PersistedLifecycleEvent ev) {
+        added(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final Turnover.UpdatedLifecycleEvent ev) {
+        final Turnover turnover = ev.getSource();
+        if (turnover.getStatus() == Status.NEW) {
+            added(turnover);
+        } else {
+            removed(turnover);
+        }
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final Turnover.RemovingLifecycleEvent ev) {
+        removed(ev.getSource());
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final TurnoverReportingConfig.PersistedLifecycleEvent ev) {
+        afterCommit(this::invalidate);
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final TurnoverReportingConfig.UpdatedLifecycleEvent ev) {
+        afterCommit(this::invalidate);
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final TurnoverReportingConfig.RemovingLifecycleEvent ev) {
+        afterCommit(this::invalidate);
+    }
+
+    private void added(final Turnover turnover) {
+        if (turnover == null || turnover.getStatus() != Status.NEW || turnover.getConfig().getReporter() == null) {
+            return;
+        }
+        // worked out now, while in the session
+        final Bookmark reporterBookmark = bookmarkService.bookmarkFor(turnover.getConfig().getReporter());
+        final WorkItem item = workItemFor(turnover);
+        afterCommit(() -> {
+            // only maintained if already loaded; otherwise will be included when loaded
+            final ReporterQueue queue = queueByReporter.get(reporterBookmark);
+            if (queue != null) {
+                queue.add(item);
+            }
+        });
+    }
+
+    private void removed(final Turnover turnover) {
+        if (turnover == null) {
+            return;
+        }
+        final Bookmark bookmark = bookmarkService.bookmarkFor(turnover);
+        afterCommit(() -> {
+            for (Map.Entry<Bookmark, ReporterQueue> entry : queueByReporter.entrySet()) {
+                entry.getValue().remove(bookmark);
+            }
+        });
+    }
+
+    /**
+     * Applies the change to the queues once (and only if) the current transaction has committed, in the order in
+     * which the changes were made.
+     */
+    private void afterCommit(final Runnable change) {
+        final List<Runnable> changes = pendingChanges();
+        changes.add(change);
+        transactionCompletionService.afterCommit(this, () -> {
+            changesApplied.incrementAndGet();
+            changes.forEach(Runnable::run);
+        });
+    }
+
+    private List<Runnable> pendingChanges() {
+        return transactionCompletionService.transactionState(this, ArrayList::new);
+    }
+
+    @Inject
+    TurnoverRepository turnoverRepository;
+
+    @Inject
+    BookmarkService bookmarkService;
+
+    @Inject
+    EventBusService eventBusService;
+
+    @Inject
+    TransactionCompletionService transactionCompletionService;
+
+}
@@ -2,21 +2,31 @@ package org.incode.module.docfragment.dom.api;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
-import com.google.common.collect.FluentIterable;
-
 import org.apache.isis.applib.ApplicationException;
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.eventbus.EventBusService;
 import org.apache.isis.applib.services.metamodel.MetaModelService3;
 
+import org.isisaddons.module.freemarker.dom.service.FreeMarkerService;
+
 import org.incode.module.docfragment.dom.impl.DocFragment;
 import org.incode.module.docfragment.dom.impl.DocFragmentRepository;
 import org.incode.module.docfragment.dom.spi.ApplicationTenancyService;
 
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+
 import freemarker.template.TemplateException;
 
 @DomainService(nature = NatureOfService.DOMAIN)
@@ -31,6 +41,120 @@ public class DocFragmentService {
         }
     }
 
+    /**
+     * The {@link DocFragment} resolved for an (objectType, name, atPath): the name and text of its template.
+     *
+     * <p>
+     * Holds no reference to the (persistent) fragment itself, so can be shared across sessions.
+     * </p>
+     */
+    static class ResolvedFragment {
+        private final String templateName;
+        private final String templateText;
+
+        ResolvedFragment(final String templateName, final String templateText) {
+            this.templateName = templateName;
+            this.templateText = templateText;
+        }
+    }
+
+    static class Key {
+        private final String objectType;
+        private final String name;
+        private final String atPath;
+
+        Key(final String objectType, final String name, final String atPath) {
+            this.objectType = objectType;
+            this.name = name;
+            this.atPath = atPath;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return Objects.equals(objectType, key.objectType) &&
+                    Objects.equals(name, key.name) &&
+                    Objects.equals(atPath, key.atPath);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(objectType, name, atPath);
+        }
+    }
+
+    /**
+     * Cache hits/misses and render times, since this service was started.
+     */
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long renders;
+        private final long renderNanos;
+
+        Statistics(final long hits, final long misses, final long renders, final long renderNanos) {
+            this.hits = hits;
+            this.misses = misses;
+            this.renders = renders;
+            this.renderNanos = renderNanos;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        public long getRenders() {
+            return renders;
+        }
+
+        public double getAverageRenderMillis() {
+            return renders == 0 ? 0 : renderNanos / 1_000_000.0 / renders;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "hits: %d, misses: %d (hit rate %.1f%%), renders: %d (avg %.3f ms)",
+                    hits, misses, getHitRate() * 100, renders, getAverageRenderMillis());
+        }
+    }
+
+    private final ConcurrentMap<Key, ResolvedFragment> fragmentCache = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented whenever the cache is invalidated, so that a fragment resolved before then is not cached after.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong renders = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        eventBusService.register(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+    }
+
     /**
      * @param domainObject used to determine the {@link ApplicationTenancyService#atPathFor(Object) atPath} of the {@link DocFragment} to use to render, and also provides the state for the interpolation into the fragment's {@link DocFragment#getTemplateText() template text}
      * @param name corresponds to the {@link DocFragment#getName() name} of the {@link DocFragment} to use to render.
@@ -64,6 +188,12 @@ public class DocFragmentService {
     /**
      * Overload of {@link #render(Object, String)}, but allowing the atPath to be specified explicitly rather than inferred from the supplied domain object.
      *
+     * <p>
+     * The {@link DocFragment} resolved for the objectType, name and atPath is cached (its template being parsed and
+     * cached by the {@link FreeMarkerService}), until a transaction creating, changing or deleting any
+     * {@link DocFragment} commits; that transaction itself resolves fragments afresh.
+     * </p>
+     *
      * @param domainObject provides the state for the interpolation into the fragment's {@link DocFragment#getTemplateText() template text}
      * @param name corresponds to the {@link DocFragment#getName() name} of the {@link DocFragment} to use to render.
      * @param atPath corrsponds to the {@link ApplicationTenancyService#atPathFor(Object) atPath} of the {@link DocFragment} to use to render
@@ -80,16 +210,111 @@ public class DocFragmentService {
             throws IOException, TemplateException, RenderException {
         final String objectType = objectTypeFor(domainObject);
 
-        final DocFragment fragment = repo.findByObjectTypeAndNameAndApplicableToAtPath(objectType, name, atPath);
+        final ResolvedFragment fragment = resolvedFragmentFor(objectType, name, atPath);
 
         if (fragment != null)
-            return fragment.render(domainObject);
+            return render(fragment, domainObject);
         else
             throw new RenderException(
                     "No fragment found for objectType: %s, name: %s, atPath: %s",
                     objectType, name, atPath);
     }
 
+    private ResolvedFragment resolvedFragmentFor(
+            final String objectType,
+            final String name,
+            final String atPath) {
+        if (changedInTransaction().get()) {
+            // not (yet) visible to other sessions
+            misses.incrementAndGet();
+            return resolve(objectType, name, atPath);
+        }
+        final Key key = new Key(objectType, name, atPath);
+        final ResolvedFragment cached = fragmentCache.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        final long versionBefore = version.get();
+        final ResolvedFragment resolved = resolve(objectType, name, atPath);
+        if (resolved == null) {
+            return null;
+        }
+        fragmentCache.put(key, resolved);
+        if (version.get() != versionBefore) {
+            // may have been resolved before the change just committed
+            fragmentCache.remove(key, resolved);
+        }
+        return resolved;
+    }
+
+    private ResolvedFragment resolve(final String objectType, final String name, final String atPath) {
+        final DocFragment fragment = repo.findByObjectTypeAndNameAndApplicableToAtPath(objectType, name, atPath);
+        if (fragment == null) {
+            return null;
+        }
+        final String templateName =
+                String.format("%s#%s:%s", fragment.getObjectType(), fragment.getName(), fragment.getAtPath());
+        return new ResolvedFragment(templateName, fragment.getTemplateText());
+    }
+
+    private String render(final ResolvedFragment fragment, final Object domainObject)
+            throws IOException, TemplateException {
+        final long start = System.nanoTime();
+        try {
+            return freeMarkerService.render(fragment.templateName, fragment.templateText, domainObject);
+        } finally {
+            renders.incrementAndGet();
+            renderNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    @Programmatic
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), renders.get(), renderNanos.get());
+    }
+
+    @Programmatic
+    public void invalidateCache() {
+        version.incrementAndGet();
+        fragmentCache.clear();
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final DocFragment.PersistedLifecycleEvent ev) {
+        changed();
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final DocFragment.UpdatedLifecycleEvent ev) {
+        changed();
+    }
+
+    @Programmatic
+    @com.google.common.eventbus.Subscribe
+    @org.axonframework.eventhandling.annotation.EventHandler
+    public void on(final DocFragment.RemovingLifecycleEvent ev) {
+        changed();
+    }
+
+    /**
+     * Invalidates the cache once (and only if) the current transaction has committed.
+     */
+    private void changed() {
+        changedInTransaction().set(true);
+        transactionCompletionService.afterCommit(this, this::invalidateCache);
+    }
+
+    private AtomicBoolean changedInTransaction() {
+        return transactionCompletionService.transactionState(this, AtomicBoolean::new);
+    }
+
     private String objectTypeFor(final Object domainObject) {
         return metaModelService3.toObjectType(domainObject.getClass());
     }
@@ -100,5 +325,11 @@ public class DocFragmentService {
     MetaModelService3 metaModelService3;
     @Inject
     List<ApplicationTenancyService> applicationTenancyServices;
+    @Inject
+    EventBusService eventBusService;
+    @Inject
+    FreeMarkerService freeMarkerService;
+    @Inject
+    TransactionCompletionService transactionCompletionService;
 
-}
\ No newline at end of file
+}
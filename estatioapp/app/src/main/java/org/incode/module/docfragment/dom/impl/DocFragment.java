@@ -15,6 +15,9 @@ import org.apache.isis.applib.annotation.Property;
 import org.apache.isis.applib.annotation.PropertyLayout;
 import org.apache.isis.applib.annotation.SemanticsOf;
 import org.apache.isis.applib.annotation.Title;
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
 import org.apache.isis.applib.services.message.MessageService;
 import org.apache.isis.applib.services.repository.RepositoryService;
 import org.apache.isis.applib.services.title.TitleService;
@@ -66,10 +69,19 @@ import lombok.Setter;
 })
 @javax.jdo.annotations.Unique(name="DocFragment_objectType_name_atPath_UNQ", members = {"objectType", "name", "atPath"})
 @DomainObject(
-        objectType = "docfragment.DocFragment"
+        objectType = "docfragment.DocFragment",
+        persistedLifecycleEvent = DocFragment.PersistedLifecycleEvent.class,
+        updatedLifecycleEvent = DocFragment.UpdatedLifecycleEvent.class,
+        removingLifecycleEvent = DocFragment.RemovingLifecycleEvent.class
 )
 public class DocFragment implements Comparable<DocFragment> {
 
+    //region > lifecycle event classes
+    public static class PersistedLifecycleEvent extends ObjectPersistedEvent<DocFragment> {}
+    public static class UpdatedLifecycleEvent extends ObjectUpdatedEvent<DocFragment> {}
+    public static class RemovingLifecycleEvent extends ObjectRemovingEvent<DocFragment> {}
+    //endregion
+
     //region > domain event classes
     public static abstract class PropertyDomainEvent<T>
             extends DocFragmentModule.PropertyDomainEvent<DocFragment, T> { }
@@ -1,33 +1,168 @@
 package org.incode.module.docrendering.gotenberg.dom.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.Programmatic;
 
+/**
+ * Converts <tt>.docx</tt> to <tt>.pdf</tt> using a Gotenberg server.
+ *
+ * <p>
+ * A single, pooled HTTP client is used for all conversions, configured using:
+ * </p>
+ * <ul>
+ *     <li><tt>estatio.application.gotenbergUrl</tt></li>
+ *     <li><tt>estatio.application.gotenbergMaxConnections</tt> (default 8), also the maximum number of
+ *     {@link #convertAllToPdf(List) batch} conversions in flight</li>
+ *     <li><tt>estatio.application.gotenbergConnectTimeoutMillis</tt> (default 5s)</li>
+ *     <li><tt>estatio.application.gotenbergSocketTimeoutMillis</tt> (default 120s)</li>
+ *     <li><tt>estatio.application.gotenbergKeepAliveMillis</tt> (default 30s), if the server does not say</li>
+ * </ul>
+ */
 @DomainService(nature = NatureOfService.DOMAIN)
 public class GotenbergClientService {
 
+    /**
+     * Conversion count and latency, since this service was started.
+     */
+    public static class Statistics {
+        private final long conversions;
+        private final long failures;
+        private final long totalMillis;
+        private final long maxMillis;
+        private final int inFlight;
+
+        Statistics(final long conversions, final long failures, final long totalMillis, final long maxMillis, final int inFlight) {
+            this.conversions = conversions;
+            this.failures = failures;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+            this.inFlight = inFlight;
+        }
+
+        public long getConversions() {
+            return conversions;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public double getAverageMillis() {
+            return conversions == 0 ? 0 : (double) totalMillis / conversions;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "conversions: %d (failed %d), avg %.0f ms, max %d ms, in flight: %d",
+                    conversions, failures, getAverageMillis(), maxMillis, inFlight);
+        }
+    }
+
     private String url;
 
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong conversions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
     @PostConstruct
     public void init(Map<String,String> properties) {
         url = properties.getOrDefault(
                 "estatio.application.gotenbergUrl", "http://gotenberg:3000/convert/office");
+
+        final int maxConnections = readInt(properties, "estatio.application.gotenbergMaxConnections", 8);
+        final int connectTimeoutMillis = readInt(properties, "estatio.application.gotenbergConnectTimeoutMillis", 5_000);
+        final int socketTimeoutMillis = readInt(properties, "estatio.application.gotenbergSocketTimeoutMillis", 120_000);
+        final long keepAliveMillis = readInt(properties, "estatio.application.gotenbergKeepAliveMillis", 30_000);
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(socketTimeoutMillis)
+                        .setConnectTimeout(connectTimeoutMillis)
+                        .setSocketTimeout(socketTimeoutMillis)
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    final long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration > 0 ? duration : keepAliveMillis;
+                })
+                .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+                .build();
+
+        // at most maxConnections conversions in flight and as many again queued; beyond that the submitting thread
+        // does the conversion itself, which throttles the producer
+        executor = new ThreadPoolExecutor(
+                maxConnections, maxConnections,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxConnections),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "gotenberg-client");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    private static int readInt(final Map<String, String> properties, final String key, final int fallback) {
+        final String value = properties.get(key);
+        return value != null ? Integer.parseInt(value) : fallback;
     }
 
     @Programmatic
@@ -40,7 +175,10 @@ public class GotenbergClientService {
             final byte[] docxBytes,
             final String url) {
 
-        try (CloseableHttpClient httpclient = HttpClients.createDefault()) {
+        final long start = System.currentTimeMillis();
+        inFlight.incrementAndGet();
+        boolean failed = true;
+        try {
             final HttpPost httpPost = new HttpPost(url);
 
             ContentBody bin = new ByteArrayBody(docxBytes, "dummy.docx");
@@ -51,12 +189,58 @@ public class GotenbergClientService {
 
             httpPost.setEntity(reqEntity);
 
-            try (CloseableHttpResponse response = httpclient.execute(httpPost)) {
+            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
                 HttpEntity resEntity = response.getEntity();
-                return resEntity != null ? EntityUtils.toByteArray(resEntity) : null;
+                final byte[] pdfBytes = resEntity != null ? EntityUtils.toByteArray(resEntity) : null;
+                failed = false;
+                return pdfBytes;
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            inFlight.decrementAndGet();
+            record(System.currentTimeMillis() - start, failed);
         }
     }
+
+    /**
+     * Converts asynchronously, on the service's bounded pool.
+     */
+    @Programmatic
+    public CompletableFuture<byte[]> convertToPdfAsync(final byte[] docxBytes) {
+        return CompletableFuture.supplyAsync(() -> convertToPdf(docxBytes), executor);
+    }
+
+    /**
+     * Converts each of the <tt>.docx</tt>s, at most <tt>gotenbergMaxConnections</tt> at a time.
+     *
+     * <p>
+     * The futures are in the same order as the <tt>.docx</tt>s. If the pool and its queue are full, then the
+     * calling thread performs the conversion itself before submitting any more, so a large batch never has more
+     * than a bounded number of documents pending.
+     * </p>
+     */
+    @Programmatic
+    public List<CompletableFuture<byte[]>> convertAllToPdf(final List<byte[]> docxBytesList) {
+        final List<CompletableFuture<byte[]>> futures = new ArrayList<>(docxBytesList.size());
+        for (final byte[] docxBytes : docxBytesList) {
+            futures.add(convertToPdfAsync(docxBytes));
+        }
+        return futures;
+    }
+
+    protected void record(final long millis, final boolean failed) {
+        conversions.incrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        totalMillis.addAndGet(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    @Programmatic
+    public Statistics getStatistics() {
+        return new Statistics(conversions.get(), failures.get(), totalMillis.get(), maxMillis.get(), inFlight.get());
+    }
+
 }
@@ -1,6 +1,10 @@
 package org.incode.module.docrendering.gotenberg.dom.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import javax.inject.Inject;
 
@@ -32,6 +36,38 @@ public abstract class RendererForGotenbergDocxToPdfAbstract implements RendererF
         return gotenbergClientService.convertToPdf(docx);
     }
 
+    /**
+     * Renders the <tt>.docx</tt>s one after the other (in this thread, as they may navigate the data models), but
+     * {@link GotenbergClientService#convertToPdfAsync(byte[]) converts} each as soon as it is rendered, so that the
+     * conversions overlap with each other and with the rendering of the next (as many as the client allows).
+     */
+    @Override
+    public List<byte[]> renderAllBytesToBytes(
+            final DocumentType documentType,
+            final String variant,
+            final String atPath,
+            final long templateVersion,
+            final byte[] templateBytes,
+            final List<?> dataModels) throws IOException {
+        final List<CompletableFuture<byte[]>> pdfs = new ArrayList<>(dataModels.size());
+        try {
+            for (final Object dataModel : dataModels) {
+                final byte[] docx = renderBytesToBytes.renderBytesToBytes(documentType, variant, atPath, templateVersion, templateBytes, dataModel);
+                pdfs.add(gotenbergClientService.convertToPdfAsync(docx));
+            }
+            final List<byte[]> pdfBytes = new ArrayList<>(pdfs.size());
+            for (final CompletableFuture<byte[]> pdf : pdfs) {
+                pdfBytes.add(pdf.join());
+            }
+            return pdfBytes;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } finally {
+            // if failed, any conversions not yet started are skipped
+            pdfs.forEach(pdf -> pdf.cancel(false));
+        }
+    }
+
     @Inject
     GotenbergClientService gotenbergClientService;
 
@@ -20,8 +20,13 @@ import lombok.SneakyThrows;
 )
 public class FakeGotenbergClientService extends GotenbergClientService {
 
+    /**
+     * Sets up the (pooled) client and the pool for {@link #convertAllToPdf(java.util.List) batch} conversions as
+     * usual, though no connections are ever made.
+     */
     @PostConstruct
     public void init(Map<String,String> properties) {
+        super.init(properties);
     }
 
     @Programmatic
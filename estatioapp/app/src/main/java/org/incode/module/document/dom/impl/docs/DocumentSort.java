@@ -79,6 +79,15 @@ public enum DocumentSort {
     EXTERNAL_BLOB(DocumentNature.BYTES, DocumentStorage.EXTERNAL) {
         @Override
         public DataSource asDataSource(final DocumentAbstract<?> document) {
+            if (document.getBlobBytes() == null) {
+                // streamed from the local cache rather than held in memory, if possible
+                final FactoryService factoryService = document.factoryService;
+                final DataSource cached =
+                        factoryService.mixin(Document_downloadExternalUrlAsBlob.class, document).asDataSource();
+                if (cached != null) {
+                    return cached;
+                }
+            }
             return new ByteDataSource(document,
                     // TODO: could probably instead just call Document#asBytes();
                     //   being conversative for now to minimize retesting effort as this is a prod fix
@@ -2,6 +2,7 @@ package org.incode.module.document.dom.impl.docs;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -536,6 +537,53 @@ public class DocumentTemplate
     }
     //endregion
 
+    //region > renderAll (programmatic)
+
+    /**
+     * Renders each of the documents from its domain object (as does {@link Document#render(DocumentTemplate, Object)}),
+     * with a single call to the renderer if from bytes to bytes, which may then
+     * {@link RendererFromBytesToBytes#renderAllBytesToBytes(DocumentType, String, String, long, byte[], List) overlap}
+     * the renderings.
+     */
+    @Programmatic
+    public void renderAll(
+            final List<Document> documents,
+            final List<?> domainObjects) {
+        final List<Object> rendererModels = new ArrayList<>(domainObjects.size());
+        final List<String> documentNames = new ArrayList<>(domainObjects.size());
+        for (final Object domainObject : domainObjects) {
+            final Object rendererModel = newRendererModel(domainObject);
+            rendererModels.add(rendererModel);
+            documentNames.add(determineDocumentName(rendererModel));
+        }
+
+        final Renderer renderer = getContentRenderingStrategyData().newRenderer(classService, serviceRegistry2);
+        if (!(renderer instanceof RendererFromBytesToBytes)
+                || getContentRenderingStrategyData().getInputNature() != DocumentNature.BYTES
+                || getContentRenderingStrategyData().getOutputNature() != DocumentNature.BYTES) {
+            for (int i = 0; i < documents.size(); i++) {
+                renderContent(documents.get(i), rendererModels.get(i));
+            }
+            return;
+        }
+
+        final List<byte[]> renderedBytes;
+        try {
+            renderedBytes = ((RendererFromBytesToBytes) renderer).renderAllBytesToBytes(
+                    getType(), "content", getAtPath(), getVersion(),
+                    asBytes(), rendererModels);
+        } catch (IOException e) {
+            throw new ApplicationException("Unable to render document template", e);
+        }
+        for (int i = 0; i < documents.size(); i++) {
+            final Document document = documents.get(i);
+            final String documentName = documentNames.get(i);
+            document.setName(documentName);
+            document.modifyBlob(new Blob(documentName, getMimeType(), renderedBytes.get(i)));
+        }
+    }
+    //endregion
+
 
     //region > withFileSuffix (programmatic)
     @Programmatic
@@ -1,10 +1,12 @@
 package org.incode.module.document.dom.impl.docs.minio;
 
+import javax.activation.DataSource;
 import javax.inject.Inject;
 
 import org.apache.isis.applib.annotation.Action;
 import org.apache.isis.applib.annotation.ActionLayout;
 import org.apache.isis.applib.annotation.Mixin;
+import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.applib.annotation.SemanticsOf;
 import org.apache.isis.applib.value.Blob;
 
@@ -36,6 +38,16 @@ public class Document_downloadExternalUrlAsBlob {
         return document.getSort() != DocumentSort.EXTERNAL_BLOB;
     }
 
+    /**
+     * Streams the content from the local cache, if it can be cached.
+     *
+     * @return <tt>null</tt> if not cached; use {@link #act()} instead.
+     */
+    @Programmatic
+    public DataSource asDataSource() {
+        return externalUrlDownloadService.downloadAsDataSource(document);
+    }
+
 
     @Inject
     ExternalUrlDownloadService externalUrlDownloadService;
@@ -1,6 +1,8 @@
 package org.incode.module.document.dom.impl.renderers;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.incode.module.document.dom.impl.types.DocumentType;
 
@@ -15,4 +17,26 @@ public interface RendererFromBytesToBytes extends Renderer {
             final Object dataModel)
             throws IOException;
 
+    /**
+     * Renders the same template for each of the data models, the results in the same order.
+     *
+     * <p>
+     * By default one after the other; implementations may overlap the renderings instead.
+     * </p>
+     */
+    default List<byte[]> renderAllBytesToBytes(
+            final DocumentType documentType,
+            final String variant,
+            final String atPath,
+            final long templateVersion,
+            final byte[] templateBytes,
+            final List<?> dataModels)
+            throws IOException {
+        final List<byte[]> renderedBytes = new ArrayList<>(dataModels.size());
+        for (final Object dataModel : dataModels) {
+            renderedBytes.add(renderBytesToBytes(documentType, variant, atPath, templateVersion, templateBytes, dataModel));
+        }
+        return renderedBytes;
+    }
+
 }
@@ -0,0 +1,528 @@
+package org.incode.module.document.spi.minio;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.activation.DataSource;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, on-disk cache of the content of externally stored documents, keyed by their external URL.
+ *
+ * <p>
+ * The content is stored content-addressed: each body is held once, in a file named after its SHA-256 checksum,
+ * however many URLs refer to it. The checksum is verified whenever the content is looked up, so that a truncated or
+ * corrupted file is never served (it is discarded, and the lookup is a miss).
+ * </p>
+ *
+ * <p>
+ * Once the total size of the bodies exceeds the maximum, the least recently used URLs are evicted (and the bodies no
+ * longer referred to by any URL deleted).
+ * </p>
+ *
+ * <p>
+ * The URLs are only held in memory, so each cache stores its files in a new directory of its own (created within the
+ * directory it is given), which it deletes when {@link #close() closed}. It holds a lock on a file in that directory
+ * for as long as it is open; when created, it deletes any other cache's directory that is no longer locked (left
+ * behind by an application instance that crashed), but otherwise never touches any other files, so several caches
+ * (eg of several application instances on the same host) can share the same parent directory.
+ * </p>
+ */
+public class ExternalDocumentCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExternalDocumentCache.class);
+
+    private static final String DIRECTORY_PREFIX = "cache-";
+    private static final String INCOMING_PREFIX = "incoming";
+    private static final String LOCK_FILE_NAME = ".lock";
+
+    /**
+     * How long a directory is given to be locked by the cache that has just created it, before it is taken to be left
+     * behind.
+     */
+    static final long UNLOCKED_GRACE_MILLIS = 60 * 1000L;
+
+    /**
+     * The directories of the caches open in this JVM: their lock files are not to be opened (let alone closed) by
+     * another cache, as on some platforms that would release the lock.
+     */
+    private static final Set<File> OPEN_DIRECTORIES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Hits/misses etc, since this cache was created.
+     */
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long checksumFailures;
+        private final int entries;
+        private final long bytes;
+
+        Statistics(
+                final long hits,
+                final long misses,
+                final long evictions,
+                final long checksumFailures,
+                final int entries,
+                final long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.checksumFailures = checksumFailures;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getChecksumFailures() {
+            return checksumFailures;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getHitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "hits: %d, misses: %d (hit rate %.1f%%), evictions: %d, checksum failures: %d, entries: %d, size: %d KB",
+                    hits, misses, getHitRate() * 100, evictions, checksumFailures, entries, bytes / 1024);
+        }
+    }
+
+    /**
+     * The cached content of a URL; the file may be evicted (deleted) at any time, so read it promptly.
+     */
+    public static class Entry {
+        private final String checksum;
+        private final String mimeType;
+        private final long size;
+        private final File file;
+
+        Entry(final String checksum, final String mimeType, final long size, final File file) {
+            this.checksum = checksum;
+            this.mimeType = mimeType;
+            this.size = size;
+            this.file = file;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public byte[] readBytes() throws IOException {
+            return Files.readAllBytes(file.toPath());
+        }
+
+        /**
+         * Streams the content from disk, rather than holding it in memory.
+         */
+        public DataSource asDataSource(final String name, final String contentType) {
+            return new DataSource() {
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return new FileInputStream(file);
+                }
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return new NullOutputStream();
+                }
+
+                @Override
+                public String getContentType() {
+                    return contentType != null ? contentType : mimeType;
+                }
+
+                @Override
+                public String getName() {
+                    return name;
+                }
+            };
+        }
+    }
+
+    private final File directory;
+    private final FileChannel lockChannel;
+    private final long maxBytes;
+
+    /**
+     * Guarded by <tt>this</tt>; in access order, so eldest is least recently used.
+     */
+    private final LinkedHashMap<String, Entry> entryByKey = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> referencesByChecksum = new HashMap<>();
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong checksumFailures = new AtomicLong();
+
+    /**
+     * @param parentDirectory within which this cache creates the directory of its own
+     */
+    public ExternalDocumentCache(final File parentDirectory, final long maxBytes) {
+        this.directory = createDirectory(parentDirectory);
+        this.lockChannel = lock(directory);
+        OPEN_DIRECTORIES.add(directory);
+        this.maxBytes = maxBytes;
+        deleteLeftBehind(parentDirectory);
+    }
+
+    private static File createDirectory(final File parentDirectory) {
+        try {
+            Files.createDirectories(parentDirectory.toPath());
+            return Files.createTempDirectory(parentDirectory.toPath(), DIRECTORY_PREFIX).toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create cache directory in " + parentDirectory, e);
+        }
+    }
+
+    /**
+     * Locks the directory for as long as the channel returned is open.
+     */
+    private static FileChannel lock(final File directory) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(
+                    new File(directory, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.lock();
+            return channel;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new IllegalStateException("Could not lock cache directory " + directory, e);
+        }
+    }
+
+    /**
+     * Deletes the directories of other caches within the parent directory that are not locked, ie that were never
+     * closed.
+     */
+    private static void deleteLeftBehind(final File parentDirectory) {
+        final File[] directories = parentDirectory.listFiles(
+                file -> file.isDirectory() && file.getName().startsWith(DIRECTORY_PREFIX));
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            if (!OPEN_DIRECTORIES.contains(directory)) {
+                deleteIfLeftBehind(directory);
+            }
+        }
+    }
+
+    private static void deleteIfLeftBehind(final File directory) {
+        final File lockFile = new File(directory, LOCK_FILE_NAME);
+        if (!lockFile.exists()) {
+            // may only just have been created, by a cache yet to lock it
+            if (System.currentTimeMillis() - directory.lastModified() > UNLOCKED_GRACE_MILLIS) {
+                LOG.info("Deleting cache directory {}, left behind", directory);
+                deleteDirectory(directory);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE)) {
+            final FileLock lock = channel.tryLock();
+            if (lock == null) {
+                // in use by (a cache of) another application instance
+                return;
+            }
+            LOG.info("Deleting cache directory {}, left behind", directory);
+            deleteFiles(directory);
+        } catch (OverlappingFileLockException e) {
+            // being deleted by another cache of this JVM
+            return;
+        } catch (IOException e) {
+            LOG.warn("Could not check whether cache directory {} is in use", directory, e);
+            return;
+        }
+        // once the lock is released (and the lock file closed)
+        deleteDirectory(directory);
+    }
+
+    /**
+     * The directory of this cache, within the parent directory it was given.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * The validated content cached for the key, or <tt>null</tt> if there is none.
+     */
+    public Entry lookup(final String key) {
+        final Entry entry;
+        synchronized (this) {
+            entry = entryByKey.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (!isValid(entry)) {
+            checksumFailures.incrementAndGet();
+            misses.incrementAndGet();
+            LOG.warn("Cached content of {} is corrupt (expected checksum {}); discarded", key, entry.getChecksum());
+            synchronized (this) {
+                if (entryByKey.get(key) == entry) {
+                    remove(key);
+                }
+            }
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * @see #put(String, String, InputStream)
+     */
+    public Entry put(final String key, final String mimeType, final byte[] content) throws IOException {
+        return put(key, mimeType, new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Stores the content for the key (replacing any previous content), streaming it to disk.
+     *
+     * @return the entry, or <tt>null</tt> if the content is larger than the cache as a whole.
+     */
+    public Entry put(final String key, final String mimeType, final InputStream content) throws IOException {
+        final File tempFile = File.createTempFile(INCOMING_PREFIX, ".tmp", directory);
+        final String checksum;
+        final long size;
+        try {
+            final MessageDigest digest = newDigest();
+            try (InputStream is = new DigestInputStream(content, digest)) {
+                size = Files.copy(is, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            checksum = toHex(digest.digest());
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tempFile);
+            throw e;
+        }
+
+        if (size > maxBytes) {
+            deleteQuietly(tempFile);
+            return null;
+        }
+
+        synchronized (this) {
+            remove(key);
+            // even if the body is already held for another URL, replace it with the one just verified, in case the
+            // file held has been corrupted since
+            final File file = fileFor(checksum);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            final Entry entry = new Entry(checksum, mimeType, size, file);
+            entryByKey.put(key, entry);
+            final int references = referencesByChecksum.merge(checksum, 1, Integer::sum);
+            if (references == 1) {
+                bytes += size;
+            }
+            evictIfRequired(key);
+            return entry;
+        }
+    }
+
+    /**
+     * Guarded by <tt>this</tt>.
+     */
+    private void evictIfRequired(final String keyJustPut) {
+        // iterating does not change the access order (whereas get(...) would)
+        final Iterator<Map.Entry<String, Entry>> entries = entryByKey.entrySet().iterator();
+        while (bytes > maxBytes && entries.hasNext()) {
+            final Map.Entry<String, Entry> eldest = entries.next();
+            if (eldest.getKey().equals(keyJustPut)) {
+                continue;
+            }
+            entries.remove();
+            release(eldest.getValue());
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Guarded by <tt>this</tt>.
+     */
+    private void remove(final String key) {
+        final Entry entry = entryByKey.remove(key);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /**
+     * Guarded by <tt>this</tt>.
+     */
+    private void release(final Entry entry) {
+        final Integer references = referencesByChecksum.get(entry.getChecksum());
+        if (references == null || references <= 1) {
+            referencesByChecksum.remove(entry.getChecksum());
+            bytes -= entry.getSize();
+            deleteQuietly(entry.getFile());
+        } else {
+            referencesByChecksum.put(entry.getChecksum(), references - 1);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : entryByKey.values()) {
+            deleteQuietly(entry.getFile());
+        }
+        entryByKey.clear();
+        referencesByChecksum.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Clears this cache, releases the lock on its directory and deletes it (along with any content still being put).
+     */
+    public synchronized void close() {
+        clear();
+        closeQuietly(lockChannel);
+        deleteDirectory(directory);
+        OPEN_DIRECTORIES.remove(directory);
+    }
+
+    public Statistics getStatistics() {
+        synchronized (this) {
+            return new Statistics(
+                    hits.get(), misses.get(), evictions.get(), checksumFailures.get(), entryByKey.size(), bytes);
+        }
+    }
+
+    private boolean isValid(final Entry entry) {
+        final MessageDigest digest = newDigest();
+        try (InputStream is = new DigestInputStream(new FileInputStream(entry.getFile()), digest)) {
+            final byte[] buf = new byte[8192];
+            long size = 0;
+            int read;
+            while ((read = is.read(buf)) != -1) {
+                size += read;
+            }
+            return size == entry.getSize() && toHex(digest.digest()).equals(entry.getChecksum());
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (IOException e) {
+            LOG.warn("Could not read cached content {}", entry.getFile(), e);
+            return false;
+        }
+    }
+
+    private File fileFor(final String checksum) {
+        return new File(directory, checksum);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder buf = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            buf.append(String.format("%02x", b));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Deletes the files within the directory, other than its lock file (which may still be open).
+     */
+    private static void deleteFiles(final File directory) {
+        final File[] files = directory.listFiles(file -> !file.getName().equals(LOCK_FILE_NAME));
+        if (files != null) {
+            for (File file : files) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    private static void deleteDirectory(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteQuietly(file);
+            }
+        }
+        deleteQuietly(directory);
+    }
+
+    private static void closeQuietly(final FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static void deleteQuietly(final File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+}
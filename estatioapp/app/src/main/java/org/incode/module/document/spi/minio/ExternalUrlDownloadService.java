@@ -1,10 +1,18 @@
 package org.incode.module.document.spi.minio;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
+import javax.activation.DataSource;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import org.apache.isis.applib.annotation.DomainService;
 import org.apache.isis.applib.annotation.NatureOfService;
 import org.apache.isis.applib.annotation.Programmatic;
@@ -22,8 +30,17 @@ import org.incode.module.minio.miniodownloader.MinioDownloadClient;
 )
 public class ExternalUrlDownloadService {
 
+    private static final Logger LOG = LoggerFactory.getLogger(ExternalUrlDownloadService.class);
+
     private MinioDownloadClient minioDownloadClient;
 
+    /**
+     * Of the content already downloaded, configured using <tt>estatio.minio.cache.dir</tt> (within which the cache
+     * creates a directory of its own) and <tt>estatio.minio.cache.maxMegabytes</tt> (0 to disable); not used if this
+     * service has not been initialized.
+     */
+    ExternalDocumentCache cache;
+
     @PostConstruct
     public void init(final Map<String,String> properties) {
         minioDownloadClient = new MinioDownloadClient();
@@ -34,6 +51,20 @@ public class ExternalUrlDownloadService {
         minioDownloadClient.setBackoffSleepMillis(readInt(properties, "estatio.minio.backoffSleepMillis", 200));
 
         minioDownloadClient.init();
+
+        final int cacheMaxMegabytes = readInt(properties, "estatio.minio.cache.maxMegabytes", 512);
+        if (cacheMaxMegabytes > 0) {
+            final String cacheDir = read(properties, "estatio.minio.cache.dir",
+                    new File(System.getProperty("java.io.tmpdir"), "estatio-document-cache").getPath());
+            cache = new ExternalDocumentCache(new File(cacheDir), cacheMaxMegabytes * 1024L * 1024L);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cache != null) {
+            cache.close();
+        }
     }
 
     private static String read(final Map<String, String> properties, final String key, final String fallback) {
@@ -57,8 +88,21 @@ public class ExternalUrlDownloadService {
     @Programmatic
     public Blob downloadAsBlob(final String documentName, final String externalUrl) {
 
+        final ExternalDocumentCache.Entry cached = lookup(externalUrl);
+        if (cached != null) {
+            try {
+                return new Blob(documentName, cached.getMimeType(), cached.readBytes());
+            } catch (IOException e) {
+                // evicted meanwhile, so just download again
+            }
+        }
+
         try {
-            return minioDownloadClient.downloadBlob(documentName, externalUrl);
+            final Blob blob = fetchBlob(documentName, externalUrl);
+            if (blob != null) {
+                cache(externalUrl, blob.getMimeType().getBaseType(), blob.getBytes());
+            }
+            return blob;
 
         } catch (Exception e) {
             messageService.warnUser(
@@ -79,8 +123,23 @@ public class ExternalUrlDownloadService {
 
     @Programmatic
     public Clob downloadAsClob(final String documentName, final String externalUrl) {
+
+        final ExternalDocumentCache.Entry cached = lookup(externalUrl);
+        if (cached != null) {
+            try {
+                return new Clob(documentName, cached.getMimeType(), new String(cached.readBytes(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // evicted meanwhile, so just download again
+            }
+        }
+
         try {
-            return minioDownloadClient.downloadClob(documentName, externalUrl);
+            final Clob clob = fetchClob(documentName, externalUrl);
+            if (clob != null) {
+                cache(externalUrl, clob.getMimeType().getBaseType(),
+                        clob.getChars().toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return clob;
         } catch (Exception e) {
             messageService.warnUser(
                     TranslatableString.tr(
@@ -91,6 +150,70 @@ public class ExternalUrlDownloadService {
         }
     }
 
+    /**
+     * The (binary) content of the document as a {@link DataSource} that streams it from the local cache, rather than
+     * holding it in memory; downloaded first if not yet cached.
+     *
+     * @return <tt>null</tt> if there is no cache or the content could not be cached (eg too large); use
+     * {@link #downloadAsBlob(Document)} instead.
+     */
+    @Programmatic
+    public DataSource downloadAsDataSource(final Document document) {
+        if (cache == null) {
+            return null;
+        }
+        ExternalDocumentCache.Entry entry = lookup(document.getExternalUrl());
+        if (entry == null) {
+            final Blob blob = downloadAsBlob(document);
+            entry = blob != null ? cache.lookup(document.getExternalUrl()) : null;
+        }
+        return entry != null ? entry.asDataSource(document.getName(), document.getMimeType()) : null;
+    }
+
+    /**
+     * Hook to download the content; the default implementation uses Minio.
+     */
+    protected Blob fetchBlob(final String documentName, final String externalUrl) throws Exception {
+        return minioDownloadClient.downloadBlob(documentName, externalUrl);
+    }
+
+    /**
+     * Hook to download the content; the default implementation uses Minio.
+     */
+    protected Clob fetchClob(final String documentName, final String externalUrl) throws Exception {
+        return minioDownloadClient.downloadClob(documentName, externalUrl);
+    }
+
+    private ExternalDocumentCache.Entry lookup(final String externalUrl) {
+        return cache != null && externalUrl != null ? cache.lookup(externalUrl) : null;
+    }
+
+    private void cache(final String externalUrl, final String mimeType, final byte[] bytes) {
+        if (cache == null || externalUrl == null) {
+            return;
+        }
+        try {
+            cache.put(externalUrl, mimeType, bytes);
+        } catch (IOException e) {
+            LOG.warn("Could not cache content of {}", externalUrl, e);
+        }
+    }
+
+    /**
+     * @return <tt>null</tt> if there is no cache.
+     */
+    @Programmatic
+    public ExternalDocumentCache.Statistics getCacheStatistics() {
+        return cache != null ? cache.getStatistics() : null;
+    }
+
+    @Programmatic
+    public void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
     @Inject
     MessageService2 messageService;
 
@@ -0,0 +1,176 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import org.apache.isis.applib.util.ObjectContracts2;
+
+import org.incode.module.base.dom.with.WithReferenceGetter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UdoObjectContract_Test {
+
+    public static class SomeReferenced implements WithReferenceGetter, Comparable<SomeReferenced> {
+
+        private final String reference;
+
+        public SomeReferenced(final String reference) {
+            this.reference = reference;
+        }
+
+        @Override
+        public String getReference() {
+            return reference;
+        }
+
+        @Override
+        public int compareTo(final SomeReferenced other) {
+            return reference.compareTo(other.reference);
+        }
+    }
+
+    public static class SomeTerm {
+
+        private final SomeReferenced item;
+        private final LocalDate startDate;
+        private final Integer sequence;
+        private final boolean current;
+
+        public SomeTerm(final SomeReferenced item, final LocalDate startDate, final Integer sequence, final boolean current) {
+            this.item = item;
+            this.startDate = startDate;
+            this.sequence = sequence;
+            this.current = current;
+        }
+
+        public SomeReferenced getItem() {
+            return item;
+        }
+
+        public LocalDate getStartDate() {
+            return startDate;
+        }
+
+        public Integer getSequence() {
+            return sequence;
+        }
+
+        public boolean isCurrent() {
+            return current;
+        }
+    }
+
+    public static class SomeSubTerm extends SomeTerm {
+
+        public SomeSubTerm(final SomeReferenced item, final LocalDate startDate, final Integer sequence, final boolean current) {
+            super(item, startDate, sequence, current);
+        }
+    }
+
+    static List<SomeTerm> someTerms(final int number) {
+        final Random random = new Random(number);
+        final List<SomeReferenced> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(new SomeReferenced(String.format("ITEM-%02d", i)));
+        }
+        final List<SomeTerm> terms = new ArrayList<>();
+        for (int i = 0; i < number; i++) {
+            final SomeReferenced item = random.nextInt(50) == 0 ? null : items.get(random.nextInt(items.size()));
+            final LocalDate startDate = random.nextInt(10) == 0 ? null : new LocalDate(2010, 1, 1).plusDays(random.nextInt(3000));
+            final Integer sequence = random.nextInt(10) == 0 ? null : random.nextInt(5);
+            terms.add(random.nextBoolean()
+                    ? new SomeTerm(item, startDate, sequence, random.nextBoolean())
+                    : new SomeSubTerm(item, startDate, sequence, random.nextBoolean()));
+        }
+        return terms;
+    }
+
+    public static class Compare extends UdoObjectContract_Test {
+
+        private void assertSortedAsObjectContracts2(final String keyProperties) {
+
+            // given
+            final List<SomeTerm> terms = someTerms(10000);
+            final List<SomeTerm> sortedByObjectContracts2 = new ArrayList<>(terms);
+            final List<SomeTerm> sortedByContract = new ArrayList<>(terms);
+
+            // when
+            sortedByObjectContracts2.sort((p, q) -> ObjectContracts2.compare(p, q, keyProperties));
+            sortedByContract.sort((p, q) -> UdoObjectContract.of(p.getClass(), keyProperties).compare(p, q));
+
+            // then
+            assertThat(sortedByContract).containsExactlyElementsOf(sortedByObjectContracts2);
+        }
+
+        @Test
+        public void ascending() {
+            assertSortedAsObjectContracts2("item, startDate, sequence, current");
+        }
+
+        @Test
+        public void descending() {
+            assertSortedAsObjectContracts2("item desc, startDate desc, sequence");
+        }
+
+        @Test
+        public void nulls_first_and_last() {
+            assertSortedAsObjectContracts2("item asc nullsLast, startDate desc nullsLast, sequence asc nullsFirst");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void no_such_property() {
+            final SomeTerm term = new SomeTerm(null, null, null, false);
+            UdoObjectContract.of(SomeTerm.class, "item, endDate").compare(term, term);
+        }
+
+        @Test
+        public void compiled_once() {
+            assertThat(UdoObjectContract.of(SomeTerm.class, "item, startDate"))
+                    .isSameAs(UdoObjectContract.of(SomeTerm.class, "item, startDate"));
+        }
+    }
+
+    public static class ToStringOf extends UdoObjectContract_Test {
+
+        @Test
+        public void as_ObjectContracts2() {
+
+            // given
+            final SomeTerm term = new SomeTerm(new SomeReferenced("ITEM-01"), new LocalDate(2018, 1, 1), null, true);
+
+            // when
+            final String string = UdoObjectContract.of(SomeTerm.class, "item, startDate, sequence, current").toStringOf(term);
+
+            // then
+            assertThat(string).isEqualTo("SomeTerm{item=ITEM-01, startDate=2018-01-01, sequence=null, current=true}");
+            assertThat(string).isEqualTo(
+                    new ObjectContracts2()
+                            .with(WithReferenceGetter.ToString.evaluator())
+                            .toStringOf(term, "item, startDate, sequence, current"));
+        }
+    }
+
+}
@@ -0,0 +1,423 @@
+/*
+ *  Copyright 2012-date Eurocommercial Properties NV
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.dom.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.transaction.Status;
+
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.applib.services.eventbus.ObjectPersistedEvent;
+import org.apache.isis.applib.services.eventbus.ObjectRemovingEvent;
+import org.apache.isis.applib.services.eventbus.ObjectUpdatedEvent;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+
+import org.estatio.module.base.dom.apptenancy.ApplicationTenancyQueryService;
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+import org.estatio.module.base.spiimpl.security.ApplicationTenancyPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchIndexService_Test {
+
+    static class Thing {
+        final String id;
+        String name;
+        final List<String> roles;
+
+        Thing(final String id, final String name, final String... roles) {
+            this.id = id;
+            this.name = name;
+            this.roles = Arrays.asList(roles);
+        }
+    }
+
+    @Rule
+    public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(JUnitRuleMockery2.Mode.INTERFACES_AND_CLASSES);
+
+    @Mock
+    ApplicationTenancyQueryService mockApplicationTenancyQueryService;
+
+    /**
+     * As committed, by id.
+     */
+    Map<String, Thing> database;
+    List<Runnable> background;
+    List<List<Object>> lookups;
+    int partitionsLookedUp;
+    TransactionCompletionService.Completion current;
+
+    SearchIndexService service;
+    SearchIndexService.Definition<Thing> definition;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new LinkedHashMap<>();
+        put(new Thing("1", "Hello World", "TENANT"));
+        put(new Thing("2", "Acme Corporation", "TENANT", "SUPPLIER"));
+        put(new Thing("3", "World Wide Inc", "SUPPLIER"));
+
+        background = new ArrayList<>();
+        lookups = new ArrayList<>();
+
+        service = new SearchIndexService() {
+            @Override
+            boolean inBackgroundSession(final Runnable work, final Runnable failed) {
+                background.add(work);
+                return true;
+            }
+
+            @Override
+            <T> Map<Object, T> findByIds(final Class<T> type, final List<Object> ids) {
+                lookups.add(ids);
+                // in the order of the database, as a query would
+                final Map<Object, T> objectById = new LinkedHashMap<>();
+                for (Thing thing : database.values()) {
+                    if (ids.contains(thing.id)) {
+                        objectById.put(thing.id, type.cast(thing));
+                    }
+                }
+                return objectById;
+            }
+
+            @Override
+            Object idOf(final Object object) {
+                return ((Thing) object).id;
+            }
+        };
+        service.applicationTenancyQueryService = mockApplicationTenancyQueryService;
+        service.transactionCompletionService = new TransactionCompletionService() {
+            @Override
+            protected Completion currentCompletion() {
+                return current;
+            }
+        };
+
+        definition = new SearchIndexService.Definition<Thing>(Thing.class) {
+            @Override
+            protected List<Thing> loadAll() {
+                return new ArrayList<>(database.values());
+            }
+
+            @Override
+            protected List<String> termsOf(final Thing thing) {
+                return Arrays.asList(thing.id, thing.name);
+            }
+
+            @Override
+            protected Collection<String> partitionsOf(final Thing thing) {
+                partitionsLookedUp++;
+                return thing.roles;
+            }
+
+            @Override
+            protected Map<Thing, Collection<String>> partitionsOfAll(final List<Thing> things) {
+                return things.stream().collect(Collectors.toMap(thing -> thing, thing -> thing.roles));
+            }
+        };
+
+        context.checking(new Expectations() {{
+            allowing(mockApplicationTenancyQueryService).predicateForCurrentUser();
+            will(returnValue(ApplicationTenancyPredicate.UNRESTRICTED));
+        }});
+    }
+
+    void put(final Thing thing) {
+        database.put(thing.id, thing);
+    }
+
+    void built() {
+        final List<Runnable> works = new ArrayList<>(background);
+        background.clear();
+        works.forEach(Runnable::run);
+    }
+
+    List<String> search(final String searchPhrase, final String partition) {
+        return service.search(definition, searchPhrase, partition).stream()
+                .map(thing -> thing.name)
+                .collect(Collectors.toList());
+    }
+
+    public static class Build extends SearchIndexService_Test {
+
+        @Test
+        public void built_in_the_background_once() throws Exception {
+
+            // when
+            service.register(definition);
+            service.register(definition);
+
+            // then
+            assertThat(background).hasSize(1);
+            assertThat(service.isAvailableFor(definition, "world")).isFalse();
+            assertThat(background).hasSize(1);
+
+            // when
+            built();
+
+            // then
+            assertThat(service.isAvailableFor(definition, "world")).isTrue();
+            assertThat(service.isAvailableFor(definition, "wo")).isFalse();
+            assertThat(service.getStatistics().getLoads()).isEqualTo(1);
+            assertThat(service.getStatistics().getIndexed()).isEqualTo(3);
+        }
+
+        @Test
+        public void changes_committed_while_building_are_applied_to_the_index_built() throws Exception {
+
+            // given
+            service.register(definition);
+            final Thing created = new Thing("4", "Brave New World");
+
+            // when committed after the build has started
+            current = new TransactionCompletionService.Completion();
+            put(created);
+            service.on(persisted(created));
+            final Thing changed = database.get("1");
+            changed.name = "Hello Planet";
+            service.on(updated(changed));
+            current.afterCompletion(Status.STATUS_COMMITTED);
+
+            // ... but loaded as before
+            database.remove("4");
+            changed.name = "Hello World";
+            built();
+            put(created);
+            changed.name = "Hello Planet";
+
+            // then
+            current = new TransactionCompletionService.Completion();
+            assertThat(search("world", null)).containsExactly("World Wide Inc", "Brave New World");
+            assertThat(search("planet", null)).containsExactly("Hello Planet");
+            assertThat(service.getStatistics().getStale()).isEqualTo(0);
+        }
+
+        @Test
+        public void rebuilt_when_invalidated_and_used_meanwhile() throws Exception {
+
+            // given
+            service.register(definition);
+            built();
+
+            // when
+            service.invalidate();
+            service.invalidate();
+
+            // then
+            assertThat(background).hasSize(1);
+            assertThat(service.isAvailableFor(definition, "world")).isTrue();
+
+            // when
+            put(new Thing("4", "Brave New World"));
+            built();
+
+            // then
+            current = new TransactionCompletionService.Completion();
+            assertThat(search("world", null)).containsExactly("Hello World", "World Wide Inc", "Brave New World");
+            assertThat(service.getStatistics().getLoads()).isEqualTo(2);
+        }
+    }
+
+    public static class Search extends SearchIndexService_Test {
+
+        @Before
+        public void setUpIndex() throws Exception {
+            service.register(definition);
+            built();
+            current = new TransactionCompletionService.Completion();
+        }
+
+        @Test
+        public void looked_up_with_one_query() throws Exception {
+
+            // when
+            final List<String> found = search("world", null);
+
+            // then
+            assertThat(found).containsExactly("Hello World", "World Wide Inc");
+            assertThat(lookups).containsExactly(Arrays.asList("1", "3"));
+        }
+
+        @Test
+        public void in_the_order_of_the_query() throws Exception {
+
+            // given
+            final Thing helloWorld = database.remove("1");
+            put(helloWorld);
+
+            // when
+            final List<String> found = search("world", null);
+
+            // then
+            assertThat(found).containsExactly("World Wide Inc", "Hello World");
+        }
+
+        @Test
+        public void up_to_max_results() throws Exception {
+
+            // given
+            for (int i = 0; i < SearchIndexService.MAX_RESULTS - 2; i++) {
+                put(new Thing("X" + i, "World " + i));
+            }
+            service.invalidate();
+            built();
+
+            // when
+            final List<String> found = search("world", null);
+
+            // then
+            assertThat(found).hasSize(SearchIndexService.MAX_RESULTS);
+            assertThat(service.getStatistics().getTooMany()).isEqualTo(0);
+        }
+
+        @Test
+        public void none_if_more_than_max_results() throws Exception {
+
+            // given
+            for (int i = 0; i < SearchIndexService.MAX_RESULTS - 1; i++) {
+                put(new Thing("X" + i, "World " + i));
+            }
+            service.invalidate();
+            built();
+
+            // when
+            final List<Thing> found = service.search(definition, "world");
+
+            // then
+            assertThat(found).isNull();
+            assertThat(lookups).isEmpty();
+            assertThat(service.getStatistics().getTooMany()).isEqualTo(1);
+        }
+
+        @Test
+        public void partitions_are_trusted() throws Exception {
+
+            // when
+            final List<String> found = search("world", "SUPPLIER");
+
+            // then
+            assertThat(found).containsExactly("World Wide Inc");
+            assertThat(search("corp", "SUPPLIER")).containsExactly("Acme Corporation");
+            assertThat(search("corp", "LANDLORD")).isEmpty();
+            assertThat(partitionsLookedUp).isEqualTo(0);
+        }
+
+        @Test
+        public void stale_removed_once_committed() throws Exception {
+
+            // given removed without the index being told
+            database.remove("1");
+
+            // when
+            final List<String> found = search("world", null);
+
+            // then
+            assertThat(found).containsExactly("World Wide Inc");
+            assertThat(service.getStatistics().getStale()).isEqualTo(1);
+            assertThat(service.getStatistics().getIndexed()).isEqualTo(3);
+
+            // when
+            current.afterCompletion(Status.STATUS_COMMITTED);
+
+            // then
+            assertThat(service.getStatistics().getIndexed()).isEqualTo(2);
+            current = new TransactionCompletionService.Completion();
+            search("world", null);
+            assertThat(lookups.get(lookups.size() - 1)).containsExactly("3");
+        }
+
+        @Test
+        public void changed_re_put_once_committed() throws Exception {
+
+            // given changed without the index being told
+            database.get("1").name = "Hello Planet";
+
+            // when
+            assertThat(search("world", null)).containsExactly("World Wide Inc");
+            assertThat(search("planet", null)).isEmpty();
+            current.afterCompletion(Status.STATUS_COMMITTED);
+
+            // then
+            current = new TransactionCompletionService.Completion();
+            assertThat(search("planet", null)).containsExactly("Hello Planet");
+            assertThat(search("world", null)).containsExactly("World Wide Inc");
+            assertThat(service.getStatistics().getStale()).isEqualTo(1);
+        }
+
+        @Test
+        public void changes_rolled_back_are_not_applied() throws Exception {
+
+            // given
+            final Thing thing = database.remove("3");
+            service.on(removing(thing));
+
+            // when
+            current.afterCompletion(Status.STATUS_ROLLEDBACK);
+            put(thing);
+
+            // then
+            current = new TransactionCompletionService.Completion();
+            assertThat(search("world", null)).containsExactly("Hello World", "World Wide Inc");
+        }
+
+        @Test
+        public void changes_committed_are_applied() throws Exception {
+
+            // given
+            final Thing thing = database.remove("3");
+            service.on(removing(thing));
+
+            // when
+            current.afterCompletion(Status.STATUS_COMMITTED);
+
+            // then
+            current = new TransactionCompletionService.Completion();
+            assertThat(search("world", null)).containsExactly("Hello World");
+            assertThat(service.getStatistics().getStale()).isEqualTo(0);
+        }
+    }
+
+    static ObjectPersistedEvent<Object> persisted(final Object source) {
+        final ObjectPersistedEvent<Object> ev = new ObjectPersistedEvent<Object>() {};
+        ev.setSource(source);
+        return ev;
+    }
+
+    static ObjectUpdatedEvent<Object> updated(final Object source) {
+        final ObjectUpdatedEvent<Object> ev = new ObjectUpdatedEvent<Object>() {};
+        ev.setSource(source);
+        return ev;
+    }
+
+    static ObjectRemovingEvent<Object> removing(final Object source) {
+        final ObjectRemovingEvent<Object> ev = new ObjectRemovingEvent<Object>() {};
+        ev.setSource(source);
+        return ev;
+    }
+
+}
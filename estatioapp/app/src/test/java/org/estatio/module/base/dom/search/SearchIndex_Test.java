@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.dom.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchIndex_Test {
+
+    SearchIndex<String> index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new SearchIndex<>();
+        index.put("HELLOWORLD", Arrays.asList("HELLO", "Hello World"), "/ITA", Arrays.asList("TENANT"));
+        index.put("ACME", Arrays.asList("ACME", "Acme Corporation", null), "/FRA", Arrays.asList("TENANT", "SUPPLIER"));
+        index.put("WORLDWIDE", Arrays.asList("WWI", "World Wide Inc"), null, Collections.emptyList());
+    }
+
+    public static class Search extends SearchIndex_Test {
+
+        @Test
+        public void contains_ignoring_case() throws Exception {
+            assertThat(index.search("world", null, atPath -> true)).containsExactly("HELLOWORLD", "WORLDWIDE");
+            assertThat(index.search("ORPOR", null, atPath -> true)).containsExactly("ACME");
+            assertThat(index.search("planet", null, atPath -> true)).isEmpty();
+        }
+
+        @Test
+        public void grams_in_wrong_order() throws Exception {
+            // has all of the grams of "world", but not "world"
+            index.put("SCRAMBLED", Arrays.asList("rldorlwor"), null, Collections.emptyList());
+
+            assertThat(index.search("world", null, atPath -> true)).containsExactly("HELLOWORLD", "WORLDWIDE");
+        }
+
+        @Test
+        public void wildcards() throws Exception {
+            assertThat(index.search("hello*world", null, atPath -> true)).containsExactly("HELLOWORLD");
+            assertThat(index.search("acme?corp", null, atPath -> true)).containsExactly("ACME");
+            assertThat(index.search("w?i", null, atPath -> true)).containsExactly("WORLDWIDE");
+        }
+
+        @Test
+        public void regex_characters_are_literals() throws Exception {
+            index.put("DOTS", Arrays.asList("A.B.C"), null, Collections.emptyList());
+
+            assertThat(index.search("a.b", null, atPath -> true)).containsExactly("DOTS");
+            assertThat(index.search("a+b", null, atPath -> true)).isEmpty();
+        }
+
+        @Test
+        public void short_phrase() throws Exception {
+            assertThat(SearchIndex.hasGrams("wo")).isFalse();
+            assertThat(SearchIndex.hasGrams("w*o*r")).isFalse();
+            assertThat(SearchIndex.hasGrams("w*orl")).isTrue();
+            assertThat(index.search("wo", null, atPath -> true)).containsExactly("HELLOWORLD", "WORLDWIDE");
+        }
+
+        @Test
+        public void partition() throws Exception {
+            assertThat(index.search("a", "TENANT", atPath -> true)).containsExactly("ACME");
+            assertThat(index.search("world", "TENANT", atPath -> true)).containsExactly("HELLOWORLD");
+            assertThat(index.search("acme", "SUPPLIER", atPath -> true)).containsExactly("ACME");
+            assertThat(index.search("acme", "LANDLORD", atPath -> true)).isEmpty();
+        }
+
+        @Test
+        public void at_path() throws Exception {
+            assertThat(index.search("world", null, atPath -> atPath == null || atPath.startsWith("/FRA")))
+                    .containsExactly("WORLDWIDE");
+        }
+
+        @Test
+        public void max_results() throws Exception {
+            assertThat(index.search("world", null, atPath -> true, 1)).containsExactly("HELLOWORLD");
+            assertThat(index.search("world", null, atPath -> !"/ITA".equals(atPath), 1)).containsExactly("WORLDWIDE");
+        }
+    }
+
+    public static class PutAndRemove extends SearchIndex_Test {
+
+        @Test
+        public void put_again() throws Exception {
+            // when
+            index.put("ACME", Arrays.asList("ACME", "Acme World"), "/FRA", Collections.emptyList());
+
+            // then
+            assertThat(index.size()).isEqualTo(3);
+            assertThat(index.search("world", null, atPath -> true)).containsExactly("HELLOWORLD", "WORLDWIDE", "ACME");
+            assertThat(index.search("corporation", null, atPath -> true)).isEmpty();
+            assertThat(index.search("acme", "TENANT", atPath -> true)).isEmpty();
+        }
+
+        @Test
+        public void remove() throws Exception {
+            // when
+            index.remove("HELLOWORLD");
+
+            // then
+            assertThat(index.contains("HELLOWORLD")).isFalse();
+            assertThat(index.size()).isEqualTo(2);
+            assertThat(index.search("world", null, atPath -> true)).containsExactly("WORLDWIDE");
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.platform.parallel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class OrderedPipeline_Test {
+
+    OrderedPipeline pipeline;
+
+    AtomicInteger running;
+    AtomicInteger maxRunning;
+    AtomicInteger taken;
+    List<Integer> discarded;
+
+    @Before
+    public void setUp() throws Exception {
+        pipeline = new OrderedPipeline("test", 3);
+        running = new AtomicInteger();
+        maxRunning = new AtomicInteger();
+        taken = new AtomicInteger();
+        discarded = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pipeline.shutdown();
+    }
+
+    List<Callable<Integer>> tasks(final int number, final int failing) {
+        return IntStream.range(0, number)
+                .mapToObj(i -> (Callable<Integer>) () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        // finish out of order
+                        Thread.sleep((i % 3) * 10);
+                        if (i == failing) {
+                            throw new IOException("failed: " + i);
+                        }
+                        return i;
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void results_in_order_with_bounded_threads_and_pending() throws Exception {
+
+        // given
+        final List<Callable<Integer>> tasks = tasks(20, -1);
+        final List<Integer> results = new ArrayList<>();
+        final List<Integer> takenWhenAccepted = new ArrayList<>();
+
+        // when
+        pipeline.run(
+                tasks.stream().peek(task -> taken.incrementAndGet()).iterator(),
+                result -> {
+                    takenWhenAccepted.add(taken.get());
+                    results.add(result);
+                },
+                discarded::add);
+
+        // then
+        assertThat(results).isEqualTo(IntStream.range(0, 20).boxed().collect(Collectors.toList()));
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(3);
+        for (int i = 0; i < takenWhenAccepted.size(); i++) {
+            // at most twice as many as the threads taken but not yet accepted
+            assertThat(takenWhenAccepted.get(i) - i).isLessThanOrEqualTo(2 * 3 + 1);
+        }
+        assertThat(discarded).isEmpty();
+    }
+
+    @Test
+    public void when_a_task_fails() throws Exception {
+
+        // given
+        final List<Integer> results = new ArrayList<>();
+
+        // when
+        try {
+            pipeline.run(tasks(20, 4).iterator(), results::add, discarded::add);
+            fail("should have thrown");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("failed: 4");
+        }
+
+        // then
+        assertThat(results).containsExactly(0, 1, 2, 3);
+        assertThat(discarded).doesNotContain(0, 1, 2, 3, 4);
+        assertThat(discarded).allMatch(i -> i > 4 && i < 4 + 2 * 3 + 1);
+    }
+
+    @Test
+    public void when_the_sink_fails() throws Exception {
+
+        // when
+        try {
+            pipeline.run(
+                    tasks(20, -1).iterator(),
+                    result -> {
+                        if (result == 2) {
+                            throw new IllegalStateException("sink failed: " + result);
+                        }
+                    },
+                    discarded::add);
+            fail("should have thrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).isEqualTo("sink failed: 2");
+        }
+
+        // then the result the sink failed on is discarded too
+        assertThat(discarded).contains(2);
+        assertThat(discarded).doesNotContain(0, 1);
+        assertThat(discarded).allMatch(i -> i >= 2 && i < 2 + 2 * 3 + 1);
+    }
+
+    @Test
+    public void max_threads() throws Exception {
+        assertThat(OrderedPipeline.maxThreads(Collections.singletonMap("threads", "5"), "threads", 4)).isEqualTo(5);
+        assertThat(OrderedPipeline.maxThreads(Collections.singletonMap("threads", "0"), "threads", 4)).isEqualTo(1);
+        assertThat(OrderedPipeline.maxThreads(Collections.emptyMap(), "threads", 1)).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.platform.transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.Status;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransactionCompletionService_Test {
+
+    TransactionCompletionService.Completion completion;
+    TransactionCompletionService service;
+    List<String> calls;
+
+    @Before
+    public void setUp() throws Exception {
+        completion = new TransactionCompletionService.Completion();
+        calls = new ArrayList<>();
+        service = new TransactionCompletionService() {
+            @Override
+            protected Completion currentCompletion() {
+                return completion;
+            }
+        };
+    }
+
+    public static class BeforeCommit extends TransactionCompletionService_Test {
+
+        @Test
+        public void once_per_key() throws Exception {
+
+            // given
+            service.beforeCommit("a", () -> calls.add("a1"));
+            service.beforeCommit("a", () -> calls.add("a2"));
+            service.beforeCommit("b", () -> calls.add("b"));
+
+            // then
+            assertThat(calls).isEmpty();
+
+            // when
+            completion.beforeCompletion();
+
+            // then
+            assertThat(calls).containsExactly("a1", "b");
+        }
+
+        @Test
+        public void callbacks_may_register_further_callbacks() throws Exception {
+
+            // given
+            service.beforeCommit("a", () -> {
+                calls.add("a");
+                service.beforeCommit("b", () -> calls.add("b"));
+            });
+
+            // when
+            completion.beforeCompletion();
+
+            // then
+            assertThat(calls).containsExactly("a", "b");
+        }
+
+        @Test
+        public void state_is_shared_within_the_transaction() throws Exception {
+
+            // when
+            final List<String> state = service.transactionState("a", ArrayList::new);
+
+            // then
+            assertThat(service.<List<String>>transactionState("a", ArrayList::new)).isSameAs(state);
+            assertThat(service.<List<String>>transactionState("b", ArrayList::new)).isNotSameAs(state);
+        }
+    }
+
+    public static class AfterCommit extends TransactionCompletionService_Test {
+
+        @Test
+        public void only_when_committed() throws Exception {
+
+            // given
+            service.afterCommit("a", () -> calls.add("a"));
+
+            // when
+            completion.afterCompletion(Status.STATUS_ROLLEDBACK);
+
+            // then
+            assertThat(calls).isEmpty();
+            assertThat(completion.isCompleted()).isTrue();
+        }
+
+        @Test
+        public void failures_do_not_stop_other_callbacks() throws Exception {
+
+            // given
+            service.afterCommit("a", () -> {
+                throw new IllegalStateException("a");
+            });
+            service.afterCommit("b", () -> calls.add("b"));
+
+            // when
+            completion.afterCompletion(Status.STATUS_COMMITTED);
+
+            // then
+            assertThat(calls).containsExactly("b");
+        }
+
+        @Test
+        public void immediately_without_a_transaction() throws Exception {
+
+            // given
+            completion = null;
+
+            // when
+            service.afterCommit("a", () -> calls.add("a"));
+            service.beforeCommit("b", () -> calls.add("b"));
+
+            // then
+            assertThat(calls).containsExactly("a", "b");
+        }
+    }
+
+}
@@ -95,4 +95,21 @@ public class ApplicationTenancyEvaluatorForEstatio_Test {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void tenancies_parsed_once() throws Exception {
+
+        // when
+        evaluator.objectVisibleToUser(italianCaraselloObject, italianXCaraselloUser);
+        evaluator.objectEnabledForUser(italianCaraselloObject, italianXCaraselloUser);
+        evaluator.objectVisibleToUser(italianObject, italianXCaraselloUser);
+        evaluator.objectVisibleToUser(italianObject, frenchUser);
+
+        // then
+        final ApplicationTenancyEvaluatorForEstatio.Statistics statistics = evaluator.getStatistics();
+        assertThat(statistics.getMisses()).isEqualTo(2);
+        assertThat(statistics.getHits()).isEqualTo(2);
+        assertThat(statistics.getObjectTenancies()).isEqualTo(2);
+        assertThat(statistics.getUserTenancies()).isEqualTo(2);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.base.spiimpl.security;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ApplicationTenancyPredicate_Test {
+
+    final List<String> objectTenancyPaths = Arrays.asList(
+            "/", "/ITA", "/ITA/", "/ITA/CAR", "/ITA/CAR/", "/ITA/CAR/_", "/ITA/CAR/ta", "/ITA/CARX", "/ITA/X-CAR",
+            "/ITA/X-CAR/_", "/ITA/GIG", "/ITA/GIG/_", "/FRA", "/FRA/VIV", "/BEL", "/BEL/X-BRU");
+
+    final List<String> userTenancyPaths = Arrays.asList(
+            "/ITA", "/ITA/CAR", "/ITA/X-CAR", "/ITA/CAR/_", "/FRA;/BEL", " /FRA ; /BEL/X-BRU ");
+
+    @Test
+    public void as_evaluator() throws Exception {
+        final ApplicationTenancyEvaluatorForEstatio evaluator = new ApplicationTenancyEvaluatorForEstatio();
+        for (String userTenancyPath : userTenancyPaths) {
+            final ApplicationTenancyPredicate predicate = new ApplicationTenancyMatcher(userTenancyPath).getPredicate();
+            for (String objectTenancyPath : objectTenancyPaths) {
+                assertThat(predicate.test(objectTenancyPath))
+                        .as("object %s, user %s", objectTenancyPath, userTenancyPath)
+                        .isEqualTo(evaluator.objectVisibleToUser(objectTenancyPath, userTenancyPath));
+            }
+        }
+    }
+
+    @Test
+    public void wildcard() throws Exception {
+
+        // when
+        final ApplicationTenancyPredicate predicate = new ApplicationTenancyMatcher("/ITA/X-CAR").getPredicate();
+
+        // then
+        assertThat(predicate.isUnrestricted()).isFalse();
+        assertThat(predicate.getAtPaths()).containsExactly(
+                "", "/", "/ITA", "/ITA/", "/ITA/X-CAR", "/ITA/X-CAR/", "/ITA/CAR", "/ITA/CAR/");
+        assertThat(predicate.getAtPathPrefixes()).containsExactly("/ITA/X-CAR/", "/ITA/CAR/");
+        assertThat(predicate.toJdoql("applicationTenancyPath")).isEqualTo(
+                "(applicationTenancyPath == null || :tenancyAtPaths.contains(applicationTenancyPath)"
+                        + " || applicationTenancyPath.startsWith(:tenancyAtPathPrefix0)"
+                        + " || applicationTenancyPath.startsWith(:tenancyAtPathPrefix1))");
+        assertThat(predicate.getParameters()).containsOnlyKeys(
+                "tenancyAtPaths", "tenancyAtPathPrefix0", "tenancyAtPathPrefix1");
+    }
+
+    @Test
+    public void global_is_unrestricted() throws Exception {
+        assertThat(new ApplicationTenancyMatcher("/").getPredicate().isUnrestricted()).isTrue();
+        assertThat(new ApplicationTenancyMatcher("/ITA;/").getPredicate().isUnrestricted()).isTrue();
+        assertThat(new ApplicationTenancyMatcher("/").getPredicate().toJdoql("applicationTenancyPath")).isEqualTo("true");
+    }
+
+}
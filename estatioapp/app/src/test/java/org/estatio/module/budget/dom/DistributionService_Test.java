@@ -588,4 +588,57 @@ public class DistributionService_Test {
 
     }
 
+    @Test
+    public void largeKeyTableCorrectedFromTheEnd() {
+
+        //given
+        DistributionService distributionService = new DistributionService();
+        List<Distributable> input = new ArrayList<>();
+
+        //10000 units of 10.00 .. 109.99, the last being empty
+        for (int i = 0; i < 10000; i = i + 1) {
+            KeyItem item = new KeyItem();
+            item.setSourceValue(i == 9999 ? BigDecimal.ZERO : BigDecimal.valueOf(1000 + (i * 37) % 10000, 2));
+            input.add(item);
+        }
+
+        //when
+        List<Distributable> output = distributionService.distribute(input, new BigDecimal(1000), 3);
+        BigDecimal sumRoundedValues = BigDecimal.ZERO;
+        for (Distributable object : output) {
+            sumRoundedValues = sumRoundedValues.add(object.getValue());
+        }
+
+        //in this example here we get to -0.005
+
+        //then
+        assertThat(output).hasSize(10000);
+        assertThat(sumRoundedValues).isEqualTo(BigDecimal.valueOf(1000).setScale(3, BigDecimal.ROUND_HALF_UP));
+        assertThat(output.get(9999).getValue()).isEqualTo(BigDecimal.ZERO.setScale(3, BigDecimal.ROUND_HALF_UP));
+
+        // only the last items are corrected, by one increment each
+        BigDecimal denominator = BigDecimal.ZERO;
+        for (Distributable object : input) {
+            denominator = denominator.add(object.getSourceValue());
+        }
+        int numberOfCorrections = 0;
+        int lastUncorrected = -1;
+        for (int i = 0; i < 9999; i = i + 1) {
+            BigDecimal sourceValue = output.get(i).getSourceValue();
+            BigDecimal rounded = sourceValue.multiply(new BigDecimal(1000), MathContext.DECIMAL64)
+                    .divide(denominator, MathContext.DECIMAL64)
+                    .setScale(3, BigDecimal.ROUND_HALF_UP);
+            BigDecimal difference = output.get(i).getValue().subtract(rounded).abs();
+            if (difference.signum() == 0) {
+                lastUncorrected = i;
+            } else {
+                assertThat(difference).isEqualTo(new BigDecimal("0.001"));
+                numberOfCorrections = numberOfCorrections + 1;
+            }
+        }
+        assertThat(numberOfCorrections).isEqualTo(5);
+        assertThat(lastUncorrected).isEqualTo(9998 - numberOfCorrections);
+
+    }
+
 }
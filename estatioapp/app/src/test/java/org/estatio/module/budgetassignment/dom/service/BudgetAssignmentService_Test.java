@@ -12,12 +12,19 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import org.apache.isis.applib.services.xactn.TransactionService;
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
 
 import org.incode.module.base.dom.valuetypes.LocalDateInterval;
 
+import org.estatio.module.asset.dom.Property;
+import org.estatio.module.asset.dom.Unit;
+import org.estatio.module.asset.dom.UnitRepository;
 import org.estatio.module.budget.dom.budget.Budget;
+import org.estatio.module.budget.dom.budgetcalculation.BudgetCalculation;
+import org.estatio.module.budget.dom.budgetcalculation.BudgetCalculationRepository;
 import org.estatio.module.budget.dom.budgetcalculation.BudgetCalculationType;
+import org.estatio.module.budget.dom.budgetcalculation.Status;
 import org.estatio.module.budgetassignment.dom.calculationresult.BudgetCalculationResult;
 import org.estatio.module.budgetassignment.dom.calculationresult.BudgetCalculationResultRepository;
 import org.estatio.module.charge.dom.Charge;
@@ -30,6 +37,7 @@ import org.estatio.module.lease.dom.LeaseItemType;
 import org.estatio.module.lease.dom.LeaseTerm;
 import org.estatio.module.lease.dom.LeaseTermForServiceCharge;
 import org.estatio.module.lease.dom.occupancy.Occupancy;
+import org.estatio.module.lease.dom.occupancy.OccupancyRepository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -356,4 +364,83 @@ public class BudgetAssignmentService_Test {
         assertThat(termForServiceCharge.getBudgetedValue()).isEqualTo(previousResult1.getValue().add(previousResult2.getValue()));
     }
 
-} 
+    @Mock UnitRepository mockUnitRepository;
+    @Mock OccupancyRepository mockOccupancyRepository;
+    @Mock BudgetCalculationRepository mockBudgetCalculationRepository;
+    @Mock TransactionService mockTransactionService;
+
+    @Test
+    public void calculateResults_queries_once_for_the_whole_budget() {
+
+        // given
+        budgetAssignmentService.unitRepository = mockUnitRepository;
+        budgetAssignmentService.occupancyRepository = mockOccupancyRepository;
+        budgetAssignmentService.budgetCalculationRepository = mockBudgetCalculationRepository;
+        budgetAssignmentService.budgetCalculationResultRepository = mockBudgetCalculationResultRepository;
+        budgetAssignmentService.transactionService = mockTransactionService;
+
+        Property property = new Property();
+        Budget budget = new Budget();
+        budget.setProperty(property);
+        budget.setStartDate(new LocalDate(2018, 1, 1));
+        budget.setEndDate(new LocalDate(2018, 12, 31));
+
+        Unit unit1 = new Unit();
+        Unit unit2 = new Unit();
+        Unit vacantUnit = new Unit();
+        Occupancy occupancy1 = new Occupancy();
+        occupancy1.setUnit(unit1);
+        occupancy1.setStartDate(new LocalDate(2017, 1, 1));
+        Occupancy occupancy2 = new Occupancy();
+        occupancy2.setUnit(unit2);
+        occupancy2.setStartDate(new LocalDate(2017, 1, 1));
+
+        Charge charge1 = new Charge();
+        Charge charge2 = new Charge();
+        BudgetCalculation calc1 = calculation(unit1, charge1, "10.00");
+        BudgetCalculation calc2 = calculation(unit1, charge2, "20.00");
+        BudgetCalculation calc3 = calculation(unit1, charge1, "5.50");
+        BudgetCalculation calc4 = calculation(unit2, charge1, "1.00");
+
+        BudgetCalculationResult existingResult = new BudgetCalculationResult(budget, occupancy1, charge2, BudgetCalculationType.BUDGETED, new BigDecimal("99.99"));
+        BudgetCalculationResult newResult1 = new BudgetCalculationResult();
+        BudgetCalculationResult newResult2 = new BudgetCalculationResult();
+
+        // expect
+        context.checking(new Expectations(){{
+            oneOf(mockOccupancyRepository).occupanciesByPropertyAndInterval(with(equal(property)), with(any(LocalDateInterval.class)));
+            will(returnValue(Arrays.asList(occupancy1, occupancy2)));
+            oneOf(mockBudgetCalculationRepository).findByBudgetAndType(budget, BudgetCalculationType.BUDGETED);
+            will(returnValue(Arrays.asList(calc1, calc2, calc3, calc4)));
+            oneOf(mockBudgetCalculationResultRepository).findByBudgetAndType(budget, BudgetCalculationType.BUDGETED);
+            will(returnValue(Arrays.asList(existingResult)));
+            oneOf(mockUnitRepository).findByProperty(property);
+            will(returnValue(Arrays.asList(unit1, vacantUnit, unit2)));
+
+            oneOf(mockBudgetCalculationResultRepository).createBudgetCalculationResult(budget, occupancy1, charge1, BudgetCalculationType.BUDGETED, new BigDecimal("15.50"));
+            will(returnValue(newResult1));
+            oneOf(mockBudgetCalculationResultRepository).createBudgetCalculationResult(budget, occupancy2, charge1, BudgetCalculationType.BUDGETED, new BigDecimal("1.00"));
+            will(returnValue(newResult2));
+
+            oneOf(mockTransactionService).flushTransaction();
+        }});
+
+        // when
+        List<BudgetCalculationResult> results = budgetAssignmentService.calculateResults(budget, BudgetCalculationType.BUDGETED);
+
+        // then
+        assertThat(results).containsExactly(newResult1, existingResult, newResult2);
+        assertThat(existingResult.getValue()).isEqualTo(new BigDecimal("20.00"));
+        assertThat(Arrays.asList(calc1, calc2, calc3, calc4)).extracting(BudgetCalculation::getStatus).containsOnly(Status.ASSIGNED);
+    }
+
+    private static BudgetCalculation calculation(final Unit unit, final Charge invoiceCharge, final String value) {
+        BudgetCalculation calculation = new BudgetCalculation();
+        calculation.setUnit(unit);
+        calculation.setInvoiceCharge(invoiceCharge);
+        calculation.setValue(new BigDecimal(value));
+        calculation.setStatus(Status.NEW);
+        return calculation;
+    }
+
+}
@@ -10,6 +10,7 @@ import org.joda.time.LocalDate;
 import org.junit.Rule;
 import org.junit.Test;
 
+import org.apache.isis.applib.services.background.BackgroundService;
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
 
 import org.incode.module.country.dom.impl.Country;
@@ -31,6 +32,31 @@ public class IncomingInvoiceDownloadManager_Test {
 
     @Mock IncomingInvoiceItemRepository mockIncomingInvoiceItemRepository;
 
+    @Mock BackgroundService mockBackgroundService;
+
+    @Mock IncomingInvoiceDownloadManager mockManagerInBackground;
+
+    @Test
+    public void downloadToPdfZippedInBackground_attaches_the_zip_in_the_background() throws Exception {
+
+        // given
+        IncomingInvoiceDownloadManager manager = new IncomingInvoiceDownloadManager();
+        manager.backgroundService = mockBackgroundService;
+
+        // expect
+        context.checking(new Expectations(){{
+            oneOf(mockBackgroundService).execute(manager);
+            will(returnValue(mockManagerInBackground));
+            oneOf(mockManagerInBackground).attachPdfZipped("invoices.zip");
+        }});
+
+        // when
+        final IncomingInvoiceDownloadManager result = manager.downloadToPdfZippedInBackground("invoices.zip");
+
+        // then
+        assertThat(result).isSameAs(manager);
+    }
+
     @Test
     public void getReportedInvoiceItemsWithPropertyForPeriod_works() throws Exception {
 
@@ -0,0 +1,161 @@
+package org.estatio.module.capex.app.invoicedownload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.applib.security.UserMemento;
+import org.apache.isis.applib.services.user.UserService;
+import org.apache.isis.applib.value.Blob;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+
+import org.estatio.module.capex.platform.pdfmanipulator.PdfManipulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class IncomingInvoiceZipExportService_Test {
+
+    @Rule
+    public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(JUnitRuleMockery2.Mode.INTERFACES_AND_CLASSES);
+
+    @Mock
+    UserService mockUserService;
+
+    IncomingInvoiceZipExportService service;
+    List<File> filesPrepared;
+    List<String> inProgressWhilePreparing;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new IncomingInvoiceZipExportService();
+        service.userService = mockUserService;
+        service.init(ImmutableMap.of(IncomingInvoiceZipExportService.KEY_MAX_THREADS, "2"));
+        filesPrepared = Collections.synchronizedList(new ArrayList<>());
+        inProgressWhilePreparing = Collections.synchronizedList(new ArrayList<>());
+
+        context.checking(new Expectations() {{
+            allowing(mockUserService).getUser();
+            will(returnValue(new UserMemento("sven")));
+        }});
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+    }
+
+    DocumentPreparer preparerFor(final String documentName, final boolean failing) {
+        return new DocumentPreparer(null, null, null, 1, 1) {
+            @Override
+            String getDocumentName() {
+                return documentName;
+            }
+
+            @Override
+            Callable<File> stampingUsing(final PdfManipulator pdfManipulator) {
+                return () -> {
+                    if (failing) {
+                        throw new IncomingInvoiceDownloadManager.DownloadException(
+                                "Failed to prepare: " + documentName, new IOException());
+                    }
+                    service.getExportsInProgressFor("sven").forEach(progress ->
+                            inProgressWhilePreparing.add(progress.getFileName()));
+                    service.getExportsInProgressFor("other").forEach(progress ->
+                            inProgressWhilePreparing.add("other: " + progress.getFileName()));
+                    // finish out of order
+                    Thread.sleep(Math.floorMod(documentName.hashCode(), 3) * 10);
+                    final File file = File.createTempFile(documentName, "pdf");
+                    Files.write(file.toPath(), ("stamped " + documentName).getBytes(StandardCharsets.UTF_8));
+                    filesPrepared.add(file);
+                    return file;
+                };
+            }
+        };
+    }
+
+    @Test
+    public void entries_in_order_of_preparers() throws Exception {
+
+        // given
+        final List<DocumentPreparer> preparers = new ArrayList<>();
+        final List<String> documentNames = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            documentNames.add("invoice-" + i + ".pdf");
+            preparers.add(preparerFor("invoice-" + i + ".pdf", false));
+        }
+
+        // when
+        final Blob blob = service.export(preparers, "invoices.zip");
+
+        // then
+        assertThat(blob.getName()).isEqualTo("invoices.zip");
+        assertThat(blob.getMimeType().getBaseType()).isEqualTo("application/zip");
+
+        final List<String> entryNames = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(blob.getBytes()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entryNames.add(entry.getName());
+                final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                final byte[] buf = new byte[1024];
+                int read;
+                while ((read = zis.read(buf)) != -1) {
+                    baos.write(buf, 0, read);
+                }
+                assertThat(new String(baos.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("stamped " + entry.getName());
+            }
+        }
+        assertThat(entryNames).isEqualTo(documentNames);
+        assertThat(inProgressWhilePreparing).hasSize(10).containsOnly("invoices.zip");
+
+        assertThat(filesPrepared).hasSize(10);
+        for (File file : filesPrepared) {
+            assertThat(file).doesNotExist();
+        }
+        assertThat(service.getExportsInProgressFor("sven")).isEmpty();
+    }
+
+    @Test
+    public void when_preparing_fails() throws Exception {
+
+        // given
+        final List<DocumentPreparer> preparers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            preparers.add(preparerFor("invoice-" + i + ".pdf", i == 4));
+        }
+
+        // when
+        try {
+            service.export(preparers, "invoices.zip");
+            fail("should have thrown");
+        } catch (IncomingInvoiceDownloadManager.DownloadException e) {
+            assertThat(e.getMessage()).isEqualTo("Failed to prepare: invoice-4.pdf");
+        }
+
+        // then
+        for (File file : filesPrepared) {
+            assertThat(file).doesNotExist();
+        }
+        assertThat(service.getExportsInProgressFor("sven")).isEmpty();
+    }
+
+}
@@ -0,0 +1,218 @@
+package org.estatio.module.capex.dom.payment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.isis.applib.value.Blob;
+
+import org.estatio.module.capex.platform.pdfmanipulator.ExtractSpec;
+import org.estatio.module.capex.platform.pdfmanipulator.PdfManipulator;
+import org.estatio.module.capex.platform.pdfmanipulator.Stamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PaymentBatchReviewPdfService_Test {
+
+    PaymentBatchReviewPdfService service;
+    String documentName;
+    List<MemoryUsageSetting> memoryUsageSettings;
+
+    @Before
+    public void setUp() throws Exception {
+        documentName = "review-" + UUID.randomUUID();
+        memoryUsageSettings = Collections.synchronizedList(Lists.newArrayList());
+
+        service = new PaymentBatchReviewPdfService();
+        service.init(ImmutableMap.of(
+                PaymentBatchReviewPdfService.KEY_MAX_THREADS, "2",
+                PaymentBatchReviewPdfService.KEY_MAX_MAIN_MEMORY_BYTES, "1024"));
+
+        // the "document" of each line is just the text to put on its page
+        service.pdfManipulator = new PdfManipulator() {
+            @Override
+            public byte[] extractAndStamp(
+                    final byte[] docBytes,
+                    final ExtractSpec extractSpec,
+                    final Stamp stamp,
+                    final MemoryUsageSetting memoryUsageSetting) throws IOException {
+                memoryUsageSettings.add(memoryUsageSetting);
+                final String text = new String(docBytes, StandardCharsets.UTF_8);
+                if (text.equals("corrupt")) {
+                    throw new IOException("corrupt");
+                }
+                return pdfWithText(text);
+            }
+
+            @Override
+            public byte[] placeholder(final String reason, final Stamp stamp) throws IOException {
+                return pdfWithText("placeholder: " + reason);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+    }
+
+    @Test
+    public void merges_lines_in_order() throws Exception {
+
+        // given
+        final List<PaymentBatchReviewPdfService.LinePart> lineParts = Lists.newArrayList();
+        // the first to be submitted is the last to complete
+        lineParts.add(linePart(() -> {
+            sleep(200);
+            return bytesOf("line 1");
+        }, null));
+        for (int i = 2; i <= 6; i++) {
+            lineParts.add(linePart(bytesOf("line " + i), null));
+        }
+
+        // when
+        final Blob blob = service.build(documentName, lineParts.iterator());
+
+        // then
+        assertThat(pageTextsOf(blob)).containsExactly(
+                "line 1", "line 2", "line 3", "line 4", "line 5", "line 6");
+        assertThat(tempFilesOf(documentName)).isEmpty();
+    }
+
+    @Test
+    public void documents_are_parsed_using_scratch_files() throws Exception {
+
+        // given
+        final List<PaymentBatchReviewPdfService.LinePart> lineParts = Arrays.asList(
+                linePart(bytesOf("line 1"), bytesOf("iban 1")));
+
+        // when
+        service.build(documentName, lineParts.iterator());
+
+        // then
+        assertThat(memoryUsageSettings).hasSize(2);
+        for (MemoryUsageSetting memoryUsageSetting : memoryUsageSettings) {
+            assertThat(memoryUsageSetting.useTempFile()).isTrue();
+            assertThat(memoryUsageSetting.getMaxMainMemoryBytes()).isEqualTo(1024L);
+        }
+    }
+
+    @Test
+    public void documents_that_cannot_be_obtained_are_replaced_by_a_placeholder() throws Exception {
+
+        // given
+        final List<PaymentBatchReviewPdfService.LinePart> lineParts = Arrays.asList(
+                linePart(bytesOf("line 1"), null),
+                linePart(() -> null, null),
+                linePart(bytesOf("line 3"), () -> null));
+
+        // when
+        final Blob blob = service.build(documentName, lineParts.iterator());
+
+        // then
+        assertThat(pageTextsOf(blob)).containsExactly(
+                "line 1",
+                "placeholder: " + PaymentBatchReviewPdfService.INVOICE_NOT_OBTAINED,
+                "line 3",
+                "placeholder: " + PaymentBatchReviewPdfService.IBAN_PROOF_NOT_OBTAINED);
+    }
+
+    @Test
+    public void fails_if_a_line_cannot_be_rendered() throws Exception {
+
+        // given
+        final List<PaymentBatchReviewPdfService.LinePart> lineParts = Arrays.asList(
+                linePart(bytesOf("line 1"), null),
+                linePart(bytesOf("corrupt"), null),
+                linePart(bytesOf("line 3"), null));
+
+        // when
+        try {
+            service.build(documentName, lineParts.iterator());
+            fail("expected to fail");
+        } catch (IOException ex) {
+            // then
+            assertThat(ex.getMessage()).isEqualTo("corrupt");
+        }
+        assertThat(tempFilesOf(documentName)).isEmpty();
+    }
+
+    private PaymentBatchReviewPdfService.LinePart linePart(
+            final Supplier<byte[]> invoiceDocBytes,
+            final Supplier<byte[]> ibanProofDocBytesIfAny) {
+        return new PaymentBatchReviewPdfService.LinePart(
+                documentName,
+                invoiceDocBytes,
+                ExtractSpec.FIRST_PAGE_ONLY,
+                new Stamp(Lists.newArrayList("xfer id: 1"), Lists.newArrayList("gross Amt  : 1.00"), null),
+                ibanProofDocBytesIfAny);
+    }
+
+    private static Supplier<byte[]> bytesOf(final String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return () -> bytes;
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] pdfWithText(final String text) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            final PDPage page = new PDPage();
+            doc.addPage(page);
+            try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                cs.beginText();
+                cs.setFont(PDType1Font.HELVETICA, 12);
+                cs.newLineAtOffset(50, 700);
+                cs.showText(text);
+                cs.endText();
+            }
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            doc.save(baos);
+            return baos.toByteArray();
+        }
+    }
+
+    private static List<String> pageTextsOf(final Blob blob) throws IOException {
+        final List<String> texts = Lists.newArrayList();
+        try (PDDocument doc = PDDocument.load(blob.getBytes())) {
+            final PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = 1; page <= doc.getNumberOfPages(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                texts.add(stripper.getText(doc).trim());
+            }
+        }
+        return texts;
+    }
+
+    private static File[] tempFilesOf(final String documentName) {
+        return new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith(documentName));
+    }
+
+}
@@ -1,10 +1,12 @@
 package org.estatio.module.capex.dom.payment;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.concurrent.Callable;
 
 import org.assertj.core.api.Assertions;
+import org.jmock.Expectations;
 import org.jmock.auto.Mock;
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
@@ -12,6 +14,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import org.apache.isis.applib.services.jaxb.JaxbService;
 import org.apache.isis.applib.services.queryresultscache.QueryResultsCache;
 import org.apache.isis.applib.services.registry.ServiceRegistry2;
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
@@ -22,8 +25,11 @@ import org.estatio.module.currency.dom.Currency;
 import org.estatio.module.financial.dom.BankAccount;
 import org.estatio.module.party.dom.Organisation;
 import org.estatio.module.party.dom.Party;
+import org.estatio.module.party.dom.Person;
+import org.estatio.module.party.dom.PersonRepository;
 
 import iso.std.iso._20022.tech.xsd.pain_001_001.CreditTransferTransactionInformation10;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class PaymentBatch_Test {
@@ -35,6 +41,9 @@ public class PaymentBatch_Test {
     @Mock
     ServiceRegistry2 mockServiceRegistry2;
 
+    @Mock
+    PersonRepository mockPersonRepository;
+
     PaymentBatch paymentBatch;
 
     private Party seller1;
@@ -131,6 +140,67 @@ public class PaymentBatch_Test {
     }
 
 
+    @Test
+    public void writes_same_xml_as_when_marshalling_whole_document() throws Exception {
+
+        // given
+        final Person me = new Person();
+        me.setReference("JBLOGGS");
+        paymentBatch.personRepository = mockPersonRepository;
+        context.checking(new Expectations() {{
+            allowing(mockPersonRepository).me();
+            will(returnValue(me));
+        }});
+        paymentBatch.setDebtorBankAccount(
+                newBankAccount("FR7630004000031234567890143", "BNPAFRPP", newOrganisation("DEBTOR", "/FRA")));
+
+        paymentBatch.addLineIfRequired(
+                newInvoice(new LocalDate(2017, 7, 7), seller1, seller1BankAccount, "EUR", "361754.46", "AF3T2017"));
+        paymentBatch.addLineIfRequired(
+                newInvoice(new LocalDate(2017, 6, 30), seller2, seller2BankAccount, "EUR", "15251.76", "DGD 11420"));
+        paymentBatch.addLineIfRequired(
+                newInvoice(new LocalDate(2017, 6, 5), seller1, seller1BankAccount, "EUR", "-172805.79", "REDD2016VT"));
+
+        final JaxbService jaxbService = new JaxbService.Simple();
+        final String expected = jaxbService.toXml(paymentBatch.convertToXmlDocument());
+
+        // when
+        final StringWriter writer = new StringWriter();
+        paymentBatch.writeXmlDocument(jaxbService::toXml, writer);
+
+        // then
+        assertThat(writer.toString()).isEqualTo(expected);
+        assertThat(expected).containsPattern("<(\\w+:)?NbOfTxs>2</(\\w+:)?NbOfTxs>");
+        assertThat(expected).containsPattern("<(\\w+:)?CtrlSum>204200.43</(\\w+:)?CtrlSum>");
+        assertThat(expected).containsPattern("<(\\w+:)?Nm>ACME Organisation</(\\w+:)?Nm>");
+        assertThat(expected.indexOf("97834-1-3")).isLessThan(expected.indexOf("97834-2"));
+    }
+
+    @Test
+    public void writes_same_xml_as_when_marshalling_whole_document_when_no_lines() throws Exception {
+
+        // given
+        final Person me = new Person();
+        me.setReference("JBLOGGS");
+        paymentBatch.personRepository = mockPersonRepository;
+        context.checking(new Expectations() {{
+            allowing(mockPersonRepository).me();
+            will(returnValue(me));
+        }});
+        paymentBatch.setDebtorBankAccount(
+                newBankAccount("FR7630004000031234567890143", "BNPAFRPP", newOrganisation("DEBTOR", "/FRA")));
+
+        final JaxbService jaxbService = new JaxbService.Simple();
+        final String expected = jaxbService.toXml(paymentBatch.convertToXmlDocument());
+
+        // when
+        final StringWriter writer = new StringWriter();
+        paymentBatch.writeXmlDocument(jaxbService::toXml, writer);
+
+        // then
+        assertThat(writer.toString()).isEqualTo(expected);
+    }
+
     Organisation newOrganisation(final String reference, final String applicationTenancyPath) {
         final Organisation organisation = new Organisation() {
             @Override public String getAtPath() {
@@ -0,0 +1,102 @@
+package org.estatio.module.capex.platform.pdfmanipulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Resources;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IncrementalPdfMerger_Test {
+
+    @Test
+    public void merges_in_order_and_cleans_up() throws Exception {
+
+        // given
+        final byte[] bytes = Resources.toByteArray(
+                Resources.getResource(IncrementalPdfMerger_Test.class, "sample-invoice.pdf"));
+        final int pagesOfSample;
+        try (PDDocument sample = PDDocument.load(bytes)) {
+            pagesOfSample = sample.getNumberOfPages();
+        }
+        final File file1 = tempFileOf(bytes);
+        final File file2 = tempFileOf(bytes);
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        // when
+        try (IncrementalPdfMerger merger = new IncrementalPdfMerger(MemoryUsageSetting.setupTempFileOnly())) {
+            merger.append(file1);
+            merger.append(file2);
+
+            assertThat(merger.getNumberOfDocuments()).isEqualTo(2);
+            assertThat(merger.getNumberOfPages()).isEqualTo(2 * pagesOfSample);
+
+            merger.save(baos);
+        }
+
+        // then
+        try (PDDocument merged = PDDocument.load(baos.toByteArray())) {
+            assertThat(merged.getNumberOfPages()).isEqualTo(2 * pagesOfSample);
+        }
+        assertThat(file1).doesNotExist();
+        assertThat(file2).doesNotExist();
+    }
+
+    @Test
+    public void keeps_a_bounded_number_of_documents_open() throws Exception {
+
+        // given
+        final byte[] bytes = Resources.toByteArray(
+                Resources.getResource(IncrementalPdfMerger_Test.class, "sample-invoice.pdf"));
+        final int pagesOfSample;
+        try (PDDocument sample = PDDocument.load(bytes)) {
+            pagesOfSample = sample.getNumberOfPages();
+        }
+        final List<File> files = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            files.add(tempFileOf(bytes));
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        // when
+        try (IncrementalPdfMerger merger = new IncrementalPdfMerger(MemoryUsageSetting.setupTempFileOnly(), 2)) {
+            for (File file : files) {
+                merger.append(file);
+                assertThat(merger.getNumberOfOpenDocuments()).isLessThanOrEqualTo(2);
+            }
+
+            assertThat(merger.getNumberOfDocuments()).isEqualTo(5);
+            assertThat(merger.getNumberOfPages()).isEqualTo(5 * pagesOfSample);
+
+            // then the files of the documents no longer open have already been deleted
+            assertThat(files.get(0)).doesNotExist();
+            assertThat(files.get(4)).exists();
+
+            merger.save(baos);
+        }
+
+        // then
+        try (PDDocument merged = PDDocument.load(baos.toByteArray())) {
+            assertThat(merged.getNumberOfPages()).isEqualTo(5 * pagesOfSample);
+        }
+        for (File file : files) {
+            assertThat(file).doesNotExist();
+        }
+    }
+
+    private static File tempFileOf(final byte[] bytes) throws Exception {
+        final File file = File.createTempFile("merger-test", "pdf");
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+}
@@ -8,11 +8,15 @@ import java.util.Arrays;
 import com.google.common.io.Resources;
 
 import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import org.isisaddons.module.pdfbox.dom.service.PdfBoxService;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class PdfManipulatorTest {
 
     @Ignore
@@ -42,4 +46,26 @@ public class PdfManipulatorTest {
         IOUtils.copy(new ByteArrayInputStream(firstPageBytes), new FileOutputStream("x.pdf"));
     }
 
+    @Test
+    public void placeholder() throws Exception {
+
+        Stamp stamp = new Stamp(Arrays.asList(
+                "xfer id: 1234 / 1"
+        ), Arrays.asList(
+                "gross amt  : 12345.99"
+        ), "http://www.google.com");
+
+        final PdfManipulator pdfManipulator = new PdfManipulator();
+
+        byte[] placeholderBytes = pdfManipulator.placeholder("Invoice PDF could not be obtained", stamp);
+
+        try (PDDocument doc = PDDocument.load(placeholderBytes)) {
+            assertThat(doc.getNumberOfPages()).isEqualTo(1);
+            final String text = new PDFTextStripper().getText(doc);
+            assertThat(text).contains("Invoice PDF could not be obtained");
+            assertThat(text).contains("xfer id: 1234 / 1");
+            assertThat(text).contains("gross amt  : 12345.99");
+        }
+    }
+
 }
@@ -1,5 +1,7 @@
 package org.estatio.module.coda.dom.doc;
 
+import java.math.BigDecimal;
+
 import org.jmock.Expectations;
 import org.jmock.Sequence;
 import org.jmock.auto.Mock;
@@ -84,35 +86,112 @@ public class CodaDocHeadRepository_replace_Test {
 
 
     @Test
-    public void when_does_exist() throws Exception {
+    public void when_does_exist_and_unchanged() throws Exception {
 
         // given
-        final CodaDocHead originalDocHead = new CodaDocHead();
+        final CodaDocHead originalDocHead = newDocHead("");
+        addLine(originalDocHead, 1, LineType.SUMMARY, new BigDecimal("100.00"));
+        addLine(originalDocHead, 2, LineType.ANALYSIS, new BigDecimal("100.00"));
+
+        addLine(replacementDocHead, 1, LineType.SUMMARY, new BigDecimal("100"));
+        addLine(replacementDocHead, 2, LineType.ANALYSIS, new BigDecimal("100.0"));
 
         // expecting
         context.checking(new Expectations() {{
             allowing(mockRepositoryService).isPersistent(with(replacementDocHead));
-            inSequence(sequence);
             will(returnValue(false));
 
             allowing(mockRepositoryService).uniqueMatch(with(any(QueryDefault.class)));
-            inSequence(sequence);
             will(returnValue(originalDocHead));
 
-            oneOf(mockRepositoryService).removeAndFlush(with(originalDocHead));
-            inSequence(sequence);
+            // ie nothing removed nor persisted
+        }});
 
-            oneOf(mockRepositoryService).persistAndFlush(with(replacementDocHead));
-            inSequence(sequence);
+        // when
+        final CodaDocHeadRepository.Upsert upsert = codaDocHeadRepository.upsert(replacementDocHead);
+
+        // then
+        assertThat(upsert.getType()).isEqualTo(CodaDocHeadRepository.Upsert.Type.UNCHANGED);
+        assertThat(upsert.isKickRequired()).isFalse();
+        assertThat(upsert.getDocHead()).isSameAs(originalDocHead);
+    }
+
+    @Test
+    public void when_does_exist_and_only_status_changed() throws Exception {
+
+        // given
+        final CodaDocHead originalDocHead = newDocHead("");
+        addLine(originalDocHead, 1, LineType.SUMMARY, new BigDecimal("100.00"));
+        addLine(replacementDocHead, 1, LineType.SUMMARY, new BigDecimal("100.00"));
+
+        replacementDocHead.setStatPay("available");
+
+        // expecting
+        context.checking(new Expectations() {{
+            allowing(mockRepositoryService).isPersistent(with(replacementDocHead));
+            will(returnValue(false));
+
+            allowing(mockRepositoryService).uniqueMatch(with(any(QueryDefault.class)));
+            will(returnValue(originalDocHead));
+        }});
+
+        // when
+        final CodaDocHeadRepository.Upsert upsert = codaDocHeadRepository.upsert(replacementDocHead);
+
+        // then
+        assertThat(upsert.getType()).isEqualTo(CodaDocHeadRepository.Upsert.Type.STATUS_UPDATED);
+        assertThat(upsert.isKickRequired()).isTrue();
+        assertThat(upsert.getDocHead()).isSameAs(originalDocHead);
+        assertThat(originalDocHead.getStatPay()).isEqualTo("available");
+    }
+
+    @Test
+    public void when_does_exist_and_lines_changed() throws Exception {
+
+        // given
+        final CodaDocHead originalDocHead = newDocHead("");
+        originalDocHead.setHandling(Handling.EXCLUDED); // so not validated against the (mocked out) database
+        final CodaDocLine originalLine1 = addLine(originalDocHead, 1, LineType.SUMMARY, new BigDecimal("100.00"));
+        addLine(originalDocHead, 2, LineType.ANALYSIS, new BigDecimal("100.00"));
+
+        addLine(replacementDocHead, 1, LineType.SUMMARY, new BigDecimal("120.00"));
+        final CodaDocLine replacementLine3 = addLine(replacementDocHead, 3, LineType.ANALYSIS, new BigDecimal("120.00"));
+
+        // expecting
+        context.checking(new Expectations() {{
+            allowing(mockRepositoryService).isPersistent(with(replacementDocHead));
+            will(returnValue(false));
+
+            allowing(mockRepositoryService).uniqueMatch(with(any(QueryDefault.class)));
+            will(returnValue(originalDocHead));
+
+            oneOf(mockRepositoryService).persistAndFlush(with(replacementLine3));
             will(JMockActions.returnArgument(0));
         }});
 
         // when
-        final CodaDocHead nextDocHead = codaDocHeadRepository.persistAsReplacementIfRequired(replacementDocHead);
+        final CodaDocHeadRepository.Upsert upsert = codaDocHeadRepository.upsert(replacementDocHead);
 
         // then
-        assertThat(nextDocHead).isNotSameAs(originalDocHead);
-        assertThat(nextDocHead).isSameAs(replacementDocHead);
+        assertThat(upsert.getType()).isEqualTo(CodaDocHeadRepository.Upsert.Type.CONTENT_UPDATED);
+        assertThat(upsert.getLinesAdded()).isEqualTo(1);
+        assertThat(upsert.getLinesUpdated()).isEqualTo(1);
+        assertThat(upsert.getLinesRemoved()).isEqualTo(1);
+
+        assertThat(upsert.getDocHead()).isSameAs(originalDocHead);
+        assertThat(originalDocHead.getLines()).extracting(CodaDocLine::getLineNum).containsExactly(1, 3);
+        assertThat(originalLine1.getDocValue()).isEqualTo(new BigDecimal("120.00"));
+        assertThat(replacementLine3.getDocHead()).isSameAs(originalDocHead);
+    }
+
+    CodaDocHead newDocHead(final String statPay) {
+        return new CodaDocHead("IT01", "FR-GEN", "123", (short)1, replacementDocHead.getInputDate(), replacementDocHead.getDocDate(), "2019/1", "books", "SHA256", statPay);
+    }
+
+    CodaDocLine addLine(final CodaDocHead docHead, final int lineNum, final LineType lineType, final BigDecimal docValue) {
+        final CodaDocLine codaDocLine = new CodaDocLine(docHead, lineNum, lineType, "ACCOUNT", null, docValue, null, null, null, null, null, null, null, null, null, null, null);
+        docHead.getLines().add(codaDocLine);
+        return codaDocLine;
     }
 
     @Test
@@ -2,10 +2,15 @@ package org.estatio.module.fastnet.dom;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
@@ -1260,4 +1265,237 @@ public class FastnetImportService_Test {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void classify_charging_data_lines_gives_same_buckets_as_list_based_matching() throws Exception {
+
+        // given
+        FastnetImportService service = new FastnetImportService();
+        final List<FastNetRentRollOnLeaseDataLine> rentRollLines = syntheticRentRollLines(200);
+        final List<FastNetChargingOnLeaseDataLine> chargingLines = syntheticChargingLines(3000, 250);
+
+        // when
+        FastnetImportManager expected = new FastnetImportManager();
+        classifyUsingLists(service, expected, new ArrayList<>(chargingLines), rentRollLines);
+        FastnetImportManager actual = new FastnetImportManager();
+        service.classifyChargingDataLines(actual, new ArrayList<>(chargingLines), rentRollLines);
+
+        // then
+        assertThat(actual.getChargeNotFound()).isNotEmpty().containsExactlyElementsOf(expected.getChargeNotFound());
+        assertThat(actual.getDiscardedLines()).isNotEmpty().containsExactlyElementsOf(expected.getDiscardedLines());
+        assertThat(actual.getDuplicateChargeReferences()).isNotEmpty().containsExactlyInAnyOrderElementsOf(expected.getDuplicateChargeReferences());
+        assertThat(actual.getNoUpdateNeeded()).isNotEmpty().containsExactlyElementsOf(expected.getNoUpdateNeeded());
+        assertThat(actual.getLinesForItemUpdate()).isNotEmpty().containsExactlyElementsOf(expected.getLinesForItemUpdate());
+        assertThat(actual.getLinesForItemCreation()).isNotEmpty().containsExactlyElementsOf(expected.getLinesForItemCreation());
+    }
+
+    @Test
+    public void classify_charging_data_lines_scales_to_a_large_export() throws Exception {
+
+        // given
+        FastnetImportService service = new FastnetImportService();
+        final List<FastNetRentRollOnLeaseDataLine> rentRollLines = syntheticRentRollLines(8000);
+        final List<FastNetChargingOnLeaseDataLine> chargingLines = syntheticChargingLines(50000, 10000);
+
+        // when
+        FastnetImportManager manager = new FastnetImportManager();
+        final long start = System.currentTimeMillis();
+        service.classifyChargingDataLines(manager, chargingLines, rentRollLines);
+        final long millis = System.currentTimeMillis() - start;
+
+        // then
+        final int classified = manager.getChargeNotFound().size()
+                + manager.getDiscardedLines().size()
+                + manager.getLinesForItemUpdate().size()
+                + manager.getLinesForItemCreation().size();
+        assertThat(classified).isGreaterThan(0).isLessThanOrEqualTo(50000);
+        // the list based matching took minutes for an export this size; generous, to not be flaky on a busy build server
+        assertThat(millis).isLessThan(10000);
+    }
+
+    @Test
+    public void line_operations_follow_the_order_of_do_import() throws Exception {
+
+        // given
+        FastnetImportService service = new FastnetImportService();
+        FastnetImportManager manager = new FastnetImportManager();
+        final List<FastNetChargingOnLeaseDataLine> lines = syntheticChargingLines(5, 5);
+        manager.setLinesForItemUpdate(Arrays.asList(lines.get(0)));
+        manager.setLinesForItemCreation(Arrays.asList(lines.get(1)));
+        manager.setDuplicateChargeReferences(Arrays.asList(lines.get(2)));
+        manager.setDiscardedLines(Arrays.asList(lines.get(3)));
+        manager.setNoUpdateNeeded(Arrays.asList(lines.get(4)));
+
+        // when
+        final List<FastnetImportService.LineOperation> operations = service.lineOperationsFor(manager);
+
+        // then
+        assertThat(operations).extracting(FastnetImportService.LineOperation::getType).containsExactly(
+                FastnetImportService.LineOperation.Type.APPLY,
+                FastnetImportService.LineOperation.Type.APPLY,
+                FastnetImportService.LineOperation.Type.APPLY,
+                FastnetImportService.LineOperation.Type.DISCARD,
+                FastnetImportService.LineOperation.Type.NO_UPDATE);
+        assertThat(operations).extracting(FastnetImportService.LineOperation::getKeyToLeaseExternalReference).containsExactlyElementsOf(
+                lines.stream().map(FastNetChargingOnLeaseDataLine::getKeyToLeaseExternalReference).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void apply_chunk_counts_only_the_lines_actually_changed() throws Exception {
+
+        // given
+        final List<FastNetChargingOnLeaseDataLine> lines = syntheticChargingLines(7, 7);
+        final List<FastnetImportService.LineOperation> chunk = Arrays.asList(
+                new FastnetImportService.LineOperation(FastnetImportService.LineOperation.Type.APPLY, lines.get(0)),
+                new FastnetImportService.LineOperation(FastnetImportService.LineOperation.Type.APPLY, lines.get(1)),
+                new FastnetImportService.LineOperation(FastnetImportService.LineOperation.Type.APPLY, lines.get(2)),
+                new FastnetImportService.LineOperation(FastnetImportService.LineOperation.Type.DISCARD, lines.get(3)),
+                new FastnetImportService.LineOperation(FastnetImportService.LineOperation.Type.DISCARD, lines.get(4)),
+                new FastnetImportService.LineOperation(FastnetImportService.LineOperation.Type.NO_UPDATE, lines.get(5)),
+                new FastnetImportService.LineOperation(FastnetImportService.LineOperation.Type.NO_UPDATE, lines.get(6)));
+
+        final ChargingLine updated = new ChargingLine();
+        final ChargingLine notUpdated = new ChargingLine();
+        final ChargingLine alreadyApplied = new ChargingLine();
+        alreadyApplied.setImportStatus(ImportStatus.LEASE_ITEM_UPDATED);
+        alreadyApplied.setApplied(new LocalDate(2019, 1, 1));
+        final ChargingLine discarded = new ChargingLine();
+        final ChargingLine alreadyDiscarded = new ChargingLine();
+        alreadyDiscarded.setImportStatus(ImportStatus.DISCARDED);
+        final ChargingLine noUpdateNeeded = new ChargingLine();
+        final ChargingLine[] chargingLines = { updated, notUpdated, alreadyApplied, discarded, alreadyDiscarded, noUpdateNeeded, null };
+
+        FastnetImportService service = new FastnetImportService() {
+            @Override
+            public ImportStatus updateOrCreateItemAndTerm(final ChargingLine cLine) {
+                assertThat(cLine).isIn(updated, notUpdated);
+                return cLine == updated ? ImportStatus.LEASE_ITEM_UPDATED : null;
+            }
+        };
+        service.chargingLineRepository = mockChargingLineRepository;
+        for (ChargingLine chargingLine : chargingLines) {
+            if (chargingLine != null) {
+                chargingLine.fastnetImportService = service;
+                chargingLine.clockService = mockClockService;
+            }
+        }
+
+        // expect
+        context.checking(new Expectations() {{
+            for (int i = 0; i < chunk.size(); i++) {
+                final FastnetImportService.LineOperation operation = chunk.get(i);
+                oneOf(mockChargingLineRepository).findUnique(operation.getKeyToLeaseExternalReference(), operation.getKeyToChargeReference(), operation.getFromDat(), operation.getTomDat(), operation.getArsBel(), operation.getExportDate(), null);
+                will(returnValue(chargingLines[i]));
+            }
+            allowing(mockClockService).now();
+            will(returnValue(new LocalDate(2019, 2, 1)));
+        }});
+
+        // when
+        final Integer applied = service.applyChunk(chunk);
+
+        // then
+        assertThat(applied).isEqualTo(3);
+        assertThat(updated.getApplied()).isEqualTo(new LocalDate(2019, 2, 1));
+        assertThat(notUpdated.getApplied()).isNull();
+        assertThat(alreadyApplied.getApplied()).isEqualTo(new LocalDate(2019, 1, 1));
+        assertThat(discarded.getImportStatus()).isEqualTo(ImportStatus.DISCARDED);
+        assertThat(noUpdateNeeded.getImportStatus()).isEqualTo(ImportStatus.NO_UPDATE_NEEDED);
+    }
+
+    private static List<FastNetRentRollOnLeaseDataLine> syntheticRentRollLines(final int numberOfLeases) {
+        final List<FastNetRentRollOnLeaseDataLine> lines = new ArrayList<>();
+        for (int i = 0; i < numberOfLeases; i++) {
+            lines.add(new FastNetRentRollOnLeaseDataLine(
+                    null, null, externalReference(i), null, null, null, null, null,
+                    null, null, null, null, null, null, false));
+        }
+        return lines;
+    }
+
+    private static List<FastNetChargingOnLeaseDataLine> syntheticChargingLines(final int numberOfLines, final int numberOfLeases) {
+        final Random random = new Random(12345);
+        final List<FastNetChargingOnLeaseDataLine> lines = new ArrayList<>();
+        for (int i = 0; i < numberOfLines; i++) {
+            final FastNetChargingOnLeaseDataLine line = new FastNetChargingOnLeaseDataLine();
+            final String chargeReference = "SE" + random.nextInt(12) + "-1";
+            line.setKeyToLeaseExternalReference(externalReference(random.nextInt(numberOfLeases)));
+            line.setKeyToChargeReference(chargeReference);
+            line.setChargeReference(random.nextInt(50) == 0 ? null : chargeReference);
+            line.setChargeGroupReference(random.nextInt(40) == 0 ? "SE_DISCARD" : "SE_RENT");
+            line.setFromDat("2019-01-01");
+            line.setDebPer("Kvartal");
+            line.setArsBel(new BigDecimal("1000.00"));
+            if (random.nextBoolean()) {
+                // existing term, sometimes with the same start date, value and frequency
+                line.setLeaseTermStartDate(random.nextBoolean() ? new LocalDate(2019, 1, 1) : new LocalDate(2018, 1, 1));
+                line.setValue(random.nextBoolean() ? new BigDecimal("1000.00") : new BigDecimal("900.00"));
+                line.setInvoicingFrequency(InvoicingFrequency.QUARTERLY_IN_ADVANCE.name());
+            }
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private static String externalReference(final int i) {
+        return String.format("%04d-%04d-01", i / 1000, i % 1000);
+    }
+
+    /**
+     * The original, list based, implementation; kept as the reference for the hash based one.
+     */
+    private static void classifyUsingLists(
+            final FastnetImportService service,
+            final FastnetImportManager fastnetImportManager,
+            final List<FastNetChargingOnLeaseDataLine> chargingDataLines,
+            final List<FastNetRentRollOnLeaseDataLine> matchingRentRollDataLines) {
+        List<FastNetChargingOnLeaseDataLine> chargingDataLinesChargeNotFound = chargingDataLines
+                .stream()
+                .filter(x -> x.getChargeReference() == null)
+                .collect(Collectors.toList());
+        chargingDataLines.removeAll(chargingDataLinesChargeNotFound);
+        fastnetImportManager.setChargeNotFound(chargingDataLinesChargeNotFound);
+
+        List<FastNetChargingOnLeaseDataLine> chargingDataLinesToDiscard = chargingDataLines
+                .stream()
+                .filter(x -> x.getChargeGroupReference().equals("SE_DISCARD"))
+                .collect(Collectors.toList());
+        chargingDataLines.removeAll(chargingDataLinesToDiscard);
+        fastnetImportManager.setDiscardedLines(chargingDataLinesToDiscard);
+
+        List<String> matchingKeys = matchingRentRollDataLines.stream().map(l -> l.getKeyToLeaseExternalReference()).collect(Collectors.toList());
+        List<FastNetChargingOnLeaseDataLine> notInMatchingRentRollDataLines = new ArrayList<>();
+        List<FastNetChargingOnLeaseDataLine> noUpdateNeeded = new ArrayList<>();
+        Map<String, List<FastNetChargingOnLeaseDataLine>> chargeRefLineMap = new HashMap<>();
+        chargingDataLines.forEach(cdl -> {
+            if (!matchingKeys.contains(cdl.getKeyToLeaseExternalReference())) {
+                notInMatchingRentRollDataLines.add(cdl);
+            }
+            final String key = cdl.getKeyToLeaseExternalReference() + "_" + cdl.getKeyToChargeReference();
+            if (!chargeRefLineMap.containsKey(key)) {
+                chargeRefLineMap.put(key, new ArrayList<>(Arrays.asList(cdl)));
+            } else {
+                chargeRefLineMap.get(key).add(cdl);
+            }
+            if (service.hasNoEffectAtAll(cdl)) {
+                noUpdateNeeded.add(cdl);
+            }
+        });
+
+        chargeRefLineMap.entrySet().removeIf(pair -> pair.getValue().size() == 1);
+        List<FastNetChargingOnLeaseDataLine> duplicateChargeReferences = chargeRefLineMap.values().stream().flatMap(List::stream).collect(Collectors.toList());
+
+        chargingDataLines.removeAll(duplicateChargeReferences);
+        chargingDataLines.removeAll(notInMatchingRentRollDataLines);
+        chargingDataLines.removeAll(noUpdateNeeded);
+
+        noUpdateNeeded.removeAll(duplicateChargeReferences);
+
+        duplicateChargeReferences.removeAll(notInMatchingRentRollDataLines);
+
+        fastnetImportManager.setDuplicateChargeReferences(duplicateChargeReferences);
+        fastnetImportManager.setNoUpdateNeeded(noUpdateNeeded);
+        fastnetImportManager.setLinesForItemUpdate(chargingDataLines.stream().filter(cl -> cl.getLeaseTermStartDate() != null).collect(Collectors.toList()));
+        fastnetImportManager.setLinesForItemCreation(chargingDataLines.stream().filter(cl -> cl.getLeaseTermStartDate() == null).collect(Collectors.toList()));
+    }
+
+}
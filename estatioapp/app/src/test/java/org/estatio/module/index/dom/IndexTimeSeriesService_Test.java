@@ -0,0 +1,182 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.index.dom;
+
+import java.util.Collections;
+
+import javax.transaction.Status;
+
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.auto.Mock;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexTimeSeriesService_Test {
+
+    @Rule
+    public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(JUnitRuleMockery2.Mode.INTERFACES_AND_CLASSES);
+
+    @Mock
+    IndexValueRepository mockIndexValueRepository;
+
+    IndexTimeSeriesService service;
+    Index index;
+
+    TransactionCompletionService.Completion reading;
+    TransactionCompletionService.Completion changing;
+    TransactionCompletionService.Completion current;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new Index();
+        index.setReference("ISTAT-FOI");
+
+        reading = new TransactionCompletionService.Completion();
+        changing = new TransactionCompletionService.Completion();
+
+        service = new IndexTimeSeriesService();
+        service.indexValueRepository = mockIndexValueRepository;
+        service.transactionCompletionService = new TransactionCompletionService() {
+            @Override
+            protected Completion currentCompletion() {
+                return current;
+            }
+        };
+    }
+
+    @Test
+    public void changes_are_shared_once_committed() throws Exception {
+
+        // expect
+        context.checking(new Expectations() {{
+            // once for the reading transaction before the commit, once for the changing transaction, once after commit
+            exactly(3).of(mockIndexValueRepository).findByIndex(index);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        // given
+        current = reading;
+        final IndexTimeSeries committed = service.timeSeriesFor(index);
+
+        // when
+        current = changing;
+        service.invalidate(index);
+        final IndexTimeSeries changed = service.timeSeriesFor(index);
+
+        // then the changing transaction uses a time series of its own...
+        assertThat(changed).isNotSameAs(committed);
+        assertThat(service.timeSeriesFor(index)).isSameAs(changed);
+
+        // ... and other sessions keep using the committed one
+        current = reading;
+        assertThat(service.timeSeriesFor(index)).isSameAs(committed);
+
+        // when
+        changing.afterCompletion(Status.STATUS_COMMITTED);
+
+        // then
+        assertThat(service.timeSeriesFor(index)).isNotSameAs(committed);
+    }
+
+    @Test
+    public void changes_rolled_back_are_not_discarded() throws Exception {
+
+        // expect
+        context.checking(new Expectations() {{
+            exactly(2).of(mockIndexValueRepository).findByIndex(index);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        // given
+        current = reading;
+        final IndexTimeSeries committed = service.timeSeriesFor(index);
+
+        current = changing;
+        service.invalidate(index);
+        service.timeSeriesFor(index);
+
+        // when
+        changing.afterCompletion(Status.STATUS_ROLLEDBACK);
+
+        // then
+        current = reading;
+        assertThat(service.timeSeriesFor(index)).isSameAs(committed);
+    }
+
+    @Test
+    public void not_cached_when_loaded_while_discarding() throws Exception {
+
+        // given
+        current = changing;
+        service.invalidate(index);
+
+        // expect
+        context.checking(new Expectations() {{
+            oneOf(mockIndexValueRepository).findByIndex(index);
+            will(new CustomAction("commits the changing transaction while loading") {
+                @Override
+                public Object invoke(final Invocation invocation) {
+                    changing.afterCompletion(Status.STATUS_COMMITTED);
+                    return Collections.emptyList();
+                }
+            });
+            oneOf(mockIndexValueRepository).findByIndex(index);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        // when
+        current = reading;
+        final IndexTimeSeries loadedWhileDiscarding = service.timeSeriesFor(index);
+
+        // then
+        final IndexTimeSeries reloaded = service.timeSeriesFor(index);
+        assertThat(reloaded).isNotSameAs(loadedWhileDiscarding);
+        assertThat(service.timeSeriesFor(index)).isSameAs(reloaded);
+    }
+
+    @Test
+    public void without_a_transaction_discarded_immediately() throws Exception {
+
+        // expect
+        context.checking(new Expectations() {{
+            exactly(2).of(mockIndexValueRepository).findByIndex(index);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        // given
+        current = null;
+        final IndexTimeSeries before = service.timeSeriesFor(index);
+
+        // when
+        service.invalidate(index);
+
+        // then
+        assertThat(service.timeSeriesFor(index)).isNotSameAs(before);
+    }
+
+}
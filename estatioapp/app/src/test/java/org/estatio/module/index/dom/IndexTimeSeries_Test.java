@@ -0,0 +1,141 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.index.dom;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexTimeSeries_Test {
+
+    IndexBase ib1990;
+    IndexBase ib2000;
+    IndexBase ib2010;
+    List<IndexValue> values;
+
+    @Before
+    public void setup() {
+        ib1990 = newIndexBase(null, new LocalDate(1990, 1, 1), null);
+        ib2000 = newIndexBase(ib1990, new LocalDate(2000, 1, 1), new BigDecimal("1.345"));
+        ib2010 = newIndexBase(ib2000, new LocalDate(2010, 1, 1), new BigDecimal("1.234"));
+
+        values = new ArrayList<>();
+        for (LocalDate date = new LocalDate(1995, 1, 1); date.isBefore(new LocalDate(2020, 1, 1)); date = date.plusMonths(1)) {
+            if (date.getMonthOfYear() == 6 && date.getYear() == 2005) {
+                continue; // a gap
+            }
+            final IndexBase indexBase = date.isBefore(ib2000.getStartDate()) ? ib1990 : date.isBefore(ib2010.getStartDate()) ? ib2000 : ib2010;
+            values.add(newIndexValue(indexBase, date, BigDecimal.valueOf(date.getYear() * 100 + date.getMonthOfYear(), 1)));
+        }
+        // a value that does not start on the first of the month
+        values.add(newIndexValue(ib2010, new LocalDate(2015, 3, 15), new BigDecimal("123.4")));
+    }
+
+    private static IndexBase newIndexBase(final IndexBase previous, final LocalDate startDate, final BigDecimal factor) {
+        final IndexBase indexBase = new IndexBase();
+        indexBase.setPrevious(previous);
+        indexBase.setStartDate(startDate);
+        indexBase.setFactor(factor);
+        return indexBase;
+    }
+
+    private static IndexValue newIndexValue(final IndexBase indexBase, final LocalDate startDate, final BigDecimal value) {
+        final IndexValue indexValue = new IndexValue();
+        indexValue.setIndexBase(indexBase);
+        indexValue.setStartDate(startDate);
+        indexValue.setValue(value);
+        return indexValue;
+    }
+
+    private IndexValue valueFor(final LocalDate date) {
+        return values.stream().filter(v -> v.getStartDate().equals(date)).findFirst().orElse(null);
+    }
+
+    public static class ValueForDate extends IndexTimeSeries_Test {
+
+        @Test
+        public void same_as_looking_up_the_index_value() {
+
+            // given
+            final IndexTimeSeries timeSeries = new IndexTimeSeries(Arrays.asList(ib2010, ib1990, ib2000), values);
+
+            // then
+            for (LocalDate date = new LocalDate(1993, 1, 1); date.isBefore(new LocalDate(2022, 1, 1)); date = date.plusDays(1)) {
+                final IndexValue indexValue = valueFor(date);
+                assertThat(timeSeries.valueForDate(date)).isEqualTo(indexValue == null ? null : indexValue.getValue());
+            }
+            assertThat(timeSeries.valueForDate(new LocalDate(2005, 6, 1))).isNull();
+            assertThat(timeSeries.valueForDate(new LocalDate(2015, 3, 15))).isEqualTo(new BigDecimal("123.4"));
+            assertThat(timeSeries.valueForDate(null)).isNull();
+            assertThat(timeSeries.getNumberOfValues()).isEqualTo(values.size());
+        }
+
+        @Test
+        public void when_empty() {
+
+            // given
+            final IndexTimeSeries timeSeries = new IndexTimeSeries(new ArrayList<>(), new ArrayList<>());
+
+            // then
+            assertThat(timeSeries.valueForDate(new LocalDate(2015, 1, 1))).isNull();
+            assertThat(timeSeries.rebaseFactorForDates(new LocalDate(2014, 1, 1), new LocalDate(2015, 1, 1))).isNull();
+        }
+    }
+
+    public static class RebaseFactorForDates extends IndexTimeSeries_Test {
+
+        @Test
+        public void same_as_factor_for_date_of_the_base_of_the_next_value() {
+
+            // given
+            final IndexTimeSeries timeSeries = new IndexTimeSeries(Arrays.asList(ib1990, ib2000, ib2010), values);
+
+            // then
+            for (LocalDate next = new LocalDate(2000, 1, 1); next.isBefore(new LocalDate(2020, 1, 1)); next = next.plusMonths(1)) {
+                final IndexValue nextValue = valueFor(next);
+                for (LocalDate base = new LocalDate(1990, 1, 1); base.isBefore(next); base = base.plusMonths(1)) {
+                    final BigDecimal expected = nextValue == null ? null : nextValue.getIndexBase().factorForDate(base);
+                    assertThat(timeSeries.rebaseFactorForDates(base, next)).isEqualTo(expected);
+                }
+            }
+        }
+
+        @Test
+        public void with_nulls() {
+
+            // given
+            final IndexTimeSeries timeSeries = new IndexTimeSeries(Arrays.asList(ib1990, ib2000, ib2010), values);
+
+            // then
+            assertThat(timeSeries.rebaseFactorForDates(null, new LocalDate(2011, 1, 1))).isNull();
+            assertThat(timeSeries.rebaseFactorForDates(new LocalDate(2001, 1, 1), null)).isNull();
+            assertThat(timeSeries.rebaseFactorForDates(new LocalDate(2001, 1, 1), new LocalDate(2005, 6, 1))).isNull();
+            assertThat(timeSeries.rebaseFactorForDates(new LocalDate(2001, 1, 1), new LocalDate(2011, 1, 1))).isEqualTo(new BigDecimal("1.234"));
+            assertThat(timeSeries.rebaseFactorForDates(new LocalDate(1999, 1, 1), new LocalDate(2011, 1, 1))).isEqualTo(new BigDecimal("1.659730"));
+        }
+    }
+
+}
@@ -151,4 +151,22 @@ public class IndexValueRepository_Test {
 
     }
 
+    public static class FindByIndex extends IndexValueRepository_Test {
+
+        @Test
+        public void happyCase() {
+
+            // when
+            indexValueRepository.findByIndex(index);
+
+            // then
+            assertThat(finderInteraction.getFinderMethod()).isEqualTo(FinderMethod.ALL_MATCHES);
+            assertThat(finderInteraction.getResultType()).isEqualTo(IndexValue.class);
+            assertThat(finderInteraction.getQueryName()).isEqualTo("findByIndex");
+            assertThat(finderInteraction.getArgumentsByParameterName().get("index")).isEqualTo((Object) index);
+            assertThat(finderInteraction.getArgumentsByParameterName()).hasSize(1);
+        }
+
+    }
+
 }
@@ -20,6 +20,7 @@ package org.estatio.module.index.dom;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Arrays;
 
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
@@ -53,6 +54,9 @@ public class Index_Test {
     @Mock
     IndexValueRepository mockIndexValueRepository;
 
+    @Mock
+    IndexTimeSeriesService mockIndexTimeSeriesService;
+
     @Rule
     public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(Mode.INTERFACES_AND_CLASSES);
 
@@ -62,6 +66,7 @@ public class Index_Test {
         nextDate = new LocalDate(2011, 1, 1);
         index = new Index();
         index.indexValueRepository = mockIndexValueRepository;
+        index.indexTimeSeriesService = mockIndexTimeSeriesService;
 
         ib1990 = new IndexBase();
         ib1990.setStartDate(new LocalDate(1990, 1, 1));
@@ -105,10 +110,8 @@ public class Index_Test {
         public void happyCase() {
             context.checking(new Expectations() {
                 {
-                    oneOf(mockIndexValueRepository).findByIndexAndStartDate(with(equal(index)), with(equal(new LocalDate(2001, 1, 1))));
-                    will(returnValue(iv1));
-                    oneOf(mockIndexValueRepository).findByIndexAndStartDate(with(equal(index)), with(equal(new LocalDate(2011, 1, 1))));
-                    will(returnValue(iv2));
+                    allowing(mockIndexTimeSeriesService).timeSeriesFor(index);
+                    will(returnValue(new IndexTimeSeries(Arrays.asList(ib1990, ib2000, ib2010), Arrays.asList(iv1, iv2))));
                 }
             });
             assertEquals(BigDecimal.valueOf(122.2), index.getIndexValueForDate(baseDate));
@@ -128,8 +131,8 @@ public class Index_Test {
         public void happyCase() {
             context.checking(new Expectations() {
                 {
-                    oneOf(mockIndexValueRepository).findByIndexAndStartDate(with(equal(index)), with(equal(new LocalDate(2011, 1, 1))));
-                    will(returnValue(iv2));
+                    oneOf(mockIndexTimeSeriesService).timeSeriesFor(index);
+                    will(returnValue(new IndexTimeSeries(Arrays.asList(ib1990, ib2000, ib2010), Arrays.asList(iv1, iv2))));
                 }
             });
             assertEquals(BigDecimal.valueOf(1.234), index.getRebaseFactorForDates(baseDate, nextDate));
@@ -139,8 +142,8 @@ public class Index_Test {
         public void withNull() {
             context.checking(new Expectations() {
                 {
-                    oneOf(mockIndexValueRepository).findByIndexAndStartDate(with(equal(index)), with(equal(new LocalDate(2011, 1, 1))));
-                    will(returnValue(null));
+                    oneOf(mockIndexTimeSeriesService).timeSeriesFor(index);
+                    will(returnValue(new IndexTimeSeries(Arrays.asList(ib1990, ib2000, ib2010), Arrays.asList(iv1))));
                 }
             });
             assertEquals(null, index.getRebaseFactorForDates(baseDate, nextDate));
@@ -0,0 +1,92 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TurnoverRentRule_Test {
+
+    public static class CalculateRent extends TurnoverRentRule_Test {
+
+        @Test
+        public void tiers() throws Exception {
+            test("0", 1000000d, 0.0);
+            test("5", 1000000d, 50000d);
+            test("500000;5;750000;6;7", 500000d, 25000d);
+            test("500000;5;750000;6;7", 600000d, 31000d);
+            test("500000;5;750000;6;7", 1000000d, 57500d);
+            test("500000;5;750000;6;7", 0.0, 0.0);
+            test("500000;5;750000;6;7", null, 0.0);
+        }
+
+        @Test
+        public void each_tier_is_rounded() throws Exception {
+            // 0.333 + 0.333 rather than 0.666
+            test("3.33;10;10", 6.66, 0.66);
+        }
+
+        @Test
+        public void when_invalid() throws Exception {
+            test(null, 1000000d, 0.0);
+            test("", 1000000d, 0.0);
+            test("500000;5", 1000000d, 0.0);
+            test("500000;x;7", 1000000d, 0.0);
+        }
+
+        private void test(String rule, Double in, Double expected) {
+            final BigDecimal input = in == null ? null : BigDecimal.valueOf(in);
+            assertThat(TurnoverRentRule.of(rule).calculateRent(input))
+                    .isEqualTo(BigDecimal.valueOf(expected).setScale(2));
+        }
+
+    }
+
+    public static class Of extends TurnoverRentRule_Test {
+
+        @Test
+        public void is_parsed_once() throws Exception {
+            assertThat(TurnoverRentRule.of("500000;5;7")).isSameAs(TurnoverRentRule.of("500000;5;7"));
+        }
+
+        @Test
+        public void cache_is_bounded() throws Exception {
+            for (int i = 0; i < TurnoverRentRule.MAX_CACHED * 2; i++) {
+                TurnoverRentRule.of(i + ";5;7");
+            }
+            assertThat(TurnoverRentRule.cachedCount()).isEqualTo(TurnoverRentRule.MAX_CACHED);
+        }
+
+        @Test
+        public void validity() throws Exception {
+            assertThat(TurnoverRentRule.of("5").isValid()).isTrue();
+            assertThat(TurnoverRentRule.of("5.00").isValid()).isTrue();
+            assertThat(TurnoverRentRule.of("50000;5;7").isValid()).isTrue();
+            assertThat(TurnoverRentRule.of("50000;5").isValid()).isFalse();
+            assertThat(TurnoverRentRule.of(" ").isValid()).isFalse();
+            assertThat(TurnoverRentRule.of("").isValid()).isFalse();
+            assertThat(TurnoverRentRule.of(null).isValid()).isFalse();
+        }
+
+    }
+
+}
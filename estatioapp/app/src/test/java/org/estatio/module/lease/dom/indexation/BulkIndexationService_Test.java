@@ -0,0 +1,259 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.indexation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
+import org.apache.isis.applib.services.xactn.TransactionService;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2.Mode;
+
+import org.incode.module.unittestsupport.dom.reflect.ReflectUtils;
+
+import org.estatio.module.base.platform.parallel.ParallelWorkService;
+import org.estatio.module.index.dom.Index;
+import org.estatio.module.index.dom.Indexable;
+import org.estatio.module.lease.dom.Lease;
+import org.estatio.module.lease.dom.LeaseItem;
+import org.estatio.module.lease.dom.LeaseItemType;
+import org.estatio.module.lease.dom.LeaseTermForIndexable;
+import org.estatio.module.lease.dom.LeaseTermForIndexableRepository;
+import org.estatio.module.lease.dom.LeaseTermStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkIndexationService_Test {
+
+    @Rule
+    public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(Mode.INTERFACES_AND_CLASSES);
+
+    @Mock
+    LeaseTermForIndexableRepository mockLeaseTermForIndexableRepository;
+
+    @Mock
+    BookmarkService mockBookmarkService;
+
+    @Mock
+    TransactionService mockTransactionService;
+
+    @Mock
+    Index mockIndex;
+
+    BulkIndexationService service;
+    List<List<Bookmark>> partitionsExecuted;
+    int bookmarks;
+
+    final LocalDate startDate = new LocalDate(2011, 1, 1);
+
+    @Before
+    public void setUp() throws Exception {
+        partitionsExecuted = new ArrayList<>();
+
+        service = new BulkIndexationService();
+        service.leaseTermForIndexableRepository = mockLeaseTermForIndexableRepository;
+        service.bookmarkService = mockBookmarkService;
+        service.transactionService = mockTransactionService;
+        service.parallelWorkService = new ParallelWorkService() {
+            @Override
+            public <T, R> List<Outcome<T, R>> executeEachInPartitions(
+                    final List<List<T>> partitions,
+                    final Function<T, R> work) {
+                final List<Outcome<T, R>> outcomes = new ArrayList<>();
+                for (List<T> partition : partitions) {
+                    partitionsExecuted.add(new ArrayList<>((List<Bookmark>) partition));
+                    for (T unit : partition) {
+                        outcomes.add(new Outcome<>(unit, work.apply(unit), null, 0L));
+                    }
+                }
+                return outcomes;
+            }
+        };
+
+        context.checking(new Expectations() {{
+            allowing(mockIndex).initialize(with(any(Indexable.class)));
+            allowing(mockIndex).getReference();
+            will(returnValue("ISTAT-FOI"));
+            allowing(mockTransactionService).nextTransaction();
+        }});
+    }
+
+    /**
+     * Two yearly terms of a rent item, the second using the next value of the index.
+     */
+    LeaseItem newItem(final String leaseReference) throws Exception {
+        final Lease lease = new Lease();
+        lease.setReference(leaseReference);
+        lease.setStartDate(new LocalDate(2011, 1, 1));
+
+        final LeaseItem item = new LeaseItem();
+        item.setType(LeaseItemType.RENT);
+        item.setSequence(BigInteger.ONE);
+        item.setStartDate(new LocalDate(2011, 1, 1));
+        lease.getItems().add(item);
+        item.setLease(lease);
+
+        final LeaseTermForIndexable first = newTerm(item, null, 2011, 137.6, 101.2, 1.373);
+        first.setBaseValue(BigDecimal.valueOf(23456.78));
+        newTerm(item, first, 2012, 101.2, 104.4, 1);
+        return item;
+    }
+
+    LeaseTermForIndexable newTerm(
+            final LeaseItem item,
+            final LeaseTermForIndexable previous,
+            final int year,
+            final double baseIndexValue,
+            final double nextIndexValue,
+            final double rebaseFactor) throws Exception {
+        final LeaseTermForIndexable term = new LeaseTermForIndexable();
+        ReflectUtils.inject(term, "indexationService", new IndexationService());
+        term.setStatus(LeaseTermStatus.NEW);
+        term.setStartDate(new LocalDate(year, 1, 1));
+        term.setEndDate(new LocalDate(year, 12, 31));
+        term.setIndexationMethod(IndexationMethod.LAST_KNOWN_INDEX);
+        term.setIndex(mockIndex);
+        term.setBaseIndexStartDate(new LocalDate(year - 1, 1, 1));
+        term.setNextIndexStartDate(new LocalDate(year, 1, 1));
+        term.setBaseIndexValue(BigDecimal.valueOf(baseIndexValue));
+        term.setNextIndexValue(BigDecimal.valueOf(nextIndexValue));
+        term.setRebaseFactor(BigDecimal.valueOf(rebaseFactor));
+
+        item.getTerms().add(term);
+        term.setLeaseItem(item);
+        if (previous != null) {
+            previous.setNext(term);
+            term.setPrevious(previous);
+        }
+        return term;
+    }
+
+    List<LeaseTermForIndexable> termsOf(final LeaseItem... items) {
+        final List<LeaseTermForIndexable> terms = new ArrayList<>();
+        for (LeaseItem item : items) {
+            item.getTerms().forEach(term -> terms.add((LeaseTermForIndexable) term));
+        }
+        return terms;
+    }
+
+    Bookmark bookmarked(final Object object) {
+        final Bookmark bookmark = new Bookmark("lease.Object", String.valueOf(++bookmarks));
+        context.checking(new Expectations() {{
+            allowing(mockBookmarkService).bookmarkFor(object);
+            will(returnValue(bookmark));
+            allowing(mockBookmarkService).lookup(bookmark);
+            will(returnValue(object));
+        }});
+        return bookmark;
+    }
+
+    public static class Reindex extends BulkIndexationService_Test {
+
+        @Test
+        public void same_indexed_values_as_verifying_each_item() throws Exception {
+
+            // given
+            final LeaseItem itemA = newItem("A-LEASE");
+            final LeaseItem itemB = newItem("B-LEASE");
+            final LeaseItem verifiedA = newItem("A-LEASE");
+            final LeaseItem verifiedB = newItem("B-LEASE");
+
+            final List<LeaseTermForIndexable> terms = termsOf(itemA, itemB);
+            final Bookmark itemABookmark = bookmarked(itemA);
+            final Bookmark itemBBookmark = bookmarked(itemB);
+            final List<Bookmark> termBookmarks = new ArrayList<>();
+            for (LeaseTermForIndexable term : terms) {
+                termBookmarks.add(bookmarked(term));
+            }
+            assertThat(itemABookmark).isNotEqualTo(itemBBookmark);
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockLeaseTermForIndexableRepository)
+                        .findByIndexAndStatusAndIndexStartDateOnOrAfter(mockIndex, LeaseTermStatus.NEW, startDate);
+                // in no particular order
+                will(returnValue(Arrays.asList(terms.get(3), terms.get(0), terms.get(2), terms.get(1))));
+            }});
+
+            // when
+            final BulkIndexationService.Report report = service.reindex(mockIndex, startDate);
+            // ... and as when an index value is updated
+            termsOf(verifiedA).get(0).verifyUntil(new LocalDate(2013, 1, 1));
+            termsOf(verifiedB).get(0).verifyUntil(new LocalDate(2013, 1, 1));
+
+            // then one partition per item, the terms of each in order
+            assertThat(partitionsExecuted).containsExactly(
+                    termBookmarks.subList(0, 2),
+                    termBookmarks.subList(2, 4));
+
+            // and the same values
+            final List<LeaseTermForIndexable> verified = termsOf(verifiedA, verifiedB);
+            for (int i = 0; i < terms.size(); i++) {
+                assertThat(verified.get(i).getIndexedValue()).isNotNull();
+                assertThat(terms.get(i).getIndexedValue()).isEqualTo(verified.get(i).getIndexedValue());
+                assertThat(terms.get(i).getBaseValue()).isEqualTo(verified.get(i).getBaseValue());
+                assertThat(terms.get(i).getEffectiveIndexedValue()).isEqualTo(verified.get(i).getEffectiveIndexedValue());
+            }
+
+            assertThat(report.getTermsFound()).isEqualTo(4);
+            assertThat(report.getTermsReindexed()).isEqualTo(4);
+            assertThat(report.getTermsChanged()).isEqualTo(4);
+            assertThat(report.getTermsFailed()).isEqualTo(0);
+        }
+
+        @Test
+        public void unchanged_when_reindexed_again() throws Exception {
+
+            // given
+            final LeaseItem item = newItem("A-LEASE");
+            final List<LeaseTermForIndexable> terms = termsOf(item);
+            bookmarked(item);
+            terms.forEach(this::bookmarked);
+
+            // expect
+            context.checking(new Expectations() {{
+                exactly(2).of(mockLeaseTermForIndexableRepository)
+                        .findByIndexAndStatusAndIndexStartDateOnOrAfter(mockIndex, LeaseTermStatus.NEW, startDate);
+                will(returnValue(terms));
+            }});
+
+            // when
+            service.reindex(mockIndex, startDate);
+            final BulkIndexationService.Report report = service.reindex(mockIndex, startDate);
+
+            // then
+            assertThat(report.getTermsReindexed()).isEqualTo(2);
+            assertThat(report.getTermsChanged()).isEqualTo(0);
+        }
+    }
+
+}
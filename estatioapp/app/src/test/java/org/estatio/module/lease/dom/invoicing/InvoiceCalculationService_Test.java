@@ -20,16 +20,23 @@ package org.estatio.module.lease.dom.invoicing;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
 import org.jmock.auto.Mock;
+import org.jmock.lib.action.CustomAction;
 import org.joda.time.LocalDate;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
 import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2.Mode;
 
@@ -40,14 +47,19 @@ import org.estatio.module.agreement.dom.AgreementRoleRepository;
 import org.estatio.module.agreement.dom.role.AgreementRoleType;
 import org.estatio.module.agreement.dom.role.AgreementRoleTypeRepository;
 import org.estatio.module.agreement.dom.type.AgreementTypeRepository;
+import org.estatio.module.asset.dom.Property;
+import org.estatio.module.base.platform.parallel.ParallelWorkService;
 import org.estatio.module.charge.dom.Charge;
 import org.estatio.module.invoice.dom.InvoiceRunType;
 import org.estatio.module.lease.dom.InvoicingFrequency;
 import org.estatio.module.lease.dom.Lease;
 import org.estatio.module.lease.dom.LeaseItem;
+import org.estatio.module.lease.dom.LeaseItemType;
+import org.estatio.module.lease.dom.LeaseRepository;
 import org.estatio.module.lease.dom.LeaseTerm;
 import org.estatio.module.lease.dom.LeaseTermForTesting;
 import org.estatio.module.lease.dom.LeaseTermValueType;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotalService;
 import org.estatio.module.lease.dom.settings.LeaseInvoicingSettingsService;
 import org.estatio.module.tax.dom.Tax;
 import org.estatio.module.tax.dom.TaxRate;
@@ -467,6 +479,205 @@ public class InvoiceCalculationService_Test {
 
     }
 
+    public static class CalculateAndInvoiceRun extends InvoiceCalculationService_Test {
+
+        @Rule
+        public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(Mode.INTERFACES_AND_CLASSES);
+
+        @Mock
+        InvoiceForLeaseRepository mockInvoiceForLeaseRepository;
+
+        @Mock
+        InvoiceItemForLeaseRepository mockInvoiceItemForLeaseRepository;
+
+        @Mock
+        LeaseRepository mockLeaseRepository;
+
+        @Mock
+        BookmarkService mockBookmarkService;
+
+        @Mock
+        InvoiceSummaryTotalService mockInvoiceSummaryTotalService;
+
+        Property property;
+        Lease leaseA;
+        Lease leaseB;
+        InvoiceCalculationParameters parameters;
+
+        List<Lease> calculatedLeases;
+        List<InvoiceCalculationParameters> calculatedParameters;
+        List<Object> executedUnits;
+
+        InvoiceCalculationService service;
+
+        @Before
+        public void setUp() throws Exception {
+            property = new Property();
+            property.setReference("PROP");
+            leaseA = newLease("A");
+            leaseB = newLease("B");
+            parameters = InvoiceCalculationParameters.builder()
+                    .property(property)
+                    .leaseItemType(LeaseItemType.RENT)
+                    .invoiceRunType(InvoiceRunType.NORMAL_RUN)
+                    .invoiceDueDate(new LocalDate(2018, 1, 1))
+                    .startDueDate(new LocalDate(2018, 1, 1))
+                    .nextDueDate(new LocalDate(2018, 1, 2))
+                    .build();
+
+            calculatedLeases = new ArrayList<>();
+            calculatedParameters = new ArrayList<>();
+            executedUnits = new ArrayList<>();
+
+            service = new InvoiceCalculationService() {
+                @Override
+                void calculateAndInvoice(
+                        final Lease lease,
+                        final InvoiceCalculationParameters parameters,
+                        final String runId,
+                        final InvoicedValueLedger ledger) {
+                    calculatedLeases.add(lease);
+                    calculatedParameters.add(parameters);
+                    if (lease.getReference().equals("B-WORKER")) {
+                        throw new IllegalStateException("cannot calculate");
+                    }
+                }
+            };
+            service.invoiceForLeaseRepository = mockInvoiceForLeaseRepository;
+            service.invoiceItemForLeaseRepository = mockInvoiceItemForLeaseRepository;
+            service.leaseRepository = mockLeaseRepository;
+            service.bookmarkService = mockBookmarkService;
+            service.invoiceSummaryTotalService = mockInvoiceSummaryTotalService;
+            service.parallelWorkService = new ParallelWorkService() {
+                @Override
+                public <T, R> List<Outcome<T, R>> executeEach(final List<T> units, final Function<T, R> work) {
+                    final List<Outcome<T, R>> outcomes = new ArrayList<>();
+                    for (T unit : units) {
+                        executedUnits.add(unit);
+                        try {
+                            outcomes.add(new Outcome<>(unit, work.apply(unit), null, 0L));
+                        } catch (RuntimeException ex) {
+                            outcomes.add(new Outcome<>(unit, null, ex, 0L));
+                        }
+                    }
+                    return outcomes;
+                }
+            };
+
+            context.checking(new Expectations() {{
+                allowing(mockLeaseRepository).findLeasesByProperty(property);
+                will(returnValue(Arrays.asList(leaseB, leaseA)));
+                allowing(mockInvoiceItemForLeaseRepository).ledgerFor(with(any(List.class)));
+            }});
+        }
+
+        private static Lease newLease(final String reference) {
+            final Lease lease = new Lease();
+            lease.setReference(reference);
+            return lease;
+        }
+
+        @Test
+        public void serial_by_default() throws Exception {
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockInvoiceForLeaseRepository).removeRuns(parameters);
+                never(mockInvoiceSummaryTotalService);
+            }});
+
+            // when
+            final InvoiceCalculationService.Run run = service.calculateAndInvoiceRun(parameters);
+
+            // then
+            assertThat(executedUnits).isEmpty();
+            assertThat(calculatedLeases).containsExactly(leaseB, leaseA);
+            assertThat(calculatedParameters).containsOnly(parameters);
+            assertThat(run.runId()).isNotNull();
+            assertThat(run.failuresByLeaseReference()).isEmpty();
+        }
+
+        @Test
+        public void in_parallel_when_enabled() throws Exception {
+
+            // given
+            service.parallel = true;
+
+            final Bookmark bookmarkA = new Bookmark("org.estatio.dom.lease.Lease", "1");
+            final Bookmark bookmarkB = new Bookmark("org.estatio.dom.lease.Lease", "2");
+            // the objects of the workers' sessions
+            final Lease workerLeaseA = newLease("A-WORKER");
+            final Lease workerLeaseB = newLease("B-WORKER");
+
+            final List<Predicate<InvoiceForLease>> filters = new ArrayList<>();
+            final InvoiceSummaryTotalService.DeferredKeys summaryKeys = new InvoiceSummaryTotalService.DeferredKeys();
+
+            // expect
+            context.checking(new Expectations() {{
+                // the summaries changed by the units are recalculated once, by the calling transaction
+                oneOf(mockInvoiceSummaryTotalService).newDeferredKeys();
+                will(returnValue(summaryKeys));
+                exactly(2).of(mockInvoiceSummaryTotalService).deferRefreshTo(summaryKeys);
+                oneOf(mockInvoiceSummaryTotalService).refreshBeforeCommit(summaryKeys);
+
+                allowing(mockBookmarkService).bookmarkFor(leaseA);
+                will(returnValue(bookmarkA));
+                allowing(mockBookmarkService).bookmarkFor(leaseB);
+                will(returnValue(bookmarkB));
+                allowing(mockBookmarkService).lookup(bookmarkA);
+                will(returnValue(workerLeaseA));
+                allowing(mockBookmarkService).lookup(bookmarkB);
+                will(returnValue(workerLeaseB));
+
+                // the previous invoices of each lease are removed by its own unit...
+                oneOf(mockInvoiceForLeaseRepository).removeRuns(with(any(InvoiceCalculationParameters.class)), with(same(workerLeaseA)));
+                oneOf(mockInvoiceForLeaseRepository).removeRuns(with(any(InvoiceCalculationParameters.class)), with(same(workerLeaseB)));
+                // ... and those of any other lease once all units are done
+                oneOf(mockInvoiceForLeaseRepository).removeRuns(with(same(parameters)), with(any(Predicate.class)));
+                will(new CustomAction("capture filter") {
+                    @Override
+                    public Object invoke(final Invocation invocation) {
+                        filters.add((Predicate<InvoiceForLease>) invocation.getParameter(1));
+                        return null;
+                    }
+                });
+                never(mockInvoiceForLeaseRepository).removeRuns(parameters);
+            }});
+
+            // when
+            final InvoiceCalculationService.Run run = service.calculateAndInvoiceRun(parameters);
+
+            // then the units are given bookmarks, in order of reference
+            assertThat(executedUnits).containsExactly(bookmarkA, bookmarkB);
+
+            // and each unit calculates its own lease with parameters of its own
+            assertThat(calculatedLeases).containsExactly(workerLeaseA, workerLeaseB);
+            final InvoiceCalculationParameters workerParameters = calculatedParameters.get(0);
+            assertThat(workerParameters).isNotSameAs(parameters);
+            assertThat(workerParameters.leases()).containsExactly(workerLeaseA);
+            assertThat(workerParameters.leaseItemTypes()).containsExactly(LeaseItemType.RENT);
+            assertThat(workerParameters.invoiceRunType()).isEqualTo(InvoiceRunType.NORMAL_RUN);
+            assertThat(workerParameters.invoiceDueDate()).isEqualTo(new LocalDate(2018, 1, 1));
+            assertThat(workerParameters.dueDateRange()).isEqualTo(parameters.dueDateRange());
+
+            // and the failing lease is reported
+            assertThat(run.failuresByLeaseReference()).containsOnlyKeys("B-WORKER");
+
+            // and only the previous invoices of leases that did not fail are removed afterwards
+            final Predicate<InvoiceForLease> filter = filters.get(0);
+            assertThat(filter.test(newInvoice(run.runId(), workerLeaseA))).isFalse();
+            assertThat(filter.test(newInvoice("previous", workerLeaseB))).isFalse();
+            assertThat(filter.test(newInvoice("previous", newLease("C")))).isTrue();
+        }
+
+        private static InvoiceForLease newInvoice(final String runId, final Lease lease) {
+            final InvoiceForLease invoice = new InvoiceForLease();
+            invoice.setRunId(runId);
+            invoice.setLease(lease);
+            return invoice;
+        }
+    }
+
     public static class RightLeftover extends InvoiceCalculationService_Test {
 
         @Test
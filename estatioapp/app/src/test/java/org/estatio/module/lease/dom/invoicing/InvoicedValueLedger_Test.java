@@ -0,0 +1,112 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.invoicing;
+
+import java.math.BigDecimal;
+
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.incode.module.base.dom.valuetypes.LocalDateInterval;
+
+import org.estatio.module.lease.dom.LeaseTermForTesting;
+import org.estatio.module.lease.dom.LeaseTermValueType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InvoicedValueLedger_Test {
+
+    LeaseTermForTesting leaseTerm;
+    LeaseTermForTesting otherLeaseTerm;
+    InvoicedValueLedger ledger;
+
+    final LocalDateInterval q1 = LocalDateInterval.including(new LocalDate(2014, 1, 1), new LocalDate(2014, 3, 31));
+    final LocalDateInterval q2 = LocalDateInterval.including(new LocalDate(2014, 4, 1), new LocalDate(2014, 6, 30));
+
+    @Before
+    public void setUp() throws Exception {
+        leaseTerm = new LeaseTermForTesting();
+        otherLeaseTerm = new LeaseTermForTesting();
+        ledger = new InvoicedValueLedger();
+    }
+
+    private InvoiceItemForLease item(
+            final LeaseTermForTesting leaseTerm,
+            final LocalDateInterval interval,
+            final LocalDateInterval effectiveInterval,
+            final String netAmount) {
+        final InvoiceItemForLease item = new InvoiceItemForLease();
+        item.setLeaseTerm(leaseTerm);
+        item.setStartDate(interval.startDate());
+        item.setEndDate(interval.endDate());
+        item.setCalculationStartDate(interval.startDate());
+        item.setCalculationEndDate(interval.endDate());
+        item.setEffectiveStartDate(effectiveInterval.startDate());
+        item.setEffectiveEndDate(effectiveInterval.endDate());
+        item.setNetAmount(new BigDecimal(netAmount));
+        return item;
+    }
+
+    public static class InvoicedValue extends InvoicedValueLedger_Test {
+
+        @Test
+        public void sums_items_of_term_and_interval() throws Exception {
+            ledger.record(item(leaseTerm, q1, q1, "100.00"));
+            ledger.record(item(leaseTerm, q1, q1, "-20.00"));
+            ledger.record(item(leaseTerm, q2, q2, "100.00"));
+            ledger.record(item(otherLeaseTerm, q1, q1, "50.00"));
+
+            assertThat(ledger.invoicedValue(leaseTerm, q1)).isEqualByComparingTo("80.00");
+            assertThat(ledger.invoicedValue(otherLeaseTerm, q1)).isEqualByComparingTo("50.00");
+            assertThat(ledger.invoicedValue(otherLeaseTerm, q2)).isEqualByComparingTo("0");
+        }
+
+        @Test
+        public void fixed_terms_sum_all_intervals() throws Exception {
+            leaseTerm.setLeaseTermValueType(LeaseTermValueType.FIXED);
+            ledger.record(item(leaseTerm, q1, q1, "100.00"));
+            ledger.record(item(leaseTerm, q2, q2, "100.00"));
+
+            assertThat(ledger.invoicedValue(leaseTerm, q2)).isEqualByComparingTo("200.00");
+        }
+
+        @Test
+        public void ignores_items_without_term() throws Exception {
+            ledger.record(item(null, q1, q1, "100.00"));
+
+            assertThat(ledger.invoicedValue(leaseTerm, q1)).isEqualByComparingTo("0");
+        }
+    }
+
+    public static class IsInvoicedForEffectiveInterval extends InvoicedValueLedger_Test {
+
+        @Test
+        public void matches_on_calculation_or_effective_dates() throws Exception {
+            final LocalDateInterval partOfQ1 = LocalDateInterval.including(new LocalDate(2014, 2, 1), new LocalDate(2014, 3, 31));
+            ledger.record(item(leaseTerm, q1, partOfQ1, "100.00"));
+
+            assertThat(ledger.isInvoicedForEffectiveInterval(leaseTerm, q1)).isTrue();
+            assertThat(ledger.isInvoicedForEffectiveInterval(leaseTerm, partOfQ1)).isTrue();
+            assertThat(ledger.isInvoicedForEffectiveInterval(leaseTerm, q2)).isFalse();
+            assertThat(ledger.isInvoicedForEffectiveInterval(otherLeaseTerm, q1)).isFalse();
+        }
+    }
+
+}
@@ -0,0 +1,560 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.invoicing.summary;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.transaction.Status;
+
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.auto.Mock;
+import org.jmock.lib.action.CustomAction;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+
+import org.estatio.module.asset.dom.Property;
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+import org.estatio.module.invoice.dom.Invoice;
+import org.estatio.module.invoice.dom.InvoiceItem;
+import org.estatio.module.invoice.dom.InvoiceRepository;
+import org.estatio.module.invoice.dom.InvoiceStatus;
+import org.estatio.module.lease.dom.Lease;
+import org.estatio.module.lease.dom.invoicing.InvoiceForLease;
+import org.estatio.module.lease.dom.invoicing.InvoiceItemForLease;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal.Key;
+import org.estatio.module.lease.dom.invoicing.summary.InvoiceSummaryTotal.SummaryType;
+import org.estatio.module.party.dom.Organisation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InvoiceSummaryTotalService_Test {
+
+    @Rule
+    public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(JUnitRuleMockery2.Mode.INTERFACES_AND_CLASSES);
+
+    @Mock
+    InvoiceSummaryTotalRepository mockInvoiceSummaryTotalRepository;
+
+    @Mock
+    InvoiceRepository mockInvoiceRepository;
+
+    InvoiceForLease invoice;
+    Organisation seller;
+
+    static final Key DUE_DATE_STATUS_KEY =
+            Key.forPropertyDueDateStatus("/ITA/CAR/SELLER", "SELLER", new LocalDate(2018, 1, 1), InvoiceStatus.NEW);
+    static final Key INVOICE_DATE_KEY =
+            Key.forPropertyInvoiceDate("/ITA/CAR/SELLER", "SELLER", null);
+
+    @Before
+    public void setUp() throws Exception {
+        seller = new Organisation();
+        seller.setReference("SELLER");
+
+        invoice = new InvoiceForLease();
+        invoice.setApplicationTenancyPath("/ITA/CAR/SELLER");
+        invoice.setSeller(seller);
+        invoice.setDueDate(new LocalDate(2018, 1, 1));
+        invoice.setStatus(InvoiceStatus.NEW);
+        invoice.setFixedAsset(new Property());
+    }
+
+    private static InvoiceItem item(final String description, final String netAmount, final String vatAmount) {
+        final InvoiceItemForLease item = new InvoiceItemForLease();
+        item.setDescription(description);
+        item.setNetAmount(netAmount == null ? null : new BigDecimal(netAmount));
+        item.setVatAmount(vatAmount == null ? null : new BigDecimal(vatAmount));
+        return item;
+    }
+
+    private void withItems(final InvoiceItem... items) {
+        withItems(invoice, items);
+    }
+
+    private static void withItems(final InvoiceForLease invoice, final InvoiceItem... items) {
+        final SortedSet<InvoiceItem> itemSet = new TreeSet<>(Comparator.comparing(InvoiceItem::getDescription));
+        for (InvoiceItem item : items) {
+            itemSet.add(item);
+        }
+        invoice.setItems(itemSet);
+    }
+
+    private static InvoiceSummaryTotal summaryTotal(final Key key, final int total, final String netAmount) {
+        final InvoiceSummaryTotal summaryTotal = new InvoiceSummaryTotal();
+        summaryTotal.setKey(key);
+        summaryTotal.setTotal(total);
+        summaryTotal.setNetAmount(netAmount == null ? null : new BigDecimal(netAmount));
+        return summaryTotal;
+    }
+
+    public static class Keys extends InvoiceSummaryTotalService_Test {
+
+        @Test
+        public void by_property_due_date_status_and_by_property_invoice_date() throws Exception {
+
+            // when
+            final Set<Key> keys = InvoiceSummaryTotalService.keysOf(invoice);
+
+            // then
+            assertThat(keys).containsExactly(DUE_DATE_STATUS_KEY, INVOICE_DATE_KEY);
+        }
+
+        @Test
+        public void by_invoice_run_only_when_for_a_lease_and_fixed_asset() throws Exception {
+
+            // given
+            invoice.setRunId("run-1");
+            invoice.setSeller(null);
+
+            // then
+            assertThat(InvoiceSummaryTotalService.keysOf(invoice)).isEmpty();
+
+            // and given
+            invoice.setLease(new Lease());
+
+            // then
+            assertThat(InvoiceSummaryTotalService.keysOf(invoice))
+                    .containsExactly(Key.forInvoiceRun("/ITA/CAR/SELLER", "run-1"));
+
+            // and given
+            invoice.setFixedAsset(null);
+
+            // then
+            assertThat(InvoiceSummaryTotalService.keysOf(invoice)).isEmpty();
+        }
+
+    }
+
+    public static class StaleKeys extends InvoiceSummaryTotalService_Test {
+
+        TransactionCompletionService.Completion completion;
+        List<Set<Key>> refreshed;
+        InvoiceSummaryTotalService service;
+
+        @Before
+        public void setUpService() throws Exception {
+            completion = new TransactionCompletionService.Completion();
+            refreshed = new ArrayList<>();
+            service = new InvoiceSummaryTotalService() {
+                @Override
+                void refresh(final Set<Key> keys) {
+                    refreshed.add(new LinkedHashSet<>(keys));
+                }
+            };
+            service.transactionCompletionService = new TransactionCompletionService() {
+                @Override
+                protected Completion currentCompletion() {
+                    return completion;
+                }
+            };
+        }
+
+        @Test
+        public void keys_before_and_after_the_change_are_refreshed_once_before_commit() throws Exception {
+
+            // when
+            final InvoiceForLease.UpdatingLifecycleEvent updating = new InvoiceForLease.UpdatingLifecycleEvent();
+            updating.setSource(invoice);
+            service.on(updating);
+
+            invoice.setStatus(InvoiceStatus.APPROVED);
+
+            final InvoiceForLease.UpdatedLifecycleEvent updated = new InvoiceForLease.UpdatedLifecycleEvent();
+            updated.setSource(invoice);
+            service.on(updated);
+
+            // then
+            assertThat(refreshed).isEmpty();
+
+            // and when
+            completion.beforeCompletion();
+
+            // then
+            assertThat(refreshed).hasSize(1);
+            assertThat(refreshed.get(0)).containsExactly(
+                    DUE_DATE_STATUS_KEY,
+                    INVOICE_DATE_KEY,
+                    Key.forPropertyDueDateStatus("/ITA/CAR/SELLER", "SELLER", new LocalDate(2018, 1, 1), InvoiceStatus.APPROVED));
+        }
+
+        @Test
+        public void changes_to_items_refresh_the_keys_of_their_invoice() throws Exception {
+
+            // given
+            final InvoiceItemForLease item = new InvoiceItemForLease();
+            item.setInvoice(invoice);
+
+            // when
+            final InvoiceItemForLease.PersistedLifecycleEvent persisted = new InvoiceItemForLease.PersistedLifecycleEvent();
+            persisted.setSource(item);
+            service.on(persisted);
+            service.on(persisted);
+            completion.beforeCompletion();
+
+            // then
+            assertThat(refreshed).hasSize(1);
+            assertThat(refreshed.get(0)).containsExactly(DUE_DATE_STATUS_KEY, INVOICE_DATE_KEY);
+        }
+
+        @Test
+        public void nothing_to_refresh_when_rolled_back() throws Exception {
+
+            // given
+            final InvoiceForLease.PersistedLifecycleEvent persisted = new InvoiceForLease.PersistedLifecycleEvent();
+            persisted.setSource(invoice);
+            service.on(persisted);
+
+            // when
+            completion.afterCompletion(Status.STATUS_ROLLEDBACK);
+
+            // then
+            assertThat(refreshed).isEmpty();
+        }
+
+        @Test
+        public void deferred_keys_are_refreshed_by_the_transaction_that_started_the_run() throws Exception {
+
+            // given
+            final InvoiceSummaryTotalService.DeferredKeys summaryKeys = service.newDeferredKeys();
+
+            // when a unit of the run changes an invoice
+            service.deferRefreshTo(summaryKeys);
+            final InvoiceForLease.PersistedLifecycleEvent persisted = new InvoiceForLease.PersistedLifecycleEvent();
+            persisted.setSource(invoice);
+            service.on(persisted);
+            completion.beforeCompletion();
+            completion.afterCompletion(Status.STATUS_COMMITTED);
+
+            // then
+            assertThat(refreshed).isEmpty();
+
+            // and when the transaction that started the run is done
+            completion = new TransactionCompletionService.Completion();
+            service.refreshBeforeCommit(summaryKeys);
+            completion.beforeCompletion();
+
+            // then
+            assertThat(refreshed).hasSize(1);
+            assertThat(refreshed.get(0)).containsExactly(DUE_DATE_STATUS_KEY, INVOICE_DATE_KEY);
+        }
+    }
+
+    public static class Refresh extends InvoiceSummaryTotalService_Test {
+
+        List<InvoiceForLease> invoices;
+        InvoiceSummaryTotalService service;
+
+        @Before
+        public void setUpService() throws Exception {
+            invoices = new ArrayList<>();
+            service = new InvoiceSummaryTotalService() {
+                @Override
+                List<InvoiceForLease> invoicesFor(final Key key) {
+                    return invoices;
+                }
+            };
+            service.invoiceSummaryTotalRepository = mockInvoiceSummaryTotalRepository;
+        }
+
+        @Test
+        public void creates_total_when_missing() throws Exception {
+
+            // given
+            withItems(item("a", "100.00", "22.00"));
+            invoices.add(invoice);
+            final InvoiceSummaryTotal created = new InvoiceSummaryTotal();
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockInvoiceSummaryTotalRepository).findByKeyForUpdate(DUE_DATE_STATUS_KEY);
+                will(returnValue(null));
+                oneOf(mockInvoiceSummaryTotalRepository).create(DUE_DATE_STATUS_KEY);
+                will(returnValue(created));
+            }});
+
+            // when
+            service.refresh(Collections.singleton(DUE_DATE_STATUS_KEY));
+
+            // then
+            assertThat(created.getTotal()).isEqualTo(1);
+            assertThat(created.getNetAmount()).isEqualByComparingTo("100.00");
+            assertThat(created.getVatAmount()).isEqualByComparingTo("22.00");
+        }
+
+        @Test
+        public void updates_existing_total() throws Exception {
+
+            // given
+            withItems(item("a", "100.00", null));
+            invoices.add(invoice);
+            final InvoiceSummaryTotal existing = summaryTotal(DUE_DATE_STATUS_KEY, 3, "300.00");
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockInvoiceSummaryTotalRepository).findByKeyForUpdate(DUE_DATE_STATUS_KEY);
+                will(returnValue(existing));
+                never(mockInvoiceSummaryTotalRepository).create(DUE_DATE_STATUS_KEY);
+            }});
+
+            // when
+            service.refresh(Collections.singleton(DUE_DATE_STATUS_KEY));
+
+            // then
+            assertThat(existing.getTotal()).isEqualTo(1);
+            assertThat(existing.getNetAmount()).isEqualByComparingTo("100.00");
+        }
+
+        @Test
+        public void locks_keys_in_the_same_order_whatever_the_order_they_changed_in() throws Exception {
+
+            // given
+            final List<Key> locked = new ArrayList<>();
+
+            // expect
+            context.checking(new Expectations() {{
+                allowing(mockInvoiceSummaryTotalRepository).findByKeyForUpdate(with(any(Key.class)));
+                will(new CustomAction("record lock") {
+                    @Override
+                    public Object invoke(final Invocation invocation) {
+                        locked.add((Key) invocation.getParameter(0));
+                        return null;
+                    }
+                });
+            }});
+
+            // when
+            service.refresh(new LinkedHashSet<>(Arrays.asList(INVOICE_DATE_KEY, DUE_DATE_STATUS_KEY)));
+            final List<Key> lockedFirst = new ArrayList<>(locked);
+            locked.clear();
+            service.refresh(new LinkedHashSet<>(Arrays.asList(DUE_DATE_STATUS_KEY, INVOICE_DATE_KEY)));
+
+            // then
+            assertThat(locked).hasSize(2);
+            assertThat(locked).isEqualTo(lockedFirst);
+        }
+
+        @Test
+        public void removes_totals_once_no_invoices_are_left() throws Exception {
+
+            // given
+            final InvoiceSummaryTotal existing = summaryTotal(DUE_DATE_STATUS_KEY, 1, "100.00");
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockInvoiceSummaryTotalRepository).findByKeyForUpdate(DUE_DATE_STATUS_KEY);
+                will(returnValue(existing));
+                oneOf(mockInvoiceSummaryTotalRepository).delete(existing);
+            }});
+
+            // when
+            service.refresh(Collections.singleton(DUE_DATE_STATUS_KEY));
+        }
+
+        @Test
+        public void invoice_run_only_counts_invoices_for_a_lease_and_fixed_asset() throws Exception {
+
+            // given
+            invoice.setRunId("run-1");
+            invoice.setLease(new Lease());
+            withItems(item("a", "100.00", null));
+
+            final InvoiceForLease withoutFixedAsset = new InvoiceForLease();
+            withoutFixedAsset.setApplicationTenancyPath("/ITA/CAR/SELLER");
+            withoutFixedAsset.setRunId("run-1");
+            withoutFixedAsset.setLease(new Lease());
+            withItems(withoutFixedAsset, item("a", "50.00", null));
+
+            invoices.add(invoice);
+            invoices.add(withoutFixedAsset);
+
+            // when
+            final InvoiceSummaryTotalService.Totals totals =
+                    service.totalsFor(Key.forInvoiceRun("/ITA/CAR/SELLER", "run-1"));
+
+            // then
+            assertThat(totals.total).isEqualTo(1);
+            assertThat(totals.netAmount).isEqualByComparingTo("100.00");
+        }
+    }
+
+    public static class Verify extends InvoiceSummaryTotalService_Test {
+
+        InvoiceSummaryTotalService service;
+
+        @Before
+        public void setUpService() throws Exception {
+            service = new InvoiceSummaryTotalService();
+            service.invoiceSummaryTotalRepository = mockInvoiceSummaryTotalRepository;
+            service.invoiceRepository = mockInvoiceRepository;
+        }
+
+        private void expectTotals(final InvoiceSummaryTotal... summaryTotals) {
+            context.checking(new Expectations() {{
+                allowing(mockInvoiceRepository).allInvoices();
+                will(returnValue(Collections.<Invoice>singletonList(invoice)));
+                for (SummaryType summaryType : SummaryType.values()) {
+                    final List<InvoiceSummaryTotal> ofType = new ArrayList<>();
+                    for (InvoiceSummaryTotal summaryTotal : summaryTotals) {
+                        if (summaryTotal.getSummaryType() == summaryType) {
+                            ofType.add(summaryTotal);
+                        }
+                    }
+                    allowing(mockInvoiceSummaryTotalRepository).findBySummaryType(summaryType);
+                    will(returnValue(ofType));
+                }
+            }});
+        }
+
+        @Test
+        public void consistent() throws Exception {
+
+            // given
+            withItems(item("a", "100.00", null));
+            expectTotals(
+                    summaryTotal(DUE_DATE_STATUS_KEY, 1, "100.00"),
+                    summaryTotal(INVOICE_DATE_KEY, 1, "100.00"));
+
+            // when
+            final InvoiceSummaryTotalService.Verification verification = service.verify(false);
+
+            // then
+            assertThat(verification.isConsistent()).isTrue();
+            assertThat(verification.getKeys()).isEqualTo(2);
+        }
+
+        @Test
+        public void missing_different_and_surplus() throws Exception {
+
+            // given
+            withItems(item("a", "100.00", null));
+            final Key surplusKey = Key.forInvoiceRun("/ITA/CAR/SELLER", "run-1");
+            expectTotals(
+                    summaryTotal(DUE_DATE_STATUS_KEY, 2, "100.00"),
+                    summaryTotal(surplusKey, 1, "10.00"));
+
+            // when
+            final InvoiceSummaryTotalService.Verification verification = service.verify(false);
+
+            // then
+            assertThat(verification.getMissing()).isEqualTo(1);
+            assertThat(verification.getDifferent()).isEqualTo(1);
+            assertThat(verification.getSurplus()).isEqualTo(1);
+            assertThat(verification.getDifferences()).hasSize(3);
+        }
+
+        @Test
+        public void repair() throws Exception {
+
+            // given
+            withItems(item("a", "100.00", null));
+            final InvoiceSummaryTotal different = summaryTotal(DUE_DATE_STATUS_KEY, 2, "100.00");
+            final InvoiceSummaryTotal duplicate = summaryTotal(DUE_DATE_STATUS_KEY, 1, "100.00");
+            final InvoiceSummaryTotal created = new InvoiceSummaryTotal();
+            expectTotals(different, duplicate);
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockInvoiceSummaryTotalRepository).create(INVOICE_DATE_KEY);
+                will(returnValue(created));
+                oneOf(mockInvoiceSummaryTotalRepository).delete(duplicate);
+            }});
+
+            // when
+            service.verify(true);
+
+            // then
+            assertThat(different.getTotal()).isEqualTo(1);
+            assertThat(created.getTotal()).isEqualTo(1);
+            assertThat(created.getNetAmount()).isEqualByComparingTo("100.00");
+        }
+    }
+
+    public static class Totals extends InvoiceSummaryTotalService_Test {
+
+        @Test
+        public void invoices_without_items_are_not_counted() throws Exception {
+
+            // given
+            final InvoiceSummaryTotalService.Totals totals = new InvoiceSummaryTotalService.Totals();
+
+            // when
+            totals.add(invoice);
+
+            // then
+            assertThat(totals.total).isEqualTo(0);
+            assertThat(totals.netAmount).isNull();
+        }
+
+        @Test
+        public void nulls_are_ignored_as_by_sql_sum() throws Exception {
+
+            // given
+            withItems(item("a", "100.00", null), item("b", "50.50", null));
+            final InvoiceSummaryTotalService.Totals totals = new InvoiceSummaryTotalService.Totals();
+
+            // when
+            totals.add(invoice);
+            totals.add(invoice);
+
+            // then
+            assertThat(totals.total).isEqualTo(2);
+            assertThat(totals.netAmount).isEqualByComparingTo("301.00");
+            assertThat(totals.vatAmount).isNull();
+        }
+
+        @Test
+        public void is_same_as() throws Exception {
+
+            // given
+            withItems(item("a", "100.00", "22.00"));
+            final InvoiceSummaryTotalService.Totals totals = new InvoiceSummaryTotalService.Totals();
+            totals.add(invoice);
+
+            final InvoiceSummaryTotal summaryTotal = new InvoiceSummaryTotal();
+
+            // when
+            totals.applyTo(summaryTotal);
+
+            // then
+            assertThat(totals.isSameAs(summaryTotal)).isTrue();
+
+            // and when
+            summaryTotal.setNetAmount(new BigDecimal("100.01"));
+
+            // then
+            assertThat(totals.isSameAs(summaryTotal)).isFalse();
+        }
+
+    }
+
+}
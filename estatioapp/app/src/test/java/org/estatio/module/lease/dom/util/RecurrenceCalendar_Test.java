@@ -0,0 +1,128 @@
+/*
+ *
+ *  Copyright 2012-2014 Eurocommercial Properties NV
+ *
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.estatio.module.lease.dom.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.Days;
+import org.joda.time.Interval;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import org.estatio.module.lease.dom.Frequency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecurrenceCalendar_Test {
+
+    public static class Of extends RecurrenceCalendar_Test {
+
+        @Test
+        public void is_shared() throws Exception {
+            assertThat(RecurrenceCalendar.of("RRULE:FREQ=MONTHLY;INTERVAL=3"))
+                    .isSameAs(RecurrenceCalendar.of("RRULE:FREQ=MONTHLY;INTERVAL=3"));
+        }
+
+        @Test
+        public void when_no_rrule() throws Exception {
+            assertThat(RecurrenceCalendar.of(null)).isNull();
+        }
+    }
+
+    public static class EpochDay extends RecurrenceCalendar_Test {
+
+        @Test
+        public void same_as_joda() throws Exception {
+            final LocalDate epoch = new LocalDate(1970, 1, 1);
+            for (LocalDate date = new LocalDate(1899, 12, 1); date.isBefore(new LocalDate(2101, 3, 1)); date = date.plusDays(13)) {
+                assertThat(RecurrenceCalendar.epochDay(date)).isEqualTo(Days.daysBetween(epoch, date).getDays());
+            }
+        }
+    }
+
+    public static class IntervalContaining extends RecurrenceCalendar_Test {
+
+        @Test
+        public void same_as_iterating_over_thirty_years() throws Exception {
+            for (Frequency frequency : Frequency.values()) {
+                final String rrule = frequency.getRrule();
+                if (rrule == null) {
+                    continue;
+                }
+                final RecurrenceCalendar calendar = RecurrenceCalendar.of(rrule);
+                for (LocalDate date = new LocalDate(2000, 1, 1); date.isBefore(new LocalDate(2030, 1, 1)); date = date.plusDays(5)) {
+                    final Interval expected = CalendarUtils.currentInterval(date, rrule, RecurrenceCalendar.ANCHOR_DATE);
+                    assertThat(calendar.intervalContaining(date)).isEqualTo(expected);
+                    assertThat(calendar.startDateOfIntervalContaining(date)).isEqualTo(expected.getStart().toLocalDate());
+                    assertThat(calendar.endDateOfIntervalContaining(date)).isEqualTo(expected.getEnd().toLocalDate());
+                }
+            }
+        }
+
+        @Test
+        public void beyond_horizon() throws Exception {
+            final String rrule = "RRULE:FREQ=YEARLY;INTERVAL=1";
+            final LocalDate date = RecurrenceCalendar.HORIZON_DATE.plusYears(2).plusMonths(3);
+            assertThat(RecurrenceCalendar.of(rrule).intervalContaining(date))
+                    .isEqualTo(CalendarUtils.currentInterval(date, rrule, RecurrenceCalendar.ANCHOR_DATE));
+        }
+
+    }
+
+    public static class IntervalsInRange extends RecurrenceCalendar_Test {
+
+        @Test
+        public void same_as_iterating_over_thirty_years() throws Exception {
+            for (Frequency frequency : Frequency.values()) {
+                final String rrule = frequency.getRrule();
+                if (rrule == null) {
+                    continue;
+                }
+                final LocalDate startDate = new LocalDate(2000, 2, 15);
+                final LocalDate endDate = new LocalDate(2030, 2, 15);
+                assertThat(RecurrenceCalendar.of(rrule).intervalsInRange(startDate, endDate))
+                        .isEqualTo(iterate(startDate, endDate, rrule));
+            }
+        }
+
+        @Test
+        public void across_horizon() throws Exception {
+            final String rrule = "RRULE:FREQ=MONTHLY;INTERVAL=3";
+            final LocalDate startDate = RecurrenceCalendar.HORIZON_DATE.minusYears(1);
+            final LocalDate endDate = RecurrenceCalendar.HORIZON_DATE.plusYears(1);
+            assertThat(RecurrenceCalendar.of(rrule).intervalsInRange(startDate, endDate))
+                    .isEqualTo(iterate(startDate, endDate, rrule));
+        }
+
+        private static List<Interval> iterate(final LocalDate startDate, final LocalDate endDate, final String rrule) {
+            final List<Interval> intervals = new ArrayList<>();
+            LocalDate start = startDate;
+            Interval interval;
+            do {
+                interval = CalendarUtils.currentInterval(start, rrule, RecurrenceCalendar.ANCHOR_DATE);
+                intervals.add(interval);
+                start = interval.getEnd().toLocalDate();
+            } while (start.isBefore(endDate));
+            return intervals;
+        }
+
+    }
+
+}
@@ -18,7 +18,9 @@
  */
 package org.estatio.module.lease.integtests.lease;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -32,9 +34,12 @@ import org.apache.isis.applib.fixturescripts.FixtureScript;
 
 import org.estatio.module.index.dom.Index;
 import org.estatio.module.index.dom.IndexRepository;
+import org.estatio.module.index.dom.IndexValue;
+import org.estatio.module.index.dom.IndexValueRepository;
 import org.estatio.module.index.fixtures.enums.Index_enum;
 import org.estatio.module.lease.dom.LeaseTermForIndexable;
 import org.estatio.module.lease.dom.LeaseTermForIndexableRepository;
+import org.estatio.module.lease.dom.LeaseTermStatus;
 import org.estatio.module.lease.fixtures.leaseitems.enums.LeaseItemForDeposit_enum;
 import org.estatio.module.lease.fixtures.leaseitems.enums.LeaseItemForDiscount_enum;
 import org.estatio.module.lease.fixtures.leaseitems.enums.LeaseItemForEntryFee_enum;
@@ -77,6 +82,9 @@ public class LeaseTermsForIndexable_IntegTest extends LeaseModuleIntegTestAbstra
     @Inject
     LeaseTermForIndexableRepository leaseTerms;
 
+    @Inject
+    IndexValueRepository indexValues;
+
     @Before
     public void setUp() throws Exception {
     }
@@ -103,4 +111,49 @@ public class LeaseTermsForIndexable_IntegTest extends LeaseModuleIntegTestAbstra
 
     }
 
-}
\ No newline at end of file
+    public static class FindByIndexAndStatusAndIndexStartDateOnOrAfter extends LeaseTermsForIndexable_IntegTest {
+
+        Index index;
+
+        @Before
+        public void setUp() throws Exception {
+            index = Index_enum.IStatFoi.findUsing(serviceRegistry);
+            leaseTerms.findByIndexAndDate(index, new LocalDate(2011, 1, 1)).get(0).verifyUntil(new LocalDate(2014, 1, 1));
+        }
+
+        @Test
+        public void same_terms_as_when_each_index_value_is_updated() throws Exception {
+            // Given
+            final LocalDate date = new LocalDate(2012, 1, 1);
+            final Set<LocalDate> valueDates = new HashSet<>();
+            final Set<LeaseTermForIndexable> termsPerValue = new HashSet<>();
+            for (IndexValue value : indexValues.findByIndex(index)) {
+                if (!value.getStartDate().isBefore(date)) {
+                    valueDates.add(value.getStartDate());
+                    for (LeaseTermForIndexable term : leaseTerms.findByIndexAndDate(index, value.getStartDate())) {
+                        if (term.getStatus() == LeaseTermStatus.NEW) {
+                            termsPerValue.add(term);
+                        }
+                    }
+                }
+            }
+            assertThat(termsPerValue.isEmpty(), is(false));
+
+            // When
+            final Set<LeaseTermForIndexable> terms = new HashSet<>(
+                    leaseTerms.findByIndexAndStatusAndIndexStartDateOnOrAfter(index, LeaseTermStatus.NEW, date));
+
+            // Then
+            assertThat(terms.containsAll(termsPerValue), is(true));
+            for (LeaseTermForIndexable term : terms) {
+                if (!termsPerValue.contains(term)) {
+                    // only terms waiting for an index value not yet published
+                    assertThat(valueDates.contains(term.getBaseIndexStartDate()), is(false));
+                    assertThat(valueDates.contains(term.getNextIndexStartDate()), is(false));
+                }
+            }
+        }
+
+    }
+
+}
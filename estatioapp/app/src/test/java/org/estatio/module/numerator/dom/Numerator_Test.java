@@ -52,6 +52,74 @@ public class Numerator_Test {
 
     }
 
+    public static class IncrementBlock extends Numerator_Test {
+
+        @Test
+        public void allocates_in_order_with_single_update() {
+            numerator.setLastIncrement(BigInteger.valueOf(7));
+
+            assertThat(numerator.nextIncrementStrs(3)).containsExactly("XXX-00008", "XXX-00009", "XXX-00010");
+            assertEquals(BigInteger.valueOf(10), numerator.getLastIncrement());
+            assertEquals("XXX-00011", numerator.nextIncrementStr());
+        }
+
+        @Test
+        public void when_none() {
+            assertThat(numerator.nextIncrementStrs(0)).isEmpty();
+            assertThat(numerator.getLastIncrement()).isNull();
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void when_negative() {
+            numerator.nextIncrementStrs(-1);
+        }
+
+    }
+
+    public static class Reserve extends Numerator_Test {
+
+        @Test
+        public void hands_out_reserved_values_without_further_update() {
+            numerator.setLastIncrement(BigInteger.valueOf(7));
+
+            numerator.reserve(2);
+            assertEquals(BigInteger.valueOf(9), numerator.getLastIncrement());
+            assertEquals("XXX-00007", numerator.lastIncrementStr());
+
+            assertEquals("XXX-00008", numerator.nextIncrementStr());
+            assertEquals("XXX-00008", numerator.lastIncrementStr());
+            assertEquals("XXX-00009", numerator.nextIncrementStr());
+            assertEquals(0, numerator.getReservedRemaining());
+
+            // reservation used up, so back to incrementing
+            assertEquals("XXX-00010", numerator.nextIncrementStr());
+            assertEquals(BigInteger.valueOf(10), numerator.getLastIncrement());
+        }
+
+        @Test
+        public void unused_values_are_given_back() {
+            numerator.setLastIncrement(BigInteger.valueOf(7));
+
+            numerator.reserve(3);
+            assertEquals("XXX-00008", numerator.nextIncrementStr());
+
+            assertEquals(2, numerator.releaseReserved());
+            assertEquals(BigInteger.valueOf(8), numerator.getLastIncrement());
+            assertEquals("XXX-00009", numerator.nextIncrementStr());
+        }
+
+        @Test
+        public void nothing_reserved() {
+            numerator.setLastIncrement(BigInteger.valueOf(7));
+
+            numerator.reserve(0);
+
+            assertEquals(0, numerator.releaseReserved());
+            assertEquals("XXX-00008", numerator.nextIncrementStr());
+        }
+
+    }
+
     public static class Title extends Numerator_Test {
 
         @Test
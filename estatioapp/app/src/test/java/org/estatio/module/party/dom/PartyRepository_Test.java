@@ -30,6 +30,8 @@ import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
 import org.incode.module.unittestsupport.dom.repo.FinderInteraction;
 import org.incode.module.unittestsupport.dom.repo.FinderInteraction.FinderMethod;
 
+import org.estatio.module.base.dom.search.SearchIndexService;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertNotNull;
 
@@ -95,6 +97,34 @@ public class PartyRepository_Test {
         }
     }
 
+    public static class AutoComplete extends PartyRepository_Test {
+
+        @Test
+        public void uses_the_query_when_too_many_in_the_index() {
+
+            // given
+            partyRepository.searchIndexService = new SearchIndexService() {
+                @Override
+                public <T> boolean isAvailableFor(final Definition<T> definition, final String searchPhrase) {
+                    return true;
+                }
+
+                @Override
+                public <T> List<T> search(final Definition<T> definition, final String searchPhrase, final String partition) {
+                    return null;
+                }
+            };
+
+            // when
+            partyRepository.autoComplete("REF");
+
+            // then
+            assertThat(finderInteraction.getFinderMethod()).isEqualTo(FinderMethod.ALL_MATCHES);
+            assertThat(finderInteraction.getQueryName()).isEqualTo("matchByReferenceOrName");
+            assertThat(finderInteraction.getArgumentsByParameterName().get("referenceOrName")).isEqualTo((Object) "(?i).*REF.*");
+        }
+    }
+
     public static class AllParties extends PartyRepository_Test {
 
         @Test
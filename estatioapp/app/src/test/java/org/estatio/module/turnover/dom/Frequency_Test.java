@@ -31,4 +31,30 @@ public class Frequency_Test {
         Assertions.assertThat(Frequency.YEARLY.hasStartDate(start2019)).isTrue();
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void firstStartDateOnOrAfter_agrees_with_hasStartDate() {
+
+        for (Frequency frequency : Frequency.values()) {
+
+            // given
+            LocalDate date = new LocalDate(2019, 12, 1);
+            final LocalDate endDate = new LocalDate(2021, 2, 1);
+
+            while (date.isBefore(endDate)) {
+
+                // when
+                final LocalDate first = frequency.firstStartDateOnOrAfter(date);
+
+                // then
+                Assertions.assertThat(frequency.hasStartDate(first)).isTrue();
+                for (LocalDate between = date; between.isBefore(first); between = between.plusDays(1)) {
+                    Assertions.assertThat(frequency.hasStartDate(between)).isFalse();
+                }
+                Assertions.assertThat(frequency.nextStartDateAfter(first)).isEqualTo(frequency.firstStartDateOnOrAfter(first.plusDays(1)));
+
+                date = date.plusDays(1);
+            }
+        }
+    }
+}
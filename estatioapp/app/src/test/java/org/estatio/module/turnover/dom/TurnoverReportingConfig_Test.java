@@ -1,5 +1,8 @@
 package org.estatio.module.turnover.dom;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.assertj.core.api.Assertions;
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
@@ -182,4 +185,61 @@ public class TurnoverReportingConfig_Test {
         config.produceEmptyTurnover(turnoverDate);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void emptyTurnoverDatesBetween_same_as_produceEmptyTurnover_for_every_day() throws Exception {
+
+        for (Frequency frequency : Frequency.values()) {
+
+            // given
+            Occupancy occupancy = new Occupancy();
+            Lease lease = new LeaseForTesting();
+            occupancy.setLease(lease);
+            occupancy.setReportTurnover(Occupancy.OccupancyReportingType.YES);
+            occupancy.setEndDate(new LocalDate(2019, 11, 12));
+
+            TurnoverReportingConfig config = new TurnoverReportingConfig();
+            config.setOccupancy(occupancy);
+            config.setStartDate(new LocalDate(2019, 2, 13));
+            config.setFrequency(frequency);
+
+            final LocalDate startDate = new LocalDate(2018, 12, 15);
+            final LocalDate endDate = new LocalDate(2020, 1, 10);
+
+            final List<LocalDate> expected = new ArrayList<>();
+            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                if (config.isActiveOnDate(date) && frequency.hasStartDate(date)) {
+                    expected.add(date);
+                }
+            }
+
+            // when, then
+            Assertions.assertThat(config.emptyTurnoverDatesBetween(startDate, endDate)).isEqualTo(expected);
+            Assertions.assertThat(expected).isNotEmpty();
+
+            // and when occupancy not to report
+            occupancy.setReportTurnover(Occupancy.OccupancyReportingType.NO);
+            // then
+            Assertions.assertThat(config.emptyTurnoverDatesBetween(startDate, endDate)).isEmpty();
+        }
+    }
+
+    @Test
+    public void emptyTurnoverDatesBetween_when_open_ended() throws Exception {
+
+        // given
+        Occupancy occupancy = new Occupancy();
+        Lease lease = new LeaseForTesting();
+        occupancy.setLease(lease);
+        occupancy.setReportTurnover(Occupancy.OccupancyReportingType.YES);
+
+        TurnoverReportingConfig config = new TurnoverReportingConfig();
+        config.setOccupancy(occupancy);
+        config.setStartDate(new LocalDate(2019, 2, 13));
+        config.setFrequency(Frequency.MONTHLY);
+
+        // when, then
+        Assertions.assertThat(config.emptyTurnoverDatesBetween(new LocalDate(2019, 11, 2), new LocalDate(2020, 2, 1)))
+                .containsExactly(new LocalDate(2019, 12, 1), new LocalDate(2020, 1, 1), new LocalDate(2020, 2, 1));
+    }
+}
@@ -0,0 +1,143 @@
+package org.estatio.module.turnover.dom.entry;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.assertj.core.api.Assertions;
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.applib.services.xactn.TransactionService;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+
+import org.estatio.module.currency.dom.Currency;
+import org.estatio.module.lease.dom.Lease;
+import org.estatio.module.lease.dom.LeaseForTesting;
+import org.estatio.module.lease.dom.occupancy.Occupancy;
+import org.estatio.module.turnover.dom.Frequency;
+import org.estatio.module.turnover.dom.Turnover;
+import org.estatio.module.turnover.dom.TurnoverReportingConfig;
+import org.estatio.module.turnover.dom.TurnoverReportingConfigRepository;
+import org.estatio.module.turnover.dom.TurnoverRepository;
+import org.estatio.module.turnover.dom.Type;
+
+public class TurnoverEntryService_Test {
+
+    @Rule
+    public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(JUnitRuleMockery2.Mode.INTERFACES_AND_CLASSES);
+
+    @Mock
+    TurnoverRepository mockTurnoverRepository;
+
+    @Mock
+    TurnoverReportingConfigRepository mockTurnoverReportingConfigRepository;
+
+    @Mock
+    TransactionService mockTransactionService;
+
+    TurnoverEntryService service;
+
+    final Currency currency = new Currency();
+
+    final LocalDate jan = new LocalDate(2019, 1, 1);
+    final LocalDate feb = new LocalDate(2019, 2, 1);
+    final LocalDate mar = new LocalDate(2019, 3, 1);
+    final LocalDate endOfMar = new LocalDate(2019, 3, 31);
+
+    @Before
+    public void setUp() throws Exception {
+        service = new TurnoverEntryService();
+        service.turnoverRepository = mockTurnoverRepository;
+        service.turnoverReportingConfigRepository = mockTurnoverReportingConfigRepository;
+        service.transactionService = mockTransactionService;
+
+        context.checking(new Expectations() {{
+            allowing(mockTransactionService).flushTransaction();
+        }});
+    }
+
+    TurnoverReportingConfig newConfig(final Occupancy.OccupancyReportingType reportTurnover) {
+        final Occupancy occupancy = new Occupancy();
+        final Lease lease = new LeaseForTesting();
+        occupancy.setLease(lease);
+        occupancy.setReportTurnover(reportTurnover);
+
+        final TurnoverReportingConfig config = new TurnoverReportingConfig();
+        config.setOccupancy(occupancy);
+        config.setStartDate(jan);
+        config.setType(Type.PRELIMINARY);
+        config.setFrequency(Frequency.MONTHLY);
+        config.setCurrency(currency);
+        return config;
+    }
+
+    static Turnover newTurnover(final TurnoverReportingConfig config, final LocalDate date) {
+        final Turnover turnover = new Turnover();
+        turnover.setConfig(config);
+        turnover.setDate(date);
+        turnover.setType(config.getType());
+        return turnover;
+    }
+
+    @Test
+    public void produceEmptyTurnoversForPeriod_only_creates_those_not_yet_existing_for_the_config() throws Exception {
+
+        // given
+        final TurnoverReportingConfig config1 = newConfig(Occupancy.OccupancyReportingType.YES);
+        final TurnoverReportingConfig config2 = newConfig(Occupancy.OccupancyReportingType.YES);
+        final TurnoverReportingConfig notReporting = newConfig(Occupancy.OccupancyReportingType.NO);
+
+        // expect
+        context.checking(new Expectations() {{
+            allowing(mockTurnoverReportingConfigRepository).listAll();
+            will(returnValue(Arrays.asList(config1, config2, notReporting)));
+
+            // only the turnovers of the configs requiring any
+            oneOf(mockTurnoverRepository).findByConfigsOfTheirTypeAndDateBetween(Arrays.asList(config1, config2), jan, endOfMar);
+            will(returnValue(Arrays.asList(newTurnover(config1, feb))));
+
+            oneOf(mockTurnoverRepository).createNewEmptyWithoutLookup(config1, jan, Type.PRELIMINARY, Frequency.MONTHLY, currency);
+            oneOf(mockTurnoverRepository).createNewEmptyWithoutLookup(config1, mar, Type.PRELIMINARY, Frequency.MONTHLY, currency);
+            // existing for the other config only
+            oneOf(mockTurnoverRepository).createNewEmptyWithoutLookup(config2, jan, Type.PRELIMINARY, Frequency.MONTHLY, currency);
+            oneOf(mockTurnoverRepository).createNewEmptyWithoutLookup(config2, feb, Type.PRELIMINARY, Frequency.MONTHLY, currency);
+            oneOf(mockTurnoverRepository).createNewEmptyWithoutLookup(config2, mar, Type.PRELIMINARY, Frequency.MONTHLY, currency);
+        }});
+
+        // when
+        final TurnoverEntryService.EmptyTurnoversProduced produced = service.produceEmptyTurnoversForPeriod(jan, endOfMar);
+
+        // then
+        Assertions.assertThat(produced.getConfigs()).isEqualTo(3);
+        Assertions.assertThat(produced.getCreated()).isEqualTo(5);
+        Assertions.assertThat(produced.getAlreadyExisting()).isEqualTo(1);
+    }
+
+    @Test
+    public void produceEmptyTurnoversForPeriod_when_none_required() throws Exception {
+
+        // given
+        final TurnoverReportingConfig notReporting = newConfig(Occupancy.OccupancyReportingType.NO);
+
+        // expect
+        context.checking(new Expectations() {{
+            allowing(mockTurnoverReportingConfigRepository).listAll();
+            will(returnValue(Arrays.asList(notReporting)));
+
+            never(mockTurnoverRepository).findByConfigsOfTheirTypeAndDateBetween(
+                    with(any(Collection.class)), with(any(LocalDate.class)), with(any(LocalDate.class)));
+        }});
+
+        // when
+        final TurnoverEntryService.EmptyTurnoversProduced produced = service.produceEmptyTurnoversForPeriod(jan, endOfMar);
+
+        // then
+        Assertions.assertThat(produced.getCreated()).isEqualTo(0);
+        Assertions.assertThat(produced.getAlreadyExisting()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,339 @@
+package org.estatio.module.turnover.dom.entry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.applib.services.bookmark.Bookmark;
+import org.apache.isis.applib.services.bookmark.BookmarkService;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+
+import org.incode.module.base.dom.valuetypes.LocalDateInterval;
+
+import org.estatio.module.asset.dom.Property;
+import org.estatio.module.asset.dom.Unit;
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+import org.estatio.module.lease.dom.Lease;
+import org.estatio.module.lease.dom.occupancy.Occupancy;
+import org.estatio.module.party.dom.Person;
+import org.estatio.module.turnover.dom.Frequency;
+import org.estatio.module.turnover.dom.Status;
+import org.estatio.module.turnover.dom.Turnover;
+import org.estatio.module.turnover.dom.TurnoverReportingConfig;
+import org.estatio.module.turnover.dom.TurnoverRepository;
+import org.estatio.module.turnover.dom.Type;
+
+public class TurnoverWorkQueueService_Test {
+
+    static final Bookmark PROPERTY_1 = new Bookmark("org.estatio.dom.asset.Property", "1");
+    static final Bookmark PROPERTY_2 = new Bookmark("org.estatio.dom.asset.Property", "2");
+
+    TurnoverWorkQueueService.WorkItem item(
+            final String id,
+            final String leaseReference,
+            final LocalDate occupancyStartDate,
+            final String unitName,
+            final LocalDate date,
+            final Type type) {
+        return item(id, PROPERTY_1, leaseReference, occupancyStartDate, unitName, date, type, LocalDateInterval.including(null, null));
+    }
+
+    TurnoverWorkQueueService.WorkItem item(
+            final String id,
+            final Bookmark property,
+            final String leaseReference,
+            final LocalDate occupancyStartDate,
+            final String unitName,
+            final LocalDate date,
+            final Type type,
+            final LocalDateInterval occupancyInterval) {
+        return new TurnoverWorkQueueService.WorkItem(
+                new Bookmark("org.estatio.module.turnover.dom.Turnover", id),
+                property,
+                "Lease", leaseReference, occupancyStartDate, unitName, date, type,
+                occupancyInterval,
+                LocalDateInterval.including(null, null));
+    }
+
+    static List<String> idsOf(final Iterable<TurnoverWorkQueueService.WorkItem> items) {
+        final List<String> ids = new ArrayList<>();
+        items.forEach(i -> ids.add(i.turnover.getIdentifier()));
+        return ids;
+    }
+
+    static List<String> idsOf(final TurnoverWorkQueueService.ReporterQueue queue, final Type type, final LocalDate date) {
+        return idsOf(queue.select(Arrays.asList(PROPERTY_1, PROPERTY_2), type, date));
+    }
+
+    final LocalDate jan = new LocalDate(2019, 1, 1);
+    final LocalDate feb = new LocalDate(2019, 2, 1);
+
+    public static class Queue extends TurnoverWorkQueueService_Test {
+
+        @Test
+        public void ordered_by_occupancy_then_date_desc() {
+
+            // given
+            final TurnoverWorkQueueService.ReporterQueue queue = new TurnoverWorkQueueService.ReporterQueue(0L);
+
+            // when
+            queue.add(item("1", "LEASE-B", jan, "UNIT-1", jan, Type.PRELIMINARY));
+            queue.add(item("2", "LEASE-A", jan, "UNIT-1", jan, Type.PRELIMINARY));
+            queue.add(item("3", "LEASE-A", jan, "UNIT-1", feb, Type.PRELIMINARY));
+            queue.add(item("4", "LEASE-A", feb, "UNIT-1", jan, Type.PRELIMINARY));
+            queue.add(item("5", "LEASE-A", null, "UNIT-1", jan, Type.PRELIMINARY));
+            queue.add(item("6", "LEASE-A", jan, "UNIT-0", jan, Type.AUDITED));
+
+            // then
+            Assertions.assertThat(idsOf(queue, null, null)).containsExactly("4", "6", "3", "2", "5", "1");
+            Assertions.assertThat(idsOf(queue, Type.PRELIMINARY, null)).containsExactly("4", "3", "2", "5", "1");
+            Assertions.assertThat(idsOf(queue, Type.PRELIMINARY, jan)).containsExactly("4", "2", "5", "1");
+            Assertions.assertThat(idsOf(queue, Type.AUDITED, feb)).isEmpty();
+        }
+
+        @Test
+        public void partitioned_by_property_merged_in_order() {
+
+            // given
+            final TurnoverWorkQueueService.ReporterQueue queue = new TurnoverWorkQueueService.ReporterQueue(0L);
+            final LocalDateInterval always = LocalDateInterval.including(null, null);
+
+            // when
+            queue.add(item("1", PROPERTY_1, "LEASE-C", jan, "UNIT-1", jan, Type.PRELIMINARY, always));
+            queue.add(item("2", PROPERTY_2, "LEASE-B", jan, "UNIT-1", jan, Type.PRELIMINARY, always));
+            queue.add(item("3", PROPERTY_1, "LEASE-A", jan, "UNIT-1", jan, Type.PRELIMINARY, always));
+
+            // then
+            Assertions.assertThat(idsOf(queue.select(Collections.singletonList(PROPERTY_1), null, null))).containsExactly("3", "1");
+            Assertions.assertThat(idsOf(queue.select(Collections.singletonList(PROPERTY_2), null, null))).containsExactly("2");
+            Assertions.assertThat(idsOf(queue.select(Arrays.asList(PROPERTY_2, PROPERTY_1), null, null))).containsExactly("3", "2", "1");
+            Assertions.assertThat(idsOf(queue.select(Collections.emptyList(), null, null))).isEmpty();
+        }
+
+        @Test
+        public void active_on_date() {
+
+            // given
+            final TurnoverWorkQueueService.WorkItem item =
+                    item("1", PROPERTY_1, "LEASE-A", jan, "UNIT-1", jan, Type.PRELIMINARY, LocalDateInterval.including(jan, feb.minusDays(1)));
+
+            // then
+            Assertions.assertThat(item.isActiveOnDate(jan)).isTrue();
+            Assertions.assertThat(item.isActiveOnDate(feb.minusDays(1))).isTrue();
+            Assertions.assertThat(item.isActiveOnDate(feb)).isFalse();
+        }
+
+        @Test
+        public void remove_and_re_add() {
+
+            // given
+            final TurnoverWorkQueueService.ReporterQueue queue = new TurnoverWorkQueueService.ReporterQueue(0L);
+            queue.add(item("1", "LEASE-A", jan, "UNIT-1", jan, Type.PRELIMINARY));
+            queue.add(item("2", "LEASE-A", jan, "UNIT-1", feb, Type.PRELIMINARY));
+
+            // when
+            queue.remove(new Bookmark("org.estatio.module.turnover.dom.Turnover", "2"));
+
+            // then
+            Assertions.assertThat(queue.size()).isEqualTo(1);
+            Assertions.assertThat(idsOf(queue, null, null)).containsExactly("1");
+            Assertions.assertThat(idsOf(queue, Type.PRELIMINARY, feb)).isEmpty();
+
+            // and when added again (twice)
+            queue.add(item("2", "LEASE-A", jan, "UNIT-1", feb, Type.PRELIMINARY));
+            queue.add(item("2", "LEASE-A", jan, "UNIT-1", feb, Type.PRELIMINARY));
+
+            // then
+            Assertions.assertThat(queue.size()).isEqualTo(2);
+            Assertions.assertThat(idsOf(queue, Type.PRELIMINARY, null)).containsExactly("2", "1");
+        }
+
+        @Test
+        public void expires() {
+
+            // given
+            final TurnoverWorkQueueService.ReporterQueue queue = new TurnoverWorkQueueService.ReporterQueue(1000L);
+
+            // then
+            Assertions.assertThat(queue.isExpired(1000L + TurnoverWorkQueueService.MAX_AGE_MILLIS)).isFalse();
+            Assertions.assertThat(queue.isExpired(1001L + TurnoverWorkQueueService.MAX_AGE_MILLIS)).isTrue();
+        }
+    }
+
+    public static class Changes extends TurnoverWorkQueueService_Test {
+
+        @Rule
+        public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(JUnitRuleMockery2.Mode.INTERFACES_AND_CLASSES);
+
+        @Mock
+        TurnoverRepository mockTurnoverRepository;
+
+        @Mock
+        BookmarkService mockBookmarkService;
+
+        static final Bookmark BOOKMARK_1 = new Bookmark("org.estatio.module.turnover.dom.Turnover", "1");
+        static final Bookmark BOOKMARK_2 = new Bookmark("org.estatio.module.turnover.dom.Turnover", "2");
+
+        TurnoverWorkQueueService service;
+        TransactionCompletionService.Completion current;
+
+        Person reporter;
+        Property property;
+        TurnoverReportingConfig config;
+        Turnover turnover1;
+        Turnover turnover2;
+
+        @Before
+        public void setUp() throws Exception {
+            reporter = new Person();
+            property = new Property();
+
+            final Unit unit = new Unit();
+            unit.setName("UNIT-1");
+            unit.setProperty(property);
+            final Lease lease = new Lease();
+            lease.setReference("LEASE-A");
+            final Occupancy occupancy = new Occupancy();
+            occupancy.setLease(lease);
+            occupancy.setUnit(unit);
+            occupancy.setStartDate(jan);
+
+            config = new TurnoverReportingConfig();
+            config.setOccupancy(occupancy);
+            config.setReporter(reporter);
+            config.setStartDate(jan);
+            config.setFrequency(Frequency.MONTHLY);
+
+            turnover1 = newTurnover(feb);
+            turnover2 = newTurnover(jan);
+
+            service = new TurnoverWorkQueueService();
+            service.turnoverRepository = mockTurnoverRepository;
+            service.bookmarkService = mockBookmarkService;
+            service.transactionCompletionService = new TransactionCompletionService() {
+                @Override
+                protected Completion currentCompletion() {
+                    return current;
+                }
+            };
+
+            context.checking(new Expectations() {{
+                allowing(mockBookmarkService).bookmarkFor(reporter);
+                will(returnValue(new Bookmark("org.estatio.dom.party.Person", "1")));
+                allowing(mockBookmarkService).bookmarkFor(property);
+                will(returnValue(PROPERTY_1));
+                allowing(mockBookmarkService).bookmarkFor(turnover1);
+                will(returnValue(BOOKMARK_1));
+                allowing(mockBookmarkService).bookmarkFor(turnover2);
+                will(returnValue(BOOKMARK_2));
+
+                oneOf(mockTurnoverRepository).findByConfigReporterWithStatusNew(reporter);
+                will(returnValue(Collections.singletonList(turnover1)));
+            }});
+        }
+
+        private void allowingLookups() {
+            context.checking(new Expectations() {{
+                allowing(mockBookmarkService).lookup(BOOKMARK_1);
+                will(returnValue(turnover1));
+                allowing(mockBookmarkService).lookup(BOOKMARK_2);
+                will(returnValue(turnover2));
+            }});
+        }
+
+        private Turnover newTurnover(final LocalDate date) {
+            final Turnover turnover = new Turnover();
+            turnover.setConfig(config);
+            turnover.setDate(date);
+            turnover.setType(Type.PRELIMINARY);
+            turnover.setStatus(Status.NEW);
+            return turnover;
+        }
+
+        private List<Turnover> newForReporter() {
+            final List<Turnover> turnovers = new ArrayList<>();
+            service.newForReporter(reporter, Collections.singletonList(property), feb, null, null).forEach(turnovers::add);
+            return turnovers;
+        }
+
+        @Test
+        public void created_turnovers_are_added_once_committed() throws Exception {
+
+            // given
+            allowingLookups();
+            current = new TransactionCompletionService.Completion();
+            Assertions.assertThat(newForReporter()).containsExactly(turnover1);
+
+            // when
+            final TransactionCompletionService.Completion creating = new TransactionCompletionService.Completion();
+            current = creating;
+            final Turnover.PersistedLifecycleEvent ev = new Turnover.PersistedLifecycleEvent();
+            ev.setSource(turnover2);
+            service.on(ev);
+
+            // then not yet
+            current = new TransactionCompletionService.Completion();
+            Assertions.assertThat(newForReporter()).containsExactly(turnover1);
+
+            // and when
+            creating.afterCompletion(javax.transaction.Status.STATUS_COMMITTED);
+
+            // then
+            Assertions.assertThat(newForReporter()).containsExactly(turnover1, turnover2);
+        }
+
+        @Test
+        public void entered_turnovers_are_skipped_but_only_removed_once_committed() throws Exception {
+
+            // given
+            allowingLookups();
+            current = new TransactionCompletionService.Completion();
+            Assertions.assertThat(newForReporter()).containsExactly(turnover1);
+
+            // when entered, but rolled back
+            final TransactionCompletionService.Completion entering = new TransactionCompletionService.Completion();
+            current = entering;
+            turnover1.setStatus(Status.APPROVED);
+            final Turnover.UpdatedLifecycleEvent ev = new Turnover.UpdatedLifecycleEvent();
+            ev.setSource(turnover1);
+            service.on(ev);
+
+            // then skipped by the entering transaction
+            Assertions.assertThat(newForReporter()).isEmpty();
+
+            // and when
+            entering.afterCompletion(javax.transaction.Status.STATUS_ROLLEDBACK);
+            turnover1.setStatus(Status.NEW);
+
+            // then still in the queue
+            current = new TransactionCompletionService.Completion();
+            Assertions.assertThat(newForReporter()).containsExactly(turnover1);
+        }
+
+        @Test
+        public void turnovers_not_active_on_date_are_not_looked_up() throws Exception {
+
+            // given
+            current = new TransactionCompletionService.Completion();
+            config.setEndDate(jan.plusDays(10));
+
+            // expect
+            context.checking(new Expectations() {{
+                never(mockBookmarkService).lookup(with(any(Bookmark.class)));
+            }});
+
+            // when, then
+            Assertions.assertThat(newForReporter()).isEmpty();
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.incode.module.docfragment.dom.api;
+
+import javax.transaction.Status;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.auto.Mock;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.isis.applib.services.config.ConfigurationService;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+import org.apache.isis.applib.services.metamodel.MetaModelService3;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2;
+import org.apache.isis.core.unittestsupport.jmocking.JUnitRuleMockery2.Mode;
+
+import org.isisaddons.module.freemarker.dom.service.FreeMarkerService;
+
+import org.incode.module.docfragment.dom.impl.DocFragment;
+import org.incode.module.docfragment.dom.impl.DocFragmentRepository;
+import org.incode.module.unittestsupport.dom.reflect.ReflectUtils;
+
+import org.estatio.module.base.platform.transaction.TransactionCompletionService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocFragmentService_Test {
+
+    @Rule
+    public JUnitRuleMockery2 context = JUnitRuleMockery2.createFor(Mode.INTERFACES_AND_CLASSES);
+
+    @Mock
+    DocFragmentRepository mockRepo;
+
+    @Mock
+    MetaModelService3 mockMetaModelService3;
+
+    @Mock
+    EventBusService mockEventBusService;
+
+    @JUnitRuleMockery2.Ignoring
+    @Mock
+    ConfigurationService mockConfigurationService;
+
+    TransactionCompletionService.Completion current;
+
+    DocFragmentService service;
+
+    public static class SomeObject {
+        public String getDueDate() {
+            return "2019-01-01";
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        service = new DocFragmentService();
+        service.repo = mockRepo;
+        service.metaModelService3 = mockMetaModelService3;
+        service.eventBusService = mockEventBusService;
+
+        final FreeMarkerService freeMarkerService = new FreeMarkerService();
+        ReflectUtils.inject(freeMarkerService, "configurationService", mockConfigurationService);
+        freeMarkerService.init(ImmutableMap.of());
+        service.freeMarkerService = freeMarkerService;
+
+        service.transactionCompletionService = new TransactionCompletionService() {
+            @Override
+            protected Completion currentCompletion() {
+                return current;
+            }
+        };
+        current = new TransactionCompletionService.Completion();
+
+        context.checking(new Expectations() {{
+            allowing(mockEventBusService).register(service);
+            allowing(mockMetaModelService3).toObjectType(SomeObject.class);
+            will(returnValue("invoice.Invoice"));
+        }});
+        service.init();
+    }
+
+    public static class Render extends DocFragmentService_Test {
+
+        @Test
+        public void resolves_and_parses_once() throws Exception {
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockRepo).findByObjectTypeAndNameAndApplicableToAtPath("invoice.Invoice", "due", "/ITA/CAR");
+                will(returnValue(new DocFragment("invoice.Invoice", "due", "/ITA", "Pay by ${dueDate}")));
+            }});
+
+            // when
+            final String first = service.render(new SomeObject(), "due", "/ITA/CAR");
+            final String second = service.render(new SomeObject(), "due", "/ITA/CAR");
+
+            // then
+            assertThat(first).isEqualTo("Pay by 2019-01-01");
+            assertThat(second).isEqualTo(first);
+            assertThat(service.getStatistics().getHits()).isEqualTo(1);
+            assertThat(service.getStatistics().getMisses()).isEqualTo(1);
+            assertThat(service.getStatistics().getRenders()).isEqualTo(2);
+        }
+
+        @Test
+        public void resolves_again_when_fragment_changed() throws Exception {
+
+            // expect
+            context.checking(new Expectations() {{
+                exactly(2).of(mockRepo).findByObjectTypeAndNameAndApplicableToAtPath("invoice.Invoice", "due", "/ITA");
+                will(onConsecutiveCalls(
+                        returnValue(new DocFragment("invoice.Invoice", "due", "/ITA", "Pay by ${dueDate}")),
+                        returnValue(new DocFragment("invoice.Invoice", "due", "/ITA", "Due ${dueDate}"))));
+            }});
+
+            // when
+            final String before = service.render(new SomeObject(), "due", "/ITA");
+            service.on(new DocFragment.UpdatedLifecycleEvent());
+            current.afterCompletion(Status.STATUS_COMMITTED);
+            current = new TransactionCompletionService.Completion();
+            final String after = service.render(new SomeObject(), "due", "/ITA");
+
+            // then
+            assertThat(before).isEqualTo("Pay by 2019-01-01");
+            assertThat(after).isEqualTo("Due 2019-01-01");
+        }
+
+        @Test
+        public void not_invalidated_when_change_rolled_back() throws Exception {
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockRepo).findByObjectTypeAndNameAndApplicableToAtPath("invoice.Invoice", "due", "/ITA");
+                will(returnValue(new DocFragment("invoice.Invoice", "due", "/ITA", "Pay by ${dueDate}")));
+            }});
+
+            // when
+            service.render(new SomeObject(), "due", "/ITA");
+            current = new TransactionCompletionService.Completion();
+            service.on(new DocFragment.UpdatedLifecycleEvent());
+            current.afterCompletion(Status.STATUS_ROLLEDBACK);
+            current = new TransactionCompletionService.Completion();
+            final String after = service.render(new SomeObject(), "due", "/ITA");
+
+            // then
+            assertThat(after).isEqualTo("Pay by 2019-01-01");
+            assertThat(service.getStatistics().getHits()).isEqualTo(1);
+        }
+
+        @Test
+        public void changing_transaction_sees_its_own_changes_only() throws Exception {
+
+            // given
+            final TransactionCompletionService.Completion other = current;
+
+            // expect
+            context.checking(new Expectations() {{
+                exactly(3).of(mockRepo).findByObjectTypeAndNameAndApplicableToAtPath("invoice.Invoice", "due", "/ITA");
+                will(onConsecutiveCalls(
+                        returnValue(new DocFragment("invoice.Invoice", "due", "/ITA", "Pay by ${dueDate}")),
+                        returnValue(new DocFragment("invoice.Invoice", "due", "/ITA", "Due ${dueDate}")),
+                        returnValue(new DocFragment("invoice.Invoice", "due", "/ITA", "Due ${dueDate}"))));
+            }});
+
+            // when
+            service.render(new SomeObject(), "due", "/ITA");
+            final TransactionCompletionService.Completion changing = new TransactionCompletionService.Completion();
+            current = changing;
+            service.on(new DocFragment.UpdatedLifecycleEvent());
+            final String seenByChanging = service.render(new SomeObject(), "due", "/ITA");
+            current = other;
+            final String seenByOther = service.render(new SomeObject(), "due", "/ITA");
+            changing.afterCompletion(Status.STATUS_COMMITTED);
+            final String seenOnceCommitted = service.render(new SomeObject(), "due", "/ITA");
+
+            // then
+            assertThat(seenByChanging).isEqualTo("Due 2019-01-01");
+            assertThat(seenByOther).isEqualTo("Pay by 2019-01-01");
+            assertThat(seenOnceCommitted).isEqualTo("Due 2019-01-01");
+        }
+
+        @Test
+        public void not_cached_when_resolved_before_a_change_committed() throws Exception {
+
+            // given
+            final TransactionCompletionService.Completion changing = new TransactionCompletionService.Completion();
+            final Action changeCommittedWhileResolving = new CustomAction("change committed while resolving") {
+                @Override
+                public Object invoke(final Invocation invocation) throws Throwable {
+                    final TransactionCompletionService.Completion resolving = current;
+                    current = changing;
+                    service.on(new DocFragment.UpdatedLifecycleEvent());
+                    changing.afterCompletion(Status.STATUS_COMMITTED);
+                    current = resolving;
+                    return new DocFragment("invoice.Invoice", "due", "/ITA", "Pay by ${dueDate}");
+                }
+            };
+
+            // expect
+            context.checking(new Expectations() {{
+                exactly(2).of(mockRepo).findByObjectTypeAndNameAndApplicableToAtPath("invoice.Invoice", "due", "/ITA");
+                will(onConsecutiveCalls(
+                        changeCommittedWhileResolving,
+                        returnValue(new DocFragment("invoice.Invoice", "due", "/ITA", "Due ${dueDate}"))));
+            }});
+
+            // when
+            final String before = service.render(new SomeObject(), "due", "/ITA");
+            final String after = service.render(new SomeObject(), "due", "/ITA");
+
+            // then
+            assertThat(before).isEqualTo("Pay by 2019-01-01");
+            assertThat(after).isEqualTo("Due 2019-01-01");
+            assertThat(service.getStatistics().getHits()).isEqualTo(0);
+        }
+
+        @Test(expected = DocFragmentService.RenderException.class)
+        public void when_no_fragment() throws Exception {
+
+            // expect
+            context.checking(new Expectations() {{
+                oneOf(mockRepo).findByObjectTypeAndNameAndApplicableToAtPath("invoice.Invoice", "due", "/FRA");
+                will(returnValue(null));
+            }});
+
+            // when
+            service.render(new SomeObject(), "due", "/FRA");
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.incode.module.docrendering.gotenberg.dom.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GotenbergClientService_Test {
+
+    HttpServer server;
+    AtomicInteger requests;
+    AtomicInteger concurrentRequests;
+    AtomicInteger maxConcurrentRequests;
+    GotenbergClientService service;
+
+    @Before
+    public void setUp() throws Exception {
+        requests = new AtomicInteger();
+        concurrentRequests = new AtomicInteger();
+        maxConcurrentRequests = new AtomicInteger();
+
+        // a stand-in for gotenberg, which just echoes the size of the multipart request it received
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/convert/office", exchange -> {
+            requests.incrementAndGet();
+            maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+            final byte[] response;
+            try {
+                response = ("pdf of " + readAll(exchange.getRequestBody()).length)
+                        .getBytes(StandardCharsets.UTF_8);
+                // long enough for the requests to overlap
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                concurrentRequests.decrementAndGet();
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+
+        service = new GotenbergClientService();
+        service.init(ImmutableMap.of(
+                "estatio.application.gotenbergUrl",
+                "http://localhost:" + server.getAddress().getPort() + "/convert/office",
+                "estatio.application.gotenbergMaxConnections", "2"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+        server.stop(0);
+    }
+
+    private static byte[] readAll(final InputStream is) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buf = new byte[4096];
+        int read;
+        while ((read = is.read(buf)) != -1) {
+            baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    public static class ConvertToPdf extends GotenbergClientService_Test {
+
+        @Test
+        public void happy_case() throws Exception {
+
+            // when
+            final byte[] pdf = service.convertToPdf(new byte[] { 1, 2, 3 });
+
+            // then
+            assertThat(new String(pdf, StandardCharsets.UTF_8)).startsWith("pdf of ");
+            assertThat(requests.get()).isEqualTo(1);
+            assertThat(service.getStatistics().getConversions()).isEqualTo(1);
+            assertThat(service.getStatistics().getFailures()).isEqualTo(0);
+        }
+
+    }
+
+    public static class ConvertAllToPdf extends GotenbergClientService_Test {
+
+        @Test
+        public void in_order_with_bounded_concurrency() throws Exception {
+
+            // given
+            final List<byte[]> docxs = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                docxs.add(new byte[i * 100]);
+            }
+
+            // when
+            final List<CompletableFuture<byte[]>> futures = service.convertAllToPdf(docxs);
+
+            // then
+            assertThat(futures).hasSize(20);
+            final List<String> pdfs = new ArrayList<>();
+            for (CompletableFuture<byte[]> future : futures) {
+                pdfs.add(new String(future.get(), StandardCharsets.UTF_8));
+            }
+            // larger docx, larger request
+            for (int i = 1; i < pdfs.size(); i++) {
+                assertThat(sizeOf(pdfs.get(i))).isGreaterThan(sizeOf(pdfs.get(i - 1)));
+            }
+            assertThat(requests.get()).isEqualTo(20);
+            // overlapping, but no more than gotenbergMaxConnections at a time
+            assertThat(maxConcurrentRequests.get()).isEqualTo(2);
+            assertThat(service.getStatistics().getConversions()).isEqualTo(20);
+            assertThat(service.getStatistics().getInFlight()).isEqualTo(0);
+        }
+
+        private static int sizeOf(final String pdf) {
+            return Integer.parseInt(pdf.substring("pdf of ".length()));
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.incode.module.docrendering.gotenberg.dom.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RendererForGotenbergDocxToPdfAbstract_Test {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    GotenbergClientService gotenbergClientService;
+    RendererForGotenbergDocxToPdfAbstract renderer;
+
+    @Before
+    public void setUp() throws Exception {
+        gotenbergClientService = new GotenbergClientService() {
+            @Override
+            public byte[] convertToPdf(final byte[] docxBytes) {
+                final String docx = new String(docxBytes, StandardCharsets.UTF_8);
+                if (docx.endsWith("bad")) {
+                    throw new IllegalStateException("could not convert " + docx);
+                }
+                try {
+                    // the earlier documents take longest
+                    Thread.sleep(50 - docx.length());
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return ("pdf of " + docx).getBytes(StandardCharsets.UTF_8);
+            }
+        };
+        gotenbergClientService.init(ImmutableMap.of("estatio.application.gotenbergMaxConnections", "2"));
+
+        renderer = new RendererForGotenbergDocxToPdfAbstract(
+                (documentType, variant, atPath, templateVersion, templateBytes, dataModel) ->
+                        ("docx of " + dataModel).getBytes(StandardCharsets.UTF_8)) {
+        };
+        renderer.gotenbergClientService = gotenbergClientService;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        gotenbergClientService.shutdown();
+    }
+
+    public static class RenderAllBytesToBytes extends RendererForGotenbergDocxToPdfAbstract_Test {
+
+        @Test
+        public void in_order_of_the_data_models() throws Exception {
+
+            // given
+            final List<String> dataModels = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                dataModels.add("model" + i);
+            }
+
+            // when
+            final List<byte[]> pdfs = renderer.renderAllBytesToBytes(null, "content", "/", 1, new byte[0], dataModels);
+
+            // then
+            assertThat(pdfs).hasSize(10);
+            for (int i = 0; i < 10; i++) {
+                assertThat(new String(pdfs.get(i), StandardCharsets.UTF_8)).isEqualTo("pdf of docx of model" + i);
+            }
+            assertThat(gotenbergClientService.getStatistics().getInFlight()).isEqualTo(0);
+        }
+
+        @Test
+        public void when_a_conversion_fails() throws Exception {
+
+            // expect
+            expectedException.expect(IllegalStateException.class);
+            expectedException.expectMessage("could not convert docx of bad");
+
+            // when
+            renderer.renderAllBytesToBytes(null, "content", "/", 1, new byte[0], Arrays.asList("good", "bad", "good"));
+        }
+
+    }
+
+}
@@ -0,0 +1,295 @@
+package org.incode.module.document.spi.minio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.isis.applib.value.Blob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExternalDocumentCache_Test {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    HttpServer server;
+    AtomicInteger requests;
+    ExternalUrlDownloadService service;
+
+    @Before
+    public void setUp() throws Exception {
+        requests = new AtomicInteger();
+
+        // a stand-in for the archive, which serves a body of the size asked for (eg /docs/a/1000)
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/docs", exchange -> {
+            requests.incrementAndGet();
+            final String path = exchange.getRequestURI().getPath();
+            final int size = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            final byte[] response = new byte[size];
+            for (int i = 0; i < size; i++) {
+                response[i] = (byte) (i % 251);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+
+        service = new ExternalUrlDownloadService() {
+            @Override
+            protected Blob fetchBlob(final String documentName, final String externalUrl) throws Exception {
+                final HttpURLConnection connection = (HttpURLConnection) new URL(externalUrl).openConnection();
+                try (InputStream is = connection.getInputStream()) {
+                    return new Blob(documentName, connection.getContentType(), readAll(is));
+                } finally {
+                    connection.disconnect();
+                }
+            }
+        };
+        service.cache = new ExternalDocumentCache(temporaryFolder.newFolder("cache"), 3_000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    String urlFor(final String name, final int size) {
+        return "http://localhost:" + server.getAddress().getPort() + "/docs/" + name + "/" + size;
+    }
+
+    private static byte[] readAll(final InputStream is) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buf = new byte[4096];
+        int read;
+        while ((read = is.read(buf)) != -1) {
+            baos.write(buf, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    public static class DownloadAsBlob extends ExternalDocumentCache_Test {
+
+        @Test
+        public void downloaded_once_then_served_from_cache() throws Exception {
+
+            // when
+            final Blob first = service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            final Blob second = service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+
+            // then
+            assertThat(requests.get()).isEqualTo(1);
+            assertThat(second.getBytes()).isEqualTo(first.getBytes());
+            assertThat(second.getMimeType().getBaseType()).isEqualTo("application/pdf");
+
+            final ExternalDocumentCache.Statistics statistics = service.getCacheStatistics();
+            assertThat(statistics.getHits()).isEqualTo(1);
+            assertThat(statistics.getMisses()).isEqualTo(1);
+            assertThat(statistics.getEntries()).isEqualTo(1);
+            assertThat(statistics.getBytes()).isEqualTo(1000);
+        }
+
+        @Test
+        public void corrupt_content_is_downloaded_again() throws Exception {
+
+            // given
+            final Blob original = service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            final ExternalDocumentCache.Entry entry = service.cache.lookup(urlFor("a", 1000));
+            try (RandomAccessFile file = new RandomAccessFile(entry.getFile(), "rw")) {
+                file.seek(500);
+                file.write(42);
+            }
+
+            // when
+            final Blob blob = service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+
+            // then
+            assertThat(requests.get()).isEqualTo(2);
+            assertThat(blob.getBytes()).isEqualTo(original.getBytes());
+            assertThat(service.getCacheStatistics().getChecksumFailures()).isEqualTo(1);
+        }
+
+        @Test
+        public void least_recently_used_evicted_when_full() throws Exception {
+
+            // given
+            service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            service.downloadAsBlob("b.pdf", urlFor("b", 1001));
+            service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            assertThat(requests.get()).isEqualTo(2);
+
+            // when
+            service.downloadAsBlob("c.pdf", urlFor("c", 1002));
+
+            // then
+            final ExternalDocumentCache.Statistics statistics = service.getCacheStatistics();
+            assertThat(statistics.getEvictions()).isEqualTo(1);
+            assertThat(statistics.getBytes()).isEqualTo(2002);
+
+            service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            assertThat(requests.get()).isEqualTo(3);
+            service.downloadAsBlob("b.pdf", urlFor("b", 1001));
+            assertThat(requests.get()).isEqualTo(4);
+        }
+
+        @Test
+        public void identical_content_held_once() throws Exception {
+
+            // when
+            service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            service.downloadAsBlob("a-copy.pdf", urlFor("a-copy", 1000));
+
+            // then
+            final ExternalDocumentCache.Statistics statistics = service.getCacheStatistics();
+            assertThat(statistics.getEntries()).isEqualTo(2);
+            assertThat(statistics.getBytes()).isEqualTo(1000);
+            assertThat(service.cache.getDirectory().listFiles()).hasSize(1);
+        }
+
+        @Test
+        public void larger_than_cache_is_not_cached() throws Exception {
+
+            // when
+            final Blob blob = service.downloadAsBlob("big.pdf", urlFor("big", 5000));
+            service.downloadAsBlob("big.pdf", urlFor("big", 5000));
+
+            // then
+            assertThat(blob.getBytes()).hasSize(5000);
+            assertThat(requests.get()).isEqualTo(2);
+            assertThat(service.getCacheStatistics().getEntries()).isEqualTo(0);
+        }
+
+    }
+
+    public static class Directory extends ExternalDocumentCache_Test {
+
+        @Test
+        public void own_directory_so_others_sharing_the_parent_are_left_alone() throws Exception {
+
+            // given
+            service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            final File parent = new File(temporaryFolder.getRoot(), "cache");
+            final File unrelated = new File(parent, "0000000000000000000000000000000000000000000000000000000000000000");
+            assertThat(unrelated.createNewFile()).isTrue();
+
+            // when another cache is created in the same parent
+            final ExternalDocumentCache other = new ExternalDocumentCache(parent, 3_000);
+
+            // then
+            assertThat(other.getDirectory()).isNotEqualTo(service.cache.getDirectory());
+            assertThat(other.getDirectory().getParentFile()).isEqualTo(parent);
+            assertThat(unrelated).exists();
+            service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            assertThat(requests.get()).isEqualTo(1);
+
+            // when
+            other.close();
+
+            // then
+            assertThat(other.getDirectory()).doesNotExist();
+            // the content, and the lock file
+            assertThat(service.cache.getDirectory().listFiles()).hasSize(2);
+            assertThat(unrelated).exists();
+        }
+
+        @Test
+        public void directories_left_behind_are_deleted_when_another_cache_is_created() throws Exception {
+
+            // given
+            final File parent = new File(temporaryFolder.getRoot(), "cache");
+            final File crashed = newCacheDirectory(parent, "cache-crashed", true);
+            final File locked = newCacheDirectory(parent, "cache-locked", true);
+            final File notYetLocked = newCacheDirectory(parent, "cache-not-yet-locked", false);
+            final File neverLocked = newCacheDirectory(parent, "cache-never-locked", false);
+            assertThat(neverLocked.setLastModified(
+                    System.currentTimeMillis() - ExternalDocumentCache.UNLOCKED_GRACE_MILLIS - 1000)).isTrue();
+
+            try (FileChannel channel = FileChannel.open(
+                    new File(locked, ".lock").toPath(), StandardOpenOption.WRITE)) {
+                channel.lock();
+
+                // when
+                final ExternalDocumentCache other = new ExternalDocumentCache(parent, 3_000);
+
+                // then
+                assertThat(crashed).doesNotExist();
+                assertThat(neverLocked).doesNotExist();
+                assertThat(locked).exists();
+                assertThat(notYetLocked).exists();
+                assertThat(service.cache.getDirectory()).exists();
+                assertThat(other.getDirectory()).exists();
+
+                other.close();
+            }
+        }
+
+        File newCacheDirectory(final File parent, final String name, final boolean withLockFile) throws IOException {
+            final File directory = new File(parent, name);
+            assertThat(directory.mkdir()).isTrue();
+            assertThat(new File(directory, "0000000000000000000000000000000000000000000000000000000000000000").createNewFile()).isTrue();
+            if (withLockFile) {
+                assertThat(new File(directory, ".lock").createNewFile()).isTrue();
+            }
+            return directory;
+        }
+
+        @Test
+        public void directory_deleted_when_closed() throws Exception {
+
+            // given
+            service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            final File directory = service.cache.getDirectory();
+
+            // when
+            service.shutdown();
+
+            // then
+            assertThat(directory).doesNotExist();
+        }
+    }
+
+    public static class AsDataSource extends ExternalDocumentCache_Test {
+
+        @Test
+        public void streams_cached_content() throws Exception {
+
+            // given
+            final Blob blob = service.downloadAsBlob("a.pdf", urlFor("a", 1000));
+            final ExternalDocumentCache.Entry entry = service.cache.lookup(urlFor("a", 1000));
+
+            // when
+            final byte[] bytes;
+            try (InputStream is = entry.asDataSource("a.pdf", "application/pdf").getInputStream()) {
+                bytes = readAll(is);
+            }
+
+            // then
+            assertThat(bytes).isEqualTo(blob.getBytes());
+            assertThat(new String(bytes, StandardCharsets.ISO_8859_1)).hasSize(1000);
+        }
+
+    }
+
+}